@@ -0,0 +1,47 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.benchmarks;
+
+import org.openjdk.jmh.Main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Entry point of benchmarks.jar. Takes the regular JMH command line and adds the GC profiler unless another
+ * profiler was asked for, so that bytes allocated per operation are always reported next to the timings.
+ */
+public final class BenchmarkMain {
+
+    private static final String PROFILER_OPTION = "-prof";
+
+    private BenchmarkMain() {
+    }
+
+    /**
+     * Run the benchmarks.
+     * @param args JMH command line arguments
+     * @throws Exception if JMH fails
+     */
+    public static void main(String[] args) throws Exception {
+        List<String> jmhArgs = new ArrayList<>(Arrays.asList(args));
+        if (!jmhArgs.contains(PROFILER_OPTION)) {
+            jmhArgs.add(PROFILER_OPTION);
+            jmhArgs.add("gc");
+        }
+        Main.main(jmhArgs.toArray(new String[jmhArgs.size()]));
+    }
+}
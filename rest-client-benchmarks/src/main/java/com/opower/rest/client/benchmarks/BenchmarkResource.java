@@ -0,0 +1,54 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.benchmarks;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * The resource interface the client benchmarks call. Entities are plain text so that the numbers reflect the
+ * client itself rather than a JSON library.
+ */
+@Path("/widgets")
+@Produces(MediaType.TEXT_PLAIN)
+public interface BenchmarkResource {
+
+    /**
+     * A GET with a path and a query parameter.
+     * @param id the widget id
+     * @param filter a query parameter
+     * @return the widget
+     */
+    @GET
+    @Path("{id}")
+    String find(@PathParam("id") String id, @QueryParam("filter") String filter);
+
+    /**
+     * A POST with a request body.
+     * @param id the widget id
+     * @param widget the new widget
+     * @return the widget
+     */
+    @POST
+    @Path("{id}")
+    @Consumes(MediaType.TEXT_PLAIN)
+    String update(@PathParam("id") String id, String widget);
+}
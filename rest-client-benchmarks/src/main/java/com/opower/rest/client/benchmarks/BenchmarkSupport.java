@@ -0,0 +1,51 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.benchmarks;
+
+import com.opower.rest.client.generator.core.BasicRuntimeDelegate;
+import com.opower.rest.client.generator.core.ResourceInterface;
+import com.opower.rest.client.generator.core.SimpleUriProvider;
+import com.opower.rest.client.generator.core.UriProvider;
+
+import javax.ws.rs.ext.RuntimeDelegate;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fixtures shared by the benchmarks.
+ */
+final class BenchmarkSupport {
+
+    static final ResourceInterface<BenchmarkResource> RESOURCE = new ResourceInterface<>(BenchmarkResource.class);
+    static final UriProvider URI_PROVIDER = new SimpleUriProvider("http://localhost:8080/api");
+    static final String WIDGET_ID = "widget-42";
+    static final String FILTER = "color=blue&size=large";
+    static final String WIDGET = "a widget that is sent in the request body";
+    static final byte[] RESPONSE = "a widget that is read from the response body".getBytes(StandardCharsets.UTF_8);
+    static final String TEXT_PLAIN = "text/plain";
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * There is no JAX-RS implementation on the benchmark classpath, so MediaType parsing needs the basic delegate.
+     */
+    static void installRuntimeDelegate() {
+        RuntimeDelegate.setInstance(new BasicRuntimeDelegate());
+    }
+
+    static StubClientExecutor stubExecutor() {
+        return new StubClientExecutor(TEXT_PLAIN, RESPONSE);
+    }
+}
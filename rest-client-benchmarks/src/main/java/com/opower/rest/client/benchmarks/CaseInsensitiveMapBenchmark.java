@@ -0,0 +1,85 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.benchmarks;
+
+import com.opower.rest.client.generator.util.CaseInsensitiveMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Populating and querying the response header map the way the executors and BaseClientResponse do.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CaseInsensitiveMapBenchmark {
+
+    private static final String[][] HEADERS = {
+        {"Content-Type", "application/json; charset=UTF-8"},
+        {"Content-Length", "1024"},
+        {"Date", "Mon, 20 Jan 2014 12:00:00 GMT"},
+        {"Server", "Jetty(9.1.0)"},
+        {"Cache-Control", "no-cache"},
+        {"Vary", "Accept-Encoding"},
+        {"Set-Cookie", "a=b"},
+        {"Set-Cookie", "c=d"},
+        {"X-Request-Id", "5f2b6c3e"},
+        {"Connection", "keep-alive"},
+    };
+
+    private CaseInsensitiveMap<String> headers;
+
+    @Setup
+    public void setUp() {
+        this.headers = populate();
+    }
+
+    @Benchmark
+    public CaseInsensitiveMap<String> populate() {
+        CaseInsensitiveMap<String> map = new CaseInsensitiveMap<>();
+        for (String[] header : HEADERS) {
+            map.add(header[0], header[1]);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public String getFirstSameCase() {
+        return this.headers.getFirst("Content-Type");
+    }
+
+    @Benchmark
+    public String getFirstOtherCase() {
+        return this.headers.getFirst("content-type");
+    }
+
+    @Benchmark
+    public boolean containsKeyMissing() {
+        return this.headers.containsKey("ETag");
+    }
+}
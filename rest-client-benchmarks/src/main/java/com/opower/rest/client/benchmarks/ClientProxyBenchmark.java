@@ -0,0 +1,68 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.benchmarks;
+
+import com.opower.rest.client.generator.core.Client;
+import com.opower.rest.client.generator.core.ProxyEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The whole client call path: proxy dispatch, ClientInvoker.createRequest, URI rendering, body serialization in the
+ * executor and BaseClientResponse.getEntity, against an executor that does no I/O.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClientProxyBenchmark {
+
+    @Param({"JDK_PROXY", "GENERATED"})
+    public String proxyEngine;
+
+    private BenchmarkResource client;
+
+    @Setup
+    public void setUp() {
+        BenchmarkSupport.installRuntimeDelegate();
+        this.client = new Client.Builder<>(BenchmarkSupport.RESOURCE, BenchmarkSupport.URI_PROVIDER)
+                .executor(BenchmarkSupport.stubExecutor())
+                .proxyEngine(ProxyEngine.valueOf(this.proxyEngine))
+                .build();
+    }
+
+    @Benchmark
+    public String get() {
+        return this.client.find(BenchmarkSupport.WIDGET_ID, BenchmarkSupport.FILTER);
+    }
+
+    @Benchmark
+    public String post() {
+        return this.client.update(BenchmarkSupport.WIDGET_ID, BenchmarkSupport.WIDGET);
+    }
+}
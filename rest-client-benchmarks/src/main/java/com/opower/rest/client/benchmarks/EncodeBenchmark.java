@@ -0,0 +1,72 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.benchmarks;
+
+import com.opower.rest.client.generator.util.Encode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding path and query parameter values, for values that need no escaping and values that do.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodeBenchmark {
+
+    @Param({"widget-42", "needs encoding/ & {braces} %20 \u00fcml\u00e4ut"})
+    public String value;
+
+    private final StringBuilder buffer = new StringBuilder();
+
+    @Benchmark
+    public String encodePath() {
+        return Encode.encodePath(this.value);
+    }
+
+    @Benchmark
+    public String encodePathAsIs() {
+        return Encode.encodePathAsIs(this.value);
+    }
+
+    @Benchmark
+    public StringBuilder encodePathAsIsIntoBuffer() {
+        this.buffer.setLength(0);
+        return Encode.encodePathAsIs(this.value, this.buffer);
+    }
+
+    @Benchmark
+    public String encodeQueryParam() {
+        return Encode.encodeQueryParam(this.value);
+    }
+
+    @Benchmark
+    public String encodeQueryParamAsIs() {
+        return Encode.encodeQueryParamAsIs(this.value);
+    }
+}
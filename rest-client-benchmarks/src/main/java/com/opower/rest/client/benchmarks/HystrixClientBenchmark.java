@@ -0,0 +1,75 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.benchmarks;
+
+import com.netflix.hystrix.HystrixCommandGroupKey;
+import com.netflix.hystrix.HystrixCommandProperties;
+import com.opower.rest.client.ConfigurationCallback;
+import com.opower.rest.client.generator.hystrix.HystrixClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The client call path wrapped by HystrixCommandInvocationHandler, in both isolation modes. Comparing it with
+ * {@link ClientProxyBenchmark} shows what the Hystrix layer costs per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HystrixClientBenchmark {
+
+    @Param({"THREAD", "SEMAPHORE"})
+    public String isolation;
+
+    private BenchmarkResource client;
+
+    @Setup
+    public void setUp() {
+        BenchmarkSupport.installRuntimeDelegate();
+        final HystrixCommandProperties.ExecutionIsolationStrategy strategy =
+                HystrixCommandProperties.ExecutionIsolationStrategy.valueOf(this.isolation);
+        HystrixCommandGroupKey groupKey = HystrixCommandGroupKey.Factory.asKey("benchmarks-" + this.isolation);
+        this.client = new HystrixClient.Builder<BenchmarkResource>(BenchmarkSupport.RESOURCE,
+                                                                   BenchmarkSupport.URI_PROVIDER, groupKey)
+                .executor(BenchmarkSupport.stubExecutor())
+                .commandProperties(new ConfigurationCallback<HystrixCommandProperties.Setter>() {
+                    @Override
+                    public void configure(HystrixCommandProperties.Setter setter) {
+                        setter.withExecutionIsolationStrategy(strategy)
+                              .withExecutionIsolationSemaphoreMaxConcurrentRequests(Integer.MAX_VALUE);
+                    }
+                })
+                .build();
+    }
+
+    @Benchmark
+    public String get() {
+        return this.client.find(BenchmarkSupport.WIDGET_ID, BenchmarkSupport.FILTER);
+    }
+}
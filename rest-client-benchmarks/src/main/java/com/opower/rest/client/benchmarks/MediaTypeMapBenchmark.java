@@ -0,0 +1,92 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.benchmarks;
+
+import com.opower.rest.client.generator.core.ClientProviders;
+import com.opower.rest.client.generator.core.MediaTypeMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.MessageBodyReader;
+import java.lang.annotation.Annotation;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MessageBodyReader lookups against the builtin providers, with and without the MediaTypeMap class cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MediaTypeMapBenchmark {
+
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+    @Param({"true", "false"})
+    public boolean useCache;
+
+    private BuiltinProviders providers;
+
+    @Setup
+    public void setUp() {
+        BenchmarkSupport.installRuntimeDelegate();
+        MediaTypeMap.useCache = this.useCache;
+        this.providers = new BuiltinProviders();
+    }
+
+    @TearDown
+    public void tearDown() {
+        MediaTypeMap.useCache = true;
+    }
+
+    @Benchmark
+    public List<?> getPossibleConcrete() {
+        return this.providers.readers().getPossible(MediaType.TEXT_PLAIN_TYPE, String.class);
+    }
+
+    @Benchmark
+    public List<?> getPossibleWildcard() {
+        return this.providers.readers().getPossible(MediaType.WILDCARD_TYPE, String.class);
+    }
+
+    @Benchmark
+    public MessageBodyReader<String> getMessageBodyReader() {
+        return this.providers.getMessageBodyReader(String.class, String.class, NO_ANNOTATIONS,
+                                                   MediaType.TEXT_PLAIN_TYPE);
+    }
+
+    /**
+     * Exposes the reader map of ClientProviders.
+     */
+    private static final class BuiltinProviders extends ClientProviders {
+        private MediaTypeMap<SortedKey<MessageBodyReader>> readers() {
+            return this.messageBodyReaders;
+        }
+    }
+}
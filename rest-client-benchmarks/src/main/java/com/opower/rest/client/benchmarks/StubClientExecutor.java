@@ -0,0 +1,94 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import com.opower.rest.client.generator.core.BaseClientResponse;
+import com.opower.rest.client.generator.core.ChunkedBufferInputStream;
+import com.opower.rest.client.generator.core.ClientRequest;
+import com.opower.rest.client.generator.core.ClientRequestFilter;
+import com.opower.rest.client.generator.core.ClientResponse;
+import com.opower.rest.client.generator.executors.AbstractClientExecutor;
+import com.opower.rest.client.generator.util.CaseInsensitiveMap;
+import com.opower.rest.client.generator.util.HttpHeaderNames;
+import com.opower.rest.client.generator.util.HttpResponseCodes;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * ClientExecutor that answers every request with the same canned response without any I/O. It still does the work
+ * a real executor does around the wire: it renders the URI, serializes the request body and wraps the response
+ * body the same way the shipped executors do.
+ */
+public class StubClientExecutor extends AbstractClientExecutor {
+
+    private final String contentType;
+    private final byte[] body;
+
+    /**
+     * Create an executor that responds with the given entity.
+     * @param contentType the Content-Type of the response
+     * @param body the response entity
+     */
+    public StubClientExecutor(String contentType, byte[] body) {
+        super(ImmutableList.<ClientRequestFilter>of());
+        this.contentType = checkNotNull(contentType);
+        this.body = checkNotNull(body);
+    }
+
+    @Override
+    public ClientResponse execute(ClientRequest request) throws Exception {
+        request.getUri();
+        request.writeRequestBody(request.getHeadersAsObjects(), ByteStreams.nullOutputStream());
+
+        BaseClientResponse response = new BaseClientResponse(new BaseClientResponse.BaseClientResponseStreamFactory() {
+            private InputStream stream;
+
+            @Override
+            public InputStream getInputStream() throws IOException {
+                if (this.stream == null) {
+                    this.stream = new ChunkedBufferInputStream(new ByteArrayInputStream(StubClientExecutor.this.body));
+                }
+                return this.stream;
+            }
+
+            @Override
+            public void performReleaseConnection() {
+                try {
+                    getInputStream().close();
+                } catch (IOException ignore) {
+                    // nothing to release
+                }
+            }
+        }, this, request.getErrorStatusCriteria());
+
+        CaseInsensitiveMap<String> headers = new CaseInsensitiveMap<>();
+        headers.add(HttpHeaderNames.CONTENT_TYPE, this.contentType);
+        headers.add(HttpHeaderNames.CONTENT_LENGTH, Integer.toString(this.body.length));
+        response.setStatus(HttpResponseCodes.SC_OK);
+        response.setHeaders(headers);
+        response.setProviders(request.getProviders());
+        return response;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.benchmarks;
+
+import com.opower.rest.client.generator.core.UriTemplate;
+import com.opower.rest.client.generator.specimpl.MultivaluedMapImpl;
+import com.opower.rest.client.generator.specimpl.UriBuilderImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.ws.rs.core.MultivaluedMap;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a request URI with UriBuilderImpl, the way ClientRequest.getUri() does for opaque base URIs, next to
+ * rendering the same URI from a precompiled UriTemplate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UriBuilderBenchmark {
+
+    private UriBuilderImpl builder;
+    private UriTemplate template;
+    private URI baseUri;
+    private MultivaluedMap<String, String> pathParameters;
+    private MultivaluedMap<String, String> queryParameters;
+
+    @Setup
+    public void setUp() {
+        BenchmarkSupport.installRuntimeDelegate();
+        this.baseUri = URI.create("http://localhost:8080/api");
+        this.builder = new UriBuilderImpl();
+        this.builder.uri(this.baseUri);
+        this.builder.path(BenchmarkResource.class);
+        this.builder.path("{id}");
+        this.template = UriTemplate.compile("/widgets", "{id}");
+        this.pathParameters = new MultivaluedMapImpl<>();
+        this.pathParameters.putSingle("id", BenchmarkSupport.WIDGET_ID);
+        this.queryParameters = new MultivaluedMapImpl<>();
+        this.queryParameters.putSingle("filter", BenchmarkSupport.FILTER);
+    }
+
+    @Benchmark
+    public String uriBuilder() {
+        UriBuilderImpl copy = (UriBuilderImpl) this.builder.clone();
+        copy.substitutePathParam("id", BenchmarkSupport.WIDGET_ID, false);
+        copy.clientQueryParam("filter", BenchmarkSupport.FILTER);
+        return copy.build().toString();
+    }
+
+    @Benchmark
+    public String uriTemplate() {
+        return this.template.render(this.baseUri, this.pathParameters, null, this.queryParameters);
+    }
+}
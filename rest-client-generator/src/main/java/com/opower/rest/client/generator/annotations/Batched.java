@@ -0,0 +1,54 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Links a single-item resource method to a bulk method of the same resource interface. Calls of the single-item
+ * method that arrive within {@link #windowMillis()} of each other are collected and sent as one call of the bulk
+ * method, and each caller gets its own item of the result.
+ * <p/>
+ * The single-item method must take exactly one parameter, the key of the item. The bulk method must take one
+ * parameter that a List or a Set of keys can be passed as, and return either a List with one result per key, in the
+ * order of the keys, or a Map from key to result. Keys missing from a returned Map produce null.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Batched {
+
+    /**
+     * The name of the bulk method on the same resource interface.
+     * @return the name of the bulk method
+     */
+    String value();
+
+    /**
+     * The largest number of distinct keys sent in one bulk call. A batch is sent as soon as it is full.
+     * @return the maximum batch size
+     */
+    int maxSize() default 100;
+
+    /**
+     * How long, in milliseconds, to collect calls after the first call of a batch before the bulk call is sent.
+     * @return the collection window
+     */
+    long windowMillis() default 10;
+}
@@ -0,0 +1,55 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Sends a second attempt of a call when the first one has not returned within the given percentile of the method's
+ * recent latencies, and uses whichever response arrives first. The slower attempt is cancelled. Each attempt asks the
+ * client's UriProvider for a base URI, so a provider with several hosts sends the second attempt to another host.
+ * <p/>
+ * Only idempotent methods (GET, HEAD, OPTIONS, PUT and DELETE) can be hedged. Second attempts are paid for out of a
+ * budget that grows by {@link #budgetPercent()} percent of a request with every call, so hedging never adds more than
+ * that share of extra load on the server.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Hedged {
+
+    /**
+     * The percentile of recent latencies after which the second attempt is sent.
+     * @return the percentile, greater than 0 and less than 100
+     */
+    double percentile() default 95;
+
+    /**
+     * The shortest delay, in milliseconds, before the second attempt is sent. It is also the delay used until enough
+     * latencies have been observed to compute the percentile.
+     * @return the minimum delay
+     */
+    long minDelayMillis() default 10;
+
+    /**
+     * The largest number of second attempts per hundred calls.
+     * @return the hedge budget in percent of calls
+     */
+    double budgetPercent() default 10;
+}
@@ -0,0 +1,43 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Names the parameter of a resource method whose value decides which host a call is sent to, so that calls for the
+ * same entity keep going to the same host. The name is matched against the @PathParam, @QueryParam, @MatrixParam,
+ * @HeaderParam and @FormParam annotations of the method's parameters.
+ * <p/>
+ * The value is only used when the client's UriProvider is a
+ * {@link com.opower.rest.client.generator.core.RoutingUriProvider}, for example a
+ * {@link com.opower.rest.client.generator.loadbalancing.LoadBalancingUriProvider} with a
+ * {@link com.opower.rest.client.generator.loadbalancing.RendezvousHashStrategy}. Other providers ignore it.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface RoutingKey {
+
+    /**
+     * The name of the parameter to route by.
+     * @return the parameter name
+     */
+    String value();
+}
@@ -0,0 +1,54 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Timeouts for the calls of a resource method, or of every method of a resource interface when the interface is
+ * annotated. The timeouts are applied by the ClientExecutor to the connection itself, so a call that runs out of time
+ * is aborted rather than left to finish in the background. A value of 0 keeps the timeout the executor's HTTP client
+ * was configured with.
+ * <p/>
+ * Timeouts set on the client builder for a single method take precedence over this annotation. Timeouts set on the
+ * builder for all methods take precedence over an annotated interface, but not over an annotated method.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.METHOD, ElementType.TYPE })
+public @interface Timeout {
+
+    /**
+     * How long to wait for a connection to be established.
+     * @return the connect timeout in milliseconds
+     */
+    long connectMillis() default 0;
+
+    /**
+     * How long to wait for the next bytes of the response once connected.
+     * @return the read timeout in milliseconds
+     */
+    long readMillis() default 0;
+
+    /**
+     * How long the whole call may take, from sending the request until the response has been read.
+     * @return the total timeout in milliseconds
+     */
+    long totalMillis() default 0;
+}
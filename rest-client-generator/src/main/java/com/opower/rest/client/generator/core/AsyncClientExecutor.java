@@ -0,0 +1,34 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.core;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * A ClientExecutor that can send requests without blocking the calling thread. Resource methods returning a Future or
+ * ListenableFuture are dispatched through {@link #executeAsync(ClientRequest)} when the configured executor implements
+ * this interface. With any other ClientExecutor they are executed synchronously and return a completed future.
+ */
+public interface AsyncClientExecutor extends ClientExecutor {
+
+    /**
+     * Send the request. The returned future completes with the response once it has been received, or fails with
+     * the Exception that was raised while sending the request or receiving the response.
+     * @param request the request to send
+     * @return the future response
+     * @throws Exception if the request could not be sent
+     */
+    ListenableFuture<ClientResponse> executeAsync(ClientRequest request) throws Exception;
+}
@@ -30,6 +30,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.ext.MessageBodyReader;
@@ -58,8 +60,10 @@ public class BaseClientResponse extends ClientResponse {
     protected Exception exception;
     protected BaseClientResponseStreamFactory streamFactory;
     protected ClientExecutor executor;
+    protected ResolvedReader resolvedReader;
 
     private final Predicate<Integer> errorStatusCriteria;
+    private List<Runnable> releaseListeners;
 
     /**
      * Create an instance with the given StreamFactory and ClientExecutor.
@@ -144,6 +148,15 @@ public class BaseClientResponse extends ClientResponse {
         this.annotations = annotations;
     }
 
+    /**
+     * Use a MessageBodyReader that was resolved up front whenever the entity is read as the type it was resolved
+     * for, skipping the Providers lookup.
+     * @param resolvedReader the resolved reader, may be null
+     */
+    public void setResolvedReader(ResolvedReader resolvedReader) {
+        this.resolvedReader = resolvedReader;
+    }
+
     public void setAttributeExceptionsTo(String attributeExceptionsTo) {
         this.attributeExceptionsTo = attributeExceptionsTo;
     }
@@ -277,8 +290,11 @@ public class BaseClientResponse extends ClientResponse {
         Class<?> useType = type;
 
 
-        MessageBodyReader reader1 = this.providers.getMessageBodyReader(useType,
-                useGeneric, this.annotations, media);
+        MessageBodyReader reader1 = this.resolvedReader == null ? null
+                : this.resolvedReader.getReader(useType, useGeneric, media);
+        if (reader1 == null) {
+            reader1 = this.providers.getMessageBodyReader(useType, useGeneric, this.annotations, media);
+        }
         if (reader1 == null) {
             throw createResponseFailure(String.format(
                     "Unable to find a MessageBodyReader of content-type %s and type %s",
@@ -290,6 +306,10 @@ public class BaseClientResponse extends ClientResponse {
             if (is == null) {
                 throw new ClientResponseFailure("Input stream was empty, there is no entity", this);
             }
+            if (is instanceof ChunkedBufferInputStream && isSuccessful()) {
+                // successful responses are never rewound for the ClientErrorInterceptors, don't keep the body around
+                ((ChunkedBufferInputStream) is).stopRetaining();
+            }
 
             return reader1.readFrom(useType, useGeneric, this.annotations, media, getHeaders(), is);
 
@@ -357,9 +377,34 @@ public class BaseClientResponse extends ClientResponse {
 
     public final void releaseConnection() {
         if (!wasReleased) {
-            if (streamFactory != null) streamFactory.performReleaseConnection();
-            wasReleased = true;
+            try {
+                if (streamFactory != null) streamFactory.performReleaseConnection();
+            } finally {
+                wasReleased = true;
+                if (releaseListeners != null) {
+                    for (Runnable listener : releaseListeners) {
+                        listener.run();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Run the given callback once the connection of this response is released, which happens once the entity has been
+     * read, or right away if it already was. Executors use it to hold on to resources for as long as the body is
+     * being read.
+     * @param listener the callback
+     */
+    public void addReleaseListener(Runnable listener) {
+        if (wasReleased) {
+            listener.run();
+            return;
+        }
+        if (releaseListeners == null) {
+            releaseListeners = new ArrayList<>();
         }
+        releaseListeners.add(listener);
     }
 
     @Override
@@ -0,0 +1,219 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.core;
+
+import com.google.common.base.Throwables;
+import com.opower.rest.client.generator.annotations.Batched;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * MethodInvoker for a single-item method annotated with {@link Batched}. Calls are collected into batches and each
+ * batch is sent as one call of the bulk method's MethodInvoker.
+ * <p/>
+ * No extra threads are involved. The caller that opens a batch waits for the collection window to pass, or for the
+ * batch to fill up, and then makes the bulk call on behalf of everyone in the batch. The other callers wait for that
+ * call and pick their item out of its result. If the bulk call fails, every caller in the batch gets the exception.
+ * Calls of a sub-resource are only batched with calls bound to the same path.
+ */
+public class BatchingInvoker implements BindableMethodInvoker {
+
+    private final BulkMethod bulk;
+    private final MethodInvoker bulkInvoker;
+    private final int maxSize;
+    private final long windowNanos;
+    private final Object lock = new Object();
+    private final Map<UriProvider, Batch> open = new HashMap<>();
+
+    /**
+     * Create an invoker for the given single-item method.
+     * @param single the single-item method, annotated with {@link Batched}
+     * @param bulk the bulk method named by the annotation
+     * @param bulkInvoker the MethodInvoker of the bulk method
+     */
+    public BatchingInvoker(Method single, Method bulk, MethodInvoker bulkInvoker) {
+        Batched batched = checkNotNull(single.getAnnotation(Batched.class), "%s is not @Batched", single);
+        checkArgument(batched.maxSize() > 0, "maxSize of %s must be positive", single);
+        checkArgument(batched.windowMillis() >= 0, "windowMillis of %s must not be negative", single);
+
+        this.bulk = new BulkMethod(single, bulk);
+        this.bulkInvoker = checkNotNull(bulkInvoker);
+        this.maxSize = batched.maxSize();
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(batched.windowMillis());
+    }
+
+    /**
+     * Replace the invokers of all {@link Batched} methods of a resource interface with BatchingInvokers.
+     * @param iface the resource interface
+     * @param methodMap the invokers of the interface, keyed by method
+     */
+    static void install(Class<?> iface, Map<Method, MethodInvoker> methodMap) {
+        for (Method method : iface.getMethods()) {
+            Batched batched = method.getAnnotation(Batched.class);
+            if (batched != null) {
+                Method bulk = findBulkMethod(iface, method, batched.value());
+                methodMap.put(method, new BatchingInvoker(method, bulk, methodMap.get(bulk)));
+            }
+        }
+    }
+
+    /**
+     * Whether any method of the resource interface is {@link Batched}.
+     * @param iface the resource interface
+     * @return true if calls of the interface are batched
+     */
+    static boolean hasBatchedMethods(Class<?> iface) {
+        for (Method method : iface.getMethods()) {
+            if (method.isAnnotationPresent(Batched.class)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Method findBulkMethod(Class<?> iface, Method single, String name) {
+        Method bulk = null;
+        for (Method method : iface.getMethods()) {
+            if (method.getName().equals(name) && method.getParameterTypes().length == 1) {
+                checkArgument(bulk == null, "the bulk method %s of %s is ambiguous", name, single);
+                bulk = method;
+            }
+        }
+        checkArgument(bulk != null, "could not find the bulk method %s of %s", name, single);
+        return bulk;
+    }
+
+    @Override
+    public Object invoke(Object[] args) {
+        return invoke(null, args);
+    }
+
+    @Override
+    public Object invoke(UriProvider uriProvider, Object[] args) {
+        Object key = args[0];
+        Batch batch;
+        boolean leader = false;
+        synchronized (this.lock) {
+            batch = this.open.get(uriProvider);
+            if (batch == null) {
+                batch = new Batch(uriProvider);
+                this.open.put(uriProvider, batch);
+                leader = true;
+            }
+            batch.keys.add(key);
+            if (batch.keys.size() >= this.maxSize) {
+                this.open.remove(uriProvider);
+                this.lock.notifyAll();
+            }
+        }
+        if (leader) {
+            awaitWindow(batch);
+            batch.send();
+        }
+        return batch.await(key);
+    }
+
+    /**
+     * Wait until the window of the batch has passed or someone else closed it because it was full.
+     */
+    private void awaitWindow(Batch batch) {
+        boolean interrupted = false;
+        synchronized (this.lock) {
+            long deadline = System.nanoTime() + this.windowNanos;
+            long remaining = this.windowNanos;
+            while (this.open.get(batch.uriProvider) == batch && remaining > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this.lock, remaining);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    break;
+                }
+                remaining = deadline - System.nanoTime();
+            }
+            if (this.open.get(batch.uriProvider) == batch) {
+                this.open.remove(batch.uriProvider);
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The keys collected for one bulk call, and its outcome. The UriProvider is the one the calls were bound to, or
+     * null for calls of a top-level resource.
+     */
+    private final class Batch {
+        private final UriProvider uriProvider;
+        private final Set<Object> keys = new LinkedHashSet<>();
+        private boolean done;
+        private Map<?, ?> results;
+        private Throwable failure;
+
+        private Batch(UriProvider uriProvider) {
+            this.uriProvider = uriProvider;
+        }
+
+        private void send() {
+            Map<?, ?> bulkResults = null;
+            Throwable bulkFailure = null;
+            try {
+                Collection<Object> argument = BatchingInvoker.this.bulk.argument(this.keys);
+                Object[] bulkArgs = { argument };
+                Object bulkResult = this.uriProvider == null
+                        ? BatchingInvoker.this.bulkInvoker.invoke(bulkArgs)
+                        : ((BindableMethodInvoker) BatchingInvoker.this.bulkInvoker).invoke(this.uriProvider, bulkArgs);
+                bulkResults = BatchingInvoker.this.bulk.resultsByKey(argument, bulkResult);
+            } catch (Throwable t) {
+                bulkFailure = t;
+            }
+            synchronized (this) {
+                this.results = bulkResults;
+                this.failure = bulkFailure;
+                this.done = true;
+                notifyAll();
+            }
+        }
+
+        private Object await(Object key) {
+            boolean interrupted = false;
+            synchronized (this) {
+                while (!this.done) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (this.failure != null) {
+                throw Throwables.propagate(this.failure);
+            }
+            return this.results.get(key);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.core;
+
+/**
+ * A MethodInvoker that can be called with the base URI to use for a single invocation. Sub-resource proxies are
+ * backed by one shared set of these for all the paths they get bound to, so only the bound UriProvider is created
+ * per locator call.
+ */
+public interface BindableMethodInvoker extends MethodInvoker {
+
+    /**
+     * Invoke the method against the given base URI instead of the one the invoker was created with.
+     * @param uriProvider the UriProvider for the base URI of this invocation
+     * @param args the method arguments
+     * @return the result of the invocation
+     */
+    Object invoke(UriProvider uriProvider, Object[] args);
+}
@@ -0,0 +1,184 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.core;
+
+import com.google.common.io.ByteStreams;
+import com.opower.rest.client.generator.util.CaseInsensitiveMap;
+
+import javax.ws.rs.core.MultivaluedMap;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The status, headers and body of a response read fully into memory, so that it can be handed out any number of
+ * times. Every call to {@link #toResponse(ClientRequest, ClientExecutor)} creates a new BaseClientResponse with its
+ * own stream over the shared body, which can be read, reset and released independently of the others.
+ */
+public final class BufferedResponse {
+
+    private final int status;
+    private final CaseInsensitiveMap<String> headers;
+    private final byte[] body;
+
+    /**
+     * Create an instance from parts that are already in memory.
+     * @param status the http status code
+     * @param headers the response headers, they are copied
+     * @param body the response body or null if the response has no entity
+     */
+    public BufferedResponse(int status, MultivaluedMap<String, String> headers, byte[] body) {
+        this.status = status;
+        this.headers = copyHeaders(headers);
+        this.body = body;
+    }
+
+    /**
+     * Read the body of the given response into memory and release its connection.
+     * @param response the response to buffer, it can't be used afterwards
+     * @return the buffered response
+     * @throws IOException if the body could not be read
+     */
+    public static BufferedResponse read(ClientResponse response) throws IOException {
+        BaseClientResponse base = (BaseClientResponse) checkNotNull(response);
+        try {
+            InputStream in = base.getStreamFactory() == null ? null : base.getStreamFactory().getInputStream();
+            return new BufferedResponse(base.getStatus(), base.getHeaders(), in == null ? null : ByteStreams.toByteArray(in));
+        } finally {
+            base.releaseConnection();
+        }
+    }
+
+    /**
+     * Read the body of the given response into memory and release its connection, unless the body is longer than
+     * the given limit. Reading stops as soon as the limit is passed; the response then keeps its connection and still
+     * reads as the whole body, the part already read followed by the rest.
+     * @param response the response to buffer
+     * @param maxBodyLength the longest body to buffer
+     * @return the buffered response or null if the body is longer than maxBodyLength
+     * @throws IOException if the body could not be read
+     */
+    public static BufferedResponse read(ClientResponse response, long maxBodyLength) throws IOException {
+        BaseClientResponse base = (BaseClientResponse) checkNotNull(response);
+        final BaseClientResponse.BaseClientResponseStreamFactory streamFactory = base.getStreamFactory();
+        InputStream in = streamFactory == null ? null : streamFactory.getInputStream();
+        if (in == null) {
+            return read(response);
+        }
+        byte[] prefix;
+        try {
+            prefix = ByteStreams.toByteArray(ByteStreams.limit(in, maxBodyLength + 1));
+        } catch (IOException | RuntimeException e) {
+            base.releaseConnection();
+            throw e;
+        }
+        if (prefix.length <= maxBodyLength) {
+            base.releaseConnection();
+            return new BufferedResponse(base.getStatus(), base.getHeaders(), prefix);
+        }
+
+        final InputStream whole = new SequenceInputStream(new ByteArrayInputStream(prefix), in);
+        base.streamFactory = new BaseClientResponse.BaseClientResponseStreamFactory() {
+            @Override
+            public InputStream getInputStream() {
+                return whole;
+            }
+
+            @Override
+            public void performReleaseConnection() {
+                streamFactory.performReleaseConnection();
+            }
+        };
+        return null;
+    }
+
+    public int getStatus() {
+        return this.status;
+    }
+
+    /**
+     * The response headers. The map must not be modified.
+     * @return the headers
+     */
+    public CaseInsensitiveMap<String> getHeaders() {
+        return this.headers;
+    }
+
+    /**
+     * The size of the body in bytes.
+     * @return the number of bytes in the body, 0 if there is none
+     */
+    public int getBodyLength() {
+        return this.body == null ? 0 : this.body.length;
+    }
+
+    /**
+     * A copy of this response with different headers and the same body.
+     * @param newHeaders the headers of the copy
+     * @return the copy
+     */
+    public BufferedResponse withHeaders(MultivaluedMap<String, String> newHeaders) {
+        return new BufferedResponse(this.status, newHeaders, this.body);
+    }
+
+    /**
+     * Create a new response for the given request that reads from the buffered body.
+     * @param request the request the response is for
+     * @param executor the executor to report as the source of the response
+     * @return the response
+     */
+    public ClientResponse toResponse(ClientRequest request, ClientExecutor executor) {
+        final byte[] bytes = this.body;
+        BaseClientResponse response = new BaseClientResponse(new BaseClientResponse.BaseClientResponseStreamFactory() {
+            private InputStream stream;
+
+            @Override
+            public InputStream getInputStream() throws IOException {
+                if (this.stream == null && bytes != null) {
+                    this.stream = new ByteArrayInputStream(bytes);
+                }
+                return this.stream;
+            }
+
+            @Override
+            public void performReleaseConnection() {
+            }
+        }, executor, request.getErrorStatusCriteria());
+        response.setStatus(this.status);
+        response.setHeaders(copyHeaders(this.headers));
+        response.setProviders(request.getProviders());
+        return response;
+    }
+
+    /**
+     * Copy headers into a new map whose value lists are not shared with the original.
+     * @param headers the headers to copy
+     * @return the copy
+     */
+    public static CaseInsensitiveMap<String> copyHeaders(MultivaluedMap<String, String> headers) {
+        CaseInsensitiveMap<String> copy = new CaseInsensitiveMap<>();
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            for (String value : header.getValue()) {
+                copy.add(header.getKey(), value);
+            }
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.core;
+
+import com.opower.rest.client.generator.extractors.DefaultEntityExtractorFactory;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A bulk method that serves calls to a single item method, shared by the ways calls get folded into bulk calls. The
+ * single item method must take exactly one argument and must not return a Future. The bulk method must take a List or
+ * a Set of those arguments and return either a List with one result per argument, in order, or a Map keyed by argument.
+ */
+public final class BulkMethod {
+
+    private final Method method;
+    private final boolean setArgument;
+    private final boolean mapResult;
+
+    /**
+     * Check that the bulk method can serve calls to the single item method.
+     * @param single the single item method
+     * @param bulk the bulk method
+     */
+    public BulkMethod(Method single, Method bulk) {
+        checkArgument(!checkNotNull(single).equals(checkNotNull(bulk)), "the single item and bulk methods of %s must differ",
+                      single);
+        checkArgument(single.getParameterTypes().length == 1, "%s must have exactly one parameter to be batched", single);
+        checkArgument(!DefaultEntityExtractorFactory.isFutureReturnType(single.getReturnType()),
+                      "%s returns a Future and can't be batched", single);
+        checkArgument(bulk.getParameterTypes().length == 1, "bulk method %s must have exactly one parameter", bulk);
+        Class<?> parameterType = bulk.getParameterTypes()[0];
+        checkArgument(parameterType.isAssignableFrom(ArrayList.class) || parameterType.isAssignableFrom(LinkedHashSet.class),
+                      "bulk method %s must accept a List or a Set", bulk);
+        Class<?> returnType = bulk.getReturnType();
+        checkArgument(List.class.isAssignableFrom(returnType) || Map.class.isAssignableFrom(returnType),
+                      "bulk method %s must return a List or a Map", bulk);
+
+        this.method = bulk;
+        this.setArgument = !parameterType.isAssignableFrom(ArrayList.class);
+        this.mapResult = Map.class.isAssignableFrom(returnType);
+    }
+
+    public Method getMethod() {
+        return this.method;
+    }
+
+    /**
+     * Collect the arguments of single item calls into the collection the bulk method expects. Duplicate arguments are
+     * only sent once.
+     * @param keys the arguments of the single item calls
+     * @return the argument of the bulk call
+     */
+    public Collection<Object> argument(Collection<?> keys) {
+        Collection<Object> distinct = new LinkedHashSet<>(keys);
+        return this.setArgument ? distinct : new ArrayList<>(distinct);
+    }
+
+    /**
+     * The results of a bulk call keyed by the argument of the single item call they answer.
+     * @param argument the argument the bulk call was made with, as returned by {@link #argument(Collection)}
+     * @param result the result of the bulk call
+     * @return the results by key
+     * @throws IllegalStateException if a List result does not hold one result per key
+     */
+    public Map<?, ?> resultsByKey(Collection<?> argument, Object result) {
+        if (result == null) {
+            return Collections.emptyMap();
+        }
+        if (this.mapResult) {
+            return (Map<?, ?>) result;
+        }
+        List<?> list = (List<?>) result;
+        if (list.size() != argument.size()) {
+            throw new IllegalStateException(String.format("%s returned %d results for %d keys",
+                                                          this.method.getName(), list.size(), argument.size()));
+        }
+        Map<Object, Object> byKey = new HashMap<>();
+        Iterator<?> values = list.iterator();
+        for (Object key : argument) {
+            byKey.put(key, values.next());
+        }
+        return byKey;
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.core;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A bounded pool of fixed-size byte arrays used to buffer response bodies. Chunks are borrowed while a response is
+ * read and returned when its connection is released, so steady traffic reuses the same arrays instead of
+ * allocating a new buffer per response. At most maxPooledChunks arrays are kept; anything returned beyond that is
+ * left to the garbage collector.
+ */
+public final class ChunkPool {
+
+    /**
+     * The pool shared by the executors that ship with this library: 8KB chunks, at most 2MB retained.
+     */
+    public static final ChunkPool DEFAULT = new ChunkPool(8192, 256);
+
+    private final int chunkSize;
+    private final int maxPooledChunks;
+    private final Queue<byte[]> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    /**
+     * Create a pool.
+     * @param chunkSize the size of each chunk in bytes
+     * @param maxPooledChunks how many free chunks the pool will hold on to
+     */
+    public ChunkPool(int chunkSize, int maxPooledChunks) {
+        checkArgument(chunkSize > 0, "chunkSize must be positive");
+        checkArgument(maxPooledChunks >= 0, "maxPooledChunks must not be negative");
+        this.chunkSize = chunkSize;
+        this.maxPooledChunks = maxPooledChunks;
+    }
+
+    /**
+     * The size of the chunks handed out by this pool.
+     * @return the chunk size in bytes
+     */
+    public int getChunkSize() {
+        return this.chunkSize;
+    }
+
+    /**
+     * Borrow a chunk, allocating a new one if the pool is empty.
+     * @return a chunk of getChunkSize() bytes
+     */
+    public byte[] acquire() {
+        byte[] chunk = this.free.poll();
+        if (chunk == null) {
+            return new byte[this.chunkSize];
+        }
+        this.pooled.decrementAndGet();
+        return chunk;
+    }
+
+    /**
+     * Return a chunk to the pool. The caller must not use the chunk afterwards.
+     * @param chunk a chunk obtained from {@link #acquire()}
+     */
+    public void release(byte[] chunk) {
+        if (chunk.length != this.chunkSize) {
+            return;
+        }
+        if (this.pooled.incrementAndGet() <= this.maxPooledChunks) {
+            this.free.offer(chunk);
+        } else {
+            this.pooled.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Response stream that remembers everything read from the underlying stream so that reset() can always return to
+ * the beginning, which is what lets each ClientErrorInterceptor read the error body from the start. The data is
+ * kept in a list of fixed-size chunks borrowed from a {@link ChunkPool}, so a large body never needs one contiguous
+ * array and is never copied as it grows. Chunks go back to the pool when the stream is closed.
+ * <p/>
+ * Once a response is known to be successful nobody will rewind it, so {@link #stopRetaining()} lets the stream
+ * hand back its chunks as soon as they have been read and pass the rest of the body straight through.
+ */
+public class ChunkedBufferInputStream extends InputStream {
+
+    private static final int BYTE_MASK = 0xff;
+
+    private final InputStream in;
+    private final ChunkPool pool;
+    private final int chunkSize;
+    private final List<byte[]> chunks = new ArrayList<>();
+    private long filled;
+    private long pos;
+    private boolean retaining = true;
+    private boolean closed;
+
+    /**
+     * Buffer the given stream using chunks from the default pool.
+     * @param in the stream to read from
+     */
+    public ChunkedBufferInputStream(InputStream in) {
+        this(in, ChunkPool.DEFAULT);
+    }
+
+    /**
+     * Buffer the given stream using chunks from the given pool.
+     * @param in the stream to read from
+     * @param pool the pool to borrow chunks from
+     */
+    public ChunkedBufferInputStream(InputStream in, ChunkPool pool) {
+        this.in = checkNotNull(in);
+        this.pool = checkNotNull(pool);
+        this.chunkSize = pool.getChunkSize();
+    }
+
+    @Override
+    public int read() throws IOException {
+        ensureOpen();
+        if (this.pos < this.filled || (this.retaining && fill() > 0)) {
+            int b = this.chunks.get(chunkIndex(this.pos))[chunkOffset(this.pos)] & BYTE_MASK;
+            advance(1);
+            return b;
+        }
+        if (this.retaining) {
+            return -1;
+        }
+        int b = this.in.read();
+        if (b >= 0) {
+            this.pos += 1;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if (len == 0) {
+            return 0;
+        }
+        if (this.pos < this.filled || (this.retaining && fill() > 0)) {
+            int total = 0;
+            while (total < len && this.pos < this.filled) {
+                int offset = chunkOffset(this.pos);
+                int length = (int) Math.min(len - total, Math.min(this.chunkSize - offset, this.filled - this.pos));
+                System.arraycopy(this.chunks.get(chunkIndex(this.pos)), offset, b, off + total, length);
+                total += length;
+                advance(length);
+            }
+            return total;
+        }
+        if (this.retaining) {
+            return -1;
+        }
+        int read = this.in.read(b, off, len);
+        if (read > 0) {
+            this.pos += read;
+        }
+        return read;
+    }
+
+    @Override
+    public int available() throws IOException {
+        ensureOpen();
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, this.filled - this.pos) + this.in.available());
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    /**
+     * Not supported. The mark position is always the beginning of the stream.
+     */
+    @Override
+    public void mark(int readlimit) {
+        throw new UnsupportedOperationException("ChunkedBufferInputStream is always marked at index 0.");
+    }
+
+    /**
+     * Return to the beginning of the stream.
+     * @throws IOException if data has already been discarded because of {@link #stopRetaining()}
+     */
+    @Override
+    public void reset() throws IOException {
+        ensureOpen();
+        if (this.pos == 0) {
+            return;
+        }
+        if (!this.retaining) {
+            throw new IOException("Resetting to invalid mark, the stream is no longer retaining its data");
+        }
+        this.pos = 0;
+    }
+
+    /**
+     * Stop keeping data around for reset(). Chunks that have been read are released right away, or as soon as the
+     * buffered data has been consumed, after which reads go straight to the underlying stream.
+     */
+    public void stopRetaining() {
+        this.retaining = false;
+        if (this.pos >= this.filled) {
+            releaseChunks();
+        }
+    }
+
+    /**
+     * The number of chunks currently borrowed from the pool.
+     * @return the chunk count
+     */
+    public int getRetainedChunkCount() {
+        return this.chunks.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        releaseChunks();
+        this.in.close();
+    }
+
+    /**
+     * Read the next block of the underlying stream into the last chunk, borrowing a new chunk when it is full.
+     * @return the number of bytes read or -1 at the end of the stream
+     */
+    private int fill() throws IOException {
+        int offset = chunkOffset(this.filled);
+        if (offset == 0 && chunkIndex(this.filled) == this.chunks.size()) {
+            this.chunks.add(this.pool.acquire());
+        }
+        byte[] chunk = this.chunks.get(this.chunks.size() - 1);
+        int read;
+        do {
+            read = this.in.read(chunk, offset, this.chunkSize - offset);
+        } while (read == 0);
+        if (read > 0) {
+            this.filled += read;
+        }
+        return read;
+    }
+
+    private void advance(int length) {
+        this.pos += length;
+        if (!this.retaining && this.pos >= this.filled) {
+            releaseChunks();
+        }
+    }
+
+    private void releaseChunks() {
+        for (byte[] chunk : this.chunks) {
+            this.pool.release(chunk);
+        }
+        this.chunks.clear();
+    }
+
+    private int chunkIndex(long position) {
+        return (int) (position / this.chunkSize);
+    }
+
+    private int chunkOffset(long position) {
+        return (int) (position % this.chunkSize);
+    }
+
+    private void ensureOpen() throws IOException {
+        if (this.closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
@@ -15,18 +15,27 @@
 package com.opower.rest.client.generator.core;
 
 import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.opower.rest.client.generator.annotations.Idempotent;
 import com.opower.rest.client.generator.extractors.ClientErrorHandler;
 import com.opower.rest.client.generator.extractors.DefaultClientErrorHandler;
 import com.opower.rest.client.generator.extractors.DefaultEntityExtractorFactory;
+import com.opower.rest.client.generator.executors.CoalescingClientExecutor;
+import com.opower.rest.client.generator.executors.RetryingClientExecutor;
 import com.opower.rest.client.generator.util.IsHttpMethod;
 
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Proxy;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 import javax.ws.rs.Path;
 import javax.ws.rs.ext.Providers;
 
@@ -51,9 +60,21 @@ public abstract class Client<T, B extends Client<T, B>> {
 
     protected static final int NETWORK_CONNECT_TIMEOUT = 599;
 
+    private static final double DEFAULT_RETRY_BUDGET_PERCENT = 10;
+    private static final double MAX_RETRY_BUDGET_PERCENT = 100;
+    static final Set<String> IDEMPOTENT_HTTP_METHODS = ImmutableSet.of("GET", "HEAD", "OPTIONS", "PUT", "DELETE");
+
     private final ConcurrentMap<Method, Predicate<Integer>> errorStatusCriteria = new ConcurrentHashMap<>();
+    private final Map<Method, List<String>> coalescedMethods = new HashMap<>();
+    private final Map<Method, RetryPolicy> retryPolicies = new HashMap<>();
+    private double retryBudgetPercent = DEFAULT_RETRY_BUDGET_PERCENT;
+    private final Map<Method, Timeouts> methodTimeouts = new HashMap<>();
+    private Timeouts timeouts;
+    private Executor entityReaders;
 
     protected ClientExecutor executor;
+    protected ProxyEngine proxyEngine = ProxyEngine.JDK_PROXY;
+    protected int subResourceCacheSize;
     protected ClientProviders clientProviders = new ClientProviders();
     protected List<ClientErrorInterceptor> clientErrorInterceptors;
     protected final ResourceInterface<T> resourceInterface;
@@ -114,6 +135,154 @@ public abstract class Client<T, B extends Client<T, B>> {
         return (B) this;
     }
 
+    /**
+     * Selects how the client proxy instance is created. Defaults to {@link ProxyEngine#JDK_PROXY}.
+     * {@link ProxyEngine#GENERATED} requires byte-buddy on the classpath and a public resource interface; non-public
+     * interfaces always use a JDK proxy. {@link ProxyEngine#PRECOMPILED} uses the client written by the
+     * rest-client-processor annotation processor when there is one.
+     *
+     * @param proxyEngine the ProxyEngine to use
+     * @return the builder
+     */
+    @SuppressWarnings("unchecked")
+    public B proxyEngine(ProxyEngine proxyEngine) {
+        this.proxyEngine = checkNotNull(proxyEngine);
+        return (B) this;
+    }
+
+    /**
+     * Read the entities of future responses on the given Executor once they arrive, rather than on the I/O thread that
+     * received them. Defaults to a pool of daemon threads, one per processor, whose threads exit when idle.
+     *
+     * @param entityReaders the Executor to read entities on
+     * @return the builder
+     */
+    @SuppressWarnings("unchecked")
+    public B entityReaders(Executor entityReaders) {
+        this.entityReaders = checkNotNull(entityReaders);
+        return (B) this;
+    }
+
+    /**
+     * Keep up to the given number of bound sub-resource proxies per sub-resource locator method, keyed by the resolved
+     * sub-resource path. Locators are cheap without the cache as well, since the MethodInvokers of a sub-resource
+     * interface are only built once, but the cache also saves the proxy instance for paths that are used over and over.
+     * Defaults to 0, which disables the cache.
+     *
+     * @param subResourceCacheSize the maximum number of cached proxies per locator method
+     * @return the builder
+     */
+    @SuppressWarnings("unchecked")
+    public B subResourceCacheSize(int subResourceCacheSize) {
+        checkArgument(subResourceCacheSize >= 0, "subResourceCacheSize must not be negative");
+        this.subResourceCacheSize = subResourceCacheSize;
+        return (B) this;
+    }
+
+    /**
+     * Let concurrent identical calls of the given GET or HEAD method share one http request. Calls are identical when
+     * they resolve to the same URI and send the same values for the given headers. Every caller gets its own copy of
+     * the response. See {@link CoalescingClientExecutor}.
+     *
+     * @param method the method on the resource interface
+     * @param keyHeaders the request headers that have to match as well, for example Authorization
+     * @return the builder
+     */
+    @SuppressWarnings("unchecked")
+    public B coalesceRequests(Method method, String... keyHeaders) {
+        checkArgument(method != null && method.getDeclaringClass().equals(this.resourceInterface.getInterface()));
+        Set<String> httpMethods = IsHttpMethod.getHttpMethods(method);
+        checkArgument(httpMethods != null && (httpMethods.contains("GET") || httpMethods.contains("HEAD")),
+                      "only GET and HEAD requests can be coalesced");
+        this.coalescedMethods.put(method, ImmutableList.copyOf(keyHeaders));
+        return (B) this;
+    }
+
+    /**
+     * Retry the calls of every idempotent method on the resource interface according to the given policy. GET, HEAD,
+     * OPTIONS, PUT and DELETE methods are idempotent, as are methods annotated with {@link Idempotent}; calls of any
+     * other method are never retried. See {@link RetryingClientExecutor}.
+     *
+     * @param retryPolicy the RetryPolicy to use
+     * @return the builder
+     */
+    @SuppressWarnings("unchecked")
+    public B retryPolicy(RetryPolicy retryPolicy) {
+        checkNotNull(retryPolicy);
+        for (Method method : this.resourceInterface.getInterface().getMethods()) {
+            if (isIdempotent(method)) {
+                this.retryPolicies.put(method, retryPolicy);
+            }
+        }
+        return (B) this;
+    }
+
+    /**
+     * Retry the calls of the given method according to the given policy. The method has to be idempotent, see
+     * {@link #retryPolicy(RetryPolicy)}.
+     *
+     * @param method the method on the resource interface
+     * @param retryPolicy the RetryPolicy to use
+     * @return the builder
+     */
+    @SuppressWarnings("unchecked")
+    public B retryPolicyForMethod(Method method, RetryPolicy retryPolicy) {
+        checkArgument(method != null && method.getDeclaringClass().equals(this.resourceInterface.getInterface()));
+        checkArgument(isIdempotent(method), "%s is not idempotent, annotate it with @Idempotent if it is safe to retry",
+                      method);
+        this.retryPolicies.put(method, checkNotNull(retryPolicy));
+        return (B) this;
+    }
+
+    /**
+     * Limit the retries of all methods of the client to the given share of its calls. Defaults to 10 percent.
+     *
+     * @param retryBudgetPercent the largest number of retries per hundred calls
+     * @return the builder
+     */
+    @SuppressWarnings("unchecked")
+    public B retryBudget(double retryBudgetPercent) {
+        checkArgument(retryBudgetPercent >= 0 && retryBudgetPercent <= MAX_RETRY_BUDGET_PERCENT,
+                      "retryBudgetPercent must be between 0 and 100");
+        this.retryBudgetPercent = retryBudgetPercent;
+        return (B) this;
+    }
+
+    /**
+     * Send the calls of every method on the resource interface with the given timeouts, unless the method has its own
+     * {@link com.opower.rest.client.generator.annotations.Timeout} annotation or timeouts set with
+     * {@link #timeoutsForMethod(Method, Timeouts)}. The timeouts are applied to the connection by the ClientExecutor.
+     *
+     * @param timeouts the timeouts to use
+     * @return the builder
+     */
+    @SuppressWarnings("unchecked")
+    public B timeouts(Timeouts timeouts) {
+        this.timeouts = checkNotNull(timeouts);
+        return (B) this;
+    }
+
+    /**
+     * Send the calls of the given method with the given timeouts. These take precedence over any
+     * {@link com.opower.rest.client.generator.annotations.Timeout} annotation.
+     *
+     * @param method the method on the resource interface
+     * @param timeouts the timeouts to use
+     * @return the builder
+     */
+    @SuppressWarnings("unchecked")
+    public B timeoutsForMethod(Method method, Timeouts timeouts) {
+        checkArgument(method != null && method.getDeclaringClass().equals(this.resourceInterface.getInterface()));
+        this.methodTimeouts.put(method, checkNotNull(timeouts));
+        return (B) this;
+    }
+
+    private static boolean isIdempotent(Method method) {
+        Set<String> httpMethods = IsHttpMethod.getHttpMethods(method);
+        return httpMethods != null && httpMethods.size() == 1
+               && (IDEMPOTENT_HTTP_METHODS.containsAll(httpMethods) || method.isAnnotationPresent(Idempotent.class));
+    }
+
     @SuppressWarnings("unchecked")
     public B registerProviderInstance(Object provider) {
         this.clientProviders.registerProviderInstance(provider);
@@ -132,14 +301,38 @@ public abstract class Client<T, B extends Client<T, B>> {
     }
 
     public T build() {
+        return createProxy(this.resourceInterface.getInterface(), this.uriProvider, createProxyConfig());
+    }
+
+    /**
+     * Build the MethodInvoker for every method of the resource interface without wrapping them in a proxy. This is meant
+     * for builders that put their own proxy in front of the client, so that calls are dispatched only once. The
+     * configured ProxyEngine does not apply.
+     *
+     * @return the MethodInvokers by Method
+     */
+    protected Map<Method, MethodInvoker> buildInvokers() {
+        Class<T> iface = this.resourceInterface.getInterface();
+        Map<Method, MethodInvoker> methodMap = createInvokers(iface, this.uriProvider, createProxyConfig());
+        HedgingInvoker.install(iface, methodMap);
+        BatchingInvoker.install(iface, methodMap);
+        return ImmutableMap.copyOf(methodMap);
+    }
+
+    private ProxyConfig createProxyConfig() {
         if (this.executor == null)
             throw new IllegalArgumentException("You must provide a ClientExecutor");
         if (this.clientProviders == null)
             throw new IllegalArgumentException("you must specify a MessageBodyWriter and a MessageBodyReader for serialization");
 
-        final ProxyConfig config = new ProxyConfig(this.loader, this.executor, this.clientProviders, new DefaultEntityExtractorFactory(),
-                                                   this.errorStatusCriteria, getClientErrorHandler());
-        return createProxy(this.resourceInterface.getInterface(), this.uriProvider, config);
+        ClientExecutor clientExecutor = this.retryPolicies.isEmpty() ? this.executor
+                : new RetryingClientExecutor(this.executor, this.retryPolicies, this.retryBudgetPercent);
+        if (!this.coalescedMethods.isEmpty()) {
+            clientExecutor = new CoalescingClientExecutor(clientExecutor, this.coalescedMethods);
+        }
+        return new ProxyConfig(this.loader, clientExecutor, this.clientProviders, new DefaultEntityExtractorFactory(),
+                               this.errorStatusCriteria, getClientErrorHandler(), this.proxyEngine,
+                               this.subResourceCacheSize, this.timeouts, this.methodTimeouts, this.entityReaders);
     }
 
     protected ClientErrorHandler getClientErrorHandler() {
@@ -148,16 +341,19 @@ public abstract class Client<T, B extends Client<T, B>> {
 
     @SuppressWarnings("unchecked")
     static <S> S createProxy(final Class<S> iface, UriProvider uriProvider, final ProxyConfig config) {
-        HashMap<Method, MethodInvoker> methodMap = new HashMap<Method, MethodInvoker>();
-        for (Method method : iface.getMethods()) {
-            MethodInvoker invoker;
-            Set<String> httpMethods = IsHttpMethod.getHttpMethods(method);
-            if ((httpMethods == null || httpMethods.size() == 0) && method.isAnnotationPresent(Path.class) && method.getReturnType().isInterface()) {
-                invoker = new SubResourceInvoker(uriProvider, method, config);
-            } else {
-                invoker = createClientInvoker(iface, method, uriProvider, config);
+        if (config.getProxyEngine() == ProxyEngine.PRECOMPILED) {
+            S precompiled = PrecompiledClient.create(iface, uriProvider, config);
+            if (precompiled != null) {
+                return precompiled;
             }
-            methodMap.put(method, invoker);
+        }
+
+        Map<Method, MethodInvoker> methodMap = createInvokers(iface, uriProvider, config);
+        HedgingInvoker.install(iface, methodMap);
+        BatchingInvoker.install(iface, methodMap);
+
+        if (config.getProxyEngine() == ProxyEngine.GENERATED && Modifier.isPublic(iface.getModifiers())) {
+            return GeneratedClientProxy.create(iface, methodMap, config.getLoader());
         }
 
         Class<?>[] intfs = { iface };
@@ -171,6 +367,29 @@ public abstract class Client<T, B extends Client<T, B>> {
         return (S) Proxy.newProxyInstance(config.getLoader(), intfs, clientProxy);
     }
 
+    /**
+     * Build the MethodInvoker for every method of a resource interface.
+     * @param iface the resource interface
+     * @param uriProvider the UriProvider for the base URI
+     * @param config the ProxyConfig of the client
+     * @return the MethodInvokers by Method
+     */
+    static Map<Method, MethodInvoker> createInvokers(Class<?> iface, UriProvider uriProvider, ProxyConfig config) {
+        HashMap<Method, MethodInvoker> methodMap = new HashMap<Method, MethodInvoker>();
+        for (Method method : iface.getMethods()) {
+            MethodInvoker invoker;
+            Set<String> httpMethods = IsHttpMethod.getHttpMethods(method);
+            if ((httpMethods == null || httpMethods.size() == 0) && method.isAnnotationPresent(Path.class)
+                    && method.getReturnType().isInterface()) {
+                invoker = new SubResourceInvoker(uriProvider, method, config);
+            } else {
+                invoker = createClientInvoker(iface, method, uriProvider, config);
+            }
+            methodMap.put(method, invoker);
+        }
+        return methodMap;
+    }
+
     private static ClientInvoker createClientInvoker(Class<?> clazz, Method method, UriProvider uriProvider, ProxyConfig config) {
         Set<String> httpMethods = IsHttpMethod.getHttpMethods(method);
         if (httpMethods == null || httpMethods.size() != 1) {
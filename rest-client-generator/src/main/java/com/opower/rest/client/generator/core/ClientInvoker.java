@@ -14,18 +14,41 @@
  **/
 package com.opower.rest.client.generator.core;
 
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.opower.rest.client.generator.annotations.RoutingKey;
 import com.opower.rest.client.generator.extractors.ClientRequestContext;
+import com.opower.rest.client.generator.extractors.DefaultEntityExtractorFactory;
 import com.opower.rest.client.generator.extractors.EntityExtractor;
 import com.opower.rest.client.generator.extractors.EntityExtractorFactory;
 import com.opower.rest.client.generator.marshallers.ClientMarshallerFactory;
 import com.opower.rest.client.generator.marshallers.Marshaller;
+import com.opower.rest.client.generator.marshallers.MessageBodyParameterMarshaller;
 import com.opower.rest.client.generator.specimpl.UriBuilderImpl;
 import com.opower.rest.client.generator.util.MediaTypeHelper;
+import com.opower.rest.client.generator.util.Types;
 
+import javax.ws.rs.FormParam;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.MatrixParam;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Providers;
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.Executor;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -34,7 +57,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
  *
  */
 @SuppressWarnings("unchecked")
-public class ClientInvoker implements MethodInvoker {
+public class ClientInvoker implements BindableMethodInvoker {
     protected String httpMethod;
     protected Method method;
     protected Class declaring;
@@ -45,6 +68,13 @@ public class ClientInvoker implements MethodInvoker {
     protected EntityExtractor extractor;
     protected EntityExtractorFactory extractorFactory;
     protected UriProvider baseUriProvider;
+    protected UriTemplate uriTemplate;
+    protected Annotation[] annotations;
+    private volatile ResolvedProviders resolved;
+    // the client providers only hold their listeners weakly
+    private Runnable providersListener;
+    protected int routingKeyIndex;
+    protected Timeouts timeouts;
     private final ProxyConfig proxyConfig;
 
 
@@ -56,8 +86,133 @@ public class ClientInvoker implements MethodInvoker {
         this.executor = config.getExecutor();
         this.accepts = MediaTypeHelper.getProduces(declaring, method);
         this.baseUriProvider = checkNotNull(baseUriProvider);
+        this.uriTemplate = UriTemplate.compile(declaring, method);
         this.extractorFactory = config.getExtractorFactory();
         this.extractor = extractorFactory.createExtractor(method);
+        this.routingKeyIndex = findRoutingKey(method);
+        this.timeouts = config.getTimeouts(method);
+        this.annotations = method.getAnnotations();
+        watchProviders();
+    }
+
+    /**
+     * Create an invoker from parts that were already worked out at compile time, so the path template, media type and
+     * marshallers are not built from the annotations of the method. The entity extractor, routing key, timeouts and
+     * annotations of the method are still looked up by reflection.
+     * @param baseUriProvider the UriProvider for the base URI
+     * @param declaring the resource interface
+     * @param method the resource method
+     * @param config the ProxyConfig of the client
+     * @param uriTemplate the compiled path template of the method
+     * @param accepts the media type to send in the Accept header, may be null
+     * @param marshallers one Marshaller per method parameter
+     */
+    public ClientInvoker(UriProvider baseUriProvider, Class declaring, Method method, ProxyConfig config,
+                         UriTemplate uriTemplate, MediaType accepts, Marshaller[] marshallers) {
+        this.proxyConfig = config;
+        this.declaring = declaring;
+        this.method = method;
+        this.marshallers = checkNotNull(marshallers);
+        this.executor = config.getExecutor();
+        this.accepts = accepts;
+        this.baseUriProvider = checkNotNull(baseUriProvider);
+        this.uriTemplate = checkNotNull(uriTemplate);
+        this.extractorFactory = config.getExtractorFactory();
+        this.extractor = extractorFactory.createExtractor(method);
+        this.routingKeyIndex = findRoutingKey(method);
+        this.timeouts = config.getTimeouts(method);
+        this.annotations = method.getAnnotations();
+        watchProviders();
+    }
+
+    /**
+     * Resolve the MessageBodyReader for the response entity and the MessageBodyWriter for the request body now, while
+     * the client is built, rather than searching the Providers on every call. ClientProviders may still get readers
+     * and writers after the client is built and signal each change, which resolves them again. Other Providers are
+     * expected to be complete when the client is built.
+     */
+    private void watchProviders() {
+        final Providers providers = this.proxyConfig.getProviders();
+        if (providers instanceof ClientProviders) {
+            this.providersListener = new Runnable() {
+                @Override
+                public void run() {
+                    refreshProviders(providers);
+                }
+            };
+            ((ClientProviders) providers).addChangeListener(this.providersListener);
+        }
+        refreshProviders(providers);
+    }
+
+    /**
+     * Synchronized so that a resolution that started before a change can't overwrite the one made after it.
+     */
+    private synchronized void refreshProviders(Providers providers) {
+        this.resolved = resolveProviders(providers);
+    }
+
+    /**
+     * The reader is only resolved when the method @Produces a concrete media type; responses with any other
+     * Content-Type still use the regular lookup.
+     */
+    private ResolvedProviders resolveProviders(Providers providers) {
+        ResolvedReader resolvedReader = null;
+        MessageBodyWriter bodyWriter = null;
+
+        Class<?> entityType = this.method.getReturnType();
+        Type genericEntityType = this.method.getGenericReturnType();
+        if (DefaultEntityExtractorFactory.isFutureReturnType(entityType)) {
+            genericEntityType = DefaultEntityExtractorFactory.getFutureEntityType(genericEntityType);
+            entityType = Types.getRawType(genericEntityType);
+        }
+        if (this.accepts != null && !this.accepts.isWildcardType() && !this.accepts.isWildcardSubtype()
+                && !DefaultEntityExtractorFactory.isVoidReturnType(entityType)
+                && !Response.class.isAssignableFrom(entityType) && !Response.Status.class.equals(entityType)) {
+            MessageBodyReader reader = providers.getMessageBodyReader(entityType, genericEntityType,
+                                                                      this.annotations, this.accepts);
+            if (reader != null) {
+                resolvedReader = new ResolvedReader(this.accepts, entityType, genericEntityType, reader);
+            }
+        }
+
+        for (Marshaller marshaller : this.marshallers) {
+            if (marshaller instanceof MessageBodyParameterMarshaller) {
+                bodyWriter = ((MessageBodyParameterMarshaller) marshaller).resolveWriter(providers);
+            }
+        }
+        return new ResolvedProviders(resolvedReader, bodyWriter);
+    }
+
+    /**
+     * Find the parameter named by the {@link RoutingKey} annotation of the method.
+     * @param method the resource method
+     * @return the index of the parameter or -1 if the method has no RoutingKey
+     */
+    private static int findRoutingKey(Method method) {
+        RoutingKey routingKey = method.getAnnotation(RoutingKey.class);
+        if (routingKey == null) {
+            return -1;
+        }
+        Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+        for (int i = 0; i < parameterAnnotations.length; i++) {
+            for (Annotation annotation : parameterAnnotations[i]) {
+                if (routingKey.value().equals(parameterName(annotation))) {
+                    return i;
+                }
+            }
+        }
+        throw new IllegalArgumentException(String.format("%s has no parameter named %s to route by",
+                                                         method, routingKey.value()));
+    }
+
+    private static String parameterName(Annotation annotation) {
+        if (annotation instanceof PathParam) return ((PathParam) annotation).value();
+        if (annotation instanceof QueryParam) return ((QueryParam) annotation).value();
+        if (annotation instanceof MatrixParam) return ((MatrixParam) annotation).value();
+        if (annotation instanceof HeaderParam) return ((HeaderParam) annotation).value();
+        if (annotation instanceof FormParam) return ((FormParam) annotation).value();
+        return null;
     }
 
     public Method getMethod() {
@@ -65,8 +220,24 @@ public class ClientInvoker implements MethodInvoker {
     }
 
     public Object invoke(Object[] args) {
+        return invoke(this.baseUriProvider, args);
+    }
+
+    @Override
+    public Object invoke(UriProvider uriProvider, Object[] args) {
 
-        ClientRequest request = createRequest(args);
+        final ClientRequest request = createRequest(uriProvider, args);
+
+        if (DefaultEntityExtractorFactory.isFutureReturnType(this.method.getReturnType())) {
+            // the entity is extracted on whichever thread completes the response, nothing waits for it here
+            ListenableFuture<ClientResponse> response = request.executeAsync(this.httpMethod);
+            return Futures.transform(response, new Function<ClientResponse, Object>() {
+                @Override
+                public Object apply(ClientResponse clientResponse) {
+                    return extractEntity(request, (BaseClientResponse) clientResponse);
+                }
+            }, entityReader(response));
+        }
 
         BaseClientResponse clientResponse = null;
         try {
@@ -74,18 +245,65 @@ public class ClientInvoker implements MethodInvoker {
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
+        return extractEntity(request, clientResponse);
+    }
+
+    /**
+     * The Executor to read the entity of the given response with. Responses that are already complete are read on the
+     * calling thread, all others on the {@link ProxyConfig#getEntityReaders() entity readers} of the client, not on the
+     * I/O thread that received them.
+     * @param response the future response
+     * @return the Executor
+     */
+    Executor entityReader(ListenableFuture<?> response) {
+        return response.isDone() ? MoreExecutors.sameThreadExecutor() : this.proxyConfig.getEntityReaders();
+    }
+
+    protected Object extractEntity(ClientRequest request, BaseClientResponse clientResponse) {
         clientResponse.setAttributeExceptionsTo(this.method.toString());
-        clientResponse.setAnnotations(this.method.getAnnotations());
+        clientResponse.setAnnotations(this.annotations);
+        clientResponse.setResolvedReader(this.resolved.reader);
         ClientRequestContext clientRequestContext = new ClientRequestContext(request, clientResponse, this.proxyConfig.getClientErrorHandler());
         return this.extractor.extractEntity(clientRequestContext);
     }
 
     protected ClientRequest createRequest(Object[] args) {
-        UriBuilderImpl uri = new UriBuilderImpl();
-        uri.uri(this.baseUriProvider.getUri());
-        if (this.declaring.isAnnotationPresent(Path.class)) uri.path(this.declaring);
-        if (this.method.isAnnotationPresent(Path.class)) uri.path(this.method);
-        ClientRequest request = new ClientRequest(uri, this.executor, this.proxyConfig, this.method);
+        return createRequest(this.baseUriProvider, args);
+    }
+
+    protected ClientRequest createRequest(UriProvider uriProvider, Object[] args) {
+        return createRequest(uriProvider, args, Collections.<URI>emptySet());
+    }
+
+    /**
+     * Create the request for another attempt of a call, preferably sent to a host none of the earlier attempts went to.
+     * @param uriProvider the UriProvider to pick the base URI from
+     * @param args the arguments of the call
+     * @param tried the base URIs of the earlier attempts, only a {@link RoutingUriProvider} can avoid them
+     * @return the request
+     */
+    protected ClientRequest createRequest(UriProvider uriProvider, Object[] args, Collection<URI> tried) {
+        Object routingKey = this.routingKeyIndex >= 0 ? args[this.routingKeyIndex] : null;
+        URI baseUri;
+        if (uriProvider instanceof RoutingUriProvider && (this.routingKeyIndex >= 0 || !tried.isEmpty())) {
+            baseUri = tried.isEmpty() ? ((RoutingUriProvider) uriProvider).getUri(routingKey)
+                                      : ((RoutingUriProvider) uriProvider).getUri(routingKey, tried);
+        } else {
+            baseUri = uriProvider.getUri();
+        }
+        ClientRequest request;
+        if (UriTemplate.supports(baseUri)) {
+            request = new ClientRequest(this.uriTemplate, baseUri, this.executor, this.proxyConfig, this.method);
+        } else {
+            UriBuilderImpl uri = new UriBuilderImpl();
+            uri.uri(baseUri);
+            if (this.declaring.isAnnotationPresent(Path.class)) uri.path(this.declaring);
+            if (this.method.isAnnotationPresent(Path.class)) uri.path(this.method);
+            request = new ClientRequest(uri, this.executor, this.proxyConfig, this.method);
+            request.baseUri = baseUri;
+        }
+        request.uriProvider = uriProvider;
+        request.routingKey = routingKey;
         if (this.accepts != null) request.header(HttpHeaders.ACCEPT, this.accepts.toString());
 
         boolean isClientResponseResult = ClientResponse.class.isAssignableFrom(this.method.getReturnType());
@@ -94,6 +312,14 @@ public class ClientInvoker implements MethodInvoker {
         for (int i = 0; i < this.marshallers.length; i++) {
             this.marshallers[i].build(request, args[i]);
         }
+        if (request.getBody() != null) {
+            MessageBodyWriter bodyWriter = this.resolved.writer;
+            if (bodyWriter != null) {
+                request.bodyWriter(bodyWriter);
+            }
+        }
+        request.arguments(args);
+        request.timeouts(this.timeouts);
         return request;
     }
 
@@ -101,4 +327,16 @@ public class ClientInvoker implements MethodInvoker {
         this.httpMethod = httpMethod;
     }
 
+    /**
+     * The providers of the method as they were resolved since the last change of the client providers.
+     */
+    private static final class ResolvedProviders {
+        private final ResolvedReader reader;
+        private final MessageBodyWriter writer;
+
+        private ResolvedProviders(ResolvedReader reader, MessageBodyWriter writer) {
+            this.reader = reader;
+            this.writer = writer;
+        }
+    }
 }
@@ -14,11 +14,14 @@
  **/
 package com.opower.rest.client.generator.core;
 
+import com.google.common.collect.MapMaker;
 import com.opower.rest.client.generator.plugins.providers.Builtin;
 import com.opower.rest.client.generator.util.Types;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
@@ -36,6 +39,8 @@ public class ClientProviders implements Providers {
 
     protected MediaTypeMap<SortedKey<MessageBodyReader>> messageBodyReaders = new MediaTypeMap<>();
     protected MediaTypeMap<SortedKey<MessageBodyWriter>> messageBodyWriters = new MediaTypeMap<>();
+    private final Set<Runnable> changeListeners =
+            Collections.newSetFromMap(new MapMaker().weakKeys().<Runnable, Boolean>makeMap());
 
     public ClientProviders() {
         // register the builtins
@@ -75,6 +80,21 @@ public class ClientProviders implements Providers {
         return null;
     }
 
+    /**
+     * Tells callers that cache the result of a lookup when to look again. Listeners are held weakly, so the caller
+     * has to keep a reference to its listener for as long as it wants to hear about changes.
+     * @param listener runs whenever a MessageBodyReader or MessageBodyWriter is added
+     */
+    public void addChangeListener(Runnable listener) {
+        this.changeListeners.add(listener);
+    }
+
+    private void changed() {
+        for (Runnable listener : this.changeListeners) {
+            listener.run();
+        }
+    }
+
     @Override
     public <T extends Throwable> ExceptionMapper<T> getExceptionMapper(Class<T> type) {
         return null;
@@ -190,6 +210,7 @@ public class ClientProviders implements Providers {
         else {
             messageBodyReaders.add(new MediaType("*", "*"), key);
         }
+        changed();
     }
 
     /**
@@ -213,5 +234,6 @@ public class ClientProviders implements Providers {
         else {
             messageBodyWriters.add(new MediaType("*", "*"), key);
         }
+        changed();
     }
 }
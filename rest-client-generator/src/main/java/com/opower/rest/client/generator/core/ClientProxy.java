@@ -17,6 +17,7 @@ package com.opower.rest.client.generator.core;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.Map;
 
 /**
@@ -52,7 +53,10 @@ public class ClientProxy implements InvocationHandler {
         MethodInvoker clientInvoker = methodMap.get(method);
         if (clientInvoker == null) {
             if (method.getName().equals("equals")) {
-                return this.equals(o);
+                // compare the handler of the other proxy, the proxy itself is never a ClientProxy
+                Object other = args[0];
+                return other != null && Proxy.isProxyClass(other.getClass())
+                       && this.equals(Proxy.getInvocationHandler(other));
             } else if (method.getName().equals("hashCode")) {
                 return this.hashCode();
             } else if (method.getName().equals("toString") && (args == null || args.length == 0)) {
@@ -63,6 +67,16 @@ public class ClientProxy implements InvocationHandler {
         if (clientInvoker == null) {
             throw new RuntimeException("Could not find a method for: " + method);
         }
+        return invoke(clientInvoker, args);
+    }
+
+    /**
+     * Hands the call to the MethodInvoker that was found for the invoked method.
+     * @param clientInvoker the MethodInvoker of the invoked method
+     * @param args the method arguments
+     * @return the result of the invocation
+     */
+    protected Object invoke(MethodInvoker clientInvoker, Object[] args) {
         return clientInvoker.invoke(args);
     }
 
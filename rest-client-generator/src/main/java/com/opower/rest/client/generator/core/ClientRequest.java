@@ -15,6 +15,8 @@
 package com.opower.rest.client.generator.core;
 
 import com.google.common.base.Predicate;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.opower.rest.client.generator.specimpl.MultivaluedMapImpl;
 import com.opower.rest.client.generator.specimpl.UriBuilderImpl;
 import com.opower.rest.client.generator.util.Encode;
@@ -29,13 +31,19 @@ import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.ext.MessageBodyWriter;
 import javax.ws.rs.ext.Providers;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.Reader;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.net.URI;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 /**
  * Create a hand coded request to send to the server.  You call methods like accept(), body(), pathParameter()
  * etc. to create the state of the request.  Then you call a get(), post(), etc. method to execute the request.
@@ -53,6 +61,10 @@ public class ClientRequest implements Cloneable {
     private final ProxyConfig proxyConfig;
     private final Method method;
     protected UriBuilderImpl uri;
+    protected UriTemplate uriTemplate;
+    protected URI baseUri;
+    protected UriProvider uriProvider;
+    protected Object routingKey;
     protected ClientExecutor executor;
     protected MultivaluedMap<String, Object> headers;
     protected MultivaluedMap<String, String> queryParameters;
@@ -64,10 +76,14 @@ public class ClientRequest implements Cloneable {
     protected Type bodyGenericType;
     protected Annotation[] bodyAnnotations;
     protected MediaType bodyContentType;
+    protected MessageBodyWriter bodyWriter;
     protected boolean followRedirects;
     protected String httpMethod;
     protected String finalUri;
     protected List<String> pathParameterList;
+    protected Object[] arguments;
+    protected Deadline deadline = Deadline.current();
+    protected Timeouts timeouts = Timeouts.NONE;
 
     public ClientRequest(String uriTemplate, ClientExecutor executor, ProxyConfig proxyConfig, Method method) {
         this((UriBuilderImpl) new UriBuilderImpl().uriTemplate(uriTemplate), executor, proxyConfig, method);
@@ -80,6 +96,22 @@ public class ClientRequest implements Cloneable {
         this.method = method;
     }
 
+    /**
+     * Create a request whose URI is rendered from a precompiled {@link UriTemplate} instead of a UriBuilderImpl.
+     * @param uriTemplate the compiled path template of the resource method
+     * @param baseUri the base URI to render the template against
+     * @param executor the ClientExecutor to use
+     * @param proxyConfig the ProxyConfig of the client
+     * @param method the resource method
+     */
+    public ClientRequest(UriTemplate uriTemplate, URI baseUri, ClientExecutor executor, ProxyConfig proxyConfig, Method method) {
+        this.uriTemplate = uriTemplate;
+        this.baseUri = baseUri;
+        this.executor = executor;
+        this.proxyConfig = proxyConfig;
+        this.method = method;
+    }
+
     public boolean followRedirects() {
         return followRedirects;
     }
@@ -173,6 +205,18 @@ public class ClientRequest implements Cloneable {
         this.bodyGenericType = genericType;
         this.bodyType = type;
         this.bodyAnnotations = annotations;
+        this.bodyWriter = null;
+        return this;
+    }
+
+    /**
+     * Use a MessageBodyWriter that was resolved up front for the current body instead of looking one up in the
+     * Providers. Setting a new body clears it.
+     * @param writer the writer for the body
+     * @return this request
+     */
+    public ClientRequest bodyWriter(MessageBodyWriter writer) {
+        this.bodyWriter = writer;
         return this;
     }
 
@@ -200,6 +244,26 @@ public class ClientRequest implements Cloneable {
         return headers;
     }
 
+    /**
+     * Copy this request so that headers can be added to the copy without changing this request. Only the headers are
+     * copied; the body, the parameters and everything else are shared with this request.
+     * @return the copy
+     */
+    public ClientRequest copy() {
+        ClientRequest copy;
+        try {
+            copy = (ClientRequest) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+        MultivaluedMapImpl<String, Object> headersCopy = new MultivaluedMapImpl<>();
+        for (Map.Entry<String, List<Object>> header : getHeadersAsObjects().entrySet()) {
+            headersCopy.addMultiple(header.getKey(), header.getValue());
+        }
+        copy.headers = headersCopy;
+        return copy;
+    }
+
     public MultivaluedMap<String, String> getQueryParameters() {
         if (queryParameters == null)
             queryParameters = new MultivaluedMapImpl<>();
@@ -236,6 +300,97 @@ public class ClientRequest implements Cloneable {
         return httpMethod;
     }
 
+    /**
+     * The resource method this request was created for.
+     * @return the method or null if the request was not created by a client proxy
+     */
+    public Method getMethod() {
+        return this.method;
+    }
+
+    /**
+     * The base URI the request was rendered against, as returned by the client's UriProvider.
+     * @return the base URI or null if the request was not created by a ClientInvoker
+     */
+    public URI getBaseUri() {
+        return this.baseUri;
+    }
+
+    /**
+     * Copy this request for another attempt of the same call, sent to a base URI that none of the earlier attempts went
+     * to if the UriProvider the request was created with has one. See {@link RoutingUriProvider#getUri(Object, Collection)}.
+     * @param tried the base URIs of the earlier attempts
+     * @return the copy, or this request if there is no other base URI or the request can't be rendered against one
+     */
+    public ClientRequest retarget(Collection<URI> tried) {
+        if (!(this.uriProvider instanceof RoutingUriProvider) || this.uriTemplate == null) {
+            return this;
+        }
+        URI next = ((RoutingUriProvider) this.uriProvider).getUri(this.routingKey, tried);
+        if (next.equals(this.baseUri)) {
+            return this;
+        }
+        ClientRequest copy = copy();
+        copy.baseUri = next;
+        copy.finalUri = null;
+        return copy;
+    }
+
+    /**
+     * The arguments the resource method was invoked with. Executors that dispatch to a resource implementation in
+     * the same JVM use these instead of the marshalled form of the request.
+     * @return the arguments or null if the request was not created by a client proxy
+     */
+    public Object[] getArguments() {
+        return this.arguments;
+    }
+
+    /**
+     * Record the arguments the resource method was invoked with.
+     * @param arguments the arguments
+     * @return this request
+     */
+    public ClientRequest arguments(Object[] arguments) {
+        this.arguments = arguments;
+        return this;
+    }
+
+    /**
+     * The deadline of the thread that created the request, see {@link Deadline}.
+     * @return the deadline or null if there is none
+     */
+    public Deadline getDeadline() {
+        return this.deadline;
+    }
+
+    /**
+     * Bind the request to the given deadline instead of the one of the thread that created it.
+     * @param deadline the deadline, may be null
+     * @return this request
+     */
+    public ClientRequest deadline(Deadline deadline) {
+        this.deadline = deadline;
+        return this;
+    }
+
+    /**
+     * The timeouts the ClientExecutor applies to the connection, see {@link Timeouts}.
+     * @return the timeouts
+     */
+    public Timeouts getTimeouts() {
+        return this.timeouts;
+    }
+
+    /**
+     * Set the timeouts the ClientExecutor applies to the connection.
+     * @param timeouts the timeouts
+     * @return this request
+     */
+    public ClientRequest timeouts(Timeouts timeouts) {
+        this.timeouts = checkNotNull(timeouts);
+        return this;
+    }
+
     public Predicate<Integer> getErrorStatusCriteria() {
         return this.proxyConfig.getErrorStatusCriteria().get(this.method);
     }
@@ -247,21 +402,101 @@ public class ClientRequest implements Cloneable {
         return response;
     }
 
+    /**
+     * Send the request without waiting for the response if the ClientExecutor is an {@link AsyncClientExecutor}.
+     * Other executors send the request on the calling thread and return a completed future.
+     * @param httpMethod the http method to use
+     * @return the future response
+     */
+    public ListenableFuture<ClientResponse> executeAsync(String httpMethod) {
+        this.httpMethod = httpMethod;
+        try {
+            this.executor.processFilters(this);
+            if (this.executor instanceof AsyncClientExecutor) {
+                return ((AsyncClientExecutor) this.executor).executeAsync(this);
+            }
+            return Futures.immediateFuture(this.executor.execute(this));
+        } catch (Exception e) {
+            return Futures.immediateFailedFuture(e);
+        }
+    }
+
     public void writeRequestBody(MultivaluedMap<String, Object> headers,
                                  OutputStream outputStream) throws IOException {
         if (body == null) {
             return;
         }
 
+        getBodyWriter().writeTo(body, bodyType, bodyGenericType, bodyAnnotations, bodyContentType,
+                headers, outputStream);
+    }
+
+    /**
+     * Whether the body is better written straight to the connection than spooled with {@link #spoolRequestBody}: the
+     * limit is 0, its writer reports a size larger than the limit, or it is an InputStream or Reader that does not
+     * report a size. Nothing is serialized to find out.
+     * @param limit the largest body, in bytes, that is held in memory
+     * @return true if the body should be streamed
+     */
+    public boolean isLargeRequestBody(int limit) {
+        if (body == null) {
+            return false;
+        }
+        long size = getBodyWriter().getSize(body, bodyType, bodyGenericType, bodyAnnotations, bodyContentType);
+        return limit <= 0 || size > limit || (size < 0 && isOneShot(body));
+    }
+
+    /**
+     * Serialize the body once, ahead of sending it. Executors use this to send bodies with a known Content-Length. The
+     * body is held in memory while it fits within the given number of bytes and moved to a temporary file beyond that,
+     * so a large body is neither held in memory nor serialized twice. The caller must close the result once the
+     * request has been sent.
+     * @param headers the headers passed to the MessageBodyWriter
+     * @param limit the largest body, in bytes, that is held in memory
+     * @return the spooled body or null if there is no body
+     * @throws IOException if the body could not be written
+     */
+    public SpooledBody spoolRequestBody(MultivaluedMap<String, Object> headers, int limit) throws IOException {
+        if (body == null) {
+            return null;
+        }
+
+        MessageBodyWriter writer = getBodyWriter();
+        long size = writer.getSize(body, bodyType, bodyGenericType, bodyAnnotations, bodyContentType);
+        SpooledBody.SpoolOutputStream out = new SpooledBody.SpoolOutputStream(size, limit);
+        try {
+            writer.writeTo(body, bodyType, bodyGenericType, bodyAnnotations, bodyContentType, headers, out);
+            return out.finish();
+        } catch (IOException | RuntimeException e) {
+            out.discard();
+            throw e;
+        }
+    }
+
+    /**
+     * Whether the body can be written more than once. An InputStream or Reader body is used up by the first attempt
+     * to send it, so requests with such a body must not be retried or hedged.
+     * @return true if the request has no body or one that can be serialized again
+     */
+    public boolean isBodyRepeatable() {
+        return body == null || !isOneShot(body);
+    }
+
+    private static boolean isOneShot(Object body) {
+        return body instanceof InputStream || body instanceof Reader;
+    }
+
+    private MessageBodyWriter getBodyWriter() {
+        if (this.bodyWriter != null) {
+            return this.bodyWriter;
+        }
         MessageBodyWriter writer = this.proxyConfig.getProviders().getMessageBodyWriter(bodyType,
                 bodyGenericType, bodyAnnotations, bodyContentType);
         if (writer == null) {
             throw new RuntimeException("could not find writer for content-type "
                     + bodyContentType + " type: " + bodyType.getName());
         }
-
-        writer.writeTo(body, bodyType, bodyGenericType, bodyAnnotations, bodyContentType,
-                headers, outputStream);
+        return writer;
     }
 
     /**
@@ -277,6 +512,11 @@ public class ClientRequest implements Cloneable {
         if (finalUri != null)
             return finalUri;
 
+        if (uriTemplate != null) {
+            finalUri = uriTemplate.render(baseUri, pathParameters, matrixParameters, queryParameters);
+            return finalUri;
+        }
+
         UriBuilderImpl builder = (UriBuilderImpl) uri.clone();
         if (matrixParameters != null) {
             for (Map.Entry<String, List<String>> entry : matrixParameters
@@ -0,0 +1,157 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.core;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The point in time by which the work on behalf of an incoming request has to be done. A server attaches the deadline
+ * of the request it is handling to its thread, and every call a client proxy makes from that thread is limited to the
+ * time that is left. The remaining time is sent along in the {@link #HEADER} header, so the next server can pick it
+ * up in turn:
+ * <pre>
+ *     try (Deadline.Scope scope = Deadline.attach(Deadline.fromHeader(httpRequest.getHeader(Deadline.HEADER)))) {
+ *         ...
+ *     }
+ * </pre>
+ * Requests capture the deadline of the thread that creates them, so calls that complete on other threads are still
+ * bound by it. Calls made once the deadline has passed fail with a TimeoutException without being sent.
+ */
+public final class Deadline {
+
+    /**
+     * The header that carries the time left until the deadline, in milliseconds.
+     */
+    public static final String HEADER = "X-Request-Deadline-Millis";
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * A deadline the given time from now.
+     * @param duration the time until the deadline
+     * @param unit the unit of the duration
+     * @return the deadline
+     */
+    public static Deadline after(long duration, TimeUnit unit) {
+        checkArgument(duration >= 0, "duration must not be negative");
+        return new Deadline(System.nanoTime() + checkNotNull(unit).toNanos(duration));
+    }
+
+    /**
+     * The deadline sent by a client in the {@link #HEADER} header.
+     * @param headerValue the value of the header, may be null
+     * @return the deadline or null if there is no valid header value
+     */
+    public static Deadline fromHeader(String headerValue) {
+        if (headerValue == null) {
+            return null;
+        }
+        try {
+            long remaining = Long.parseLong(headerValue.trim());
+            return remaining < 0 ? null : after(remaining, TimeUnit.MILLISECONDS);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The deadline attached to the current thread.
+     * @return the deadline or null if there is none
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Attach this deadline to the current thread until the returned scope is closed. A deadline that is already
+     * attached and ends earlier stays in effect.
+     * @return the scope to close when the work is done
+     */
+    public Scope attach() {
+        Deadline previous = CURRENT.get();
+        CURRENT.set(previous == null ? this : earliest(previous, this));
+        return new Scope(previous);
+    }
+
+    /**
+     * Attach the given deadline to the current thread, see {@link #attach()}.
+     * @param deadline the deadline, may be null
+     * @return the scope to close when the work is done, which does nothing if the deadline was null
+     */
+    public static Scope attach(Deadline deadline) {
+        return deadline == null ? new Scope(CURRENT.get()) : deadline.attach();
+    }
+
+    /**
+     * The time left until the deadline.
+     * @param unit the unit of the result
+     * @return the remaining time, 0 if the deadline has passed
+     */
+    public long remaining(TimeUnit unit) {
+        return unit.convert(Math.max(0, this.deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Whether the deadline has passed.
+     * @return true if there is no time left
+     */
+    public boolean isExpired() {
+        return this.deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * The one of the given deadlines that ends first.
+     * @param a a deadline
+     * @param b another deadline
+     * @return the earlier deadline
+     */
+    public static Deadline earliest(Deadline a, Deadline b) {
+        return a.deadlineNanos - b.deadlineNanos <= 0 ? a : b;
+    }
+
+    @Override
+    public String toString() {
+        return "Deadline{remainingMillis=" + remaining(TimeUnit.MILLISECONDS) + '}';
+    }
+
+    /**
+     * Restores the deadline that was attached to the thread before {@link #attach()} was called.
+     */
+    public static final class Scope implements AutoCloseable {
+        private final Deadline previous;
+
+        private Scope(Deadline previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (this.previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(this.previous);
+            }
+        }
+    }
+}
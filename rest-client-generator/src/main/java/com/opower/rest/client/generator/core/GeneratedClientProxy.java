@@ -0,0 +1,158 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.core;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.description.modifier.Visibility;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+import net.bytebuddy.implementation.MethodCall;
+import net.bytebuddy.implementation.bytecode.assign.Assigner;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static net.bytebuddy.matcher.ElementMatchers.is;
+
+/**
+ * Base class of the client proxies generated for {@link ProxyEngine#GENERATED}. The generated subclass implements the
+ * resource interface and holds one MethodInvoker field per interface method, so a call on the proxy is a direct
+ * virtual call to its MethodInvoker with no Map lookup in between. The generated class is built once per interface and
+ * reused for every client of that interface for as long as one of its proxies is alive.
+ */
+public abstract class GeneratedClientProxy {
+
+    /**
+     * The arguments passed to the MethodInvoker of a method without parameters, so those calls allocate nothing.
+     */
+    protected static final Object[] NO_ARGUMENTS = new Object[0];
+
+    private static final Method INVOKE;
+
+    private static final Cache<Class<?>, Class<? extends GeneratedClientProxy>> CLASSES = CacheBuilder.newBuilder()
+            .weakKeys()
+            .weakValues()
+            .build();
+
+    private static final Comparator<Method> METHOD_ORDER = new Comparator<Method>() {
+        @Override
+        public int compare(Method first, Method second) {
+            return first.toString().compareTo(second.toString());
+        }
+    };
+
+    static {
+        try {
+            INVOKE = MethodInvoker.class.getMethod("invoke", Object[].class);
+        } catch (NoSuchMethodException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Class<?> clazz;
+
+    /**
+     * Instantiate a proxy for the given interface, generating its class if no live proxy of the interface shares one.
+     * @param iface the resource interface
+     * @param invokers the MethodInvoker to call for each method of the interface
+     * @param loader the ClassLoader to define the generated class in
+     * @param <S> the type of the resource interface
+     * @return the proxy instance
+     */
+    @SuppressWarnings("unchecked")
+    static <S> S create(Class<S> iface, Map<Method, MethodInvoker> invokers, ClassLoader loader) {
+        Method[] methods = methods(iface);
+        checkArgument(invokers.keySet().equals(ImmutableSet.copyOf(methods)), "invokers must cover the methods of %s", iface);
+
+        Class<? extends GeneratedClientProxy> type = CLASSES.getIfPresent(iface);
+        if (type == null || type.getClassLoader().getParent() != loader) {
+            type = generate(iface, methods, loader);
+            CLASSES.put(iface, type);
+        }
+        try {
+            GeneratedClientProxy proxy = type.newInstance();
+            proxy.clazz = iface;
+            for (int i = 0; i < methods.length; i++) {
+                type.getField(field(i)).set(proxy, checkNotNull(invokers.get(methods[i])));
+            }
+            return (S) proxy;
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Unable to instantiate generated client proxy for " + iface.getName(), e);
+        }
+    }
+
+    private static Class<? extends GeneratedClientProxy> generate(Class<?> iface, Method[] methods, ClassLoader loader) {
+        DynamicType.Builder<GeneratedClientProxy> builder = new ByteBuddy()
+                .subclass(GeneratedClientProxy.class)
+                .implement(iface);
+        for (int i = 0; i < methods.length; i++) {
+            MethodCall call = MethodCall.invoke(INVOKE).onField(field(i));
+            call = methods[i].getParameterTypes().length == 0
+                    ? call.withField("NO_ARGUMENTS")
+                    : call.withArgumentArray();
+            builder = builder.defineField(field(i), MethodInvoker.class, Visibility.PUBLIC)
+                    .method(is(methods[i]))
+                    .intercept(call.withAssigner(Assigner.DEFAULT, Assigner.Typing.DYNAMIC));
+        }
+        return builder.make()
+                .load(loader, ClassLoadingStrategy.Default.WRAPPER)
+                .getLoaded();
+    }
+
+    /**
+     * The methods of the interface in the order of the fields of its generated class.
+     */
+    private static Method[] methods(Class<?> iface) {
+        Method[] methods = iface.getMethods();
+        Arrays.sort(methods, METHOD_ORDER);
+        return methods;
+    }
+
+    private static String field(int index) {
+        return "invoker" + index;
+    }
+
+    public Class<?> getClazz() {
+        return this.clazz;
+    }
+
+    /**
+     * Same semantics as {@link ClientProxy#equals(Object)}: every proxy has its own invokers, so a proxy is only equal
+     * to itself.
+     * @param obj the object to compare with
+     * @return true if obj is this proxy
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return obj == this;
+    }
+
+    @Override
+    public int hashCode() {
+        return this.clazz.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "Client Proxy for :" + this.clazz.getName();
+    }
+}
@@ -0,0 +1,437 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.core;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.opower.rest.client.generator.annotations.Hedged;
+import com.opower.rest.client.generator.extractors.DefaultEntityExtractorFactory;
+import com.opower.rest.client.generator.util.HttpResponseCodes;
+
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * MethodInvoker for a resource method annotated with {@link Hedged}. Every call sends a first attempt and, if no
+ * response has arrived once the hedge delay has passed and the hedge budget allows it, a second attempt. With a
+ * {@link RoutingUriProvider} the second attempt goes to a different host than the first, also for calls with a routing
+ * key. The first successful or client error response to arrive is used and the other attempt is cancelled; a response
+ * that arrives anyway is released. If an attempt fails or gets a server error while the other one is still running,
+ * the call waits for the other one. Once every attempt it sent has failed, the call gets the last server error response,
+ * or the first failure if there was none. Calls whose body is not {@link ClientRequest#isBodyRepeatable() repeatable}
+ * are never hedged.
+ * <p/>
+ * The hedge delay is the configured percentile of the last {@link #SAMPLES} response times of the method, and never
+ * less than the configured minimum. With an {@link AsyncClientExecutor} no threads are blocked while attempts are
+ * outstanding. With any other ClientExecutor each attempt is sent from a shared, bounded pool of daemon threads
+ * while the caller waits for the winner.
+ */
+public class HedgingInvoker implements BindableMethodInvoker {
+
+    /**
+     * The number of recent response times the hedge delay is computed from.
+     */
+    public static final int SAMPLES = 128;
+
+    private static final int MIN_SAMPLES = 16;
+    private static final double PERCENT = 100;
+    private static final long HEDGE_COST = 10000;
+    private static final long MAX_SAVED_HEDGES = 10;
+    private static final int MAX_SENDERS = 64;
+    private static final long KEEP_ALIVE_SECONDS = 60;
+    private static final ScheduledThreadPoolExecutor TIMER = createTimer();
+    private static final ListeningExecutorService SENDERS = MoreExecutors.listeningDecorator(createSenders());
+
+    private final ClientInvoker invoker;
+    private final boolean async;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long deposit;
+    private final AtomicLong budget = new AtomicLong();
+    private final AtomicLongArray samples = new AtomicLongArray(SAMPLES);
+    private final AtomicLong sampleCount = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private volatile long delayNanos;
+
+    /**
+     * Create an invoker for the given method.
+     * @param method the resource method, annotated with {@link Hedged}
+     * @param invoker the ClientInvoker of the method
+     */
+    public HedgingInvoker(Method method, ClientInvoker invoker) {
+        Hedged hedged = checkNotNull(method.getAnnotation(Hedged.class), "%s is not @Hedged", method);
+        checkArgument(Client.IDEMPOTENT_HTTP_METHODS.contains(invoker.httpMethod), "@Hedged method %s must be idempotent", method);
+        checkArgument(hedged.percentile() > 0 && hedged.percentile() < PERCENT,
+                      "percentile of %s must be between 0 and 100", method);
+        checkArgument(hedged.minDelayMillis() >= 0, "minDelayMillis of %s must not be negative", method);
+        checkArgument(hedged.budgetPercent() > 0 && hedged.budgetPercent() <= PERCENT,
+                      "budgetPercent of %s must be between 0 and 100", method);
+
+        this.invoker = invoker;
+        this.async = DefaultEntityExtractorFactory.isFutureReturnType(method.getReturnType());
+        this.percentile = hedged.percentile();
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(hedged.minDelayMillis());
+        this.deposit = Math.round(hedged.budgetPercent() / PERCENT * HEDGE_COST);
+        this.delayNanos = this.minDelayNanos;
+    }
+
+    /**
+     * Replace the invokers of all {@link Hedged} methods of a resource interface with HedgingInvokers.
+     * @param iface the resource interface
+     * @param methodMap the invokers of the interface, keyed by method
+     */
+    static void install(Class<?> iface, Map<Method, MethodInvoker> methodMap) {
+        for (Method method : iface.getMethods()) {
+            if (method.isAnnotationPresent(Hedged.class)) {
+                MethodInvoker invoker = methodMap.get(method);
+                checkArgument(invoker instanceof ClientInvoker, "@Hedged method %s must be a resource method", method);
+                methodMap.put(method, new HedgingInvoker(method, (ClientInvoker) invoker));
+            }
+        }
+    }
+
+    /**
+     * Whether any method of the resource interface is {@link Hedged}.
+     * @param iface the resource interface
+     * @return true if calls of the interface are hedged
+     */
+    static boolean hasHedgedMethods(Class<?> iface) {
+        for (Method method : iface.getMethods()) {
+            if (method.isAnnotationPresent(Hedged.class)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Object invoke(Object[] args) {
+        return invoke(this.invoker.baseUriProvider, args);
+    }
+
+    @Override
+    public Object invoke(UriProvider uriProvider, Object[] args) {
+        ListenableFuture<Attempt> winner = race(uriProvider, args);
+        if (this.async) {
+            return Futures.transform(winner, new Function<Attempt, Object>() {
+                @Override
+                public Object apply(Attempt attempt) {
+                    return HedgingInvoker.this.invoker.extractEntity(attempt.request, attempt.response);
+                }
+            }, this.invoker.entityReader(winner));
+        }
+
+        Attempt attempt;
+        try {
+            attempt = winner.get();
+        } catch (InterruptedException e) {
+            winner.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        return this.invoker.extractEntity(attempt.request, attempt.response);
+    }
+
+    /**
+     * The number of second attempts sent so far.
+     * @return the number of hedges
+     */
+    public long getHedges() {
+        return this.hedges.get();
+    }
+
+    /**
+     * The number of calls that were answered by their second attempt.
+     * @return the number of hedges that won
+     */
+    public long getHedgeWins() {
+        return this.hedgeWins.get();
+    }
+
+    /**
+     * The current delay after which a second attempt is sent.
+     * @return the hedge delay in milliseconds
+     */
+    public long getDelayMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.delayNanos);
+    }
+
+    private ListenableFuture<Attempt> race(final UriProvider uriProvider, final Object[] args) {
+        deposit();
+        final Race race = new Race();
+        race.start(uriProvider, args, false);
+        if (race.result.isDone()) {
+            return race.result;
+        }
+
+        // a body that can only be sent once is never hedged
+        final ScheduledFuture<?> timer = !race.repeatable ? null : TIMER.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (!race.result.isDone() && withdraw()) {
+                    HedgingInvoker.this.hedges.incrementAndGet();
+                    race.start(uriProvider, args, true);
+                }
+            }
+        }, this.delayNanos, TimeUnit.NANOSECONDS);
+        race.result.addListener(new Runnable() {
+            @Override
+            public void run() {
+                if (timer != null) {
+                    timer.cancel(false);
+                }
+                for (ListenableFuture<Attempt> attempt : race.attempts) {
+                    attempt.cancel(true);
+                }
+            }
+        }, MoreExecutors.sameThreadExecutor());
+        return race.result;
+    }
+
+    private ListenableFuture<Attempt> send(UriProvider uriProvider, Object[] args, Race race) {
+        final long start = System.nanoTime();
+        final ClientRequest request;
+        try {
+            // the second attempt is created on the timer thread, it keeps the deadline of the caller
+            request = this.invoker.createRequest(uriProvider, args, race.tried).deadline(race.deadline);
+        } catch (RuntimeException e) {
+            return Futures.immediateFailedFuture(e);
+        }
+        if (request.getBaseUri() != null) {
+            race.tried.add(request.getBaseUri());
+        }
+        if (!request.isBodyRepeatable()) {
+            race.repeatable = false;
+        }
+
+        final SettableFuture<Attempt> attempt = SettableFuture.create();
+        final FutureCallback<ClientResponse> answer = new FutureCallback<ClientResponse>() {
+            @Override
+            public void onSuccess(ClientResponse clientResponse) {
+                record(System.nanoTime() - start);
+                if (!attempt.set(new Attempt(request, (BaseClientResponse) clientResponse))) {
+                    clientResponse.releaseConnection();
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                attempt.setException(t);
+            }
+        };
+        final Future<?> sending;
+        try {
+            if (this.invoker.executor instanceof AsyncClientExecutor) {
+                ListenableFuture<ClientResponse> response = request.executeAsync(this.invoker.httpMethod);
+                Futures.addCallback(response, answer);
+                sending = response;
+            } else {
+                // cancelling a blocking send doesn't stop it, the response is released once it arrives
+                sending = SENDERS.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        ClientResponse clientResponse;
+                        try {
+                            clientResponse = request.execute(HedgingInvoker.this.invoker.httpMethod);
+                        } catch (Throwable t) {
+                            answer.onFailure(t);
+                            return;
+                        }
+                        answer.onSuccess(clientResponse);
+                    }
+                });
+            }
+        } catch (RuntimeException e) {
+            return Futures.immediateFailedFuture(e);
+        }
+        attempt.addListener(new Runnable() {
+            @Override
+            public void run() {
+                if (attempt.isCancelled()) {
+                    sending.cancel(true);
+                }
+            }
+        }, MoreExecutors.sameThreadExecutor());
+        return attempt;
+    }
+
+    private void record(long latency) {
+        long count = this.sampleCount.incrementAndGet();
+        this.samples.set((int) ((count - 1) % SAMPLES), latency);
+        if (count >= MIN_SAMPLES && count % MIN_SAMPLES == 0) {
+            int size = (int) Math.min(count, SAMPLES);
+            long[] sorted = new long[size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = this.samples.get(i);
+            }
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(this.percentile / PERCENT * size) - 1;
+            this.delayNanos = Math.max(this.minDelayNanos, sorted[Math.max(index, 0)]);
+        }
+    }
+
+    private void deposit() {
+        long max = MAX_SAVED_HEDGES * HEDGE_COST;
+        long current;
+        do {
+            current = this.budget.get();
+            if (current >= max) {
+                return;
+            }
+        } while (!this.budget.compareAndSet(current, Math.min(max, current + this.deposit)));
+    }
+
+    private boolean withdraw() {
+        long current;
+        do {
+            current = this.budget.get();
+            if (current < HEDGE_COST) {
+                return false;
+            }
+        } while (!this.budget.compareAndSet(current, current - HEDGE_COST));
+        return true;
+    }
+
+    private static ScheduledThreadPoolExecutor createTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("rest-client-hedging-timer")
+                .build());
+        timer.setRemoveOnCancelPolicy(true);
+        timer.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        timer.allowCoreThreadTimeOut(true);
+        return timer;
+    }
+
+    /**
+     * The pool blocking attempts are sent from. It has at most {@link #MAX_SENDERS} threads, further attempts wait for
+     * one of them, and threads exit once they have been idle for a minute, so neither pool needs a shutdown.
+     */
+    private static ThreadPoolExecutor createSenders() {
+        ThreadPoolExecutor senders = new ThreadPoolExecutor(MAX_SENDERS, MAX_SENDERS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                                                            new LinkedBlockingQueue<Runnable>(),
+                                                            new ThreadFactoryBuilder()
+                                                                    .setDaemon(true)
+                                                                    .setNameFormat("rest-client-hedging-%d")
+                                                                    .build());
+        senders.allowCoreThreadTimeOut(true);
+        return senders;
+    }
+
+    /**
+     * A request and the response it got.
+     */
+    private static final class Attempt {
+        private final ClientRequest request;
+        private final BaseClientResponse response;
+
+        private Attempt(ClientRequest request, BaseClientResponse response) {
+            this.request = request;
+            this.response = response;
+        }
+    }
+
+    /**
+     * The attempts of one call. The first successful or client error response completes the result, responses that
+     * arrive later are released. Server errors and failures only complete the result once no attempt is left.
+     */
+    private final class Race {
+        private final SettableFuture<Attempt> result = SettableFuture.create();
+        private final List<ListenableFuture<Attempt>> attempts = new CopyOnWriteArrayList<>();
+        private final List<URI> tried = new CopyOnWriteArrayList<>();
+        private final Deadline deadline = Deadline.current();
+        private volatile boolean repeatable = true;
+        private int pending;
+        private Attempt serverError;
+        private Throwable failure;
+
+        private void start(UriProvider uriProvider, Object[] args, final boolean hedge) {
+            synchronized (this) {
+                this.pending++;
+            }
+            ListenableFuture<Attempt> attempt = send(uriProvider, args, this);
+            this.attempts.add(attempt);
+            if (this.result.isDone()) {
+                attempt.cancel(true);
+            }
+            Futures.addCallback(attempt, new FutureCallback<Attempt>() {
+                @Override
+                public void onSuccess(Attempt answered) {
+                    finish(answered, null, hedge);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    finish(null, t, hedge);
+                }
+            });
+        }
+
+        private synchronized void finish(Attempt answered, Throwable t, boolean hedge) {
+            this.pending--;
+            if (answered == null) {
+                if (this.failure == null) {
+                    this.failure = t;
+                }
+            } else if (answered.response.getStatus() >= HttpResponseCodes.SC_INTERNAL_SERVER_ERROR) {
+                // keep the latest server error in case no attempt succeeds
+                if (this.serverError != null) {
+                    this.serverError.response.releaseConnection();
+                }
+                this.serverError = answered;
+            } else if (this.result.set(answered)) {
+                if (hedge) {
+                    HedgingInvoker.this.hedgeWins.incrementAndGet();
+                }
+            } else {
+                answered.response.releaseConnection();
+            }
+
+            if (this.pending == 0 && this.serverError != null) {
+                if (!this.result.set(this.serverError)) {
+                    this.serverError.response.releaseConnection();
+                }
+                this.serverError = null;
+            } else if (this.pending == 0 && this.failure != null) {
+                this.result.setException(this.failure);
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.core;
+
+import com.google.common.base.Throwables;
+import com.opower.rest.client.generator.marshallers.Marshaller;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.core.MediaType;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Base class of the clients written by the rest-client-processor annotation processor for interfaces annotated with
+ * {@link com.opower.rest.client.generator.annotations.GenerateClient}. The generated subclass already knows the http
+ * method, path template, media types and marshallers of every resource method, and hands them to the
+ * {@link ClientInvoker} it creates for that method, so those are not worked out from the annotations when the client is
+ * built. The invokers still look up their Method and read its annotations, routing key, timeouts and entity extractor
+ * by reflection.
+ */
+public abstract class PrecompiledClient {
+
+    /**
+     * Prefix of the simple name of a generated client class. The generated class lives in the package of the resource
+     * interface, nested interfaces have their enclosing type names joined with '_'.
+     */
+    public static final String CLASS_NAME_PREFIX = "RestClient_";
+
+    private static final Logger LOG = LoggerFactory.getLogger(PrecompiledClient.class);
+
+    protected final UriProvider uriProvider;
+    protected final ProxyConfig config;
+    private final Class<?> clazz;
+
+    /**
+     * Constructor for the generated subclasses.
+     * @param clazz the resource interface
+     * @param uriProvider the UriProvider for the base URI
+     * @param config the ProxyConfig of the client
+     */
+    protected PrecompiledClient(Class<?> clazz, UriProvider uriProvider, ProxyConfig config) {
+        this.clazz = checkNotNull(clazz);
+        this.uriProvider = checkNotNull(uriProvider);
+        this.config = checkNotNull(config);
+    }
+
+    /**
+     * The name of the class generated for the given resource interface.
+     * @param iface the resource interface
+     * @return the fully qualified name of the generated client class
+     */
+    public static String className(Class<?> iface) {
+        String name = iface.getName();
+        int lastDot = name.lastIndexOf('.');
+        return name.substring(0, lastDot + 1) + CLASS_NAME_PREFIX + name.substring(lastDot + 1).replace('$', '_');
+    }
+
+    /**
+     * Instantiate the generated client for the given resource interface.
+     * @param iface the resource interface
+     * @param uriProvider the UriProvider for the base URI
+     * @param config the ProxyConfig of the client
+     * @param <S> the type of the resource interface
+     * @return the client or null if no client was generated for the interface or the interface has
+     *         {@link com.opower.rest.client.generator.annotations.Batched} or
+     *         {@link com.opower.rest.client.generator.annotations.Hedged} methods
+     */
+    static <S> S create(Class<S> iface, UriProvider uriProvider, ProxyConfig config) {
+        if (BatchingInvoker.hasBatchedMethods(iface) || HedgingInvoker.hasHedgedMethods(iface)) {
+            // generated clients call each method's ClientInvoker directly, batching and hedging need the reflective proxies
+            LOG.warn("{} has @Batched or @Hedged methods, using a reflective proxy instead of its generated client",
+                     iface.getName());
+            return null;
+        }
+        Class<?> type;
+        try {
+            type = Class.forName(className(iface), true, config.getLoader());
+        } catch (ClassNotFoundException e) {
+            LOG.warn("No generated client found for {}, using a reflective proxy. Is it annotated with @GenerateClient "
+                     + "and was rest-client-processor on the compiler's classpath?", iface.getName());
+            return null;
+        }
+        try {
+            return iface.cast(type.getConstructor(UriProvider.class, ProxyConfig.class).newInstance(uriProvider, config));
+        } catch (InvocationTargetException e) {
+            throw Throwables.propagate(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Unable to instantiate generated client " + type.getName(), e);
+        }
+    }
+
+    /**
+     * Look up a method of the resource interface. The Method is still needed for error handling and entity extraction.
+     * @param iface the resource interface
+     * @param name the name of the method
+     * @param parameterTypes the parameter types of the method
+     * @return the Method
+     */
+    protected static Method method(Class<?> iface, String name, Class<?>... parameterTypes) {
+        try {
+            return iface.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("The generated client is out of date with " + iface.getName(), e);
+        }
+    }
+
+    /**
+     * The annotations of a message body parameter. Only called for body parameters that actually carry annotations.
+     * @param method the resource method
+     * @param index the index of the parameter
+     * @return the annotations of the parameter
+     */
+    protected static Annotation[] parameterAnnotations(Method method, int index) {
+        return method.getParameterAnnotations()[index];
+    }
+
+    /**
+     * The generic type of a message body parameter. Only called for body parameters with a parameterized type.
+     * @param method the resource method
+     * @param index the index of the parameter
+     * @return the generic type of the parameter
+     */
+    protected static Type genericParameterType(Method method, int index) {
+        return method.getGenericParameterTypes()[index];
+    }
+
+    /**
+     * Create the invoker for a resource method.
+     * @param method the resource method
+     * @param httpMethod the http method to use
+     * @param uriTemplate the compiled path template
+     * @param accepts the media type for the Accept header
+     * @param marshallers one Marshaller per method parameter
+     * @return the MethodInvoker
+     */
+    protected MethodInvoker invoker(Method method, String httpMethod, UriTemplate uriTemplate, MediaType accepts,
+                                    Marshaller... marshallers) {
+        ClientInvoker invoker = new ClientInvoker(this.uriProvider, this.clazz, method, this.config, uriTemplate, accepts,
+                                                  marshallers);
+        invoker.setHttpMethod(httpMethod);
+        return invoker;
+    }
+
+    /**
+     * Create the invoker for a sub-resource locator method.
+     * @param method the sub-resource locator
+     * @return the MethodInvoker
+     */
+    protected MethodInvoker subResource(Method method) {
+        return new SubResourceInvoker(this.uriProvider, method, this.config);
+    }
+
+    public Class<?> getClazz() {
+        return this.clazz;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj == this;
+    }
+
+    @Override
+    public int hashCode() {
+        return this.clazz.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "Client Proxy for :" + this.clazz.getName();
+    }
+}
@@ -15,17 +15,28 @@
 package com.opower.rest.client.generator.core;
 
 import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.opower.rest.client.generator.extractors.ClientErrorHandler;
 import com.opower.rest.client.generator.extractors.EntityExtractorFactory;
 
 import javax.ws.rs.ext.Providers;
 import java.lang.reflect.Method;
+import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 public class ProxyConfig {
 
+    private static final int MIN_ENTITY_READERS = 2;
+    private static final long ENTITY_READER_KEEP_ALIVE_SECONDS = 60;
+
     private final ClassLoader loader;
     private final ClientExecutor executor;
     private final Providers providers;
@@ -33,17 +44,97 @@ public class ProxyConfig {
     private final ConcurrentMap<Method, Predicate<Integer>> errorStatusCriteria;
 
     private final ClientErrorHandler clientErrorHandler;
+    private final ProxyEngine proxyEngine;
+    private final int subResourceCacheSize;
+    private final Timeouts timeouts;
+    private final Map<Method, Timeouts> methodTimeouts;
+    private final Executor entityReaders;
 
     public ProxyConfig(ClassLoader loader, ClientExecutor executor, Providers providers,
                        EntityExtractorFactory extractorFactory,
                        ConcurrentMap<Method, Predicate<Integer>> errorStatusCriteria,
                        ClientErrorHandler clientErrorHandler) {
+        this(loader, executor, providers, extractorFactory, errorStatusCriteria, clientErrorHandler, ProxyEngine.JDK_PROXY);
+    }
+
+    public ProxyConfig(ClassLoader loader, ClientExecutor executor, Providers providers,
+                       EntityExtractorFactory extractorFactory,
+                       ConcurrentMap<Method, Predicate<Integer>> errorStatusCriteria,
+                       ClientErrorHandler clientErrorHandler,
+                       ProxyEngine proxyEngine) {
+        this(loader, executor, providers, extractorFactory, errorStatusCriteria, clientErrorHandler, proxyEngine, 0);
+    }
+
+    public ProxyConfig(ClassLoader loader, ClientExecutor executor, Providers providers,
+                       EntityExtractorFactory extractorFactory,
+                       ConcurrentMap<Method, Predicate<Integer>> errorStatusCriteria,
+                       ClientErrorHandler clientErrorHandler,
+                       ProxyEngine proxyEngine,
+                       int subResourceCacheSize) {
+        this(loader, executor, providers, extractorFactory, errorStatusCriteria, clientErrorHandler, proxyEngine,
+             subResourceCacheSize, ImmutableMap.<Method, Timeouts>of());
+    }
+
+    public ProxyConfig(ClassLoader loader, ClientExecutor executor, Providers providers,
+                       EntityExtractorFactory extractorFactory,
+                       ConcurrentMap<Method, Predicate<Integer>> errorStatusCriteria,
+                       ClientErrorHandler clientErrorHandler,
+                       ProxyEngine proxyEngine,
+                       int subResourceCacheSize,
+                       Map<Method, Timeouts> methodTimeouts) {
+        this(loader, executor, providers, extractorFactory, errorStatusCriteria, clientErrorHandler, proxyEngine,
+             subResourceCacheSize, null, methodTimeouts);
+    }
+
+    public ProxyConfig(ClassLoader loader, ClientExecutor executor, Providers providers,
+                       EntityExtractorFactory extractorFactory,
+                       ConcurrentMap<Method, Predicate<Integer>> errorStatusCriteria,
+                       ClientErrorHandler clientErrorHandler,
+                       ProxyEngine proxyEngine,
+                       int subResourceCacheSize,
+                       Timeouts timeouts,
+                       Map<Method, Timeouts> methodTimeouts) {
+        this(loader, executor, providers, extractorFactory, errorStatusCriteria, clientErrorHandler, proxyEngine,
+             subResourceCacheSize, timeouts, methodTimeouts, null);
+    }
+
+    public ProxyConfig(ClassLoader loader, ClientExecutor executor, Providers providers,
+                       EntityExtractorFactory extractorFactory,
+                       ConcurrentMap<Method, Predicate<Integer>> errorStatusCriteria,
+                       ClientErrorHandler clientErrorHandler,
+                       ProxyEngine proxyEngine,
+                       int subResourceCacheSize,
+                       Timeouts timeouts,
+                       Map<Method, Timeouts> methodTimeouts,
+                       Executor entityReaders) {
+        checkArgument(subResourceCacheSize >= 0, "subResourceCacheSize must not be negative");
+        this.subResourceCacheSize = subResourceCacheSize;
+        this.proxyEngine = checkNotNull(proxyEngine);
         this.loader = checkNotNull(loader);
         this.executor = checkNotNull(executor);
         this.providers = checkNotNull(providers);
         this.extractorFactory = checkNotNull(extractorFactory);
         this.errorStatusCriteria = checkNotNull(errorStatusCriteria);
         this.clientErrorHandler = checkNotNull(clientErrorHandler);
+        this.timeouts = timeouts;
+        this.methodTimeouts = ImmutableMap.copyOf(methodTimeouts);
+        this.entityReaders = entityReaders != null ? entityReaders : newEntityReaders();
+    }
+
+    /**
+     * The default pool for reading entities: bounded by the number of processors, with threads that exit once they
+     * have been idle for a minute, so it needs no shutdown.
+     */
+    private static Executor newEntityReaders() {
+        int threads = Math.max(MIN_ENTITY_READERS, Runtime.getRuntime().availableProcessors());
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, ENTITY_READER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                                                         new LinkedBlockingQueue<Runnable>(),
+                                                         new ThreadFactoryBuilder()
+                                                                 .setDaemon(true)
+                                                                 .setNameFormat("rest-client-entity-reader-%d")
+                                                                 .build());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
     }
 
     public ClassLoader getLoader() {
@@ -69,4 +160,37 @@ public class ProxyConfig {
     public ConcurrentMap<Method, Predicate<Integer>> getErrorStatusCriteria() {
         return errorStatusCriteria;
     }
+
+    public ProxyEngine getProxyEngine() {
+        return proxyEngine;
+    }
+
+    /**
+     * The number of bound sub-resource proxies each sub-resource locator keeps around. 0 disables the cache.
+     * @return the maximum number of cached sub-resource proxies per locator method
+     */
+    public int getSubResourceCacheSize() {
+        return subResourceCacheSize;
+    }
+
+    /**
+     * The timeouts the calls of the given resource method are sent with: those set for the method itself, else its
+     * {@link com.opower.rest.client.generator.annotations.Timeout} annotation, else the timeouts of the client, else the
+     * Timeout annotation of the interface declaring it. Methods of sub-resource interfaces are resolved the same way.
+     * @param method the resource method
+     * @return the timeouts
+     */
+    public Timeouts getTimeouts(Method method) {
+        Timeouts explicit = this.methodTimeouts.get(method);
+        return explicit != null ? explicit : Timeouts.forMethod(method, this.timeouts);
+    }
+
+    /**
+     * The Executor that reads the entities of future responses that complete later, so a slow MessageBodyReader never
+     * holds up the I/O thread that received the response.
+     * @return the Executor for reading entities
+     */
+    public Executor getEntityReaders() {
+        return this.entityReaders;
+    }
 }
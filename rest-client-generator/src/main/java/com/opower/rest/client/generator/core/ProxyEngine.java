@@ -0,0 +1,41 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.core;
+
+/**
+ * Selects how client proxy instances are created for a resource interface.
+ */
+public enum ProxyEngine {
+    /**
+     * A {@link java.lang.reflect.Proxy} backed by {@link ClientProxy}. Each call looks up the MethodInvoker
+     * for the invoked Method. This is the default.
+     */
+    JDK_PROXY,
+
+    /**
+     * A class implementing the resource interface is generated when the client is built. Each interface method
+     * calls its own MethodInvoker field directly. Requires byte-buddy on the classpath.
+     */
+    GENERATED,
+
+    /**
+     * Use the client class written at compile time by the rest-client-processor annotation processor for interfaces
+     * annotated with {@link com.opower.rest.client.generator.annotations.GenerateClient}. Path templates, media types and
+     * marshallers come from the generated class instead of being built from the annotations, and no proxy class is
+     * generated. Interfaces without a generated client, or with batched or hedged methods, fall back to
+     * {@link #JDK_PROXY} with a warning.
+     */
+    PRECOMPILED
+}
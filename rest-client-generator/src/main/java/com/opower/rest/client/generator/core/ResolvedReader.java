@@ -0,0 +1,66 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.core;
+
+import com.google.common.base.Objects;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.MessageBodyReader;
+import java.lang.reflect.Type;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The MessageBodyReader a resource method will need for its responses, resolved once when the client proxy is
+ * built. It only applies while the response is read as the expected type and comes back with the media type the
+ * method @Produces; anything else goes through the regular {@link javax.ws.rs.ext.Providers} lookup.
+ */
+public final class ResolvedReader {
+
+    private final MediaType mediaType;
+    private final Class<?> type;
+    private final Type genericType;
+    private final MessageBodyReader reader;
+
+    /**
+     * Create an instance.
+     * @param mediaType the media type the resource method produces
+     * @param type the type of the entity
+     * @param genericType the generic type of the entity
+     * @param reader the reader resolved for the above
+     */
+    public ResolvedReader(MediaType mediaType, Class<?> type, Type genericType, MessageBodyReader reader) {
+        this.mediaType = checkNotNull(mediaType);
+        this.type = checkNotNull(type);
+        this.genericType = checkNotNull(genericType);
+        this.reader = checkNotNull(reader);
+    }
+
+    /**
+     * Get the resolved reader if it was resolved for the given arguments.
+     * @param readType the type the response is read as
+     * @param readGenericType the generic type the response is read as
+     * @param responseMediaType the media type of the response
+     * @return the reader or null if a regular lookup is needed
+     */
+    public MessageBodyReader getReader(Class<?> readType, Type readGenericType, MediaType responseMediaType) {
+        if (this.type == readType && Objects.equal(this.genericType, readGenericType)
+                && this.mediaType.getType().equalsIgnoreCase(responseMediaType.getType())
+                && this.mediaType.getSubtype().equalsIgnoreCase(responseMediaType.getSubtype())) {
+            return this.reader;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.core;
+
+import com.google.common.base.Predicate;
+import com.opower.rest.client.generator.util.HttpResponseCodes;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * How the calls of a resource method are retried, see {@link Client#retryPolicy(RetryPolicy)}. A call is retried when
+ * the request fails with an IOException or the response status matches {@link #withRetryableStatus(Predicate)}, up to
+ * {@link #withMaxAttempts(int)} attempts in total. Before each retry the caller waits a random time between zero and
+ * an exponentially growing bound ("full jitter"), so clients that failed at the same moment don't retry in lockstep.
+ * <p/>
+ * Configure the policy before passing it to the builder.
+ */
+public class RetryPolicy {
+
+    /**
+     * The statuses retried by default: 502, 503 and 504. These mean the request did not reach a healthy server.
+     */
+    public static final Predicate<Integer> DEFAULT_RETRYABLE_STATUS = new Predicate<Integer>() {
+        @Override
+        public boolean apply(Integer status) {
+            return status == HttpResponseCodes.SC_BAD_GATEWAY
+                   || status == HttpResponseCodes.SC_SERVICE_UNAVAILABLE
+                   || status == HttpResponseCodes.SC_GATEWAY_TIMEOUT;
+        }
+    };
+
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+    private static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 50;
+    private static final long DEFAULT_MAX_BACKOFF_MILLIS = 1000;
+
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private long initialBackoffNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_INITIAL_BACKOFF_MILLIS);
+    private long maxBackoffNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_BACKOFF_MILLIS);
+    private Predicate<Integer> retryableStatus = DEFAULT_RETRYABLE_STATUS;
+
+    /**
+     * The largest number of times a call is sent, including the first attempt. Defaults to 3.
+     * @param maxAttempts the number of attempts
+     * @return this
+     */
+    public RetryPolicy withMaxAttempts(int maxAttempts) {
+        checkArgument(maxAttempts > 0, "maxAttempts must be positive");
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    /**
+     * The bound of the wait before the first retry, which doubles for every further retry up to the maximum.
+     * Defaults to 50 and 1000 milliseconds.
+     * @param initialBackoffMillis the bound before the first retry in milliseconds
+     * @param maxBackoffMillis the largest bound in milliseconds
+     * @return this
+     */
+    public RetryPolicy withBackoff(long initialBackoffMillis, long maxBackoffMillis) {
+        checkArgument(initialBackoffMillis >= 0 && initialBackoffMillis <= maxBackoffMillis,
+                      "initialBackoffMillis must be between 0 and maxBackoffMillis");
+        this.initialBackoffNanos = TimeUnit.MILLISECONDS.toNanos(initialBackoffMillis);
+        this.maxBackoffNanos = TimeUnit.MILLISECONDS.toNanos(maxBackoffMillis);
+        return this;
+    }
+
+    /**
+     * Which response statuses are retried. Defaults to {@link #DEFAULT_RETRYABLE_STATUS}.
+     * @param retryableStatus the Predicate to use
+     * @return this
+     */
+    public RetryPolicy withRetryableStatus(Predicate<Integer> retryableStatus) {
+        this.retryableStatus = checkNotNull(retryableStatus);
+        return this;
+    }
+
+    public int getMaxAttempts() {
+        return this.maxAttempts;
+    }
+
+    /**
+     * Whether a response with the given status should be retried.
+     * @param status the response status
+     * @return true if the status is retryable
+     */
+    public boolean isRetryable(int status) {
+        return this.retryableStatus.apply(status);
+    }
+
+    /**
+     * Pick the wait before the given retry.
+     * @param retry the number of the retry, starting at 1
+     * @return the wait in nanoseconds
+     */
+    public long backoffNanos(int retry) {
+        long bound = this.initialBackoffNanos;
+        for (int i = 1; i < retry && bound < this.maxBackoffNanos; i++) {
+            bound *= 2;
+        }
+        bound = Math.min(bound, this.maxBackoffNanos);
+        return bound == 0 ? 0 : ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.core;
+
+import java.net.URI;
+import java.util.Collection;
+
+/**
+ * A UriProvider that can pick the base URI by a routing key. Calls of resource methods annotated with
+ * {@link com.opower.rest.client.generator.annotations.RoutingKey} pass the value of the named parameter to
+ * {@link #getUri(Object)}, all other calls use {@link #getUri()}. Further attempts of a call ask
+ * {@link #getUri(Object, Collection)} for a different base URI.
+ */
+public interface RoutingUriProvider extends UriProvider {
+
+    /**
+     * Build the base URI for a call with the given routing key. Calls with equal keys should get the same base URI as
+     * long as the set of backends doesn't change.
+     * @param routingKey the value of the routing parameter of the call, may be null
+     * @return the base URI, never null
+     */
+    URI getUri(Object routingKey);
+
+    /**
+     * Build the base URI for another attempt of a call, such as a hedge or a retry, avoiding the base URIs the earlier
+     * attempts were sent to as long as there is another one to pick.
+     * @param routingKey the value of the routing parameter of the call, may be null
+     * @param tried the base URIs of the earlier attempts
+     * @return the base URI, never null
+     */
+    URI getUri(Object routingKey, Collection<URI> tried);
+}
@@ -25,7 +25,9 @@ import java.io.InputStream;
  * stream.
  *
  * @author ul8b
+ * @deprecated use {@link ChunkedBufferInputStream}, which does not copy the buffer as it grows
  */
+@Deprecated
 public class SelfExpandingBufferredInputStream extends BufferedInputStream {
     private static int defaultBufferSize = 8192;
 
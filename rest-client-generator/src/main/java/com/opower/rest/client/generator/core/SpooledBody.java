@@ -0,0 +1,159 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.core;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * A request body that was serialized once, ahead of sending it. The body is kept in memory while it fits within the
+ * limit it was spooled with and moves to a temporary file as soon as it outgrows it, so it is never held in memory
+ * beyond that limit and never serialized a second time. Its length is known either way. Close it once the request has
+ * been sent to delete the file.
+ */
+public final class SpooledBody implements Closeable {
+
+    private final byte[] bytes;
+    private final File file;
+    private final long length;
+
+    private SpooledBody(byte[] bytes, File file, long length) {
+        this.bytes = bytes;
+        this.file = file;
+        this.length = length;
+    }
+
+    /**
+     * Whether the body fit within the limit and is held in memory.
+     * @return true if {@link #getBytes()} holds the body, false if {@link #getFile()} does
+     */
+    public boolean isInMemory() {
+        return this.bytes != null;
+    }
+
+    /**
+     * The body, if it is held in memory.
+     * @return the serialized body
+     */
+    public byte[] getBytes() {
+        checkState(isInMemory(), "the body was spooled to %s", this.file);
+        return this.bytes;
+    }
+
+    /**
+     * The temporary file holding the body, if it did not fit in memory.
+     * @return the file
+     */
+    public File getFile() {
+        checkState(!isInMemory(), "the body is held in memory");
+        return this.file;
+    }
+
+    /**
+     * The length of the serialized body.
+     * @return the length in bytes
+     */
+    public long getLength() {
+        return this.length;
+    }
+
+    /**
+     * Deletes the temporary file, if there is one.
+     */
+    @Override
+    public void close() {
+        if (this.file != null) {
+            this.file.delete();
+        }
+    }
+
+    /**
+     * The stream a MessageBodyWriter serializes the body into. It writes to memory up to the limit and switches to a
+     * temporary file, copying what it has so far, on the first write that would pass it.
+     */
+    static final class SpoolOutputStream extends OutputStream {
+        private static final int MIN_INITIAL_SIZE = 512;
+        private static final int FILE_BUFFER_SIZE = 8192;
+
+        private final int limit;
+        private ByteArrayOutputStream memory;
+        private File file;
+        private OutputStream fileStream;
+        private long length;
+
+        SpoolOutputStream(long expectedSize, int limit) {
+            this.limit = limit;
+            this.memory = new ByteArrayOutputStream(expectedSize > 0 && expectedSize <= limit
+                                                    ? (int) expectedSize : Math.min(MIN_INITIAL_SIZE, limit));
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target(1).write(b);
+            this.length += 1;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target(len).write(b, off, len);
+            this.length += len;
+        }
+
+        private OutputStream target(int len) throws IOException {
+            if (this.memory != null && this.length + len > this.limit) {
+                this.file = File.createTempFile("rest-client-body", ".tmp");
+                this.file.deleteOnExit();
+                this.fileStream = new BufferedOutputStream(new FileOutputStream(this.file), FILE_BUFFER_SIZE);
+                this.memory.writeTo(this.fileStream);
+                this.memory = null;
+            }
+            return this.memory != null ? this.memory : this.fileStream;
+        }
+
+        /**
+         * Finish spooling.
+         * @return the spooled body
+         * @throws IOException if the file could not be written
+         */
+        SpooledBody finish() throws IOException {
+            if (this.memory != null) {
+                return new SpooledBody(this.memory.toByteArray(), null, this.length);
+            }
+            this.fileStream.close();
+            return new SpooledBody(null, this.file, this.length);
+        }
+
+        /**
+         * Give up on the body after its writer failed, deleting the file if one was started.
+         */
+        void discard() {
+            if (this.fileStream != null) {
+                try {
+                    this.fileStream.close();
+                } catch (IOException e) {
+                    // the file is deleted regardless
+                }
+                this.file.delete();
+            }
+        }
+    }
+}
@@ -15,19 +15,47 @@
 package com.opower.rest.client.generator.core;
 
 
+import com.google.common.base.Objects;
 import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Map;
+
+/**
+ * Invoker for sub-resource locator methods. The MethodInvokers of the sub-resource interface are built once, on the
+ * first call, and shared by every proxy the locator returns. Each call only binds the resolved sub-resource path to a
+ * new proxy instance, or reuses a cached one if ProxyConfig.getSubResourceCacheSize() is greater than 0. Hedged and
+ * batched methods of the sub-resource interface work as they do on a top-level resource.
+ */
+public class SubResourceInvoker implements BindableMethodInvoker {
+
+    /**
+     * Base URI of the shared invokers. They are only ever called through a BoundClientProxy, which passes the
+     * bound URI along with every call.
+     */
+    private static final UriProvider UNBOUND = new UriProvider() {
+        @Override
+        public URI getUri() {
+            throw new IllegalStateException("Sub-resource methods must be invoked through a sub-resource proxy");
+        }
+    };
 
-public class SubResourceInvoker implements MethodInvoker {
     final ProxyConfig config;
     final Class<?> iface;
     final UriProvider baseProvider;
     final String format;
+    private final Cache<SubResourceUriProvider, Object> proxies;
+    private volatile SharedInvokers shared;
 
     public SubResourceInvoker(UriProvider uriProvider, Method method, ProxyConfig config) {
         this.baseProvider = uriProvider;
@@ -49,12 +77,110 @@ public class SubResourceInvoker implements MethodInvoker {
             index++;
         }
         this.format = path;
+        if (config.getSubResourceCacheSize() > 0) {
+            this.proxies = CacheBuilder.newBuilder().maximumSize(config.getSubResourceCacheSize()).build();
+        } else {
+            this.proxies = null;
+        }
     }
 
     @Override
     public Object invoke(Object[] args) {
+        return invoke(this.baseProvider, args);
+    }
+
+    @Override
+    public Object invoke(UriProvider uriProvider, Object[] args) {
         String path = String.format(format, args);
-        return Client.createProxy(iface, new SubResourceUriProvider(path, this.baseProvider), config);
+        SubResourceUriProvider bound = new SubResourceUriProvider(path, uriProvider);
+        if (this.proxies == null) {
+            return createProxy(bound);
+        }
+        Object proxy = this.proxies.getIfPresent(bound);
+        if (proxy == null) {
+            proxy = createProxy(bound);
+            this.proxies.put(bound, proxy);
+        }
+        return proxy;
+    }
+
+    private Object createProxy(UriProvider bound) {
+        SharedInvokers invokers = getSharedInvokers();
+        BoundClientProxy clientProxy = new BoundClientProxy(invokers.methodMap, this.config, bound);
+        clientProxy.setClazz(this.iface);
+        try {
+            return invokers.proxyConstructor.newInstance(clientProxy);
+        } catch (InvocationTargetException e) {
+            throw Throwables.propagate(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private SharedInvokers getSharedInvokers() {
+        SharedInvokers result = this.shared;
+        if (result == null) {
+            synchronized (this) {
+                result = this.shared;
+                if (result == null) {
+                    // built lazily so that locators returning their own interface don't recurse forever
+                    Map<Method, MethodInvoker> methodMap = Client.createInvokers(this.iface, UNBOUND, this.config);
+                    HedgingInvoker.install(this.iface, methodMap);
+                    BatchingInvoker.install(this.iface, methodMap);
+                    result = new SharedInvokers(methodMap, proxyConstructor(this.iface, this.config.getLoader()));
+                    this.shared = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Constructor<?> proxyConstructor(Class<?> iface, ClassLoader loader) {
+        try {
+            return Proxy.getProxyClass(loader, iface).getConstructor(InvocationHandler.class);
+        } catch (NoSuchMethodException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * The MethodInvokers of the sub-resource interface and the constructor of its proxy class.
+     */
+    private static final class SharedInvokers {
+        private final Map<Method, MethodInvoker> methodMap;
+        private final Constructor<?> proxyConstructor;
+
+        private SharedInvokers(Map<Method, MethodInvoker> methodMap, Constructor<?> proxyConstructor) {
+            this.methodMap = methodMap;
+            this.proxyConstructor = proxyConstructor;
+        }
+    }
+
+    /**
+     * ClientProxy that passes the UriProvider it was bound to along with every call to the shared MethodInvokers.
+     */
+    static final class BoundClientProxy extends ClientProxy {
+        private final Map<Method, MethodInvoker> methodMap;
+        private final UriProvider uriProvider;
+
+        BoundClientProxy(Map<Method, MethodInvoker> methodMap, ProxyConfig config, UriProvider uriProvider) {
+            super(methodMap, config);
+            this.methodMap = methodMap;
+            this.uriProvider = uriProvider;
+        }
+
+        UriProvider getUriProvider() {
+            return this.uriProvider;
+        }
+
+        MethodInvoker getInvoker(Method method) {
+            return this.methodMap.get(method);
+        }
+
+        @Override
+        protected Object invoke(MethodInvoker clientInvoker, Object[] args) {
+            return ((BindableMethodInvoker) clientInvoker).invoke(this.uriProvider, args);
+        }
     }
 
     public static class SubResourceUriProvider implements UriProvider {
@@ -80,5 +206,19 @@ public class SubResourceInvoker implements MethodInvoker {
                 throw Throwables.propagate(e);
             }
         }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof SubResourceUriProvider)) {
+                return false;
+            }
+            SubResourceUriProvider other = (SubResourceUriProvider) obj;
+            return this.path.equals(other.path) && this.baseProvider.equals(other.baseProvider);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(this.path, this.baseProvider);
+        }
     }
 }
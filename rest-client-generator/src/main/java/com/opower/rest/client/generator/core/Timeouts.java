@@ -0,0 +1,138 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.core;
+
+import com.google.common.base.Objects;
+import com.opower.rest.client.generator.annotations.Timeout;
+
+import java.lang.reflect.Method;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * The connect, read and total timeouts of a resource method, see {@link Client#timeouts(Timeouts)} and
+ * {@link Timeout}. A value of 0 keeps the timeout the executor's HTTP client was configured with.
+ * <p/>
+ * Instances are immutable, every with* method returns a copy.
+ */
+public final class Timeouts {
+
+    /**
+     * No timeouts of its own, the executor's configuration applies.
+     */
+    public static final Timeouts NONE = new Timeouts(0, 0, 0);
+
+    private final long connectMillis;
+    private final long readMillis;
+    private final long totalMillis;
+
+    private Timeouts(long connectMillis, long readMillis, long totalMillis) {
+        checkArgument(connectMillis >= 0 && readMillis >= 0 && totalMillis >= 0, "timeouts must not be negative");
+        this.connectMillis = connectMillis;
+        this.readMillis = readMillis;
+        this.totalMillis = totalMillis;
+    }
+
+    /**
+     * The timeouts given by a {@link Timeout} annotation.
+     * @param timeout the annotation
+     * @return the timeouts
+     */
+    public static Timeouts from(Timeout timeout) {
+        return new Timeouts(timeout.connectMillis(), timeout.readMillis(), timeout.totalMillis());
+    }
+
+    /**
+     * The timeouts of a resource method: those of its {@link Timeout} annotation, else the given client-wide
+     * timeouts, else those of the {@link Timeout} annotation on the resource interface.
+     * @param method the resource method
+     * @param clientTimeouts the timeouts configured for all methods of the client, may be null
+     * @return the timeouts, {@link #NONE} if none are configured
+     */
+    public static Timeouts forMethod(Method method, Timeouts clientTimeouts) {
+        Timeout timeout = method.getAnnotation(Timeout.class);
+        if (timeout != null) {
+            return from(timeout);
+        }
+        if (clientTimeouts != null) {
+            return clientTimeouts;
+        }
+        timeout = method.getDeclaringClass().getAnnotation(Timeout.class);
+        return timeout == null ? NONE : from(timeout);
+    }
+
+    /**
+     * How long to wait for a connection to be established.
+     * @param connectMillis the connect timeout in milliseconds
+     * @return a copy with the given connect timeout
+     */
+    public Timeouts withConnectMillis(long connectMillis) {
+        return new Timeouts(connectMillis, this.readMillis, this.totalMillis);
+    }
+
+    /**
+     * How long to wait for the next bytes of the response once connected.
+     * @param readMillis the read timeout in milliseconds
+     * @return a copy with the given read timeout
+     */
+    public Timeouts withReadMillis(long readMillis) {
+        return new Timeouts(this.connectMillis, readMillis, this.totalMillis);
+    }
+
+    /**
+     * How long the whole call may take, from sending the request until the response has been read.
+     * @param totalMillis the total timeout in milliseconds
+     * @return a copy with the given total timeout
+     */
+    public Timeouts withTotalMillis(long totalMillis) {
+        return new Timeouts(this.connectMillis, this.readMillis, totalMillis);
+    }
+
+    public long getConnectMillis() {
+        return this.connectMillis;
+    }
+
+    public long getReadMillis() {
+        return this.readMillis;
+    }
+
+    public long getTotalMillis() {
+        return this.totalMillis;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Timeouts)) {
+            return false;
+        }
+        Timeouts other = (Timeouts) o;
+        return this.connectMillis == other.connectMillis && this.readMillis == other.readMillis
+               && this.totalMillis == other.totalMillis;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(this.connectMillis, this.readMillis, this.totalMillis);
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("connectMillis", this.connectMillis).add("readMillis", this.readMillis)
+                      .add("totalMillis", this.totalMillis).toString();
+    }
+}
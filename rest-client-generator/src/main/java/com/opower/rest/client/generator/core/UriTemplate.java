@@ -0,0 +1,267 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.core;
+
+import com.opower.rest.client.generator.util.Encode;
+import com.opower.rest.client.generator.util.PathHelper;
+
+import javax.ws.rs.Path;
+import javax.ws.rs.core.MultivaluedMap;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Matcher;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The path template of a single resource method, compiled once when the client proxy is built. The @Path values of
+ * the resource interface and the method are encoded and split into literal chunks and path parameter slots up front
+ * so that rendering a request URI is a matter of appending strings into a reused buffer. This produces the same URIs
+ * as the {@link com.opower.rest.client.generator.specimpl.UriBuilderImpl} based code path in
+ * {@link ClientRequest#getUri()}, without any regular expressions or builder copies per call.
+ */
+public final class UriTemplate {
+
+    private static final int MAX_RETAINED_BUFFER = 8192;
+    private static final int BASE_CACHE_SIZE = 16;
+
+    private static final ThreadLocal<StringBuilder> BUFFER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(256);
+        }
+    };
+
+    private final String template;
+    private final boolean annotated;
+    private final String[] literals;
+    private final String[] paramNames;
+    private final AtomicReferenceArray<Base> bases = new AtomicReferenceArray<>(BASE_CACHE_SIZE);
+
+    private UriTemplate(String template, boolean annotated) {
+        this.template = template;
+        this.annotated = annotated;
+
+        List<String> literalList = new ArrayList<>();
+        List<String> nameList = new ArrayList<>();
+        Matcher matcher = PathHelper.URI_PARAM_PATTERN.matcher(PathHelper.replaceEnclosedCurlyBraces(template));
+        int last = 0;
+        while (matcher.find()) {
+            literalList.add(template.substring(last, matcher.start()));
+            nameList.add(matcher.group(1));
+            last = matcher.end();
+        }
+        literalList.add(template.substring(last));
+        this.literals = literalList.toArray(new String[literalList.size()]);
+        this.paramNames = nameList.toArray(new String[nameList.size()]);
+    }
+
+    /**
+     * Compile the template for the given resource method from the @Path annotations on the method and its
+     * declaring interface.
+     * @param declaring the resource interface
+     * @param method the resource method
+     * @return the compiled template
+     */
+    public static UriTemplate compile(Class<?> declaring, Method method) {
+        Path classPath = declaring.getAnnotation(Path.class);
+        Path methodPath = method.getAnnotation(Path.class);
+        return compile(classPath == null ? null : classPath.value(), methodPath == null ? null : methodPath.value());
+    }
+
+    /**
+     * Compile a template from the raw @Path values of a resource interface and one of its methods. This is used by
+     * clients generated at compile time, which already know the annotation values.
+     * @param classPath the @Path value of the resource interface or null if it has none
+     * @param methodPath the @Path value of the resource method or null if it has none
+     * @return the compiled template
+     */
+    public static UriTemplate compile(String classPath, String methodPath) {
+        String path = "";
+        if (classPath != null) {
+            path = join(path, Encode.encodePath(classPath));
+        }
+        if (methodPath != null) {
+            path = join(path, Encode.encodePath(methodPath));
+        }
+        return new UriTemplate(path, classPath != null || methodPath != null);
+    }
+
+    /**
+     * The encoded path template, still containing its {param} expressions.
+     * @return the template
+     */
+    public String getTemplate() {
+        return this.template;
+    }
+
+    /**
+     * Names of the path parameters in the order they appear in the template.
+     * @return the parameter names
+     */
+    public String[] getParamNames() {
+        return this.paramNames.clone();
+    }
+
+    /**
+     * Render the final request URI.
+     * @param baseUri the base URI from the UriProvider
+     * @param pathParameters the path parameters, values are not yet encoded
+     * @param matrixParameters the matrix parameters, may be null
+     * @param queryParameters the query parameters, may be null
+     * @return the complete URI as a String
+     */
+    public String render(URI baseUri,
+                         MultivaluedMap<String, String> pathParameters,
+                         MultivaluedMap<String, String> matrixParameters,
+                         MultivaluedMap<String, String> queryParameters) {
+        Base base = resolve(baseUri);
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+
+        sb.append(base.authority);
+        int pathStart = sb.length();
+        sb.append(base.head);
+        for (int i = 0; i < this.paramNames.length; i++) {
+            String value = pathParameters == null ? null : pathParameters.getFirst(this.paramNames[i]);
+            if (value == null) {
+                throw new IllegalArgumentException("You did not supply enough values to fill path parameters");
+            }
+            Encode.encodePathAsIs(value, sb);
+            sb.append(this.literals[i + 1]);
+        }
+
+        boolean hasPath = base.hasPath;
+        if (matrixParameters != null) {
+            for (Map.Entry<String, List<String>> entry : matrixParameters.entrySet()) {
+                for (String value : entry.getValue()) {
+                    sb.append(';').append(Encode.encodeMatrixParam(entry.getKey()))
+                      .append('=').append(Encode.encodeMatrixParam(value));
+                    hasPath = true;
+                }
+            }
+        }
+        if (hasPath && base.hasAuthority && (sb.length() == pathStart || sb.charAt(pathStart) != '/')) {
+            sb.insert(pathStart, '/');
+        }
+
+        boolean firstQuery = true;
+        if (base.query != null) {
+            sb.append('?').append(base.query);
+            firstQuery = false;
+        }
+        if (queryParameters != null) {
+            for (Map.Entry<String, List<String>> entry : queryParameters.entrySet()) {
+                for (String value : entry.getValue()) {
+                    sb.append(firstQuery ? '?' : '&');
+                    firstQuery = false;
+                    Encode.encodeQueryParamAsIs(entry.getKey(), sb).append('=');
+                    Encode.encodeQueryParamAsIs(value, sb);
+                }
+            }
+        }
+        if (base.fragment != null) {
+            sb.append('#').append(base.fragment);
+        }
+
+        String rendered = sb.toString();
+        if (sb.capacity() > MAX_RETAINED_BUFFER) {
+            BUFFER.remove();
+        }
+        return rendered;
+    }
+
+    /**
+     * Whether the given base URI can be handled by this template. Opaque URIs have no path to append to and are
+     * left to the UriBuilderImpl code path.
+     * @param baseUri the base URI
+     * @return true if {@link #render} supports the URI
+     */
+    public static boolean supports(URI baseUri) {
+        return baseUri != null && !baseUri.isOpaque();
+    }
+
+    /**
+     * Look up the rendered parts of the base URI in a small cache indexed by the hash of the URI, so that a UriProvider
+     * rotating over several hosts still finds each of its bases there.
+     */
+    private Base resolve(URI baseUri) {
+        checkNotNull(baseUri);
+        int slot = baseUri.hashCode() & (BASE_CACHE_SIZE - 1);
+        Base base = this.bases.get(slot);
+        if (base == null || (base.uri != baseUri && !base.uri.equals(baseUri))) {
+            base = new Base(baseUri);
+            this.bases.set(slot, base);
+        }
+        return base;
+    }
+
+    /**
+     * Joins path segments following the same rules as UriBuilderImpl.paths().
+     */
+    private static String join(String path, String segment) {
+        if (segment.isEmpty()) {
+            return path;
+        }
+        if (path.endsWith("/")) {
+            return segment.startsWith("/") ? path + segment.substring(1) : path + segment;
+        }
+        if (path.isEmpty()) {
+            return segment;
+        }
+        return segment.startsWith("/") ? path + segment : path + "/" + segment;
+    }
+
+    /**
+     * The parts of a base URI that surround the template, rendered once per distinct URI instance.
+     */
+    private final class Base {
+        private final URI uri;
+        private final String authority;
+        private final String head;
+        private final String query;
+        private final String fragment;
+        private final boolean hasAuthority;
+        private final boolean hasPath;
+
+        private Base(URI uri) {
+            this.uri = uri;
+            StringBuilder sb = new StringBuilder();
+            if (uri.getScheme() != null) {
+                sb.append(uri.getScheme()).append(':');
+            }
+            this.hasAuthority = uri.getUserInfo() != null || uri.getHost() != null || uri.getPort() != -1;
+            if (this.hasAuthority) {
+                sb.append("//");
+                if (uri.getUserInfo() != null) sb.append(uri.getRawUserInfo()).append('@');
+                if (uri.getHost() != null) sb.append(uri.getHost());
+                if (uri.getPort() != -1) sb.append(':').append(uri.getPort());
+            }
+            this.authority = sb.toString();
+
+            String basePath = uri.getPath() != null && !uri.getPath().isEmpty() ? uri.getRawPath() : null;
+            this.hasPath = basePath != null || UriTemplate.this.annotated;
+            String joined = join(basePath == null ? "" : basePath, UriTemplate.this.template);
+            int tail = UriTemplate.this.template.length() - UriTemplate.this.literals[0].length();
+            this.head = joined.substring(0, joined.length() - tail);
+            this.query = uri.getQuery() != null ? uri.getRawQuery() : null;
+            this.fragment = uri.getFragment() != null ? uri.getRawFragment() : null;
+        }
+    }
+}
@@ -17,14 +17,25 @@ package com.opower.rest.client.generator.executors;
 import com.opower.rest.client.generator.core.ClientExecutor;
 import com.opower.rest.client.generator.core.ClientRequest;
 import com.opower.rest.client.generator.core.ClientRequestFilter;
+import com.opower.rest.client.generator.core.Deadline;
+import com.opower.rest.client.generator.core.Timeouts;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 public abstract class AbstractClientExecutor implements ClientExecutor {
 
+    /**
+     * Request bodies up to this many bytes are buffered and sent with a Content-Length by default.
+     */
+    public static final int DEFAULT_BUFFERED_BODY_LIMIT = 64 * 1024;
+
     private final List<ClientRequestFilter> requestFilters;
+    private volatile int bufferedBodyLimit = DEFAULT_BUFFERED_BODY_LIMIT;
 
 
     protected AbstractClientExecutor(List<ClientRequestFilter> requestFilters) {
@@ -38,4 +49,60 @@ public abstract class AbstractClientExecutor implements ClientExecutor {
         }
     }
 
+    /**
+     * The largest request body, in bytes, that is serialized into memory and sent with a Content-Length. Larger
+     * bodies are written straight to the connection using chunked transfer encoding, or spooled to a temporary file by
+     * executors that cannot do that, see {@link ClientRequest#spoolRequestBody}.
+     * @return the limit in bytes
+     */
+    public int getBufferedBodyLimit() {
+        return this.bufferedBodyLimit;
+    }
+
+    /**
+     * Set the largest request body, in bytes, that is buffered before it is sent. Use 0 to stream every body and
+     * Integer.MAX_VALUE to always buffer.
+     * @param bufferedBodyLimit the limit in bytes
+     */
+    public void setBufferedBodyLimit(int bufferedBodyLimit) {
+        checkArgument(bufferedBodyLimit >= 0, "bufferedBodyLimit must not be negative");
+        this.bufferedBodyLimit = bufferedBodyLimit;
+    }
+
+    /**
+     * The timeouts to send the request with: its own {@link ClientRequest#getTimeouts()}, with the total timeout
+     * shortened to the time left until the request's {@link Deadline}.
+     * @param request the request about to be sent
+     * @return the timeouts to apply to the connection
+     * @throws TimeoutException if the deadline of the request has passed
+     */
+    protected Timeouts prepareTimeouts(ClientRequest request) throws TimeoutException {
+        Timeouts timeouts = request.getTimeouts();
+        Deadline deadline = request.getDeadline();
+        if (deadline == null) {
+            return timeouts;
+        }
+        if (deadline.isExpired()) {
+            throw new TimeoutException("The deadline of the request has passed");
+        }
+        long remainingMillis = remainingMillis(deadline);
+        return timeouts.getTotalMillis() == 0 || remainingMillis < timeouts.getTotalMillis()
+               ? timeouts.withTotalMillis(remainingMillis) : timeouts;
+    }
+
+    /**
+     * The value of the {@link Deadline#HEADER} header to send the request with: the time left until its deadline. It
+     * goes on the outgoing HTTP request only, the ClientRequest may be sent again, by a retry or a hedge, or be used as
+     * a coalescing key, and must not carry a stale value.
+     * @param request the request about to be sent
+     * @return the header value or null if the request has no deadline
+     */
+    protected String deadlineHeader(ClientRequest request) {
+        Deadline deadline = request.getDeadline();
+        return deadline == null ? null : String.valueOf(remainingMillis(deadline));
+    }
+
+    private static long remainingMillis(Deadline deadline) {
+        return Math.max(1, deadline.remaining(TimeUnit.MILLISECONDS));
+    }
 }
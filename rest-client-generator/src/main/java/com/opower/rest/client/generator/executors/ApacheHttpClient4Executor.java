@@ -15,22 +15,35 @@
 package com.opower.rest.client.generator.executors;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.opower.rest.client.generator.core.BaseClientResponse;
+import com.opower.rest.client.generator.core.ChunkedBufferInputStream;
 import com.opower.rest.client.generator.core.ClientRequest;
 import com.opower.rest.client.generator.core.ClientRequestFilter;
 import com.opower.rest.client.generator.core.ClientResponse;
-import com.opower.rest.client.generator.core.SelfExpandingBufferredInputStream;
+import com.opower.rest.client.generator.core.Deadline;
+import com.opower.rest.client.generator.core.SpooledBody;
+import com.opower.rest.client.generator.core.Timeouts;
 import com.opower.rest.client.generator.util.CaseInsensitiveMap;
 
-import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import javax.ws.rs.core.MultivaluedMap;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.HttpClient;
@@ -40,11 +53,11 @@ import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.params.HttpClientParams;
 import org.apache.http.conn.ClientConnectionManager;
-import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.AbstractHttpEntity;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.impl.conn.PoolingClientConnectionManager;
-import org.apache.http.message.BasicHeader;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.protocol.HttpContext;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -56,6 +69,8 @@ import static com.google.common.base.Preconditions.checkNotNull;
  *
  */
 public class ApacheHttpClient4Executor extends AbstractClientExecutor {
+    private static final ScheduledThreadPoolExecutor TIMER = createTimer();
+
     protected final HttpClient httpClient;
     protected boolean createdHttpClient;
     protected HttpContext httpContext;
@@ -101,17 +116,58 @@ public class ApacheHttpClient4Executor extends AbstractClientExecutor {
     }
 
 
+    /**
+     * Sends the request with the connect and read timeouts of the request, see {@link ClientRequest#getTimeouts()}. A
+     * total timeout aborts the connection when it expires, unless the response has been released by then.
+     * @param request the request to send
+     * @return the response
+     * @throws Exception if the request could not be sent, a SocketTimeoutException if it took longer than the total
+     * timeout or a TimeoutException if its deadline passed before it was sent
+     */
     @Override
     @SuppressWarnings("unchecked")
     public ClientResponse execute(ClientRequest request) throws Exception {
+        Timeouts timeouts = prepareTimeouts(request);
         String uri = request.getUri();
         final HttpRequestBase httpMethod = createHttpMethod(uri, request.getHttpMethod());
         loadHttpMethod(request, httpMethod);
+        String deadline = deadlineHeader(request);
+        if (deadline != null) {
+            httpMethod.setHeader(Deadline.HEADER, deadline);
+        }
+        if (timeouts.getConnectMillis() > 0) {
+            HttpConnectionParams.setConnectionTimeout(httpMethod.getParams(), Ints.saturatedCast(timeouts.getConnectMillis()));
+        }
+        if (timeouts.getReadMillis() > 0) {
+            HttpConnectionParams.setSoTimeout(httpMethod.getParams(), Ints.saturatedCast(timeouts.getReadMillis()));
+        }
 
-        final HttpResponse res = this.httpClient.execute(httpMethod, this.httpContext);
+        TotalTimeout totalTimeout = timeouts.getTotalMillis() > 0 ? new TotalTimeout(httpMethod, timeouts.getTotalMillis()) : null;
+        final HttpResponse res;
+        try {
+            res = this.httpClient.execute(httpMethod, this.httpContext);
+        } catch (IOException e) {
+            if (totalTimeout != null) {
+                totalTimeout.cancel();
+                if (totalTimeout.expired) {
+                    SocketTimeoutException timeout = new SocketTimeoutException(
+                            "The request was aborted after " + timeouts.getTotalMillis() + " ms");
+                    timeout.initCause(e);
+                    throw timeout;
+                }
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            if (totalTimeout != null) {
+                totalTimeout.cancel();
+            }
+            throw e;
+        } finally {
+            releaseSpooledBody(httpMethod);
+        }
 
-        BaseClientResponse response = new BaseClientResponse(new SimpleBaseClientResponseStreamFactory(res), this,
-                                                             request.getErrorStatusCriteria());
+        BaseClientResponse response = new BaseClientResponse(new SimpleBaseClientResponseStreamFactory(res, totalTimeout),
+                                                             this, request.getErrorStatusCriteria());
 
         response.setStatus(res.getStatusLine().getStatusCode());
         response.setHeaders(extractHeaders(res));
@@ -163,15 +219,14 @@ public class ApacheHttpClient4Executor extends AbstractClientExecutor {
         } else if (request.getBody() != null) {
             if (httpMethod instanceof HttpGet) throw new RuntimeException("A GET request cannot have a body.");
 
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
             try {
-                request.writeRequestBody(request.getHeadersAsObjects(), baos);
-                ByteArrayEntity entity = new ByteArrayEntity(baos.toByteArray()) {
-                    @Override
-                    public Header getContentType() {
-                        return new BasicHeader("Content-Type", request.getBodyContentType().toString());
-                    }
-                };
+                HttpEntity entity;
+                if (request.isLargeRequestBody(getBufferedBodyLimit())) {
+                    entity = new StreamingRequestEntity(request);
+                } else {
+                    entity = new SpooledEntity(request.spoolRequestBody(request.getHeadersAsObjects(), getBufferedBodyLimit()),
+                                               request.getBodyContentType().toString());
+                }
                 HttpPost post = (HttpPost) httpMethod;
                 commitHeaders(request, httpMethod);
                 post.setEntity(entity);
@@ -217,12 +272,56 @@ public class ApacheHttpClient4Executor extends AbstractClientExecutor {
     }//CHECKSTYLE:ON
 
 
+    private static void releaseSpooledBody(HttpRequestBase httpMethod) {
+        if (httpMethod instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) httpMethod).getEntity();
+            if (entity instanceof SpooledEntity) {
+                ((SpooledEntity) entity).body.close();
+            }
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor createTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("rest-client-timeout-timer")
+                .build());
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    /**
+     * Aborts the request when the total timeout expires.
+     */
+    private static final class TotalTimeout implements Runnable {
+        private final HttpRequestBase httpMethod;
+        private final ScheduledFuture<?> future;
+        private volatile boolean expired;
+
+        private TotalTimeout(HttpRequestBase httpMethod, long totalMillis) {
+            this.httpMethod = httpMethod;
+            this.future = TIMER.schedule(this, totalMillis, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void run() {
+            this.expired = true;
+            this.httpMethod.abort();
+        }
+
+        private void cancel() {
+            this.future.cancel(false);
+        }
+    }
+
     private class SimpleBaseClientResponseStreamFactory implements BaseClientResponse.BaseClientResponseStreamFactory {
         private final HttpResponse res;
+        private final TotalTimeout totalTimeout;
         private InputStream stream;
 
-        private SimpleBaseClientResponseStreamFactory(HttpResponse res) {
+        private SimpleBaseClientResponseStreamFactory(HttpResponse res, TotalTimeout totalTimeout) {
             this.res = res;
+            this.totalTimeout = totalTimeout;
         }
 
 
@@ -230,11 +329,14 @@ public class ApacheHttpClient4Executor extends AbstractClientExecutor {
             if (this.stream == null) {
                 HttpEntity entity = this.res.getEntity();
                 if (entity == null) { return null; }
-                this.stream = new SelfExpandingBufferredInputStream(entity.getContent());
+                this.stream = new ChunkedBufferInputStream(entity.getContent());
             }
             return this.stream;
         }
         public void performReleaseConnection() {
+            if (this.totalTimeout != null) {
+                this.totalTimeout.cancel();
+            }
             // Apache Client 4 is stupid,  You have to get the InputStream and close it if there is an entity
             // otherwise the connection is never released.  There is, of course, no close() method on response
             // to make this easier.
@@ -249,4 +351,47 @@ public class ApacheHttpClient4Executor extends AbstractClientExecutor {
         }
     }
 
+
+    /**
+     * Repeatable entity for a body spooled by {@link ClientRequest#spoolRequestBody}, sent with a Content-Length.
+     */
+    private static final class SpooledEntity extends AbstractHttpEntity {
+        private final SpooledBody body;
+
+        private SpooledEntity(SpooledBody body, String contentType) {
+            this.body = body;
+            setContentType(contentType);
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return true;
+        }
+
+        @Override
+        public long getContentLength() {
+            return this.body.getLength();
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            return this.body.isInMemory() ? new ByteArrayInputStream(this.body.getBytes())
+                                          : new FileInputStream(this.body.getFile());
+        }
+
+        @Override
+        public void writeTo(OutputStream outstream) throws IOException {
+            if (this.body.isInMemory()) {
+                outstream.write(this.body.getBytes());
+            } else {
+                Files.copy(this.body.getFile(), outstream);
+            }
+            outstream.flush();
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return false;
+        }
+    }
 }
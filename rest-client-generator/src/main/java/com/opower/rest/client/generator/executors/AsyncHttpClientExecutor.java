@@ -17,26 +17,38 @@ package com.opower.rest.client.generator.executors;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.io.Closeables;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.ning.http.client.AsyncCompletionHandler;
 import com.ning.http.client.AsyncHttpClient;
 import com.ning.http.client.AsyncHttpClientConfig;
 import com.ning.http.client.FluentCaseInsensitiveStringsMap;
+import com.ning.http.client.PerRequestConfig;
+import com.ning.http.client.Request;
 import com.ning.http.client.RequestBuilder;
 import com.ning.http.client.Response;
+import com.ning.http.client.generators.FileBodyGenerator;
+import com.opower.rest.client.generator.core.AsyncClientExecutor;
 import com.opower.rest.client.generator.core.BaseClientResponse;
+import com.opower.rest.client.generator.core.ChunkedBufferInputStream;
 import com.opower.rest.client.generator.core.ClientRequest;
 import com.opower.rest.client.generator.core.ClientRequestFilter;
 import com.opower.rest.client.generator.core.ClientResponse;
-import com.opower.rest.client.generator.core.SelfExpandingBufferredInputStream;
+import com.opower.rest.client.generator.core.Deadline;
+import com.opower.rest.client.generator.core.SpooledBody;
+import com.opower.rest.client.generator.core.Timeouts;
 import com.opower.rest.client.generator.util.CaseInsensitiveMap;
 
 import javax.ws.rs.core.MultivaluedMap;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
 
-public class AsyncHttpClientExecutor extends AbstractClientExecutor {
+public class AsyncHttpClientExecutor extends AbstractClientExecutor implements AsyncClientExecutor {
 
     private final AsyncHttpClient httpClient;
 
@@ -59,13 +71,85 @@ public class AsyncHttpClientExecutor extends AbstractClientExecutor {
 
     @Override
     public ClientResponse execute(ClientRequest request) throws Exception {
+        Request httpRequest = buildRequest(request);
+        try {
+            Response rawResponse = this.httpClient.executeRequest(httpRequest).get();
+            return createResponse(request, rawResponse);
+        } finally {
+            releaseSpooledBody(httpRequest);
+        }
+    }
+
+    /**
+     * Sends the request through the AsyncHttpClient completion handler. No thread waits for the response; the
+     * returned future is completed by the AsyncHttpClient I/O thread that received it, so listeners that run on the
+     * completing thread must not block. Client proxies read the entity of such responses on a separate pool.
+     * @param request the request to send
+     * @return the future response
+     * @throws Exception if the request could not be built or sent
+     */
+    @Override
+    public ListenableFuture<ClientResponse> executeAsync(final ClientRequest request) throws Exception {
+        final SettableFuture<ClientResponse> result = SettableFuture.create();
+        final Request httpRequest = buildRequest(request);
+        final Future<Response> pending;
+        try {
+            pending = this.httpClient.executeRequest(httpRequest,
+                    new AsyncCompletionHandler<Response>() {
+                        @Override
+                        public Response onCompleted(Response rawResponse) throws Exception {
+                            try {
+                                result.set(createResponse(request, rawResponse));
+                            } catch (RuntimeException e) {
+                                result.setException(e);
+                            }
+                            return rawResponse;
+                        }
+
+                        @Override
+                        public void onThrowable(Throwable t) {
+                            result.setException(t);
+                        }
+                    });
+        } catch (IOException | RuntimeException e) {
+            releaseSpooledBody(httpRequest);
+            throw e;
+        }
+        result.addListener(new Runnable() {
+            @Override
+            public void run() {
+                if (result.isCancelled()) {
+                    pending.cancel(true);
+                }
+                releaseSpooledBody(httpRequest);
+            }
+        }, MoreExecutors.sameThreadExecutor());
+        return result;
+    }
+
+    /**
+     * Build the AsyncHttpClient request. The total timeout of the request, see {@link ClientRequest#getTimeouts()}, is
+     * applied as the AsyncHttpClient request timeout, which closes the connection when it expires. AsyncHttpClient has
+     * no per-request connect or read timeouts, those of the AsyncHttpClientConfig apply.
+     */
+    private Request buildRequest(ClientRequest request) throws Exception {
+        Timeouts timeouts = prepareTimeouts(request);
         RequestBuilder requestBuilder = new RequestBuilder(request.getHttpMethod()).setUrl(request.getUri());
         requestBuilder.setFollowRedirects(request.followRedirects());
+        if (timeouts.getTotalMillis() > 0) {
+            PerRequestConfig perRequestConfig = new PerRequestConfig();
+            perRequestConfig.setRequestTimeoutInMs(Ints.saturatedCast(timeouts.getTotalMillis()));
+            requestBuilder.setPerRequestConfig(perRequestConfig);
+        }
         if(request.getBody() != null && !request.getFormParameters().isEmpty()) {
             throw new RuntimeException("You cannot send both form parameters and an entity body");
         }
 
         commitHeaders(request, requestBuilder);
+        String deadline = deadlineHeader(request);
+        if (deadline != null) {
+            requestBuilder.setHeader(Deadline.HEADER, deadline);
+        }
 
         if (!request.getFormParameters().isEmpty()) {
             for (Map.Entry<String, List<String>> formParam : request.getFormParameters().entrySet()) {
@@ -79,14 +163,17 @@ public class AsyncHttpClientExecutor extends AbstractClientExecutor {
                 throw new RuntimeException("A GET request cannot have a body.");
             }
 
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            request.writeRequestBody(request.getHeadersAsObjects(), baos);
-            requestBuilder.setBody(baos.toByteArray());
+            SpooledBody spooled = request.spoolRequestBody(request.getHeadersAsObjects(), getBufferedBodyLimit());
+            if (spooled.isInMemory()) {
+                requestBuilder.setBody(spooled.getBytes());
+            } else {
+                requestBuilder.setBody(new SpooledBodyGenerator(spooled));
+            }
         }
+        return requestBuilder.build();
+    }
 
-
-        Response rawResponse = this.httpClient.executeRequest(requestBuilder.build()).get();
-
+    private BaseClientResponse createResponse(ClientRequest request, Response rawResponse) {
         BaseClientResponse response = new BaseClientResponse(new SimpleBaseClientResponseStreamFactory(rawResponse), this,
                                                              request.getErrorStatusCriteria());
 
@@ -94,7 +181,6 @@ public class AsyncHttpClientExecutor extends AbstractClientExecutor {
         response.setHeaders(extractHeaders(rawResponse));
         response.setProviders(request.getProviders());
         return response;
-
     }
 
     public void commitHeaders(ClientRequest request, RequestBuilder requestBuilder) {
@@ -129,6 +215,12 @@ public class AsyncHttpClientExecutor extends AbstractClientExecutor {
 
     }
 
+    private static void releaseSpooledBody(Request httpRequest) {
+        if (httpRequest.getBodyGenerator() instanceof SpooledBodyGenerator) {
+            ((SpooledBodyGenerator) httpRequest.getBodyGenerator()).body.close();
+        }
+    }
+
     private class SimpleBaseClientResponseStreamFactory implements BaseClientResponse.BaseClientResponseStreamFactory {
         private final Response res;
         private InputStream stream;
@@ -143,7 +235,7 @@ public class AsyncHttpClientExecutor extends AbstractClientExecutor {
                 if(rawStream == null) {
                     return null;
                 }
-                this.stream =  new SelfExpandingBufferredInputStream(rawStream);
+                this.stream =  new ChunkedBufferInputStream(rawStream);
             }
             return this.stream;
         }
@@ -156,4 +248,17 @@ public class AsyncHttpClientExecutor extends AbstractClientExecutor {
             }
         }
     }
+
+    /**
+     * Sends a body that was spooled to a temporary file, so the I/O thread reads it from the file instead of waiting
+     * for a MessageBodyWriter.
+     */
+    private static final class SpooledBodyGenerator extends FileBodyGenerator {
+        private final SpooledBody body;
+
+        private SpooledBodyGenerator(SpooledBody body) {
+            super(body.getFile());
+            this.body = body;
+        }
+    }
 }
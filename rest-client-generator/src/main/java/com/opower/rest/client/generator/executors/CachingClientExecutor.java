@@ -0,0 +1,524 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.executors;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.opower.rest.client.generator.annotations.Cacheable;
+import com.opower.rest.client.generator.core.AsyncClientExecutor;
+import com.opower.rest.client.generator.core.BaseClientResponse;
+import com.opower.rest.client.generator.core.BufferedResponse;
+import com.opower.rest.client.generator.core.ClientExecutor;
+import com.opower.rest.client.generator.core.ClientRequest;
+import com.opower.rest.client.generator.core.ClientResponse;
+import com.opower.rest.client.generator.util.CaseInsensitiveMap;
+import com.opower.rest.client.generator.util.HttpHeaderNames;
+import com.opower.rest.client.generator.util.HttpResponseCodes;
+
+import javax.ws.rs.core.MultivaluedMap;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * ClientExecutor decorator that keeps successful GET responses in a bounded in-memory cache, following the
+ * Cache-Control, Expires, Age, ETag and Last-Modified headers sent by the server. Only methods annotated with
+ * {@link Cacheable}, or declared by an interface annotated with it, are cached.
+ * <p/>
+ * A fresh entry is returned without calling the wrapped executor. A stale entry that has an ETag or Last-Modified
+ * validator is revalidated with If-None-Match and If-Modified-Since, and a 304 response is turned back into a full
+ * response from the cached body. Responses marked no-store or Vary: * are never kept, and no-cache responses are
+ * revalidated on every use. Requests that already carry their own conditional or Cache-Control headers bypass the
+ * cache. A HEAD request is answered from a fresh cached GET response but never stored. Any other request method
+ * invalidates the cached entry for its URI once the server has accepted it.
+ * <p/>
+ * By default this is a shared cache: requests with an Authorization header bypass it and responses marked private
+ * are not kept. A cache that only ever serves a single user can be created with {@code privateCache} set, which
+ * lifts both restrictions.
+ * <p/>
+ * The cache is bounded by the total size of the cached bodies and headers, and the least recently used entries are
+ * evicted first. A body larger than the whole cache is not kept. Entries are keyed by URI and remember the Accept
+ * header and the request headers named by Vary that they were fetched with, so a request asking for a different
+ * representation is a miss.
+ */
+public class CachingClientExecutor implements AsyncClientExecutor {
+
+    /**
+     * The default bound on the size of the cache in bytes.
+     */
+    public static final long DEFAULT_MAX_BYTES = 16 * 1024 * 1024;
+
+    private static final String GET = "GET";
+    private static final String HEAD = "HEAD";
+    private static final String NO_STORE = "no-store";
+    private static final String NO_CACHE = "no-cache";
+    private static final String PRIVATE = "private";
+    private static final String MAX_AGE = "max-age=";
+    private static final String[] HTTP_DATE_PATTERNS = {
+        "EEE, dd MMM yyyy HH:mm:ss zzz",
+        "EEEE, dd-MMM-yy HH:mm:ss zzz",
+        "EEE MMM d HH:mm:ss yyyy"
+    };
+    private static final ThreadLocal<SimpleDateFormat[]> HTTP_DATE_FORMATS = new ThreadLocal<SimpleDateFormat[]>() {
+        @Override
+        protected SimpleDateFormat[] initialValue() {
+            SimpleDateFormat[] formats = new SimpleDateFormat[HTTP_DATE_PATTERNS.length];
+            for (int i = 0; i < formats.length; i++) {
+                formats[i] = new SimpleDateFormat(HTTP_DATE_PATTERNS[i], Locale.US);
+                formats[i].setTimeZone(TimeZone.getTimeZone("GMT"));
+            }
+            return formats;
+        }
+    };
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final ClientExecutor delegate;
+    private final long maxBytes;
+    private final boolean privateCache;
+    private final Cache<String, CachedResponse> cache;
+    private final ConcurrentMap<Method, Boolean> cacheableMethods = new ConcurrentHashMap<>();
+
+    /**
+     * Wrap the given executor with a cache of {@link #DEFAULT_MAX_BYTES}.
+     * @param delegate the executor that sends requests the cache can't answer
+     */
+    public CachingClientExecutor(ClientExecutor delegate) {
+        this(delegate, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Wrap the given executor.
+     * @param delegate the executor that sends requests the cache can't answer
+     * @param maxBytes the bound on the total size of the cached responses
+     */
+    public CachingClientExecutor(ClientExecutor delegate, long maxBytes) {
+        this(delegate, maxBytes, false);
+    }
+
+    /**
+     * Wrap the given executor.
+     * @param delegate the executor that sends requests the cache can't answer
+     * @param maxBytes the bound on the total size of the cached responses
+     * @param privateCache true if the cache only serves a single user, so authenticated requests and private
+     *                     responses may be cached
+     */
+    public CachingClientExecutor(ClientExecutor delegate, long maxBytes, boolean privateCache) {
+        checkArgument(maxBytes > 0, "maxBytes must be positive");
+        this.delegate = checkNotNull(delegate);
+        this.maxBytes = maxBytes;
+        this.privateCache = privateCache;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher(new Weigher<String, CachedResponse>() {
+                    @Override
+                    public int weigh(String uri, CachedResponse response) {
+                        return uri.length() + response.weight;
+                    }
+                })
+                .build();
+    }
+
+    @Override
+    public void processFilters(ClientRequest request) {
+        this.delegate.processFilters(request);
+    }
+
+    @Override
+    public ClientResponse execute(ClientRequest request) throws Exception {
+        String uri = request.getUri();
+        boolean cacheable = isCacheable(request);
+        CachedResponse cached = null;
+        if (cacheable) {
+            cached = lookup(request, uri);
+            if (cached != null && cached.isFresh(currentTimeMillis())) {
+                return cached.toResponse(request, this);
+            }
+            if (HEAD.equals(request.getHttpMethod())) {
+                return this.delegate.execute(request);
+            }
+        }
+        long requestTime = currentTimeMillis();
+        return complete(request, uri, cacheable, cached, requestTime, this.delegate.execute(withValidators(request, cached)));
+    }
+
+    @Override
+    public ListenableFuture<ClientResponse> executeAsync(final ClientRequest request) throws Exception {
+        if (!(this.delegate instanceof AsyncClientExecutor)) {
+            return Futures.immediateFuture(execute(request));
+        }
+        final String uri = request.getUri();
+        final boolean cacheable = isCacheable(request);
+        CachedResponse lookedUp = null;
+        if (cacheable) {
+            lookedUp = lookup(request, uri);
+            if (lookedUp != null && lookedUp.isFresh(currentTimeMillis())) {
+                return Futures.immediateFuture(lookedUp.toResponse(request, this));
+            }
+            if (HEAD.equals(request.getHttpMethod())) {
+                return ((AsyncClientExecutor) this.delegate).executeAsync(request);
+            }
+        }
+        final CachedResponse cached = lookedUp;
+        final long requestTime = currentTimeMillis();
+        ClientRequest sent = withValidators(request, cached);
+        return Futures.transform(((AsyncClientExecutor) this.delegate).executeAsync(sent),
+                                 new AsyncFunction<ClientResponse, ClientResponse>() {
+                                     @Override
+                                     public ListenableFuture<ClientResponse> apply(ClientResponse response)
+                                             throws Exception {
+                                         return Futures.immediateFuture(
+                                                 complete(request, uri, cacheable, cached, requestTime, response));
+                                     }
+                                 });
+    }
+
+    @Override
+    public void close() throws Exception {
+        this.cache.invalidateAll();
+        this.delegate.close();
+    }
+
+    /**
+     * Drop every cached response.
+     */
+    public void invalidateAll() {
+        this.cache.invalidateAll();
+    }
+
+    /**
+     * The number of responses currently cached.
+     * @return the number of cached responses
+     */
+    public long size() {
+        return this.cache.size();
+    }
+
+    /**
+     * The current time, used to decide whether cached responses are still fresh.
+     * @return the current time in milliseconds
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Whether the request may be answered from the cache. Only the responses to GET requests are stored.
+     */
+    private boolean isCacheable(ClientRequest request) {
+        Method method = request.getMethod();
+        String httpMethod = request.getHttpMethod();
+        if (method == null || !(GET.equals(httpMethod) || HEAD.equals(httpMethod))) {
+            return false;
+        }
+        Boolean cacheable = this.cacheableMethods.get(method);
+        if (cacheable == null) {
+            cacheable = method.isAnnotationPresent(Cacheable.class)
+                        || method.getDeclaringClass().isAnnotationPresent(Cacheable.class);
+            this.cacheableMethods.put(method, cacheable);
+        }
+        if (!cacheable) {
+            return false;
+        }
+        MultivaluedMap<String, Object> headers = request.getHeadersAsObjects();
+        return !headers.containsKey(HttpHeaderNames.IF_NONE_MATCH)
+               && !headers.containsKey(HttpHeaderNames.IF_MODIFIED_SINCE)
+               && !headers.containsKey(HttpHeaderNames.CACHE_CONTROL)
+               && (this.privateCache || !headers.containsKey(HttpHeaderNames.AUTHORIZATION));
+    }
+
+    private CachedResponse lookup(ClientRequest request, String uri) {
+        CachedResponse cached = this.cache.getIfPresent(uri);
+        return cached != null && cached.matches(request) ? cached : null;
+    }
+
+    /**
+     * The request to send to revalidate the cached response: a copy of the given request with the validators of the
+     * cached response, so the request of the caller is left as it was.
+     */
+    private static ClientRequest withValidators(ClientRequest request, CachedResponse cached) {
+        if (cached == null || (cached.etag == null && cached.lastModified == null)) {
+            return request;
+        }
+        ClientRequest conditional = request.copy();
+        if (cached.etag != null) {
+            conditional.header(HttpHeaderNames.IF_NONE_MATCH, cached.etag);
+        }
+        if (cached.lastModified != null) {
+            conditional.header(HttpHeaderNames.IF_MODIFIED_SINCE, cached.lastModified);
+        }
+        return conditional;
+    }
+
+    private ClientResponse complete(ClientRequest request, String uri, boolean cacheable, CachedResponse cached,
+                                    long requestTime, ClientResponse response) throws IOException {
+        int status = response.getStatus();
+        if (!cacheable || !GET.equals(request.getHttpMethod())) {
+            String httpMethod = request.getHttpMethod();
+            if (!GET.equals(httpMethod) && !HEAD.equals(httpMethod) && status < HttpResponseCodes.SC_BAD_REQUEST) {
+                this.cache.invalidate(uri);
+            }
+            return response;
+        }
+
+        BaseClientResponse base = (BaseClientResponse) response;
+        long responseTime = currentTimeMillis();
+        if (cached != null && status == HttpResponseCodes.SC_NOT_MODIFIED) {
+            base.releaseConnection();
+            CachedResponse revalidated = cached.revalidate(base.getHeaders(), requestTime);
+            this.cache.put(uri, revalidated);
+            return revalidated.toResponse(request, this);
+        }
+        if (status != HttpResponseCodes.SC_OK || !isStorable(base.getHeaders(), responseTime)) {
+            if (cached != null) {
+                this.cache.invalidate(uri);
+            }
+            return response;
+        }
+
+        BufferedResponse buffered = BufferedResponse.read(base, this.maxBytes);
+        if (buffered == null) {
+            if (cached != null) {
+                this.cache.invalidate(uri);
+            }
+            return response;
+        }
+        CachedResponse entry = new CachedResponse(accept(request), selectingHeaders(request, varyNames(buffered.getHeaders())),
+                                                  buffered, requestTime);
+        this.cache.put(uri, entry);
+        return entry.toResponse(request, this);
+    }
+
+    private boolean isStorable(MultivaluedMap<String, String> headers, long responseTime) {
+        Directives directives = new Directives(headers);
+        if (directives.noStore || (directives.isPrivate && !this.privateCache)
+            || varyNames(headers).contains("*")) {
+            return false;
+        }
+        String contentLength = headers.getFirst(HttpHeaderNames.CONTENT_LENGTH);
+        if (contentLength != null && parseLong(contentLength, 0) > this.maxBytes) {
+            return false;
+        }
+        return freshnessLifetime(directives, headers, responseTime) > 0
+               || headers.containsKey(HttpHeaderNames.ETAG)
+               || headers.containsKey(HttpHeaderNames.LAST_MODIFIED);
+    }
+
+    private static String accept(ClientRequest request) {
+        Object accept = request.getHeadersAsObjects().getFirst(HttpHeaderNames.ACCEPT);
+        return accept == null ? null : accept.toString();
+    }
+
+    /**
+     * The names of the request headers listed by the Vary headers of a response, in lower case.
+     */
+    private static Set<String> varyNames(MultivaluedMap<String, String> responseHeaders) {
+        List<String> values = responseHeaders.get(HttpHeaderNames.VARY);
+        if (values == null) {
+            return Collections.emptySet();
+        }
+        Set<String> names = new TreeSet<>();
+        for (String value : values) {
+            for (String name : value.split(",")) {
+                if (!name.trim().isEmpty()) {
+                    names.add(name.trim().toLowerCase(Locale.US));
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * The values the request has for each header named by Vary in the response, which a later request has to match
+     * to be served the response.
+     */
+    private static Map<String, List<String>> selectingHeaders(ClientRequest request, Set<String> names) {
+        if (names.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        CaseInsensitiveMap<String> requestHeaders = new CaseInsensitiveMap<>();
+        requestHeaders.putAll(request.getHeaders());
+        Map<String, List<String>> selecting = new HashMap<>();
+        for (String name : names) {
+            List<String> values = requestHeaders.get(name);
+            selecting.put(name, values == null ? Collections.<String>emptyList() : values);
+        }
+        return selecting;
+    }
+
+    /**
+     * How long a response stays fresh after it was received, from max-age or else from Expires relative to Date.
+     */
+    private static long freshnessLifetime(Directives directives, MultivaluedMap<String, String> headers,
+                                          long responseTime) {
+        if (directives.maxAge >= 0) {
+            return directives.maxAge * MILLIS_PER_SECOND;
+        }
+        Long expires = parseDate(headers.getFirst(HttpHeaderNames.EXPIRES));
+        if (expires == null) {
+            return 0;
+        }
+        Long date = parseDate(headers.getFirst(HttpHeaderNames.DATE));
+        return Math.max(0, expires - (date == null ? responseTime : date));
+    }
+
+    /**
+     * Parse a date in any of the three formats HTTP allows: RFC 1123, RFC 1036 and asctime.
+     */
+    private static Long parseDate(String value) {
+        if (value == null) {
+            return null;
+        }
+        for (SimpleDateFormat format : HTTP_DATE_FORMATS.get()) {
+            try {
+                return format.parse(value.trim()).getTime();
+            } catch (ParseException e) {
+                // try the next format
+            }
+        }
+        return null;
+    }
+
+    private static long parseLong(String value, long defaultValue) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * The Cache-Control directives this cache acts on.
+     */
+    private static final class Directives {
+        private boolean noStore;
+        private boolean noCache;
+        private boolean isPrivate;
+        private long maxAge = -1;
+
+        private Directives(MultivaluedMap<String, String> headers) {
+            List<String> values = headers.get(HttpHeaderNames.CACHE_CONTROL);
+            if (values == null) {
+                this.noCache = NO_CACHE.equalsIgnoreCase(headers.getFirst(HttpHeaderNames.PRAGMA));
+                return;
+            }
+            for (String value : values) {
+                for (String directive : value.split(",")) {
+                    String name = directive.trim().toLowerCase(Locale.US);
+                    if (name.equals(NO_STORE)) {
+                        this.noStore = true;
+                    } else if (name.startsWith(NO_CACHE)) {
+                        this.noCache = true;
+                    } else if (name.startsWith(PRIVATE)) {
+                        this.isPrivate = true;
+                    } else if (name.startsWith(MAX_AGE)) {
+                        this.maxAge = Math.max(0, parseLong(name.substring(MAX_AGE.length()), 0));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A cached 200 response with everything needed to decide when it has to be revalidated.
+     */
+    private static final class CachedResponse {
+        private final String accept;
+        private final Map<String, List<String>> selectingHeaders;
+        private final BufferedResponse response;
+        private final long expiresAt;
+        private final String etag;
+        private final String lastModified;
+        private final int weight;
+
+        private CachedResponse(String accept, Map<String, List<String>> selectingHeaders, BufferedResponse response,
+                               long requestTime) {
+            this.accept = accept;
+            this.selectingHeaders = selectingHeaders;
+            this.response = response;
+            MultivaluedMap<String, String> headers = response.getHeaders();
+            this.etag = headers.getFirst(HttpHeaderNames.ETAG);
+            this.lastModified = headers.getFirst(HttpHeaderNames.LAST_MODIFIED);
+
+            Directives directives = new Directives(headers);
+            if (directives.noCache) {
+                this.expiresAt = requestTime;
+            } else {
+                String age = headers.getFirst(HttpHeaderNames.AGE);
+                long ageMillis = age == null ? 0 : Math.max(0, parseLong(age, 0)) * MILLIS_PER_SECOND;
+                this.expiresAt = requestTime + freshnessLifetime(directives, headers, requestTime) - ageMillis;
+            }
+
+            int size = ENTRY_OVERHEAD + response.getBodyLength();
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                for (String value : header.getValue()) {
+                    size += header.getKey().length() + value.length();
+                }
+            }
+            this.weight = size;
+        }
+
+        private boolean matches(ClientRequest request) {
+            String requestAccept = accept(request);
+            if (this.accept == null ? requestAccept != null : !this.accept.equals(requestAccept)) {
+                return false;
+            }
+            return this.selectingHeaders.equals(selectingHeaders(request, this.selectingHeaders.keySet()));
+        }
+
+        private boolean isFresh(long now) {
+            return now < this.expiresAt;
+        }
+
+        /**
+         * A copy of this response with the headers of a 304 response merged in, which also restarts its freshness.
+         */
+        private CachedResponse revalidate(MultivaluedMap<String, String> notModifiedHeaders, long requestTime) {
+            CaseInsensitiveMap<String> merged = BufferedResponse.copyHeaders(this.response.getHeaders());
+            for (Map.Entry<String, List<String>> header : notModifiedHeaders.entrySet()) {
+                if (!HttpHeaderNames.CONTENT_LENGTH.equalsIgnoreCase(header.getKey())) {
+                    merged.put(header.getKey(), header.getValue());
+                }
+            }
+            return new CachedResponse(this.accept, this.selectingHeaders, this.response.withHeaders(merged), requestTime);
+        }
+
+        private ClientResponse toResponse(ClientRequest request, ClientExecutor executor) {
+            if (HEAD.equals(request.getHttpMethod())) {
+                return new BufferedResponse(this.response.getStatus(), this.response.getHeaders(), null)
+                        .toResponse(request, executor);
+            }
+            return this.response.toResponse(request, executor);
+        }
+    }
+}
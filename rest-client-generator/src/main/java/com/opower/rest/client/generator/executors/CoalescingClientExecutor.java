@@ -0,0 +1,336 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.executors;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.opower.rest.client.generator.core.AsyncClientExecutor;
+import com.opower.rest.client.generator.core.BaseClientResponse;
+import com.opower.rest.client.generator.core.BufferedResponse;
+import com.opower.rest.client.generator.core.Client;
+import com.opower.rest.client.generator.core.ClientExecutor;
+import com.opower.rest.client.generator.core.ClientRequest;
+import com.opower.rest.client.generator.core.ClientResponse;
+import com.opower.rest.client.generator.core.Deadline;
+
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * ClientExecutor decorator that lets concurrent identical requests share a single execution. Requests are identical
+ * when they have the same http method, the same URI relative to their base URI and the same values for the headers
+ * configured for their resource method, so requests a load balancer sent to different hosts are identical as well.
+ * The first request is sent by the wrapped executor and every request that arrives while it is in flight waits for
+ * its response instead of sending its own. The response is read into memory once and each caller
+ * gets its own {@link BaseClientResponse} over it, so callers can read and release their response independently.
+ * Failures are shared the same way. A blocking caller waits no longer than its own deadline or total timeout allow.
+ * <p/>
+ * Only the GET and HEAD methods configured with {@link Client#coalesceRequests(Method, String...)} are coalesced,
+ * every other request goes straight to the wrapped executor.
+ */
+public class CoalescingClientExecutor implements AsyncClientExecutor {
+
+    private final ClientExecutor delegate;
+    private final Map<Method, List<String>> keyHeaders;
+    private final ConcurrentMap<String, Flight> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Wrap the given executor.
+     * @param delegate the executor that sends the requests
+     * @param keyHeaders the resource methods to coalesce, each with the names of the request headers that have to
+     *                   match as well for two requests to be considered identical
+     */
+    public CoalescingClientExecutor(ClientExecutor delegate, Map<Method, ? extends List<String>> keyHeaders) {
+        this.delegate = checkNotNull(delegate);
+        ImmutableMap.Builder<Method, List<String>> builder = ImmutableMap.builder();
+        for (Map.Entry<Method, ? extends List<String>> entry : keyHeaders.entrySet()) {
+            builder.put(entry.getKey(), ImmutableList.copyOf(entry.getValue()));
+        }
+        this.keyHeaders = builder.build();
+    }
+
+    @Override
+    public void processFilters(ClientRequest request) {
+        this.delegate.processFilters(request);
+    }
+
+    @Override
+    public ClientResponse execute(ClientRequest request) throws Exception {
+        String key = key(request);
+        if (key == null) {
+            return this.delegate.execute(request);
+        }
+
+        Flight flight = new Flight(key);
+        Flight existing = board(flight);
+        if (existing == flight) {
+            try {
+                flight.response.set(BufferedResponse.read(this.delegate.execute(request)));
+            } catch (Throwable t) {
+                flight.response.setException(t);
+            } finally {
+                this.inFlight.remove(key, flight);
+            }
+        }
+
+        try {
+            return await(existing, request).toResponse(request, this);
+        } catch (ExecutionException e) {
+            Throwables.propagateIfInstanceOf(e.getCause(), Exception.class);
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    /**
+     * Each caller gets a future of its own. Cancelling it only cancels the request that was sent once every caller
+     * sharing it has cancelled.
+     */
+    @Override
+    public ListenableFuture<ClientResponse> executeAsync(final ClientRequest request) throws Exception {
+        final String key = key(request);
+        if (key == null) {
+            return this.delegate instanceof AsyncClientExecutor
+                    ? ((AsyncClientExecutor) this.delegate).executeAsync(request)
+                    : Futures.immediateFuture(this.delegate.execute(request));
+        }
+        if (!(this.delegate instanceof AsyncClientExecutor)) {
+            return Futures.immediateFuture(execute(request));
+        }
+
+        Flight flight = new Flight(key);
+        Flight existing = board(flight);
+        if (existing == flight) {
+            ListenableFuture<ClientResponse> sent;
+            try {
+                sent = ((AsyncClientExecutor) this.delegate).executeAsync(request);
+            } catch (Exception e) {
+                sent = Futures.immediateFailedFuture(e);
+            }
+            flight.send(sent);
+        }
+        return existing.follow(request);
+    }
+
+    @Override
+    public void close() throws Exception {
+        this.delegate.close();
+    }
+
+    /**
+     * The number of distinct requests currently in flight.
+     * @return the number of in-flight requests
+     */
+    public int getInFlightCount() {
+        return this.inFlight.size();
+    }
+
+    /**
+     * Join the flight already in the air for the same key, or else the given new one.
+     * @return the flight that was joined
+     */
+    private Flight board(Flight flight) {
+        flight.join();
+        while (true) {
+            Flight existing = this.inFlight.putIfAbsent(flight.key, flight);
+            if (existing == null) {
+                return flight;
+            }
+            if (existing.join()) {
+                return existing;
+            }
+            // every caller of that flight has just cancelled it
+            this.inFlight.remove(flight.key, existing);
+        }
+    }
+
+    /**
+     * Wait for the response of the given flight, no longer than the deadline and total timeout of the request allow.
+     * A caller that gives up leaves the flight, which goes on for the others.
+     */
+    private BufferedResponse await(Flight flight, ClientRequest request)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        Deadline deadline = request.getDeadline();
+        long totalMillis = request.getTimeouts().getTotalMillis();
+        if (totalMillis > 0) {
+            Deadline total = Deadline.after(totalMillis, TimeUnit.MILLISECONDS);
+            deadline = deadline == null ? total : Deadline.earliest(deadline, total);
+        }
+        if (deadline == null) {
+            return flight.response.get();
+        }
+        try {
+            return flight.response.get(deadline.remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            flight.leave();
+            throw new TimeoutException("The deadline of the request passed while waiting for an identical request");
+        }
+    }
+
+    /**
+     * The key identifying identical requests, or null if the request must not be coalesced.
+     */
+    private String key(ClientRequest request) throws Exception {
+        Method method = request.getMethod();
+        List<String> headers = method == null ? null : this.keyHeaders.get(method);
+        String httpMethod = request.getHttpMethod();
+        if (headers == null || !("GET".equals(httpMethod) || "HEAD".equals(httpMethod))) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder(httpMethod).append(' ').append(relativeUri(request));
+        for (String header : headers) {
+            key.append('\n').append(header).append(':');
+            List<Object> values = request.getHeadersAsObjects().get(header);
+            if (values != null) {
+                for (Object value : values) {
+                    key.append(' ').append(value);
+                }
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * The URI of the request without its base URI, so that the same call is identical whichever host a load balancing
+     * UriProvider picked for it.
+     */
+    private static String relativeUri(ClientRequest request) throws Exception {
+        String uri = request.getUri();
+        URI baseUri = request.getBaseUri();
+        if (baseUri != null) {
+            String base = baseUri.toString();
+            if (uri.startsWith(base)) {
+                return uri.substring(base.length());
+            }
+        }
+        return uri;
+    }
+
+    /**
+     * One request in flight and the callers waiting for its response.
+     */
+    private final class Flight {
+        private final String key;
+        private final SettableFuture<BufferedResponse> response = SettableFuture.create();
+        private ListenableFuture<ClientResponse> sent;
+        private int callers;
+        private boolean abandoned;
+
+        private Flight(String key) {
+            this.key = key;
+        }
+
+        /**
+         * Add a caller, unless every previous caller has already cancelled.
+         * @return false if the flight was abandoned and can't be joined
+         */
+        private synchronized boolean join() {
+            if (this.abandoned) {
+                return false;
+            }
+            this.callers++;
+            return true;
+        }
+
+        private void send(ListenableFuture<ClientResponse> request) {
+            synchronized (this) {
+                this.sent = request;
+            }
+            Futures.addCallback(request, new FutureCallback<ClientResponse>() {
+                @Override
+                public void onSuccess(ClientResponse clientResponse) {
+                    try {
+                        if (Flight.this.response.isCancelled()) {
+                            ((BaseClientResponse) clientResponse).releaseConnection();
+                        } else {
+                            Flight.this.response.set(BufferedResponse.read(clientResponse));
+                        }
+                    } catch (Throwable t) {
+                        Flight.this.response.setException(t);
+                    } finally {
+                        CoalescingClientExecutor.this.inFlight.remove(Flight.this.key, Flight.this);
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    Flight.this.response.setException(t);
+                    CoalescingClientExecutor.this.inFlight.remove(Flight.this.key, Flight.this);
+                }
+            });
+        }
+
+        /**
+         * A future of the caller's own, completed from the shared response.
+         */
+        private ListenableFuture<ClientResponse> follow(final ClientRequest request) {
+            final SettableFuture<ClientResponse> own = SettableFuture.create();
+            Futures.addCallback(this.response, new FutureCallback<BufferedResponse>() {
+                @Override
+                public void onSuccess(BufferedResponse bufferedResponse) {
+                    own.set(bufferedResponse.toResponse(request, CoalescingClientExecutor.this));
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    own.setException(t);
+                }
+            });
+            own.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    if (own.isCancelled()) {
+                        leave();
+                    }
+                }
+            }, MoreExecutors.sameThreadExecutor());
+            return own;
+        }
+
+        /**
+         * Remove a caller that cancelled. The last one to leave cancels the request.
+         */
+        private void leave() {
+            ListenableFuture<ClientResponse> toCancel;
+            synchronized (this) {
+                this.callers--;
+                if (this.callers > 0 || this.response.isDone()) {
+                    return;
+                }
+                this.abandoned = true;
+                toCancel = this.sent;
+            }
+            CoalescingClientExecutor.this.inFlight.remove(this.key, this);
+            this.response.cancel(false);
+            if (toCancel != null) {
+                toCancel.cancel(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,680 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.executors;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.opower.rest.client.generator.core.AsyncClientExecutor;
+import com.opower.rest.client.generator.core.BaseClientResponse;
+import com.opower.rest.client.generator.core.ClientExecutor;
+import com.opower.rest.client.generator.core.ClientRequest;
+import com.opower.rest.client.generator.core.ClientResponse;
+import com.opower.rest.client.generator.core.Deadline;
+import com.opower.rest.client.generator.util.HttpResponseCodes;
+
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * ClientExecutor decorator that bounds the number of requests in flight per resource method or per host, and adapts
+ * that bound to the latency it observes. Each partition starts at {@link Settings#withInitialLimit(int)} and follows an
+ * additive increase, multiplicative decrease rule:
+ * <ul>
+ *     <li>a response that arrives within {@link Settings#withLatencyTolerance(double)} times the shortest recent
+ *     round trip raises the limit by one over as many responses as the limit allows, so by about one per round
+ *     trip, as long as the partition is actually using at least half of its limit</li>
+ *     <li>a slower response, a 429, 503 or 504 status or an exception multiplies the limit by
+ *     {@link Settings#withBackoffRatio(double)}, at most once per round trip: requests that were already in flight
+ *     when the limit was lowered don't lower it again, since they all saw the same overload</li>
+ * </ul>
+ * The shortest round trip is re-measured every {@link #WINDOW} requests, so the baseline follows the backend when its
+ * normal latency changes.
+ * <p/>
+ * Requests over the limit wait in a queue of at most {@link Settings#withMaxQueueDepth(int)} entries and are rejected
+ * with a {@link RejectedExecutionException} when the queue is full. Synchronous requests give up and are rejected after
+ * {@link Settings#withMaxQueueWaitMillis(long)}. Asynchronous requests are started on a small pool of this executor
+ * once an earlier request of the same partition completes, without blocking anyone. Cancelled requests leave the queue
+ * right away. A request whose {@link Deadline} passes while it is queued fails with a TimeoutException. The default
+ * queue depth is zero, which rejects excess requests straight away.
+ * <p/>
+ * A synchronous request keeps its place until its response is released, once the entity has been read, since the
+ * body is only read from the connection then. Asynchronous responses arrive with their body and free their place
+ * as soon as they complete.
+ * <p/>
+ * The current limit, the number of requests in flight, the queue depth and the number of rejected requests of every
+ * partition are available through the getters on this class, to be published to the application's metrics.
+ */
+public class ConcurrencyLimitingClientExecutor implements AsyncClientExecutor {
+
+    /**
+     * The number of requests after which the shortest round trip is measured again.
+     */
+    public static final int WINDOW = 100;
+
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final long NO_SAMPLE = -1L;
+    private static final int QUEUE_RUNNER_THREADS = 2;
+    private static final long QUEUE_RUNNER_KEEP_ALIVE_SECONDS = 60;
+
+    /**
+     * How requests are grouped into partitions that each have their own limit.
+     */
+    public enum Partitioning {
+        /**
+         * One limit per resource method, named after the fully qualified resource interface and the method, e.g.
+         * {@code com.example.FrobResource.findFrob}. Overloaded methods share a limit. Requests that were not made through a
+         * resource method fall back to the host.
+         */
+        METHOD,
+        /**
+         * One limit per host and port of the request URI.
+         */
+        HOST
+    }
+
+    private final ClientExecutor delegate;
+    private final Settings settings;
+    private final ConcurrentMap<String, Limiter> limiters = new ConcurrentHashMap<>();
+    private final ScheduledThreadPoolExecutor queueRunner = createQueueRunner();
+
+    /**
+     * Wrap the given executor with the default {@link Settings}.
+     * @param delegate the executor that sends the requests
+     */
+    public ConcurrencyLimitingClientExecutor(ClientExecutor delegate) {
+        this(delegate, new Settings());
+    }
+
+    /**
+     * Wrap the given executor.
+     * @param delegate the executor that sends the requests
+     * @param settings the limits to apply to every partition
+     */
+    public ConcurrencyLimitingClientExecutor(ClientExecutor delegate, Settings settings) {
+        this.delegate = checkNotNull(delegate);
+        this.settings = checkNotNull(settings).copy();
+    }
+
+    @Override
+    public void processFilters(ClientRequest request) {
+        this.delegate.processFilters(request);
+    }
+
+    @Override
+    public ClientResponse execute(ClientRequest request) throws Exception {
+        final Limiter limiter = limiter(request);
+        long maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(this.settings.maxQueueWaitMillis);
+        Deadline deadline = request.getDeadline();
+        boolean deadlineFirst = deadline != null && deadline.remaining(TimeUnit.NANOSECONDS) < maxWaitNanos;
+        if (!limiter.acquire(deadlineFirst ? deadline.remaining(TimeUnit.NANOSECONDS) : maxWaitNanos)) {
+            throw deadlineFirst ? queueTimeout() : rejected(limiter);
+        }
+        long start = nanoTime();
+        boolean sent = false;
+        try {
+            ClientResponse response = this.delegate.execute(request);
+            limiter.sample(start, nanoTime() - start, isOverloaded(response.getStatus()));
+            ((BaseClientResponse) response).addReleaseListener(new Runnable() {
+                @Override
+                public void run() {
+                    limiter.release(NO_SAMPLE, NO_SAMPLE, false);
+                }
+            });
+            sent = true;
+            return response;
+        } finally {
+            if (!sent) {
+                limiter.release(start, nanoTime() - start, true);
+            }
+        }
+    }
+
+    @Override
+    public ListenableFuture<ClientResponse> executeAsync(final ClientRequest request) throws Exception {
+        if (!(this.delegate instanceof AsyncClientExecutor)) {
+            return Futures.immediateFuture(execute(request));
+        }
+        Limiter limiter = limiter(request);
+        QueuedRequest queued = new QueuedRequest(request, limiter);
+        switch (limiter.acquireOrEnqueue(queued)) {
+            case STARTED:
+                return start(request, limiter);
+            case QUEUED:
+                queued.watch();
+                return queued.response;
+            default:
+                return Futures.immediateFailedFuture(rejected(limiter));
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        this.queueRunner.shutdown();
+        this.delegate.close();
+    }
+
+    /**
+     * The names of the partitions that have seen requests so far.
+     * @return the partition names
+     */
+    public Set<String> getPartitions() {
+        return ImmutableSet.copyOf(this.limiters.keySet());
+    }
+
+    /**
+     * The current limit on the number of requests in flight for the given partition.
+     * @param partition the name of the partition
+     * @return the limit, or the initial limit if the partition has not seen any requests yet
+     */
+    public int getLimit(String partition) {
+        Limiter limiter = this.limiters.get(partition);
+        return limiter == null ? this.settings.initialLimit : limiter.getLimit();
+    }
+
+    /**
+     * The number of requests of the given partition that have been sent and not completed yet.
+     * @param partition the name of the partition
+     * @return the number of requests in flight
+     */
+    public int getInFlight(String partition) {
+        Limiter limiter = this.limiters.get(partition);
+        return limiter == null ? 0 : limiter.getInFlight();
+    }
+
+    /**
+     * The number of requests of the given partition that are waiting for a request in flight to complete.
+     * @param partition the name of the partition
+     * @return the queue depth
+     */
+    public int getQueueDepth(String partition) {
+        Limiter limiter = this.limiters.get(partition);
+        return limiter == null ? 0 : limiter.getQueueDepth();
+    }
+
+    /**
+     * The number of requests of the given partition that have been rejected since this executor was created.
+     * @param partition the name of the partition
+     * @return the number of rejected requests
+     */
+    public long getRejected(String partition) {
+        Limiter limiter = this.limiters.get(partition);
+        return limiter == null ? 0 : limiter.getRejected();
+    }
+
+    /**
+     * The name of the partition the given request belongs to.
+     * @param request the request
+     * @return the partition name
+     * @throws Exception if the URI of the request can't be built
+     */
+    public String partitionOf(ClientRequest request) throws Exception {
+        Method method = request.getMethod();
+        if (this.settings.partitioning == Partitioning.METHOD && method != null) {
+            return method.getDeclaringClass().getName() + "." + method.getName();
+        }
+        return URI.create(request.getUri()).getAuthority();
+    }
+
+    /**
+     * The clock used to measure round trips.
+     * @return the current value of the clock in nanoseconds
+     */
+    protected long nanoTime() {
+        return System.nanoTime();
+    }
+
+    private ListenableFuture<ClientResponse> start(ClientRequest request, final Limiter limiter) {
+        final long start = nanoTime();
+        ListenableFuture<ClientResponse> response;
+        try {
+            response = ((AsyncClientExecutor) this.delegate).executeAsync(request);
+        } catch (Exception e) {
+            limiter.release(start, nanoTime() - start, true);
+            return Futures.immediateFailedFuture(e);
+        }
+        Futures.addCallback(response, new FutureCallback<ClientResponse>() {
+            @Override
+            public void onSuccess(ClientResponse result) {
+                limiter.release(start, nanoTime() - start, isOverloaded(result.getStatus()));
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                // a cancelled request says nothing about the backend
+                if (t instanceof CancellationException) {
+                    limiter.release(NO_SAMPLE, NO_SAMPLE, false);
+                } else {
+                    limiter.release(start, nanoTime() - start, true);
+                }
+            }
+        });
+        return response;
+    }
+
+    private Limiter limiter(ClientRequest request) throws Exception {
+        String partition = partitionOf(request);
+        Limiter limiter = this.limiters.get(partition);
+        if (limiter == null) {
+            Limiter created = new Limiter(this.settings, this.queueRunner);
+            limiter = this.limiters.putIfAbsent(partition, created);
+            if (limiter == null) {
+                limiter = created;
+            }
+        }
+        return limiter;
+    }
+
+    private static RejectedExecutionException rejected(Limiter limiter) {
+        return new RejectedExecutionException(String.format("Concurrency limit of %d requests reached",
+                                                            limiter.getLimit()));
+    }
+
+    private static TimeoutException queueTimeout() {
+        return new TimeoutException("The deadline of the request passed while it was queued");
+    }
+
+    /**
+     * The pool that starts queued requests and times them out. Starting a request doesn't wait for its response, so a
+     * few threads go a long way, and they go away when there is nothing queued.
+     */
+    private static ScheduledThreadPoolExecutor createQueueRunner() {
+        ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(QUEUE_RUNNER_THREADS, new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("rest-client-concurrency-limit-%d")
+                .build());
+        pool.setKeepAliveTime(QUEUE_RUNNER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        pool.allowCoreThreadTimeOut(true);
+        pool.setRemoveOnCancelPolicy(true);
+        return pool;
+    }
+
+    private static boolean isOverloaded(int status) {
+        return status == TOO_MANY_REQUESTS
+               || status == HttpResponseCodes.SC_SERVICE_UNAVAILABLE
+               || status == HttpResponseCodes.SC_GATEWAY_TIMEOUT;
+    }
+
+    /**
+     * The limits applied to every partition of a ConcurrencyLimitingClientExecutor. The executor copies the settings
+     * when it is created, so later changes have no effect on it.
+     */
+    public static final class Settings {
+
+        private static final int DEFAULT_INITIAL_LIMIT = 20;
+        private static final int DEFAULT_MAX_LIMIT = 200;
+        private static final double DEFAULT_LATENCY_TOLERANCE = 2.0;
+        private static final double DEFAULT_BACKOFF_RATIO = 0.9;
+
+        private Partitioning partitioning = Partitioning.METHOD;
+        private int initialLimit = DEFAULT_INITIAL_LIMIT;
+        private int minLimit = 1;
+        private int maxLimit = DEFAULT_MAX_LIMIT;
+        private int maxQueueDepth;
+        private long maxQueueWaitMillis;
+        private double latencyTolerance = DEFAULT_LATENCY_TOLERANCE;
+        private double backoffRatio = DEFAULT_BACKOFF_RATIO;
+
+        /**
+         * How requests are grouped into partitions. Defaults to {@link Partitioning#METHOD}.
+         * @param partitioning the partitioning
+         * @return this
+         */
+        public Settings withPartitioning(Partitioning partitioning) {
+            this.partitioning = checkNotNull(partitioning);
+            return this;
+        }
+
+        /**
+         * The limit each partition starts with. Defaults to 20.
+         * @param initialLimit the initial limit
+         * @return this
+         */
+        public Settings withInitialLimit(int initialLimit) {
+            checkArgument(initialLimit > 0, "initialLimit must be positive");
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        /**
+         * The lowest the limit of a partition can go. Defaults to 1.
+         * @param minLimit the minimum limit
+         * @return this
+         */
+        public Settings withMinLimit(int minLimit) {
+            checkArgument(minLimit > 0, "minLimit must be positive");
+            this.minLimit = minLimit;
+            return this;
+        }
+
+        /**
+         * The highest the limit of a partition can go. Defaults to 200.
+         * @param maxLimit the maximum limit
+         * @return this
+         */
+        public Settings withMaxLimit(int maxLimit) {
+            checkArgument(maxLimit > 0, "maxLimit must be positive");
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * The number of requests per partition that may wait for capacity before further requests are rejected.
+         * Defaults to 0.
+         * @param maxQueueDepth the maximum queue depth
+         * @return this
+         */
+        public Settings withMaxQueueDepth(int maxQueueDepth) {
+            checkArgument(maxQueueDepth >= 0, "maxQueueDepth must not be negative");
+            this.maxQueueDepth = maxQueueDepth;
+            return this;
+        }
+
+        /**
+         * How long a synchronous request waits in the queue before it is rejected. Defaults to 0.
+         * @param maxQueueWaitMillis the maximum wait in milliseconds
+         * @return this
+         */
+        public Settings withMaxQueueWaitMillis(long maxQueueWaitMillis) {
+            checkArgument(maxQueueWaitMillis >= 0, "maxQueueWaitMillis must not be negative");
+            this.maxQueueWaitMillis = maxQueueWaitMillis;
+            return this;
+        }
+
+        /**
+         * How many times the shortest recent round trip a response may take before it counts as a sign of overload.
+         * Defaults to 2.
+         * @param latencyTolerance the tolerance, at least 1
+         * @return this
+         */
+        public Settings withLatencyTolerance(double latencyTolerance) {
+            checkArgument(latencyTolerance >= 1, "latencyTolerance must be at least 1");
+            this.latencyTolerance = latencyTolerance;
+            return this;
+        }
+
+        /**
+         * The factor the limit is multiplied with on every sign of overload. Defaults to 0.9.
+         * @param backoffRatio the ratio, greater than 0 and less than 1
+         * @return this
+         */
+        public Settings withBackoffRatio(double backoffRatio) {
+            checkArgument(backoffRatio > 0 && backoffRatio < 1, "backoffRatio must be between 0 and 1");
+            this.backoffRatio = backoffRatio;
+            return this;
+        }
+
+        private Settings copy() {
+            checkArgument(this.minLimit <= this.initialLimit && this.initialLimit <= this.maxLimit,
+                          "initialLimit must be between minLimit and maxLimit");
+            return new Settings().withPartitioning(this.partitioning)
+                                 .withMaxLimit(this.maxLimit)
+                                 .withMinLimit(this.minLimit)
+                                 .withInitialLimit(this.initialLimit)
+                                 .withMaxQueueDepth(this.maxQueueDepth)
+                                 .withMaxQueueWaitMillis(this.maxQueueWaitMillis)
+                                 .withLatencyTolerance(this.latencyTolerance)
+                                 .withBackoffRatio(this.backoffRatio);
+        }
+    }
+
+    /**
+     * An asynchronous request waiting in the queue of its partition. It runs once it was given a place, and leaves the
+     * queue without one when it is cancelled or its deadline passes first.
+     */
+    private final class QueuedRequest implements Runnable {
+        private final ClientRequest request;
+        private final Limiter limiter;
+        private final SettableFuture<ClientResponse> response = SettableFuture.create();
+
+        private QueuedRequest(ClientRequest request, Limiter limiter) {
+            this.request = request;
+            this.limiter = limiter;
+        }
+
+        /**
+         * Take the request out of the queue when it is cancelled or when its deadline passes.
+         */
+        private void watch() {
+            Deadline deadline = this.request.getDeadline();
+            final ScheduledFuture<?> timeout = deadline == null ? null : ConcurrencyLimitingClientExecutor.this.queueRunner
+                    .schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (QueuedRequest.this.limiter.remove(QueuedRequest.this)) {
+                                QueuedRequest.this.response.setException(queueTimeout());
+                            }
+                        }
+                    }, deadline.remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+            this.response.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    if (timeout != null) {
+                        timeout.cancel(false);
+                    }
+                    if (QueuedRequest.this.response.isCancelled()) {
+                        QueuedRequest.this.limiter.remove(QueuedRequest.this);
+                    }
+                }
+            }, MoreExecutors.sameThreadExecutor());
+        }
+
+        /**
+         * Send the request now that it has a place, or give the place back if the request ended while it waited.
+         */
+        @Override
+        public void run() {
+            if (this.response.isDone()) {
+                this.limiter.release(NO_SAMPLE, NO_SAMPLE, false);
+                return;
+            }
+            final ListenableFuture<ClientResponse> sent = start(this.request, this.limiter);
+            this.response.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    if (QueuedRequest.this.response.isCancelled()) {
+                        sent.cancel(true);
+                    }
+                }
+            }, MoreExecutors.sameThreadExecutor());
+            Futures.addCallback(sent, new FutureCallback<ClientResponse>() {
+                @Override
+                public void onSuccess(ClientResponse clientResponse) {
+                    if (!QueuedRequest.this.response.set(clientResponse)) {
+                        clientResponse.releaseConnection();
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    QueuedRequest.this.response.setException(t);
+                }
+            });
+        }
+    }
+
+    /**
+     * The outcome of trying to start an asynchronous request.
+     */
+    private enum Admission {
+        STARTED, QUEUED, REJECTED
+    }
+
+    /**
+     * The limit, the requests in flight and the queue of one partition. All state is guarded by the limiter's monitor,
+     * which is only held for a few field updates, so requests over the limit are turned away without contention.
+     */
+    private static final class Limiter {
+        private final Settings settings;
+        private final Executor queueRunner;
+        private final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+        private double limit;
+        private int inFlight;
+        private int blocked;
+        private long rejected;
+        private long baseline = Long.MAX_VALUE;
+        private long loweredAt = Long.MIN_VALUE;
+        private long windowMin = Long.MAX_VALUE;
+        private int windowSamples;
+
+        private Limiter(Settings settings, Executor queueRunner) {
+            this.settings = settings;
+            this.queueRunner = queueRunner;
+            this.limit = settings.initialLimit;
+        }
+
+        synchronized boolean acquire(long maxWaitNanos) throws InterruptedException {
+            if (hasCapacity()) {
+                this.inFlight++;
+                return true;
+            }
+            if (maxWaitNanos <= 0 || getQueueDepth() >= this.settings.maxQueueDepth) {
+                this.rejected++;
+                return false;
+            }
+            long deadline = System.nanoTime() + maxWaitNanos;
+            this.blocked++;
+            try {
+                long remaining = maxWaitNanos;
+                while (!hasCapacity()) {
+                    if (remaining <= 0) {
+                        this.rejected++;
+                        return false;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    remaining = deadline - System.nanoTime();
+                }
+                this.inFlight++;
+                return true;
+            } finally {
+                this.blocked--;
+            }
+        }
+
+        synchronized Admission acquireOrEnqueue(Runnable start) {
+            if (hasCapacity() && this.waiting.isEmpty()) {
+                this.inFlight++;
+                return Admission.STARTED;
+            }
+            if (getQueueDepth() >= this.settings.maxQueueDepth) {
+                this.rejected++;
+                return Admission.REJECTED;
+            }
+            this.waiting.add(start);
+            return Admission.QUEUED;
+        }
+
+        /**
+         * Take a request that hasn't started yet out of the queue.
+         * @return false if the request was not queued anymore
+         */
+        synchronized boolean remove(Runnable start) {
+            return this.waiting.remove(start);
+        }
+
+        /**
+         * Adjust the limit to a round trip, leaving the request in flight.
+         */
+        synchronized void sample(long startedAt, long roundTrip, boolean dropped) {
+            update(startedAt, roundTrip, dropped);
+        }
+
+        /**
+         * End a request in flight, adjusting the limit to its round trip unless it is {@link #NO_SAMPLE}, and start
+         * the queued requests that fit in the place it leaves.
+         */
+        void release(long startedAt, long roundTrip, boolean dropped) {
+            List<Runnable> ready = new ArrayList<>();
+            synchronized (this) {
+                if (roundTrip != NO_SAMPLE) {
+                    update(startedAt, roundTrip, dropped);
+                }
+                this.inFlight--;
+                while (!this.waiting.isEmpty() && hasCapacity()) {
+                    this.inFlight++;
+                    ready.add(this.waiting.poll());
+                }
+                notifyAll();
+            }
+            for (Runnable start : ready) {
+                try {
+                    this.queueRunner.execute(start);
+                } catch (RejectedExecutionException e) {
+                    // the executor was closed, the request still gets its answer
+                    start.run();
+                }
+            }
+        }
+
+        synchronized int getLimit() {
+            return (int) this.limit;
+        }
+
+        synchronized int getInFlight() {
+            return this.inFlight;
+        }
+
+        synchronized int getQueueDepth() {
+            return this.blocked + this.waiting.size();
+        }
+
+        synchronized long getRejected() {
+            return this.rejected;
+        }
+
+        private boolean hasCapacity() {
+            return this.inFlight < (int) this.limit;
+        }
+
+        private void update(long startedAt, long roundTrip, boolean dropped) {
+            this.baseline = Math.min(this.baseline, roundTrip);
+            this.windowMin = Math.min(this.windowMin, roundTrip);
+            if (++this.windowSamples >= WINDOW) {
+                this.baseline = this.windowMin;
+                this.windowMin = Long.MAX_VALUE;
+                this.windowSamples = 0;
+            }
+
+            if (dropped || roundTrip > this.baseline * this.settings.latencyTolerance) {
+                if (startedAt >= this.loweredAt) {
+                    this.limit = Math.max(this.settings.minLimit, this.limit * this.settings.backoffRatio);
+                    this.loweredAt = startedAt + roundTrip;
+                }
+            } else if (this.inFlight * 2 >= this.limit) {
+                this.limit = Math.min(this.settings.maxLimit, this.limit + 1 / this.limit);
+            }
+        }
+    }
+}
@@ -0,0 +1,337 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.executors;
+
+import com.google.common.base.Function;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.FutureFallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.opower.rest.client.generator.core.AsyncClientExecutor;
+import com.opower.rest.client.generator.core.BaseClientResponse;
+import com.opower.rest.client.generator.core.ClientRequest;
+import com.opower.rest.client.generator.core.ClientRequestFilter;
+import com.opower.rest.client.generator.core.ClientResponse;
+import com.opower.rest.client.generator.util.CaseInsensitiveMap;
+import com.opower.rest.client.generator.util.HttpHeaderNames;
+import com.opower.rest.client.generator.util.HttpResponseCodes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * ClientExecutor that calls a JAX-RS resource implementation living in the same JVM instead of going over HTTP. The
+ * resource method is invoked directly with the arguments the client proxy was called with, and its result is turned
+ * into a ClientResponse with the status a JAX-RS server would have sent: 200 or 204 for a normal return, the status
+ * of a returned Response or thrown WebApplicationException, and 500 for any other exception. The response then goes
+ * through the usual entity extraction, so error status criteria, the ClientErrorHandler and the
+ * ClientErrorInterceptors behave exactly as they do for remote calls.
+ * <p/>
+ * By default entities are handed over as they are. With copyEntities the request body and the response entity are
+ * serialized and read back with the registered MessageBodyReaders and MessageBodyWriters, so neither side can see
+ * changes the other side makes to a shared object.
+ * <p/>
+ * Resource methods that return a Future are supported. A ListenableFuture result completes the future response
+ * when it completes, any other Future is waited for on the calling thread.
+ * <p/>
+ * Only methods declared by an interface the resource implements can be dispatched, which rules out methods of
+ * sub-resources.
+ */
+public class InProcessClientExecutor extends AbstractClientExecutor implements AsyncClientExecutor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InProcessClientExecutor.class);
+    private static final int MAX_ACCEPT_HEADERS = 64;
+
+    /**
+     * The Content-Type a server would answer each Accept header with: its first media type. Clients send the few
+     * Accept headers their methods produce, so each one is only parsed once.
+     */
+    private final LoadingCache<String, String> contentTypes = CacheBuilder.newBuilder()
+            .maximumSize(MAX_ACCEPT_HEADERS)
+            .build(new CacheLoader<String, String>() {
+                @Override
+                public String load(String accept) {
+                    return accept.split(",")[0].trim();
+                }
+            });
+
+    private final Object resource;
+    private final boolean copyEntities;
+
+    /**
+     * Create an executor that hands entities over without copying them.
+     * @param resource the resource implementation to dispatch to
+     */
+    public InProcessClientExecutor(Object resource) {
+        this(resource, false);
+    }
+
+    /**
+     * Create an executor.
+     * @param resource the resource implementation to dispatch to
+     * @param copyEntities whether to copy entities by serializing them at the boundary
+     */
+    public InProcessClientExecutor(Object resource, boolean copyEntities) {
+        this(resource, copyEntities, ImmutableList.<ClientRequestFilter>of());
+    }
+
+    /**
+     * Create an executor.
+     * @param resource the resource implementation to dispatch to
+     * @param copyEntities whether to copy entities by serializing them at the boundary
+     * @param requestFilters the ClientRequestFilters to apply to each request
+     */
+    public InProcessClientExecutor(Object resource, boolean copyEntities, List<ClientRequestFilter> requestFilters) {
+        super(requestFilters);
+        this.resource = checkNotNull(resource);
+        this.copyEntities = copyEntities;
+    }
+
+    @Override
+    public ClientResponse execute(ClientRequest request) throws Exception {
+        Object result;
+        try {
+            result = dispatch(request);
+        } catch (InvocationTargetException e) {
+            return errorResponse(request, e.getCause());
+        }
+        return awaitResponse(request, result);
+    }
+
+    @Override
+    public ListenableFuture<ClientResponse> executeAsync(final ClientRequest request) throws Exception {
+        Object result;
+        try {
+            result = dispatch(request);
+        } catch (InvocationTargetException e) {
+            return Futures.immediateFuture(errorResponse(request, e.getCause()));
+        }
+
+        if (!(result instanceof ListenableFuture)) {
+            return Futures.immediateFuture(awaitResponse(request, result));
+        }
+        ListenableFuture<ClientResponse> response = Futures.transform((ListenableFuture<?>) result,
+                                                                      new Function<Object, ClientResponse>() {
+            @Override
+            public ClientResponse apply(Object entity) {
+                return resultResponse(request, entity);
+            }
+        });
+        return Futures.withFallback(response, new FutureFallback<ClientResponse>() {
+            @Override
+            public ListenableFuture<ClientResponse> create(Throwable t) {
+                return Futures.immediateFuture(errorResponse(request, t));
+            }
+        });
+    }
+
+    /**
+     * Invoke the resource method the request was created for.
+     * @throws InvocationTargetException if the resource method threw an exception
+     */
+    private Object dispatch(ClientRequest request) throws Exception {
+        Method method = request.getMethod();
+        Object[] args = request.getArguments();
+        checkArgument(method != null && args != null, "only requests created by a client proxy can be dispatched in-process");
+        checkArgument(method.getDeclaringClass().isInstance(this.resource),
+                      "%s does not implement %s", this.resource.getClass().getName(), method.getDeclaringClass().getName());
+
+        if (this.copyEntities) {
+            args = copyBody(request, method, args);
+        }
+        return method.invoke(this.resource, args);
+    }
+
+    /**
+     * Turn the result of the resource method into a response, waiting for it first if it is a Future.
+     */
+    private ClientResponse awaitResponse(ClientRequest request, Object result) throws InterruptedException {
+        if (result instanceof Future) {
+            try {
+                return resultResponse(request, ((Future<?>) result).get());
+            } catch (ExecutionException e) {
+                return errorResponse(request, e.getCause());
+            }
+        }
+        return resultResponse(request, result);
+    }
+
+    private ClientResponse resultResponse(ClientRequest request, Object result) {
+        if (result instanceof Response) {
+            Response response = (Response) result;
+            return createResponse(request, response.getStatus(), response.getEntity(), response.getMetadata());
+        }
+        int status = result == null ? HttpResponseCodes.SC_NO_CONTENT : HttpResponseCodes.SC_OK;
+        return createResponse(request, status, result, null);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private ClientResponse errorResponse(ClientRequest request, Throwable cause) {
+        if (cause instanceof WebApplicationException) {
+            Response response = ((WebApplicationException) cause).getResponse();
+            return createResponse(request, response.getStatus(), response.getEntity(), response.getMetadata());
+        }
+        LOG.warn("{} threw an exception, responding with a 500", this.resource.getClass().getName(), cause);
+        return createResponse(request, HttpResponseCodes.SC_INTERNAL_SERVER_ERROR, null, null);
+    }
+
+    /**
+     * Replace the body argument with a copy made by writing it with the MessageBodyWriter of the request and
+     * reading it back with the MessageBodyReader for the parameter type.
+     */
+    @SuppressWarnings("unchecked")
+    private Object[] copyBody(ClientRequest request, Method method, Object[] args) throws IOException {
+        Object body = request.getBody();
+        if (body == null) {
+            return args;
+        }
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] == body) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                request.writeRequestBody(request.getHeadersAsObjects(), out);
+
+                Class type = method.getParameterTypes()[i];
+                Type genericType = method.getGenericParameterTypes()[i];
+                Annotation[] annotations = method.getParameterAnnotations()[i];
+                MediaType mediaType = request.getBodyContentType();
+                MessageBodyReader reader = request.getProviders().getMessageBodyReader(type, genericType, annotations,
+                                                                                       mediaType);
+                if (reader == null) {
+                    throw new RuntimeException("could not find reader for content-type " + mediaType
+                                               + " type: " + type.getName());
+                }
+                Object[] copy = args.clone();
+                copy[i] = reader.readFrom(type, genericType, annotations, mediaType, new CaseInsensitiveMap<String>(),
+                                          new ByteArrayInputStream(out.toByteArray()));
+                return copy;
+            }
+        }
+        return args;
+    }
+
+    private ClientResponse createResponse(ClientRequest request, int status, Object entity,
+                                          MultivaluedMap<String, Object> metadata) {
+        CaseInsensitiveMap<String> headers = new CaseInsensitiveMap<>();
+        if (metadata != null) {
+            for (Map.Entry<String, List<Object>> header : metadata.entrySet()) {
+                for (Object value : header.getValue()) {
+                    headers.add(header.getKey(), value.toString());
+                }
+            }
+        }
+        if (entity != null && !headers.containsKey(HttpHeaderNames.CONTENT_TYPE)) {
+            Object accept = request.getHeadersAsObjects().getFirst(HttpHeaderNames.ACCEPT);
+            headers.add(HttpHeaderNames.CONTENT_TYPE,
+                        accept == null ? MediaType.APPLICATION_OCTET_STREAM : this.contentTypes.getUnchecked(accept.toString()));
+        }
+
+        EntityStreamFactory streamFactory = new EntityStreamFactory(request, entity, headers);
+        InProcessClientResponse response = new InProcessClientResponse(streamFactory, this, request, entity);
+        response.setStatus(status);
+        response.setHeaders(headers);
+        response.setProviders(request.getProviders());
+        return response;
+    }
+
+    /**
+     * Hands the entity returned by the resource straight to the caller when it already has the requested type and
+     * entities are not being copied. Everything else is read from the serialized entity.
+     */
+    private final class InProcessClientResponse extends BaseClientResponse {
+        private final Object entity;
+
+        private InProcessClientResponse(EntityStreamFactory streamFactory, InProcessClientExecutor executor,
+                                        ClientRequest request, Object entity) {
+            super(streamFactory, executor, request.getErrorStatusCriteria());
+            this.entity = entity;
+        }
+
+        @Override
+        protected <T2> Object readFrom(Class<T2> type, Type genericType, MediaType media, Annotation[] annotations) {
+            if (!InProcessClientExecutor.this.copyEntities && type.isInstance(this.entity)) {
+                return this.entity;
+            }
+            return super.readFrom(type, genericType, media, annotations);
+        }
+    }
+
+    /**
+     * Serializes the entity the first time the response body is asked for, using the MessageBodyWriter a server
+     * would have picked for it.
+     */
+    private static final class EntityStreamFactory implements BaseClientResponse.BaseClientResponseStreamFactory {
+        private final ClientRequest request;
+        private final Object entity;
+        private final CaseInsensitiveMap<String> headers;
+        private InputStream stream;
+
+        private EntityStreamFactory(ClientRequest request, Object entity, CaseInsensitiveMap<String> headers) {
+            this.request = request;
+            this.entity = entity;
+            this.headers = headers;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public InputStream getInputStream() throws IOException {
+            if (this.stream == null && this.entity != null) {
+                Class type = this.entity.getClass();
+                MediaType mediaType = MediaType.valueOf(this.headers.getFirst(HttpHeaderNames.CONTENT_TYPE));
+                MessageBodyWriter writer = this.request.getProviders().getMessageBodyWriter(type, type, new Annotation[0],
+                                                                                            mediaType);
+                if (writer == null) {
+                    throw new IOException("could not find writer for content-type " + mediaType
+                                          + " type: " + type.getName());
+                }
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                writer.writeTo(this.entity, type, type, new Annotation[0], mediaType, new CaseInsensitiveMap<Object>(),
+                               out);
+                this.stream = new ByteArrayInputStream(out.toByteArray());
+            }
+            return this.stream;
+        }
+
+        @Override
+        public void performReleaseConnection() {
+        }
+    }
+}
@@ -0,0 +1,298 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.executors;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.opower.rest.client.generator.core.AsyncClientExecutor;
+import com.opower.rest.client.generator.core.Client;
+import com.opower.rest.client.generator.core.ClientExecutor;
+import com.opower.rest.client.generator.core.ClientRequest;
+import com.opower.rest.client.generator.core.ClientResponse;
+import com.opower.rest.client.generator.core.Deadline;
+import com.opower.rest.client.generator.core.RetryPolicy;
+import com.opower.rest.client.generator.core.RoutingUriProvider;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * ClientExecutor decorator that retries the requests of the resource methods configured with
+ * {@link Client#retryPolicy(RetryPolicy)} according to their {@link RetryPolicy}. Responses that are retried are
+ * released before the next attempt. Requests whose body is not {@link ClientRequest#isBodyRepeatable() repeatable},
+ * such as an InputStream, are never retried. Requests whose UriProvider is a {@link RoutingUriProvider} are retried on a
+ * host the earlier attempts didn't go to, as long as there is one. A request is not retried if its {@link Deadline}
+ * would pass during the backoff.
+ * <p/>
+ * All retries are paid for out of one token bucket. Every request adds the configured percentage of a token and every
+ * retry takes a whole token, so retries never exceed that share of the traffic, no matter how many requests fail. The
+ * bucket starts full and holds at most {@link #MAX_SAVED_RETRIES} tokens, which lets the occasional failure be retried
+ * even when there is little traffic. Once the bucket is empty, failed attempts are returned to the caller as they are.
+ * <p/>
+ * Blocking requests wait for the backoff on the calling thread. Asynchronous requests schedule the next attempt on a
+ * shared timer thread. Cancelling the future of an asynchronous request cancels the attempt or backoff in progress,
+ * and a response that arrives anyway is released.
+ */
+public class RetryingClientExecutor implements AsyncClientExecutor {
+
+    /**
+     * The largest number of retries the budget saves up.
+     */
+    public static final int MAX_SAVED_RETRIES = 10;
+
+    private static final double PERCENT = 100;
+    private static final long RETRY_COST = 10000;
+    private static final ScheduledThreadPoolExecutor TIMER = createTimer();
+
+    private final ClientExecutor delegate;
+    private final Map<Method, RetryPolicy> policies;
+    private final long deposit;
+    private final AtomicLong budget = new AtomicLong(MAX_SAVED_RETRIES * RETRY_COST);
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong budgetExhausted = new AtomicLong();
+
+    /**
+     * Wrap the given executor.
+     * @param delegate the executor that sends the requests
+     * @param policies the RetryPolicy of every resource method whose requests are retried
+     * @param budgetPercent the largest number of retries per hundred requests
+     */
+    public RetryingClientExecutor(ClientExecutor delegate, Map<Method, RetryPolicy> policies, double budgetPercent) {
+        checkArgument(budgetPercent >= 0 && budgetPercent <= PERCENT, "budgetPercent must be between 0 and 100");
+        this.delegate = checkNotNull(delegate);
+        this.policies = ImmutableMap.copyOf(policies);
+        this.deposit = Math.round(budgetPercent / PERCENT * RETRY_COST);
+    }
+
+    @Override
+    public void processFilters(ClientRequest request) {
+        this.delegate.processFilters(request);
+    }
+
+    @Override
+    public ClientResponse execute(ClientRequest request) throws Exception {
+        RetryPolicy policy = policy(request);
+        if (policy == null) {
+            return this.delegate.execute(request);
+        }
+        deposit();
+        List<URI> tried = new ArrayList<>();
+        ClientRequest current = request;
+        for (int attempt = 1; ; attempt++) {
+            ClientResponse response;
+            long backoff;
+            try {
+                response = this.delegate.execute(current);
+            } catch (IOException e) {
+                backoff = retry(policy, attempt, current);
+                if (backoff < 0) {
+                    throw e;
+                }
+                TimeUnit.NANOSECONDS.sleep(backoff);
+                current = next(current, tried);
+                continue;
+            }
+            backoff = policy.isRetryable(response.getStatus()) ? retry(policy, attempt, current) : -1;
+            if (backoff < 0) {
+                return response;
+            }
+            response.releaseConnection();
+            TimeUnit.NANOSECONDS.sleep(backoff);
+            current = next(current, tried);
+        }
+    }
+
+    @Override
+    public ListenableFuture<ClientResponse> executeAsync(ClientRequest request) throws Exception {
+        RetryPolicy policy = policy(request);
+        if (!(this.delegate instanceof AsyncClientExecutor)) {
+            return Futures.immediateFuture(execute(request));
+        }
+        if (policy == null) {
+            return ((AsyncClientExecutor) this.delegate).executeAsync(request);
+        }
+        deposit();
+        SettableFuture<ClientResponse> result = SettableFuture.create();
+        attempt(request, policy, 1, new CopyOnWriteArrayList<URI>(), result);
+        return result;
+    }
+
+    @Override
+    public void close() throws Exception {
+        this.delegate.close();
+    }
+
+    /**
+     * The number of retries sent so far.
+     * @return the number of retries
+     */
+    public long getRetries() {
+        return this.retries.get();
+    }
+
+    /**
+     * The number of failed attempts that were not retried because the retry budget was used up.
+     * @return the number of retries refused by the budget
+     */
+    public long getBudgetExhausted() {
+        return this.budgetExhausted.get();
+    }
+
+    private void attempt(final ClientRequest request, final RetryPolicy policy, final int attempt, final List<URI> tried,
+                         final SettableFuture<ClientResponse> result) {
+        if (result.isCancelled()) {
+            return;
+        }
+        ListenableFuture<ClientResponse> response;
+        try {
+            response = ((AsyncClientExecutor) this.delegate).executeAsync(request);
+        } catch (Exception e) {
+            response = Futures.immediateFailedFuture(e);
+        }
+        cancelWith(result, response);
+        Futures.addCallback(response, new FutureCallback<ClientResponse>() {
+            @Override
+            public void onSuccess(ClientResponse clientResponse) {
+                long backoff = !result.isDone() && policy.isRetryable(clientResponse.getStatus())
+                        ? retry(policy, attempt, request) : -1;
+                if (backoff >= 0) {
+                    clientResponse.releaseConnection();
+                    schedule(next(request, tried), policy, attempt, tried, result, backoff);
+                } else if (!result.set(clientResponse)) {
+                    // the caller cancelled while the response was on its way
+                    clientResponse.releaseConnection();
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                long backoff = !result.isDone() && t instanceof IOException ? retry(policy, attempt, request) : -1;
+                if (backoff >= 0) {
+                    schedule(next(request, tried), policy, attempt, tried, result, backoff);
+                } else {
+                    result.setException(t);
+                }
+            }
+        });
+    }
+
+    private void schedule(final ClientRequest request, final RetryPolicy policy, final int attempt, final List<URI> tried,
+                          final SettableFuture<ClientResponse> result, long backoff) {
+        cancelWith(result, TIMER.schedule(new Runnable() {
+            @Override
+            public void run() {
+                // the timer thread takes on the caller's deadline for anything that reads it from the thread
+                try (Deadline.Scope scope = Deadline.attach(request.getDeadline())) {
+                    attempt(request, policy, attempt + 1, tried, result);
+                }
+            }
+        }, backoff, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Cancel the pending attempt or backoff when the caller cancels the result.
+     */
+    private static void cancelWith(final ListenableFuture<ClientResponse> result, final Future<?> pending) {
+        result.addListener(new Runnable() {
+            @Override
+            public void run() {
+                if (result.isCancelled()) {
+                    pending.cancel(true);
+                }
+            }
+        }, MoreExecutors.sameThreadExecutor());
+    }
+
+    /**
+     * The request for the attempt after the given one, sent to another host if the request's UriProvider has one.
+     */
+    private static ClientRequest next(ClientRequest request, List<URI> tried) {
+        if (request.getBaseUri() != null) {
+            tried.add(request.getBaseUri());
+        }
+        return request.retarget(tried);
+    }
+
+    private RetryPolicy policy(ClientRequest request) {
+        Method method = request.getMethod();
+        if (method == null || !request.isBodyRepeatable()) {
+            return null;
+        }
+        return this.policies.get(method);
+    }
+
+    /**
+     * Whether another attempt may follow the given one, taking a token from the budget if it may. No attempt follows
+     * if the deadline of the request would pass before the backoff is over.
+     * @return the backoff before the next attempt in nanoseconds, or -1 if there is no next attempt
+     */
+    private long retry(RetryPolicy policy, int attempt, ClientRequest request) {
+        if (attempt >= policy.getMaxAttempts()) {
+            return -1;
+        }
+        long backoff = policy.backoffNanos(attempt);
+        Deadline deadline = request.getDeadline();
+        if (deadline != null && backoff >= deadline.remaining(TimeUnit.NANOSECONDS)) {
+            return -1;
+        }
+        long current;
+        do {
+            current = this.budget.get();
+            if (current < RETRY_COST) {
+                this.budgetExhausted.incrementAndGet();
+                return -1;
+            }
+        } while (!this.budget.compareAndSet(current, current - RETRY_COST));
+        this.retries.incrementAndGet();
+        return backoff;
+    }
+
+    private void deposit() {
+        long max = MAX_SAVED_RETRIES * RETRY_COST;
+        long current;
+        do {
+            current = this.budget.get();
+            if (current >= max) {
+                return;
+            }
+        } while (!this.budget.compareAndSet(current, Math.min(max, current + this.deposit)));
+    }
+
+    private static ScheduledThreadPoolExecutor createTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("rest-client-retry-timer")
+                .build());
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+}
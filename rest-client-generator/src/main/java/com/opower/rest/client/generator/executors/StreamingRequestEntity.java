@@ -0,0 +1,80 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.executors;
+
+import com.opower.rest.client.generator.core.ClientRequest;
+import org.apache.http.entity.AbstractHttpEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * HttpEntity that serializes the body of a ClientRequest directly onto the connection using chunked transfer
+ * encoding, so large bodies are never held in memory. The body may be a one-shot InputStream, so the entity is not
+ * repeatable and HttpClient will not retry a request once its body has been sent.
+ */
+public class StreamingRequestEntity extends AbstractHttpEntity {
+
+    private final ClientRequest request;
+
+    /**
+     * Create an entity for the body of the given request.
+     * @param request the request whose body will be written
+     */
+    public StreamingRequestEntity(ClientRequest request) {
+        this.request = checkNotNull(request);
+        setChunked(true);
+        setContentType(request.getBodyContentType().toString());
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return false;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    /**
+     * HttpClient only calls {@link #writeTo}; this serves callers that want the body as a stream, such as a
+     * BufferedHttpEntity, at the cost of serializing the body into memory.
+     * @return the serialized body
+     * @throws IOException if the body could not be written
+     */
+    @Override
+    public InputStream getContent() throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        writeTo(buffer);
+        return new ByteArrayInputStream(buffer.toByteArray());
+    }
+
+    @Override
+    public void writeTo(OutputStream outstream) throws IOException {
+        this.request.writeRequestBody(this.request.getHeadersAsObjects(), outstream);
+        outstream.flush();
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.extractors;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.opower.rest.client.generator.core.BaseClientResponse;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.opower.rest.client.generator.util.HttpResponseCodes.SC_BAD_REQUEST;
+
+/**
+ * Base for ClientErrorHandlers that tell failures caused by the request apart from failures of the service, so that
+ * fault tolerance wrappers don't count them against the service. By default only responses with a status of 400 are
+ * treated as bad requests, criteria can be specified for any method in the resource interface to change that.
+ *
+ * @param <C> the type of the BadRequestCriteria
+ */
+public abstract class BadRequestErrorHandler<C extends BadRequestErrorHandler.BadRequestCriteria> implements ClientErrorHandler {
+
+    public static final BadRequestCriteria DEFAULT_BAD_REQUEST_CRITERIA = new BadRequestCriteria() {
+        @Override
+        public boolean apply(BaseClientResponse response, Exception exception) {
+            return response != null && response.getStatus() == SC_BAD_REQUEST;
+        }
+    };
+
+    private final ClientErrorHandler clientErrorHandler;
+    private final Map<Method, ? extends C> badRequestCriteriaMap;
+
+    /**
+     * Creates an instance based on the provided ClientErrorHandler and bad request criteria.
+     * @param badRequestCriteriaMap the bad request criteria to apply for each method
+     * @param clientErrorHandler the ClientErrorHandler to wrap
+     */
+    protected BadRequestErrorHandler(Map<Method, ? extends C> badRequestCriteriaMap, ClientErrorHandler clientErrorHandler) {
+        this.clientErrorHandler = checkNotNull(clientErrorHandler);
+        this.badRequestCriteriaMap = checkNotNull(badRequestCriteriaMap);
+    }
+
+    @Override
+    public void clientErrorHandling(Method method, BaseClientResponse clientResponse, RuntimeException e) {
+        try {
+            this.clientErrorHandler.clientErrorHandling(method, clientResponse, e);
+            checkForBadRequest(method, clientResponse, e);
+        } catch (Exception ex) {
+            checkForBadRequest(method, clientResponse, ex);
+        }
+    }
+
+    private void checkForBadRequest(Method method, BaseClientResponse clientResponse, Exception ex) {
+        BadRequestCriteria criteria = DEFAULT_BAD_REQUEST_CRITERIA;
+        if (method != null) {
+            criteria = Optional.<BadRequestCriteria>fromNullable(this.badRequestCriteriaMap.get(method)).or(criteria);
+        }
+
+        if (criteria.apply(clientResponse, ex) || (clientResponse != null && clientResponse.isSuccessful())) {
+            throw badRequest(ex);
+        } else {
+            Throwables.propagate(ex);
+        }
+    }
+
+    /**
+     * Wraps the exception of a bad request so that it passes the fault tolerance wrapper without counting as a failure.
+     * @param cause the exception
+     * @return the exception to throw
+     */
+    protected abstract RuntimeException badRequest(Exception cause);
+
+    /**
+     * The criteria that were specified per method.
+     * @return the map of method -> BadRequestCriteria
+     */
+    public Map<Method, ? extends C> getCriteriaMap() {
+        return this.badRequestCriteriaMap;
+    }
+
+    /**
+     * Defines which responses should NOT count as failures of the service.
+     */
+    public interface BadRequestCriteria {
+        /**
+         * Check the response and Exception to determine whether or not the failure is caused by the request rather
+         * than the service.
+         * @param response the response to check
+         * @param exception the exception to check
+         * @return true if the Exception is caused by a bad request
+         */
+        boolean apply(BaseClientResponse response, Exception exception);
+    }
+}
@@ -19,6 +19,7 @@ import com.opower.rest.client.generator.core.BaseClientResponse;
 
 import java.io.InputStream;
 import java.lang.reflect.Method;
+import java.lang.reflect.Type;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.opower.rest.client.generator.extractors.DefaultEntityExtractorFactory.handleResponseErrors;
@@ -35,9 +36,23 @@ import static com.opower.rest.client.generator.extractors.DefaultEntityExtractor
 @SuppressWarnings("unchecked")
 public class BodyEntityExtractor implements EntityExtractor {
     private final Method method;
+    private final Class returnType;
+    private final Type genericReturnType;
 
     public BodyEntityExtractor(Method method) {
+        this(method, method.getReturnType(), method.getGenericReturnType());
+    }
+
+    /**
+     * Extract an entity of a different type than the return type of the method, e.g. the type argument of a Future.
+     * @param method the resource method
+     * @param returnType the type of the entity
+     * @param genericReturnType the generic type of the entity
+     */
+    public BodyEntityExtractor(Method method, Class returnType, Type genericReturnType) {
         this.method = checkNotNull(method);
+        this.returnType = returnType;
+        this.genericReturnType = genericReturnType;
     }
 
     public Object extractEntity(ClientRequestContext context, Object... args) {
@@ -48,11 +63,11 @@ public class BodyEntityExtractor implements EntityExtractor {
         boolean releaseConnectionAfter = true;
         try {
             // void methods should be handled before this method gets called, but it's worth being defensive
-            if (this.method.getReturnType() == null) {
+            if (this.returnType == null) {
                 throw new RuntimeException(
                         "No type information to extract entity with.  You use other getEntity() methods");
             }
-            Object obj = response.getEntity(this.method.getReturnType(), this.method.getGenericReturnType());
+            Object obj = response.getEntity(this.returnType, this.genericReturnType);
             if (obj instanceof InputStream)
                 releaseConnectionAfter = false;
             return obj;
@@ -15,6 +15,7 @@
 package com.opower.rest.client.generator.extractors;
 
 import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.opower.rest.client.generator.core.BaseClientResponse;
 import com.opower.rest.client.generator.core.ClientResponse;
 import com.opower.rest.client.generator.core.ClientResponseFailure;
@@ -25,6 +26,8 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.concurrent.Future;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -69,6 +72,15 @@ public class DefaultEntityExtractorFactory implements EntityExtractorFactory {
     public EntityExtractor createExtractor(final Method method) {
         checkNotNull(method);
         final Class returnType = method.getReturnType();
+        if (isFutureReturnType(returnType)) {
+            // the response is extracted when the future completes, based on the type the future is parameterized with
+            Type entityType = getFutureEntityType(method.getGenericReturnType());
+            return createExtractor(method, Types.getRawType(entityType), entityType);
+        }
+        return createExtractor(method, returnType, method.getGenericReturnType());
+    }
+
+    protected EntityExtractor createExtractor(final Method method, final Class returnType, final Type genericReturnType) {
         if (isVoidReturnType(returnType)) {
             return createVoidExtractor(method, true);
         }
@@ -76,7 +88,7 @@ public class DefaultEntityExtractorFactory implements EntityExtractorFactory {
             return createStatusExtractor(true);
         }
         if (Response.class.isAssignableFrom(returnType) || returnType.getCanonicalName().equals("javax.ws.rs.core.Response")) {
-            return createResponseTypeEntityExtractor(method);
+            return createResponseTypeEntityExtractor(method, genericReturnType);
         }
 
         // We are not a ClientResponse type so we need to unmarshall and narrow it
@@ -84,11 +96,14 @@ public class DefaultEntityExtractorFactory implements EntityExtractorFactory {
         // Exception, give the ClientErrorHandlers a chance to handle the
         // ClientResponse manually.
 
-        return new BodyEntityExtractor(method);
+        return new BodyEntityExtractor(method, returnType, genericReturnType);
     }
 
     protected EntityExtractor createResponseTypeEntityExtractor(final Method method) {
-        final Type methodGenericReturnType = method.getGenericReturnType();
+        return createResponseTypeEntityExtractor(method, method.getGenericReturnType());
+    }
+
+    protected EntityExtractor createResponseTypeEntityExtractor(final Method method, final Type methodGenericReturnType) {
         if (methodGenericReturnType instanceof ParameterizedType) {
             final ParameterizedType zType = (ParameterizedType) methodGenericReturnType;
             final Type genericReturnType = zType.getActualTypeArguments()[0];
@@ -124,4 +139,28 @@ public class DefaultEntityExtractorFactory implements EntityExtractorFactory {
         return returnType == null || void.class.equals(returnType) || Void.class.equals(returnType);
     }
 
+    /**
+     * Resource methods returning a Future or ListenableFuture are executed asynchronously.
+     * @param returnType the return type of the resource method
+     * @return true if the method returns a Future
+     */
+    public static boolean isFutureReturnType(Class<?> returnType) {
+        return Future.class.equals(returnType) || ListenableFuture.class.equals(returnType);
+    }
+
+    /**
+     * The type of the entity a future returned by a resource method completes with.
+     * @param genericReturnType the generic return type of the resource method
+     * @return the type argument of the future or Object if there is none
+     */
+    public static Type getFutureEntityType(Type genericReturnType) {
+        if (genericReturnType instanceof ParameterizedType) {
+            Type entityType = ((ParameterizedType) genericReturnType).getActualTypeArguments()[0];
+            if (!(entityType instanceof WildcardType)) {
+                return entityType;
+            }
+        }
+        return Object.class;
+    }
+
 }
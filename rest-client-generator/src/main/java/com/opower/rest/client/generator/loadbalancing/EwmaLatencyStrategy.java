@@ -0,0 +1,29 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.loadbalancing;
+
+/**
+ * Picks two hosts at random and sends the request to the one with the lower expected wait: the moving average of its
+ * response times multiplied by the number of requests it would have in flight. Hosts that have not responded yet have
+ * no latency and are tried first. The average decays over time, as in a peak EWMA, so a host that was slow once is not
+ * avoided forever.
+ */
+public class EwmaLatencyStrategy extends PowerOfTwoChoicesStrategy {
+
+    @Override
+    protected double cost(Host host) {
+        return host.getLatencyNanos() * (host.getInFlight() + 1);
+    }
+}
@@ -0,0 +1,222 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.loadbalancing;
+
+import com.google.common.base.Ticker;
+import com.google.common.hash.Hashing;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * One backend of a {@link LoadBalancingUriProvider} and what has been observed about it: the number of requests in
+ * flight, a peak-sensitive exponentially weighted moving average of the response times and the number of requests and
+ * failures.
+ * The statistics are fed by a {@link HostTrackingClientExecutor} and read by the {@link LoadBalancingStrategy}. All
+ * updates are lock-free.
+ */
+public final class Host {
+
+    /**
+     * The time constant of the moving average: a response time weighs 1/e as much once this much time has passed.
+     */
+    static final long DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final URI uri;
+    private final long hash;
+    private final Ticker ticker;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicReference<Latency> latency;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong ejections = new AtomicLong();
+
+    // health state, maintained by the OutlierDetector in its own clock
+    final AtomicInteger consecutiveFailures = new AtomicInteger();
+    final AtomicLong windowRequests = new AtomicLong();
+    final AtomicLong windowFailures = new AtomicLong();
+    volatile long ejectedUntil;
+    volatile long recoveredAt;
+    volatile int ejectionStreak;
+    final AtomicBoolean staleLatency = new AtomicBoolean();
+
+    /**
+     * Create a host.
+     * @param uri the base URI of the host
+     */
+    public Host(URI uri) {
+        this(uri, Ticker.systemTicker());
+    }
+
+    /**
+     * Create a host that measures the age of its response times with the given clock.
+     * @param uri the base URI of the host
+     * @param ticker the clock
+     */
+    Host(URI uri, Ticker ticker) {
+        this.uri = checkNotNull(uri);
+        this.hash = Hashing.murmur3_128().hashString(uri.toString(), StandardCharsets.UTF_8).asLong();
+        this.ticker = ticker;
+        this.latency = new AtomicReference<>(new Latency(0, ticker.read()));
+    }
+
+    /**
+     * The base URI that requests to this host are rendered against.
+     * @return the base URI
+     */
+    public URI getUri() {
+        return this.uri;
+    }
+
+    /**
+     * A hash of the base URI, the same for every Host with an equal URI in any JVM. Used for consistent hashing.
+     * @return the hash
+     */
+    public long getHash() {
+        return this.hash;
+    }
+
+    /**
+     * The number of requests sent to this host that have not completed yet.
+     * @return the requests in flight
+     */
+    public int getInFlight() {
+        return this.inFlight.get();
+    }
+
+    /**
+     * The moving average of the response times of this host. Slower responses move the average up right away, faster
+     * ones bring it down gradually, so a host that has started to struggle is avoided quickly. The average also decays
+     * with the time since the last response, so a host that was avoided after a slow response gets tried again.
+     * @return the average response time in nanoseconds, 0 until the first response
+     */
+    public double getLatencyNanos() {
+        return this.latency.get().at(this.ticker.read());
+    }
+
+    /**
+     * The number of requests sent to this host that have completed.
+     * @return the completed requests
+     */
+    public long getRequests() {
+        return this.requests.get();
+    }
+
+    /**
+     * The number of completed requests that failed with an exception or a server error.
+     * @return the failed requests
+     */
+    public long getFailures() {
+        return this.failures.get();
+    }
+
+    /**
+     * The number of times an {@link OutlierDetector} has ejected this host.
+     * @return the number of ejections
+     */
+    public long getEjections() {
+        return this.ejections.get();
+    }
+
+    /**
+     * Record that a request is being sent to this host.
+     */
+    public void onStart() {
+        this.inFlight.incrementAndGet();
+    }
+
+    /**
+     * Record that a request sent to this host was cancelled before it completed. It only leaves the in-flight count,
+     * since its time says nothing about the host.
+     */
+    public void onCancel() {
+        this.inFlight.decrementAndGet();
+    }
+
+    /**
+     * Record that a request sent to this host has completed.
+     * @param latencyNanos the time it took, in nanoseconds
+     * @param failed whether it failed with an exception or a server error
+     */
+    public void onComplete(long latencyNanos, boolean failed) {
+        this.inFlight.decrementAndGet();
+        this.requests.incrementAndGet();
+        if (failed) {
+            this.failures.incrementAndGet();
+        }
+        long now = this.ticker.read();
+        Latency current;
+        Latency updated;
+        do {
+            current = this.latency.get();
+            updated = current.update(latencyNanos, now);
+        } while (!this.latency.compareAndSet(current, updated));
+    }
+
+    /**
+     * Forget the response times recorded so far, for example when the host comes back from an ejection.
+     */
+    void resetLatency() {
+        this.latency.set(new Latency(0, this.ticker.read()));
+    }
+
+    /**
+     * Count an ejection of this host.
+     */
+    void ejected() {
+        this.ejections.incrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (in flight: %d, latency: %dms)", this.uri, getInFlight(),
+                             TimeUnit.NANOSECONDS.toMillis((long) getLatencyNanos()));
+    }
+
+    /**
+     * The moving average of the response times as of the last response.
+     */
+    private static final class Latency {
+        private final double nanos;
+        private final long stamp;
+
+        private Latency(double nanos, long stamp) {
+            this.nanos = nanos;
+            this.stamp = stamp;
+        }
+
+        private double at(long now) {
+            return this.nanos * weight(now);
+        }
+
+        private Latency update(long latencyNanos, long now) {
+            double weight = weight(now);
+            double decayed = this.nanos * weight;
+            return new Latency(latencyNanos > decayed ? latencyNanos : decayed + (1 - weight) * latencyNanos,
+                               now - this.stamp > 0 ? now : this.stamp);
+        }
+
+        private double weight(long now) {
+            return Math.exp(-(double) Math.max(0, now - this.stamp) / DECAY_NANOS);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.loadbalancing;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.opower.rest.client.generator.core.AsyncClientExecutor;
+import com.opower.rest.client.generator.core.ClientExecutor;
+import com.opower.rest.client.generator.core.ClientRequest;
+import com.opower.rest.client.generator.core.ClientResponse;
+import com.opower.rest.client.generator.util.HttpResponseCodes;
+
+import java.util.concurrent.CancellationException;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * ClientExecutor decorator that reports every request to the {@link Host} of a {@link LoadBalancingUriProvider} it
+ * was sent to: the host's in-flight count goes up when the request is sent, and its latency and failure statistics
+ * are updated when the response or the exception arrives, which also feeds the provider's {@link OutlierDetector}.
+ * Exceptions and 5xx responses count as failures, cancelled requests only leave the in-flight count. Requests to URIs that don't belong to the provider are passed
+ * through untracked.
+ */
+public class HostTrackingClientExecutor implements AsyncClientExecutor {
+
+    private final ClientExecutor delegate;
+    private final LoadBalancingUriProvider uriProvider;
+
+    /**
+     * Wrap the given executor.
+     * @param delegate the executor that sends the requests
+     * @param uriProvider the provider whose hosts are tracked
+     */
+    public HostTrackingClientExecutor(ClientExecutor delegate, LoadBalancingUriProvider uriProvider) {
+        this.delegate = checkNotNull(delegate);
+        this.uriProvider = checkNotNull(uriProvider);
+    }
+
+    @Override
+    public void processFilters(ClientRequest request) {
+        this.delegate.processFilters(request);
+    }
+
+    @Override
+    public ClientResponse execute(ClientRequest request) throws Exception {
+        Host host = this.uriProvider.findHost(request.getBaseUri(), request.getUri());
+        if (host == null) {
+            return this.delegate.execute(request);
+        }
+        host.onStart();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            ClientResponse response = this.delegate.execute(request);
+            failed = isServerError(response.getStatus());
+            return response;
+        } finally {
+            this.uriProvider.onComplete(host, System.nanoTime() - start, failed);
+        }
+    }
+
+    @Override
+    public ListenableFuture<ClientResponse> executeAsync(ClientRequest request) throws Exception {
+        if (!(this.delegate instanceof AsyncClientExecutor)) {
+            return Futures.immediateFuture(execute(request));
+        }
+        final Host host = this.uriProvider.findHost(request.getBaseUri(), request.getUri());
+        if (host == null) {
+            return ((AsyncClientExecutor) this.delegate).executeAsync(request);
+        }
+        host.onStart();
+        final long start = System.nanoTime();
+        ListenableFuture<ClientResponse> response;
+        try {
+            response = ((AsyncClientExecutor) this.delegate).executeAsync(request);
+        } catch (Exception e) {
+            this.uriProvider.onComplete(host, System.nanoTime() - start, true);
+            throw e;
+        }
+        Futures.addCallback(response, new FutureCallback<ClientResponse>() {
+            @Override
+            public void onSuccess(ClientResponse result) {
+                HostTrackingClientExecutor.this.uriProvider.onComplete(host, System.nanoTime() - start,
+                                                                       isServerError(result.getStatus()));
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                // a cancelled request says nothing about the host
+                if (t instanceof CancellationException) {
+                    host.onCancel();
+                } else {
+                    HostTrackingClientExecutor.this.uriProvider.onComplete(host, System.nanoTime() - start, true);
+                }
+            }
+        });
+        return response;
+    }
+
+    @Override
+    public void close() throws Exception {
+        this.delegate.close();
+    }
+
+    private static boolean isServerError(int status) {
+        return status >= HttpResponseCodes.SC_INTERNAL_SERVER_ERROR;
+    }
+}
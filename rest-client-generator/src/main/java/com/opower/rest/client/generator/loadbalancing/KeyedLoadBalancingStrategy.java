@@ -0,0 +1,32 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.loadbalancing;
+
+import java.util.List;
+
+/**
+ * A LoadBalancingStrategy that can also pick a host by the routing key of a call. See
+ * {@link com.opower.rest.client.generator.annotations.RoutingKey}.
+ */
+public interface KeyedLoadBalancingStrategy extends LoadBalancingStrategy {
+
+    /**
+     * Pick a host for a call with the given routing key.
+     * @param hosts the hosts to choose from, never empty
+     * @param routingKey the routing key of the call, may be null
+     * @return one of the hosts
+     */
+    Host choose(List<Host> hosts, Object routingKey);
+}
@@ -0,0 +1,31 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.loadbalancing;
+
+import java.util.List;
+
+/**
+ * Picks the host for the next request of a {@link LoadBalancingUriProvider}. Strategies are called for every request
+ * and from many threads at once, so they must not block.
+ */
+public interface LoadBalancingStrategy {
+
+    /**
+     * Pick a host.
+     * @param hosts the hosts to choose from, never empty
+     * @return one of the hosts
+     */
+    Host choose(List<Host> hosts);
+}
@@ -0,0 +1,244 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.loadbalancing;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.opower.rest.client.generator.core.RoutingUriProvider;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * UriProvider that spreads requests over several backend hosts. Each call of {@link #getUri()} asks the
+ * {@link LoadBalancingStrategy} for a host and returns that host's base URI. The hosts and the lookup tables are
+ * immutable, so choosing a host takes no locks.
+ * <p/>
+ * Strategies that take load or latency into account need the client's executor to be wrapped in a
+ * {@link HostTrackingClientExecutor} for the same provider:
+ * <pre>
+ *     LoadBalancingUriProvider hosts = new LoadBalancingUriProvider(uris, new EwmaLatencyStrategy());
+ *     new Client.Builder&lt;&gt;(resourceInterface, hosts)
+ *             .executor(new HostTrackingClientExecutor(new ApacheHttpClient4Executor(), hosts));
+ * </pre>
+ * Calls of methods with a {@link com.opower.rest.client.generator.annotations.RoutingKey} are routed by their key when
+ * the strategy is a {@link KeyedLoadBalancingStrategy} such as the {@link RendezvousHashStrategy}.
+ * <p/>
+ * The executor is also needed for an {@link OutlierDetector}, which takes hosts that fail or respond much slower than
+ * the others out of rotation for a while. Hosts in rotation are kept in an immutable snapshot that is only replaced
+ * when a host is ejected or comes back, so the detector doesn't add locks to choosing a host either.
+ */
+public class LoadBalancingUriProvider implements RoutingUriProvider {
+
+    private final List<Host> hosts;
+    private final Map<URI, Host> byUri;
+    private final Map<String, Host> byAuthority;
+    private final LoadBalancingStrategy strategy;
+    private final OutlierDetector outlierDetector;
+    private volatile Rotation rotation;
+
+    /**
+     * Create a provider for the given base URIs.
+     * @param uris the base URIs of the hosts, duplicates are ignored
+     * @param strategy how to pick a host for each request
+     */
+    public LoadBalancingUriProvider(List<URI> uris, LoadBalancingStrategy strategy) {
+        this(uris, strategy, null);
+    }
+
+    /**
+     * Create a provider for the given base URIs that ejects outliers.
+     * @param uris the base URIs of the hosts, duplicates are ignored
+     * @param strategy how to pick a host for each request
+     * @param outlierDetector decides which hosts are taken out of rotation, may be null
+     */
+    public LoadBalancingUriProvider(List<URI> uris, LoadBalancingStrategy strategy, final OutlierDetector outlierDetector) {
+        checkArgument(!uris.isEmpty(), "at least one URI is required");
+        // with a detector the response times age by its clock, so tests of both can move time forward together
+        Ticker ticker = outlierDetector == null ? Ticker.systemTicker() : new Ticker() {
+            @Override
+            public long read() {
+                return outlierDetector.nanoTime();
+            }
+        };
+        ImmutableList.Builder<Host> hostList = ImmutableList.builder();
+        ImmutableMap.Builder<URI, Host> uriMap = ImmutableMap.builder();
+        Map<String, Host> authorityMap = new HashMap<>();
+        for (URI uri : ImmutableSet.copyOf(uris)) {
+            Host host = new Host(uri, ticker);
+            hostList.add(host);
+            uriMap.put(uri, host);
+            authorityMap.put(uri.getRawAuthority(), host);
+        }
+        this.hosts = hostList.build();
+        this.byUri = uriMap.build();
+        this.byAuthority = ImmutableMap.copyOf(authorityMap);
+        this.strategy = checkNotNull(strategy);
+        this.outlierDetector = outlierDetector;
+        if (outlierDetector != null) {
+            outlierDetector.attach(this.hosts);
+            this.rotation = rotation(outlierDetector.nanoTime());
+        }
+    }
+
+    @Override
+    public URI getUri() {
+        return choose(null, false, Collections.<URI>emptySet()).getUri();
+    }
+
+    @Override
+    public URI getUri(Object routingKey) {
+        return choose(routingKey, this.strategy instanceof KeyedLoadBalancingStrategy, Collections.<URI>emptySet())
+                .getUri();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The hosts the earlier attempts went to are left out of the candidates unless no other host is in rotation, so a
+     * {@link KeyedLoadBalancingStrategy} picks the next host for the key.
+     */
+    @Override
+    public URI getUri(Object routingKey, Collection<URI> tried) {
+        return choose(routingKey, routingKey != null && this.strategy instanceof KeyedLoadBalancingStrategy, tried)
+                .getUri();
+    }
+
+    /**
+     * Record that a request sent to one of the hosts has completed. This is called by the
+     * {@link HostTrackingClientExecutor}.
+     * @param host the host the request was sent to
+     * @param latencyNanos the time the request took, in nanoseconds
+     * @param failed whether the request failed with an exception or a server error
+     */
+    public void onComplete(Host host, long latencyNanos, boolean failed) {
+        if (this.outlierDetector != null) {
+            this.outlierDetector.readmit(host, this.outlierDetector.nanoTime());
+        }
+        host.onComplete(latencyNanos, failed);
+        if (this.outlierDetector != null && this.outlierDetector.record(this.hosts, host, failed)) {
+            this.rotation = rotation(this.outlierDetector.nanoTime());
+        }
+    }
+
+    /**
+     * The OutlierDetector of this provider, for example to publish its ejection state.
+     * @return the detector or null if outliers are not ejected
+     */
+    public OutlierDetector getOutlierDetector() {
+        return this.outlierDetector;
+    }
+
+    /**
+     * All hosts of this provider, for example to publish their statistics.
+     * @return the hosts
+     */
+    public List<Host> getHosts() {
+        return this.hosts;
+    }
+
+    /**
+     * Find the host a request was sent to.
+     * @param baseUri the base URI of the request, as returned by {@link #getUri()}, may be null
+     * @param uri the full URI of the request, used when the base URI is not known
+     * @return the host or null if the request was not sent to one of the hosts of this provider
+     */
+    public Host findHost(URI baseUri, String uri) {
+        Host host = baseUri == null ? null : this.byUri.get(baseUri);
+        if (host == null && uri != null) {
+            host = this.byAuthority.get(URI.create(uri).getRawAuthority());
+        }
+        return host;
+    }
+
+    private Host choose(Object routingKey, boolean keyed, Collection<URI> tried) {
+        if (this.outlierDetector == null) {
+            return choose(untried(this.hosts, tried), routingKey, keyed);
+        }
+        long now = this.outlierDetector.nanoTime();
+        Rotation current = this.rotation;
+        if (now - current.nextChange >= 0) {
+            current = rotation(now);
+            this.rotation = current;
+        }
+        Host host = choose(untried(current.available, tried), routingKey, keyed);
+        if (!keyed && !current.healthy.isEmpty() && host.recoveredAt - now > 0
+                && ThreadLocalRandom.current().nextDouble() >= this.outlierDetector.admissionWeight(host, now)) {
+            host = this.strategy.choose(untried(current.healthy, tried));
+        }
+        return host;
+    }
+
+    private static List<Host> untried(List<Host> candidates, Collection<URI> tried) {
+        if (tried.isEmpty()) {
+            return candidates;
+        }
+        List<Host> untried = new ArrayList<>(candidates.size());
+        for (Host host : candidates) {
+            if (!tried.contains(host.getUri())) {
+                untried.add(host);
+            }
+        }
+        return untried.isEmpty() ? candidates : untried;
+    }
+
+    private Host choose(List<Host> candidates, Object routingKey, boolean keyed) {
+        return keyed ? ((KeyedLoadBalancingStrategy) this.strategy).choose(candidates, routingKey)
+                     : this.strategy.choose(candidates);
+    }
+
+    private Rotation rotation(long now) {
+        ImmutableList.Builder<Host> available = ImmutableList.builder();
+        ImmutableList.Builder<Host> healthy = ImmutableList.builder();
+        for (Host host : this.hosts) {
+            if (host.ejectedUntil - now <= 0) {
+                this.outlierDetector.readmit(host, now);
+                available.add(host);
+                if (host.recoveredAt - now <= 0) {
+                    healthy.add(host);
+                }
+            }
+        }
+        List<Host> availableHosts = available.build();
+        return new Rotation(availableHosts.isEmpty() ? this.hosts : availableHosts, healthy.build(),
+                            this.outlierDetector.nextChange(this.hosts, now));
+    }
+
+    /**
+     * The hosts in rotation at some point in time, and when that changes next.
+     */
+    private static final class Rotation {
+        private final List<Host> available;
+        private final List<Host> healthy;
+        private final long nextChange;
+
+        private Rotation(List<Host> available, List<Host> healthy, long nextChange) {
+            this.available = available;
+            this.healthy = healthy;
+            this.nextChange = nextChange;
+        }
+    }
+}
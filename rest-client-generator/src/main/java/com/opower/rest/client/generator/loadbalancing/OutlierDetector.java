@@ -0,0 +1,343 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.loadbalancing;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Passive health checking for the hosts of a {@link LoadBalancingUriProvider}. Every completed request reported to
+ * the provider is also recorded here, and a host is ejected from the load balancing rotation when
+ * <ul>
+ *     <li>its last {@link #withConsecutiveFailures(int)} requests failed, or</li>
+ *     <li>at least {@link #withFailureRatePercent(double)} percent of a window of {@link #withWindowSize(int)}
+ *     requests failed, or</li>
+ *     <li>at the end of such a window its average response time is more than {@link #withLatencyFactor(double)} times
+ *     the median of the other hosts that are in rotation.</li>
+ * </ul>
+ * The first ejection lasts {@link #withBaseEjectionMillis(long)}, and each further ejection of a host that has not
+ * stayed healthy for {@link #withMaxEjectionMillis(long)} since it came back lasts twice as long as the previous one,
+ * up to that maximum. A host that comes back first gets a small share of the requests it would otherwise receive,
+ * which grows to the full share over {@link #withRecoveryMillis(long)}. No more than
+ * {@link #withMaxEjectionPercent(double)} percent of the hosts are ejected at the same time, so a problem that affects
+ * every host doesn't take them all out of rotation. A host that comes back starts with a clean response time average,
+ * so it is not ejected again for how slow it was before.
+ * <p/>
+ * Configure the detector before passing it to the provider. A detector can only be used by one provider.
+ */
+public class OutlierDetector {
+
+    private static final double PERCENT = 100;
+    private static final int DEFAULT_CONSECUTIVE_FAILURES = 5;
+    private static final int DEFAULT_WINDOW_SIZE = 50;
+    private static final double DEFAULT_FAILURE_RATE_PERCENT = 50;
+    private static final double DEFAULT_LATENCY_FACTOR = 3;
+    private static final long DEFAULT_BASE_EJECTION_MILLIS = 10000;
+    private static final long DEFAULT_MAX_EJECTION_MILLIS = 300000;
+    private static final double DEFAULT_MAX_EJECTION_PERCENT = 50;
+    private static final double MIN_ADMISSION_WEIGHT = 0.1;
+
+    private int consecutiveFailures = DEFAULT_CONSECUTIVE_FAILURES;
+    private int windowSize = DEFAULT_WINDOW_SIZE;
+    private double failureRatePercent = DEFAULT_FAILURE_RATE_PERCENT;
+    private double latencyFactor = DEFAULT_LATENCY_FACTOR;
+    private long baseEjectionNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_BASE_EJECTION_MILLIS);
+    private long maxEjectionNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_EJECTION_MILLIS);
+    private long recoveryNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_BASE_EJECTION_MILLIS);
+    private double maxEjectionPercent = DEFAULT_MAX_EJECTION_PERCENT;
+
+    private final AtomicLong ejections = new AtomicLong();
+    private final AtomicLong skippedEjections = new AtomicLong();
+
+    /**
+     * The number of failed requests in a row that eject a host. Defaults to 5.
+     * @param consecutiveFailures the number of failures
+     * @return this
+     */
+    public OutlierDetector withConsecutiveFailures(int consecutiveFailures) {
+        checkArgument(consecutiveFailures > 0, "consecutiveFailures must be positive");
+        this.consecutiveFailures = consecutiveFailures;
+        return this;
+    }
+
+    /**
+     * The number of requests per host after which the failure rate and the response time are checked. Defaults to 50.
+     * @param windowSize the number of requests
+     * @return this
+     */
+    public OutlierDetector withWindowSize(int windowSize) {
+        checkArgument(windowSize > 0, "windowSize must be positive");
+        this.windowSize = windowSize;
+        return this;
+    }
+
+    /**
+     * The share of failed requests in a window that ejects a host. Defaults to 50.
+     * @param failureRatePercent the failure rate in percent
+     * @return this
+     */
+    public OutlierDetector withFailureRatePercent(double failureRatePercent) {
+        checkArgument(failureRatePercent > 0 && failureRatePercent <= PERCENT,
+                      "failureRatePercent must be between 0 and 100");
+        this.failureRatePercent = failureRatePercent;
+        return this;
+    }
+
+    /**
+     * How many times slower than the median of the other hosts a host may be before it is ejected. Defaults to 3.
+     * @param latencyFactor the factor, greater than 1
+     * @return this
+     */
+    public OutlierDetector withLatencyFactor(double latencyFactor) {
+        checkArgument(latencyFactor > 1, "latencyFactor must be greater than 1");
+        this.latencyFactor = latencyFactor;
+        return this;
+    }
+
+    /**
+     * How long the first ejection of a host lasts. Defaults to 10 seconds.
+     * @param baseEjectionMillis the ejection time in milliseconds
+     * @return this
+     */
+    public OutlierDetector withBaseEjectionMillis(long baseEjectionMillis) {
+        checkArgument(baseEjectionMillis > 0, "baseEjectionMillis must be positive");
+        this.baseEjectionNanos = TimeUnit.MILLISECONDS.toNanos(baseEjectionMillis);
+        return this;
+    }
+
+    /**
+     * The longest an ejection can last. Defaults to 5 minutes.
+     * @param maxEjectionMillis the ejection time in milliseconds
+     * @return this
+     */
+    public OutlierDetector withMaxEjectionMillis(long maxEjectionMillis) {
+        checkArgument(maxEjectionMillis > 0, "maxEjectionMillis must be positive");
+        this.maxEjectionNanos = TimeUnit.MILLISECONDS.toNanos(maxEjectionMillis);
+        return this;
+    }
+
+    /**
+     * How long it takes a host that comes back from an ejection to receive its full share of requests again.
+     * Defaults to 10 seconds.
+     * @param recoveryMillis the recovery time in milliseconds, 0 to re-admit hosts at once
+     * @return this
+     */
+    public OutlierDetector withRecoveryMillis(long recoveryMillis) {
+        checkArgument(recoveryMillis >= 0, "recoveryMillis must not be negative");
+        this.recoveryNanos = TimeUnit.MILLISECONDS.toNanos(recoveryMillis);
+        return this;
+    }
+
+    /**
+     * The largest share of the hosts that can be ejected at the same time. Defaults to 50.
+     * @param maxEjectionPercent the share of hosts in percent
+     * @return this
+     */
+    public OutlierDetector withMaxEjectionPercent(double maxEjectionPercent) {
+        checkArgument(maxEjectionPercent >= 0 && maxEjectionPercent <= PERCENT,
+                      "maxEjectionPercent must be between 0 and 100");
+        this.maxEjectionPercent = maxEjectionPercent;
+        return this;
+    }
+
+    /**
+     * The number of ejections so far.
+     * @return the number of ejections
+     */
+    public long getEjections() {
+        return this.ejections.get();
+    }
+
+    /**
+     * The number of times a host should have been ejected but was kept in rotation because too many hosts were
+     * ejected already.
+     * @return the number of skipped ejections
+     */
+    public long getSkippedEjections() {
+        return this.skippedEjections.get();
+    }
+
+    /**
+     * Whether the given host is currently out of rotation.
+     * @param host the host
+     * @return true if the host is ejected
+     */
+    public boolean isEjected(Host host) {
+        return host.ejectedUntil - nanoTime() > 0;
+    }
+
+    /**
+     * The share of its normal traffic the given host currently receives.
+     * @param host the host
+     * @return 0 while the host is ejected, growing to 1 while it recovers, and 1 for a healthy host
+     */
+    public double getAdmissionWeight(Host host) {
+        return admissionWeight(host, nanoTime());
+    }
+
+    /**
+     * The clock all ejection times are measured with.
+     * @return the current value of the clock in nanoseconds
+     */
+    protected long nanoTime() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Start tracking the hosts of a provider.
+     * @param hosts all hosts of the provider
+     */
+    synchronized void attach(List<Host> hosts) {
+        long now = nanoTime();
+        for (Host host : hosts) {
+            host.ejectedUntil = now;
+            host.recoveredAt = now;
+        }
+    }
+
+    /**
+     * Record a completed request and eject the host if it has become an outlier.
+     * @param hosts all hosts of the provider
+     * @param host the host the request was sent to
+     * @param failed whether the request failed
+     * @return true if the host was ejected
+     */
+    boolean record(List<Host> hosts, Host host, boolean failed) {
+        if (isEjected(host)) {
+            return false;
+        }
+        int failuresInARow;
+        long windowFailed;
+        if (failed) {
+            failuresInARow = host.consecutiveFailures.incrementAndGet();
+            windowFailed = host.windowFailures.incrementAndGet();
+        } else {
+            host.consecutiveFailures.set(0);
+            failuresInARow = 0;
+            windowFailed = host.windowFailures.get();
+        }
+        long windowRequests = host.windowRequests.incrementAndGet();
+
+        boolean outlier = failuresInARow >= this.consecutiveFailures;
+        if (!outlier && windowRequests >= this.windowSize) {
+            host.windowRequests.set(0);
+            host.windowFailures.set(0);
+            outlier = windowFailed * PERCENT >= this.failureRatePercent * windowRequests || isSlow(hosts, host);
+        }
+        return outlier && eject(hosts, host);
+    }
+
+    /**
+     * Forget the response times of a host from before its last ejection once it is back in rotation.
+     * @param host the host
+     * @param now the current time
+     */
+    void readmit(Host host, long now) {
+        if (host.ejectedUntil - now <= 0 && host.staleLatency.compareAndSet(true, false)) {
+            host.resetLatency();
+        }
+    }
+
+    /**
+     * The time at which the ejection or recovery of one of the hosts ends, i.e. when the hosts in rotation or their
+     * weights change next.
+     * @param hosts all hosts of the provider
+     * @param now the current time
+     * @return the time in nanoseconds, or {@code now + Long.MAX_VALUE / 2} if nothing is going to change
+     */
+    long nextChange(List<Host> hosts, long now) {
+        long next = now + Long.MAX_VALUE / 2;
+        for (Host host : hosts) {
+            if (host.ejectedUntil - now > 0 && host.ejectedUntil - next < 0) {
+                next = host.ejectedUntil;
+            }
+            if (host.recoveredAt - now > 0 && host.recoveredAt - next < 0) {
+                next = host.recoveredAt;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * The share of its normal traffic the given host receives at the given time.
+     * @param host the host
+     * @param now the current time
+     * @return the admission weight
+     */
+    double admissionWeight(Host host, long now) {
+        if (host.ejectedUntil - now > 0) {
+            return 0;
+        }
+        if (host.recoveredAt - now <= 0 || this.recoveryNanos == 0) {
+            return 1;
+        }
+        double recovered = (double) (now - host.ejectedUntil) / this.recoveryNanos;
+        return Math.max(MIN_ADMISSION_WEIGHT, Math.min(1, recovered));
+    }
+
+    private boolean isSlow(List<Host> hosts, Host host) {
+        long now = nanoTime();
+        double[] others = new double[hosts.size()];
+        int count = 0;
+        for (Host other : hosts) {
+            if (other != host && other.getRequests() > 0 && other.ejectedUntil - now <= 0) {
+                others[count++] = other.getLatencyNanos();
+            }
+        }
+        if (count == 0) {
+            return false;
+        }
+        Arrays.sort(others, 0, count);
+        return host.getLatencyNanos() > this.latencyFactor * others[count / 2];
+    }
+
+    private synchronized boolean eject(List<Host> hosts, Host host) {
+        long now = nanoTime();
+        if (host.ejectedUntil - now > 0) {
+            return false;
+        }
+        int ejected = 1;
+        for (Host other : hosts) {
+            if (other.ejectedUntil - now > 0) {
+                ejected++;
+            }
+        }
+        if (ejected * PERCENT > this.maxEjectionPercent * hosts.size()) {
+            this.skippedEjections.incrementAndGet();
+            return false;
+        }
+
+        boolean relapse = host.ejectionStreak > 0 && now - host.recoveredAt < this.maxEjectionNanos;
+        host.ejectionStreak = relapse ? host.ejectionStreak + 1 : 1;
+        long duration = this.baseEjectionNanos;
+        for (int i = 1; i < host.ejectionStreak && duration < this.maxEjectionNanos; i++) {
+            duration *= 2;
+        }
+        duration = Math.min(duration, this.maxEjectionNanos);
+        host.ejectedUntil = now + duration;
+        host.recoveredAt = host.ejectedUntil + this.recoveryNanos;
+        host.consecutiveFailures.set(0);
+        host.windowRequests.set(0);
+        host.windowFailures.set(0);
+        host.staleLatency.set(true);
+        host.ejected();
+        this.ejections.incrementAndGet();
+        return true;
+    }
+}
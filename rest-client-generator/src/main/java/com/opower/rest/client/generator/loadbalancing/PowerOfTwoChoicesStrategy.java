@@ -0,0 +1,52 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.loadbalancing;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks two hosts at random and sends the request to the one with the lower cost, by default the one with fewer
+ * requests in flight. Comparing two random hosts instead of searching for the best one keeps the choice cheap and
+ * avoids sending every client's requests to the same momentarily idle host.
+ */
+public class PowerOfTwoChoicesStrategy implements LoadBalancingStrategy {
+
+    @Override
+    public Host choose(List<Host> hosts) {
+        int size = hosts.size();
+        if (size == 1) {
+            return hosts.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        Host a = hosts.get(first);
+        Host b = hosts.get(second);
+        return cost(b) < cost(a) ? b : a;
+    }
+
+    /**
+     * The cost of sending the next request to the given host.
+     * @param host the host
+     * @return the cost, lower is better
+     */
+    protected double cost(Host host) {
+        return host.getInFlight();
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.loadbalancing;
+
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Sends calls with the same routing key to the same host, using rendezvous (highest random weight) hashing: every host
+ * gets a score computed from its own hash and the hash of the key, and the host with the highest score wins. A key
+ * only moves when its host leaves the list, or when a new host outscores it, so adding or removing one of n hosts moves
+ * about 1/n of the keys and leaves the rest where they were. This also holds for hosts ejected by an
+ * {@link OutlierDetector}: their keys go to their second choice and come back when they return.
+ * <p/>
+ * The key is hashed by its String value. Calls without a routing key are passed to the fallback strategy.
+ */
+public class RendezvousHashStrategy implements KeyedLoadBalancingStrategy {
+
+    private static final long MIX_1 = 0xff51afd7ed558ccdL;
+    private static final long MIX_2 = 0xc4ceb9fe1a85ec53L;
+    private static final int SHIFT = 33;
+
+    private final LoadBalancingStrategy fallback;
+
+    /**
+     * Create a strategy that spreads calls without a routing key round robin.
+     */
+    public RendezvousHashStrategy() {
+        this(new RoundRobinStrategy());
+    }
+
+    /**
+     * Create a strategy.
+     * @param fallback the strategy for calls without a routing key
+     */
+    public RendezvousHashStrategy(LoadBalancingStrategy fallback) {
+        this.fallback = checkNotNull(fallback);
+    }
+
+    @Override
+    public Host choose(List<Host> hosts) {
+        return this.fallback.choose(hosts);
+    }
+
+    @Override
+    public Host choose(List<Host> hosts, Object routingKey) {
+        if (routingKey == null) {
+            return this.fallback.choose(hosts);
+        }
+        long keyHash = Hashing.murmur3_128().hashString(routingKey.toString(), StandardCharsets.UTF_8).asLong();
+        Host best = null;
+        long bestScore = 0;
+        for (Host host : hosts) {
+            long score = mix(keyHash ^ host.getHash());
+            if (best == null || score > bestScore) {
+                best = host;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The finalizer of MurmurHash3, so that every bit of the key and the host affects the score.
+     */
+    private static long mix(long value) {
+        long h = value;
+        h ^= h >>> SHIFT;
+        h *= MIX_1;
+        h ^= h >>> SHIFT;
+        h *= MIX_2;
+        h ^= h >>> SHIFT;
+        return h;
+    }
+}
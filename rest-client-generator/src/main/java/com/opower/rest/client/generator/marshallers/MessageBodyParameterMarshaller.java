@@ -18,6 +18,8 @@ package com.opower.rest.client.generator.marshallers;
 import com.opower.rest.client.generator.core.ClientRequest;
 
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Providers;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
 
@@ -46,4 +48,14 @@ public class MessageBodyParameterMarshaller implements Marshaller {
         return type;
     }
 
+    /**
+     * Look up the MessageBodyWriter for the body this marshaller produces. The declared type, media type and
+     * annotations never change between calls, so the result can be reused for every request.
+     * @param providers the Providers to search
+     * @return the writer or null if there is none
+     */
+    public MessageBodyWriter resolveWriter(Providers providers) {
+        return providers.getMessageBodyWriter(type, genericType, annotations, mediaType);
+    }
+
 }
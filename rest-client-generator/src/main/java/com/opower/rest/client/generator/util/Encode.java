@@ -307,6 +307,43 @@ public class Encode {
         return result;
     }
 
+    /**
+     * Same as {@link #encodePathAsIs(String)} but appends the encoded value to the given builder
+     * rather than allocating an intermediate String.
+     *
+     * @param segment the value to encode
+     * @param into    the builder to append to
+     * @return the builder
+     */
+    public static StringBuilder encodePathAsIs(String segment, StringBuilder into) {
+        return encodeFromArray(segment, pathEncoding, into);
+    }
+
+    /**
+     * Same as {@link #encodeQueryParamAsIs(String)} but appends the encoded value to the given builder
+     * rather than allocating an intermediate String.
+     *
+     * @param nameOrValue the value to encode
+     * @param into        the builder to append to
+     * @return the builder
+     */
+    public static StringBuilder encodeQueryParamAsIs(String nameOrValue, StringBuilder into) {
+        return encodeFromArray(nameOrValue, queryNameValueEncoding, into);
+    }
+
+    private static StringBuilder encodeFromArray(String segment, String[] encodingMap, StringBuilder into) {
+        for (int i = 0; i < segment.length(); i++) {
+            char zhar = segment.charAt(i);
+            String encoding = zhar < encodingMap.length ? encodingMap[zhar] : encode(zhar, encodingMap);
+            if (encoding == null) {
+                into.append(zhar);
+            } else {
+                into.append(encoding);
+            }
+        }
+        return into;
+    }
+
     protected static String encodeFromArray(String segment, String[] encodingMap, boolean encodePercent) {
         StringBuffer result = new StringBuffer();
         for (int i = 0; i < segment.length(); i++) {
@@ -0,0 +1,383 @@
+package com.opower.rest.client.generator.core;
+
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.opower.rest.client.generator.util.CaseInsensitiveMap;
+import com.opower.rest.client.generator.util.HttpResponseCodes;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AsyncClientExecutor for unit tests. It records every request and answers it with the next answer the test queued,
+ * or with the default answer once there is none. Requests can be held back until the test answers them, and the
+ * responses it hands out count how often their connection is released.
+ */
+public class StubExecutor implements AsyncClientExecutor {
+
+    private final List<ClientRequest> requests = new CopyOnWriteArrayList<>();
+    private final Queue<Object> answers = new ConcurrentLinkedQueue<>();
+    private final List<Held> held = new ArrayList<>();
+    private final AtomicInteger released = new AtomicInteger();
+    private volatile int status = HttpResponseCodes.SC_OK;
+    private volatile String body;
+    private volatile Exception failure;
+    private volatile int holdNext;
+    private volatile boolean holdAll;
+    private volatile boolean ignoreCancel;
+    private int taken;
+
+    /**
+     * Answer the next request that is not held back with the given status.
+     * @param answerStatus the status
+     * @return this executor
+     */
+    public StubExecutor respond(int answerStatus) {
+        return respond(answerStatus, null);
+    }
+
+    /**
+     * Answer the next request that is not held back with the given response.
+     * @param answerStatus the status
+     * @param answerBody the body, or null for none
+     * @param headers header names and values, alternating
+     * @return this executor
+     */
+    public StubExecutor respond(int answerStatus, String answerBody, String... headers) {
+        this.answers.add(response(answerStatus, answerBody, headers));
+        return this;
+    }
+
+    /**
+     * Fail the given number of requests that are not held back with an IOException.
+     * @param times the number of requests to fail
+     * @return this executor
+     */
+    public StubExecutor fail(int times) {
+        for (int i = 0; i < times; i++) {
+            this.answers.add(new IOException("connection reset"));
+        }
+        return this;
+    }
+
+    /**
+     * Forget the queued answers that no request used.
+     * @return this executor
+     */
+    public StubExecutor clearAnswers() {
+        this.answers.clear();
+        return this;
+    }
+
+    /**
+     * Answer every request that has no queued answer with the given status.
+     * @param answerStatus the status
+     * @param answerBody the body, or null for none
+     * @return this executor
+     */
+    public StubExecutor answerAll(int answerStatus, String answerBody) {
+        this.status = answerStatus;
+        this.body = answerBody;
+        this.failure = null;
+        return this;
+    }
+
+    /**
+     * Fail every request that has no queued answer with the given exception.
+     * @param exception the exception
+     * @return this executor
+     */
+    public StubExecutor failAll(Exception exception) {
+        this.failure = exception;
+        return this;
+    }
+
+    /**
+     * Hold back the next request until the test answers it.
+     * @return this executor
+     */
+    public StubExecutor holdNext() {
+        synchronized (this.held) {
+            this.holdNext++;
+        }
+        return this;
+    }
+
+    /**
+     * Hold back every request until the test answers it.
+     * @param hold whether to hold requests back
+     * @return this executor
+     */
+    public StubExecutor holdAll(boolean hold) {
+        this.holdAll = hold;
+        return this;
+    }
+
+    /**
+     * Keep held requests going when they are cancelled, like a blocking HTTP client that can't be interrupted.
+     * @return this executor
+     */
+    public StubExecutor ignoreCancel() {
+        this.ignoreCancel = true;
+        return this;
+    }
+
+    /**
+     * The requests sent so far, including held ones.
+     * @return the requests in the order they were sent
+     */
+    public List<ClientRequest> getRequests() {
+        return this.requests;
+    }
+
+    /**
+     * The URIs of the requests sent so far.
+     * @return the URIs in the order they were sent
+     */
+    public List<String> getUris() {
+        List<String> uris = new ArrayList<>();
+        for (ClientRequest request : this.requests) {
+            try {
+                uris.add(request.getUri());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return uris;
+    }
+
+    /**
+     * How often the connection of a response of this executor was released.
+     * @return the number of releases
+     */
+    public int getReleased() {
+        return this.released.get();
+    }
+
+    /**
+     * The number of requests held back so far.
+     * @return the number of held requests, answered or not
+     */
+    public int getHeldCount() {
+        synchronized (this.held) {
+            return this.held.size();
+        }
+    }
+
+    /**
+     * The given held request.
+     * @param index the position of the request among the held ones
+     * @return the held request
+     */
+    public Held held(int index) {
+        synchronized (this.held) {
+            return this.held.get(index);
+        }
+    }
+
+    /**
+     * The first held request not returned by this method or {@link #nextHeld()} yet.
+     * @return the held request, or null if there is none
+     */
+    public Held pollHeld() {
+        synchronized (this.held) {
+            return this.taken == this.held.size() ? null : this.held.get(this.taken++);
+        }
+    }
+
+    /**
+     * The first held request not returned by this method or {@link #pollHeld()} yet, waiting up to a second for it to
+     * be sent.
+     * @return the held request
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public Held nextHeld() throws InterruptedException {
+        long giveUp = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        synchronized (this.held) {
+            while (this.taken == this.held.size()) {
+                long remaining = giveUp - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new IllegalStateException("no request was held");
+                }
+                TimeUnit.NANOSECONDS.timedWait(this.held, remaining);
+            }
+            return this.held.get(this.taken++);
+        }
+    }
+
+    @Override
+    public ListenableFuture<ClientResponse> executeAsync(ClientRequest request) {
+        this.requests.add(request);
+        Held response = new Held(this);
+        synchronized (this.held) {
+            if (this.holdAll || this.holdNext > 0) {
+                if (this.holdNext > 0) {
+                    this.holdNext--;
+                }
+                this.held.add(response);
+                this.held.notifyAll();
+                return response;
+            }
+        }
+        response.answer();
+        return response;
+    }
+
+    @Override
+    public ClientResponse execute(ClientRequest request) throws Exception {
+        try {
+            return executeAsync(request).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void processFilters(ClientRequest request) {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * A response with the given status and no body.
+     * @param status the status
+     * @return the response
+     */
+    public static BaseClientResponse response(int status) {
+        return response(status, null);
+    }
+
+    /**
+     * A response with the given status, body and headers. Its body can be read more than once.
+     * @param status the status
+     * @param body the body, or null for none
+     * @param headers header names and values, alternating
+     * @return the response
+     */
+    public static BaseClientResponse response(int status, String body, String... headers) {
+        final byte[] bytes = body == null ? null : body.getBytes(StandardCharsets.UTF_8);
+        BaseClientResponse response = new BaseClientResponse(new BaseClientResponse.BaseClientResponseStreamFactory() {
+            @Override
+            public InputStream getInputStream() {
+                return bytes == null ? null : new ByteArrayInputStream(bytes);
+            }
+
+            @Override
+            public void performReleaseConnection() {
+            }
+        }, Client.DEFAULT_ERROR_STATUS_CRITERIA);
+        CaseInsensitiveMap<String> headerMap = new CaseInsensitiveMap<>();
+        for (int i = 0; i < headers.length; i += 2) {
+            headerMap.add(headers[i], headers[i + 1]);
+        }
+        response.setStatus(status);
+        response.setHeaders(headerMap);
+        return response;
+    }
+
+    private BaseClientResponse counted(BaseClientResponse response) {
+        response.addReleaseListener(new Runnable() {
+            @Override
+            public void run() {
+                StubExecutor.this.released.incrementAndGet();
+            }
+        });
+        return response;
+    }
+
+    /**
+     * The future response of a request. The test completes held ones.
+     */
+    public static final class Held extends AbstractFuture<ClientResponse> {
+        private final StubExecutor executor;
+        private final String threadName = Thread.currentThread().getName();
+        private volatile boolean cancelRequested;
+
+        private Held(StubExecutor executor) {
+            this.executor = executor;
+        }
+
+        /**
+         * Answer with the next queued answer of the executor, or its default answer if there is none.
+         */
+        public void answer() {
+            Object next = this.executor.answers.poll();
+            if (next instanceof Exception) {
+                setException((Exception) next);
+            } else if (next != null) {
+                set(this.executor.counted((BaseClientResponse) next));
+            } else if (this.executor.failure != null) {
+                setException(this.executor.failure);
+            } else {
+                set(this.executor.counted(response(this.executor.status, this.executor.body)));
+            }
+        }
+
+        /**
+         * Answer with the given response.
+         * @param status the status
+         * @param body the body, or null for none
+         * @param headers header names and values, alternating
+         * @return false if the future was already done
+         */
+        public boolean answer(int status, String body, String... headers) {
+            return set(this.executor.counted(response(status, body, headers)));
+        }
+
+        /**
+         * Answer with a response with the given status and no body.
+         * @param status the status
+         * @return false if the future was already done
+         */
+        public boolean answer(int status) {
+            return answer(status, null);
+        }
+
+        @Override
+        public boolean set(ClientResponse value) {
+            return super.set(value);
+        }
+
+        @Override
+        public boolean setException(Throwable throwable) {
+            return super.setException(throwable);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            this.cancelRequested = true;
+            return !this.executor.ignoreCancel && super.cancel(mayInterruptIfRunning);
+        }
+
+        /**
+         * Whether the request was cancelled, even if the executor {@link StubExecutor#ignoreCancel() ignored} it.
+         * @return true if cancel was called
+         */
+        public boolean wasCancelled() {
+            return this.cancelRequested;
+        }
+
+        /**
+         * The name of the thread that sent the request.
+         * @return the thread name
+         */
+        public String getThreadName() {
+            return this.threadName;
+        }
+    }
+}
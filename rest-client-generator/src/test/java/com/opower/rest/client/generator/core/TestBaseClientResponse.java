@@ -1,9 +1,17 @@
 package com.opower.rest.client.generator.core;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.Providers;
 
 import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableMap;
 import org.junit.Test;
 
 import static com.opower.rest.client.generator.core.Client.DEFAULT_ERROR_STATUS_CRITERIA;
@@ -11,6 +19,12 @@ import static com.opower.rest.client.generator.core.Client.NETWORK_CONNECT_TIMEO
 import static com.opower.rest.client.generator.util.HttpResponseCodes.SC_BAD_REQUEST;
 import static com.opower.rest.client.generator.util.HttpResponseCodes.SC_OK;
 import static com.opower.rest.client.generator.util.HttpResponseCodes.SC_NOT_FOUND;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
@@ -116,4 +130,84 @@ public class TestBaseClientResponse {
 
         assertThat(response.resetStream(), is(true));
     }
+
+    /**
+     * A reader resolved up front is used without consulting the Providers when the Content-Type is the expected one.
+     */
+    @Test
+    public void resolvedReaderUsedForExpectedContentType() {
+        Providers providers = createMock(Providers.class);
+        replay(providers);
+
+        BaseClientResponse response = responseWithContentType(
+                new MediaType("application", "json", ImmutableMap.of("charset", "UTF-8")), providers);
+        response.setResolvedReader(new ResolvedReader(MediaType.APPLICATION_JSON_TYPE, String.class, String.class,
+                                                      new FixedReader("resolved")));
+
+        assertThat(response.getEntity(String.class), is("resolved"));
+        verify(providers);
+    }
+
+    /**
+     * Any other Content-Type falls back to the Providers lookup.
+     */
+    @Test
+    public void unexpectedContentTypeFallsBackToProviders() {
+        Providers providers = createMock(Providers.class);
+        expect(providers.getMessageBodyReader(eq(String.class), eq((Type) String.class), anyObject(Annotation[].class),
+                                              eq(MediaType.TEXT_PLAIN_TYPE)))
+                .andReturn(new FixedReader("looked up"));
+        replay(providers);
+
+        BaseClientResponse response = responseWithContentType(MediaType.TEXT_PLAIN_TYPE, providers);
+        response.setResolvedReader(new ResolvedReader(MediaType.APPLICATION_JSON_TYPE, String.class, String.class,
+                                                      new FixedReader("resolved")));
+
+        assertThat(response.getEntity(String.class), is("looked up"));
+        verify(providers);
+    }
+
+    private static BaseClientResponse responseWithContentType(final MediaType contentType, Providers providers) {
+        BaseClientResponse response = new BaseClientResponse(new BaseClientResponse.BaseClientResponseStreamFactory() {
+            @Override
+            public InputStream getInputStream() throws IOException {
+                return new ByteArrayInputStream(new byte[0]);
+            }
+
+            @Override
+            public void performReleaseConnection() {
+
+            }
+        }, DEFAULT_ERROR_STATUS_CRITERIA) {
+            @Override
+            protected MediaType getMediaType() {
+                return contentType;
+            }
+        };
+        response.setStatus(SC_OK);
+        response.setProviders(providers);
+        return response;
+    }
+
+    /**
+     * Reads every entity as the same String.
+     */
+    private static class FixedReader implements MessageBodyReader<String> {
+        private final String value;
+
+        private FixedReader(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            return true;
+        }
+
+        @Override
+        public String readFrom(Class<String> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                               MultivaluedMap<String, String> httpHeaders, InputStream entityStream) {
+            return this.value;
+        }
+    }
 }
@@ -0,0 +1,219 @@
+package com.opower.rest.client.generator.core;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.opower.rest.client.generator.annotations.Batched;
+import org.junit.Test;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link BatchingInvoker}.
+ */
+public class TestBatchingInvoker {
+
+    @Test
+    public void fullBatchesAreSentAsOneBulkCall() throws Exception {
+        RecordingInvoker bulk = new RecordingInvoker() {
+            @Override
+            Object respond(List<?> keys) {
+                List<String> results = new ArrayList<>();
+                for (Object key : keys) {
+                    results.add("frob " + key);
+                }
+                return results;
+            }
+        };
+        final BatchingInvoker invoker = new BatchingInvoker(method("find"), method("findAll"), bulk);
+
+        ExecutorService threads = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (final String id : ImmutableList.of("a", "b", "c")) {
+                results.add(threads.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() {
+                        return invoker.invoke(new Object[] { id });
+                    }
+                }));
+            }
+            assertThat(results.get(0).get(), is((Object) "frob a"));
+            assertThat(results.get(1).get(), is((Object) "frob b"));
+            assertThat(results.get(2).get(), is((Object) "frob c"));
+        } finally {
+            threads.shutdownNow();
+        }
+        assertThat(bulk.calls.size(), is(1));
+        assertThat(bulk.calls.get(0).size(), is(3));
+    }
+
+    @Test
+    public void boundCallsAreOnlyBatchedWithCallsBoundToTheSameUri() throws Exception {
+        RecordingInvoker bulk = new RecordingInvoker() {
+            @Override
+            Object respond(List<?> keys) {
+                return keys;
+            }
+        };
+        final BatchingInvoker invoker = new BatchingInvoker(method("find"), method("findAll"), bulk);
+        final UriProvider first = new SimpleUriProvider("http://first");
+        final UriProvider second = new SimpleUriProvider("http://second");
+
+        ExecutorService threads = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (final String id : ImmutableList.of("a", "b", "c", "d", "e", "f")) {
+                results.add(threads.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() {
+                        return invoker.invoke(id.compareTo("d") < 0 ? first : second, new Object[] { id });
+                    }
+                }));
+            }
+            for (Future<Object> result : results) {
+                result.get();
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+        assertThat(bulk.calls.size(), is(2));
+        for (int i = 0; i < 2; i++) {
+            UriProvider expected = bulk.calls.get(i).contains("a") ? first : second;
+            assertThat(bulk.uriProviders.get(i), is(expected));
+        }
+    }
+
+    @Test
+    public void partialBatchesAreSentWhenTheWindowPasses() throws Exception {
+        RecordingInvoker bulk = new RecordingInvoker() {
+            @Override
+            Object respond(List<?> keys) {
+                return ImmutableMap.of("a", "frob a");
+            }
+        };
+        BatchingInvoker invoker = new BatchingInvoker(method("findByMap"), method("findAllAsMap"), bulk);
+
+        assertThat(invoker.invoke(new Object[] { "a" }), is((Object) "frob a"));
+        assertThat(invoker.invoke(new Object[] { "b" }), is(nullValue()));
+        assertThat(bulk.calls.size(), is(2));
+        assertThat(bulk.sets, is(true));
+    }
+
+    @Test
+    public void bulkFailuresAreRethrownToEveryCaller() throws Exception {
+        BatchingInvoker invoker = new BatchingInvoker(method("findByMap"), method("findAllAsMap"), new RecordingInvoker() {
+            @Override
+            Object respond(List<?> keys) {
+                throw new IllegalStateException("bulk failed");
+            }
+        });
+        try {
+            invoker.invoke(new Object[] { "a" });
+            fail("the bulk failure should have been rethrown");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("bulk failed"));
+        }
+    }
+
+    @Test
+    public void listResultsMustMatchTheKeys() throws Exception {
+        BatchingInvoker invoker = new BatchingInvoker(method("findByMap"), method("findAll"), new RecordingInvoker() {
+            @Override
+            Object respond(List<?> keys) {
+                return Collections.emptyList();
+            }
+        });
+        try {
+            invoker.invoke(new Object[] { "a" });
+            fail("a short result should have been rejected");
+        } catch (RuntimeException e) {
+            assertThat(e, instanceOf(IllegalStateException.class));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingBulkMethodsAreRejected() {
+        BatchingInvoker.install(Broken.class, new HashMap<Method, MethodInvoker>());
+    }
+
+    private static Method method(String name) {
+        for (Method method : Frobs.class.getMethods()) {
+            if (method.getName().equals(name)) {
+                return method;
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    public interface Frobs {
+        @GET
+        @Path("{id}")
+        @Batched(value = "findAll", maxSize = 3, windowMillis = 10000)
+        String find(@PathParam("id") String id);
+
+        @POST
+        @Path("_batch")
+        List<String> findAll(List<String> ids);
+
+        @GET
+        @Path("map/{id}")
+        @Batched(value = "findAllAsMap", windowMillis = 5)
+        String findByMap(@PathParam("id") String id);
+
+        @POST
+        @Path("map/_batch")
+        Map<String, String> findAllAsMap(Set<String> ids);
+    }
+
+    public interface Broken {
+        @GET
+        @Batched("missing")
+        String find(String id);
+    }
+
+    /**
+     * Bulk MethodInvoker that records the keys and the UriProvider of each call.
+     */
+    private abstract static class RecordingInvoker implements BindableMethodInvoker {
+        private final List<List<?>> calls = Collections.synchronizedList(new ArrayList<List<?>>());
+        private final List<UriProvider> uriProviders = Collections.synchronizedList(new ArrayList<UriProvider>());
+        private volatile boolean sets;
+
+        @Override
+        public synchronized Object invoke(UriProvider uriProvider, Object[] args) {
+            this.uriProviders.add(uriProvider);
+            return invoke(args);
+        }
+
+        @Override
+        public Object invoke(Object[] args) {
+            this.sets = args[0] instanceof Set;
+            List<?> keys = new ArrayList<>((Collection<?>) args[0]);
+            this.calls.add(keys);
+            return respond(keys);
+        }
+
+        abstract Object respond(List<?> keys);
+    }
+}
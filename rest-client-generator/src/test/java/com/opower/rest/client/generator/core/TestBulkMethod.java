@@ -0,0 +1,85 @@
+package com.opower.rest.client.generator.core;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit tests for {@link BulkMethod}.
+ */
+public class TestBulkMethod {
+
+    @Test
+    public void duplicateKeysAreSentOnce() throws Exception {
+        BulkMethod bulk = new BulkMethod(method("find"), method("findAll"));
+        Collection<Object> argument = bulk.argument(ImmutableList.of("a", "b", "a"));
+        assertThat(argument, instanceOf(List.class));
+        assertThat(ImmutableList.copyOf(argument), is(ImmutableList.<Object>of("a", "b")));
+        assertThat(new BulkMethod(method("find"), method("findSet")).argument(argument), instanceOf(Set.class));
+    }
+
+    @Test
+    public void listResultsAreKeyedInOrder() throws Exception {
+        BulkMethod bulk = new BulkMethod(method("find"), method("findAll"));
+        Map<?, ?> results = bulk.resultsByKey(ImmutableList.of("a", "b"), ImmutableList.of("A", "B"));
+        assertThat(results.get("a"), is((Object) "A"));
+        assertThat(results.get("b"), is((Object) "B"));
+        assertThat(bulk.resultsByKey(ImmutableList.of("a"), null).get("a"), nullValue());
+    }
+
+    @Test
+    public void mapResultsAreUsedAsTheyAre() throws Exception {
+        BulkMethod bulk = new BulkMethod(method("find"), method("findSet"));
+        Map<String, String> results = ImmutableMap.of("a", "A");
+        assertThat(bulk.resultsByKey(ImmutableList.of("a"), results), is((Object) results));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shortListResultsAreRejected() throws Exception {
+        new BulkMethod(method("find"), method("findAll")).resultsByKey(ImmutableList.of("a", "b"), ImmutableList.of("A"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void futureReturningMethodsCantBeBatched() throws Exception {
+        new BulkMethod(method("findLater"), method("findAll"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bulkMethodsMustAcceptACollection() throws Exception {
+        new BulkMethod(method("find"), method("findLater"));
+    }
+
+    private static Method method(String name) {
+        for (Method method : Frobs.class.getMethods()) {
+            if (method.getName().equals(name)) {
+                return method;
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    /**
+     * Single item and bulk methods of every shape.
+     */
+    public interface Frobs {
+        String find(String id);
+
+        ListenableFuture<String> findLater(String id);
+
+        List<String> findAll(List<String> ids);
+
+        Map<String, String> findSet(Set<String> ids);
+    }
+}
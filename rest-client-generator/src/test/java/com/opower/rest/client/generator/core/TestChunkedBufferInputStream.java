@@ -0,0 +1,102 @@
+package com.opower.rest.client.generator.core;
+
+import com.google.common.io.ByteStreams;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link ChunkedBufferInputStream}.
+ */
+public class TestChunkedBufferInputStream {
+
+    private static final int CHUNK_SIZE = 16;
+
+    @Test
+    public void readsWholeStreamAcrossChunks() throws Exception {
+        byte[] data = data(100);
+        ChunkedBufferInputStream stream = new ChunkedBufferInputStream(new ByteArrayInputStream(data), pool());
+        assertArrayEquals(data, ByteStreams.toByteArray(stream));
+        assertThat(stream.getRetainedChunkCount(), is(7));
+    }
+
+    @Test
+    public void resetReturnsToTheBeginning() throws Exception {
+        byte[] data = data(40);
+        ChunkedBufferInputStream stream = new ChunkedBufferInputStream(new ByteArrayInputStream(data), pool());
+        byte[] prefix = new byte[25];
+        ByteStreams.readFully(stream, prefix);
+        stream.reset();
+        assertArrayEquals(data, ByteStreams.toByteArray(stream));
+        stream.reset();
+        assertThat(stream.read(), is(0));
+        assertThat(stream.read(), is(1));
+        stream.reset();
+        assertArrayEquals(data, ByteStreams.toByteArray(stream));
+    }
+
+    @Test
+    public void singleByteReads() throws Exception {
+        byte[] data = data(CHUNK_SIZE * 2 + 1);
+        ChunkedBufferInputStream stream = new ChunkedBufferInputStream(new ByteArrayInputStream(data), pool());
+        for (byte b : data) {
+            assertThat(stream.read(), is(b & 0xff));
+        }
+        assertThat(stream.read(), is(-1));
+        stream.reset();
+        assertArrayEquals(data, ByteStreams.toByteArray(stream));
+    }
+
+    @Test
+    public void stopRetainingReleasesReadChunks() throws Exception {
+        byte[] data = data(100);
+        ChunkPool pool = pool();
+        ChunkedBufferInputStream stream = new ChunkedBufferInputStream(new ByteArrayInputStream(data), pool);
+        byte[] prefix = new byte[20];
+        ByteStreams.readFully(stream, prefix);
+        stream.reset();
+        stream.stopRetaining();
+        assertThat(stream.getRetainedChunkCount(), is(2));
+
+        assertArrayEquals(data, ByteStreams.toByteArray(stream));
+        assertThat(stream.getRetainedChunkCount(), is(0));
+    }
+
+    @Test(expected = IOException.class)
+    public void resetFailsOnceDataIsDiscarded() throws Exception {
+        ChunkedBufferInputStream stream = new ChunkedBufferInputStream(new ByteArrayInputStream(data(10)), pool());
+        stream.stopRetaining();
+        stream.read();
+        stream.reset();
+    }
+
+    @Test
+    public void closeReturnsChunksToThePool() throws Exception {
+        ChunkPool pool = pool();
+        ChunkedBufferInputStream stream = new ChunkedBufferInputStream(new ByteArrayInputStream(data(20)), pool);
+        ByteStreams.toByteArray(stream);
+        stream.close();
+        assertThat(stream.getRetainedChunkCount(), is(0));
+
+        InputStream reused = new ChunkedBufferInputStream(new ByteArrayInputStream(data(20)), pool);
+        assertArrayEquals(data(20), ByteStreams.toByteArray(reused));
+    }
+
+    private static ChunkPool pool() {
+        return new ChunkPool(CHUNK_SIZE, 4);
+    }
+
+    private static byte[] data(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+}
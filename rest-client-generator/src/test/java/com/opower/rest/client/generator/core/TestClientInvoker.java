@@ -0,0 +1,172 @@
+package com.opower.rest.client.generator.core;
+
+import com.opower.rest.client.generator.util.CaseInsensitiveMap;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+
+import static com.opower.rest.client.generator.core.Client.DEFAULT_ERROR_STATUS_CRITERIA;
+import static com.opower.rest.client.generator.util.HttpResponseCodes.SC_OK;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests how {@link ClientInvoker} finds the providers of a resource method.
+ */
+public class TestClientInvoker {
+
+    private final EchoExecutor executor = new EchoExecutor();
+    private final Client.Builder<Widgets> builder = new Client.Builder<>(new ResourceInterface<>(Widgets.class),
+                                                                         new SimpleUriProvider("http://localhost"))
+            .executor(this.executor);
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.setProperty("javax.ws.rs.ext.RuntimeDelegate", "com.opower.rest.client.generator.core.BasicRuntimeDelegate");
+    }
+
+    @Test
+    public void providersRegisteredAfterTheClientIsBuiltAreUsed() {
+        Widgets client = this.builder.build();
+        assertThat(client.echo("frob"), is("frob"));
+
+        this.builder.registerProviderInstance(new ShoutingProvider());
+
+        assertThat(client.echo("frob"), is("FROB!!"));
+        assertThat(this.executor.sent, is("FROB!"));
+    }
+
+    @Test
+    public void providersAreOnlyLookedUpAgainAfterAChange() {
+        CountingProviders providers = new CountingProviders();
+        this.builder.clientProviders = providers;
+        Widgets client = this.builder.build();
+        int lookups = providers.lookups;
+
+        client.echo("frob");
+        client.echo("frob");
+        assertThat(providers.lookups, is(lookups));
+
+        this.builder.registerProviderInstance(new ShoutingProvider());
+        assertThat(providers.lookups > lookups, is(true));
+    }
+
+    @Path("/widgets")
+    public interface Widgets {
+        @POST
+        @Consumes(MediaType.TEXT_PLAIN)
+        @Produces(MediaType.TEXT_PLAIN)
+        String echo(String name);
+    }
+
+    /**
+     * Answers every request with its own body.
+     */
+    private static class EchoExecutor implements ClientExecutor {
+        private volatile String sent;
+
+        @Override
+        public ClientResponse execute(ClientRequest request) throws Exception {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            request.writeRequestBody(request.getHeadersAsObjects(), body);
+            this.sent = new String(body.toByteArray(), StandardCharsets.UTF_8);
+            final byte[] entity = body.toByteArray();
+
+            BaseClientResponse response = new BaseClientResponse(new BaseClientResponse.BaseClientResponseStreamFactory() {
+                @Override
+                public InputStream getInputStream() {
+                    return new ByteArrayInputStream(entity);
+                }
+
+                @Override
+                public void performReleaseConnection() {
+                }
+            }, DEFAULT_ERROR_STATUS_CRITERIA);
+            CaseInsensitiveMap<String> headers = new CaseInsensitiveMap<>();
+            headers.add("Content-Type", MediaType.TEXT_PLAIN);
+            response.setStatus(SC_OK);
+            response.setHeaders(headers);
+            response.setProviders(request.getProviders());
+            return response;
+        }
+
+        @Override
+        public void processFilters(ClientRequest request) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Counts how often a MessageBodyReader or MessageBodyWriter is looked up.
+     */
+    private static class CountingProviders extends ClientProviders {
+        private int lookups;
+
+        @Override
+        public <T> MessageBodyReader<T> getMessageBodyReader(Class<T> type, Type genericType, Annotation[] annotations,
+                                                             MediaType mediaType) {
+            this.lookups++;
+            return super.getMessageBodyReader(type, genericType, annotations, mediaType);
+        }
+
+        @Override
+        public <T> MessageBodyWriter<T> getMessageBodyWriter(Class<T> type, Type genericType, Annotation[] annotations,
+                                                             MediaType mediaType) {
+            this.lookups++;
+            return super.getMessageBodyWriter(type, genericType, annotations, mediaType);
+        }
+    }
+
+    /**
+     * Adds an exclamation mark to every String it reads or writes and shouts it.
+     */
+    private static class ShoutingProvider implements MessageBodyReader<String>, MessageBodyWriter<String> {
+        @Override
+        public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            return String.class.equals(type);
+        }
+
+        @Override
+        public String readFrom(Class<String> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                               MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException {
+            return new BufferedReader(new InputStreamReader(entityStream, StandardCharsets.UTF_8)).readLine() + "!";
+        }
+
+        @Override
+        public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            return String.class.equals(type);
+        }
+
+        @Override
+        public long getSize(String value, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            return -1;
+        }
+
+        @Override
+        public void writeTo(String value, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                            MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+            entityStream.write((value.toUpperCase() + "!").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
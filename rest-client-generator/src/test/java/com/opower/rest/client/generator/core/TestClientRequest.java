@@ -1,13 +1,31 @@
 package com.opower.rest.client.generator.core;
 
 import com.google.common.base.Optional;
+import com.google.common.io.Files;
 import com.opower.rest.client.generator.specimpl.MultivaluedMapImpl;
 import org.junit.Before;
 import org.junit.Test;
 
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Providers;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Unit tests for {@link ClientRequest}
@@ -62,4 +80,103 @@ public class TestClientRequest {
         assertEquals("Matrix parameters don't match.", this.expectedValues, this.request.getMatrixParameters());
     }
 
+    @Test
+    public void smallBodyIsSpooledInMemory() throws Exception {
+        ClientRequest bodyRequest = requestWithBody("small body");
+        SpooledBody spooled = bodyRequest.spoolRequestBody(bodyRequest.getHeadersAsObjects(), 1024);
+        assertTrue(spooled.isInMemory());
+        assertArrayEquals("small body".getBytes(StandardCharsets.UTF_8), spooled.getBytes());
+        assertEquals(10, spooled.getLength());
+    }
+
+    @Test
+    public void bodyAtTheLimitIsSpooledInMemory() throws Exception {
+        ClientRequest bodyRequest = requestWithBody("0123456789");
+        SpooledBody spooled = bodyRequest.spoolRequestBody(bodyRequest.getHeadersAsObjects(), 10);
+        assertTrue(spooled.isInMemory());
+        assertArrayEquals("0123456789".getBytes(StandardCharsets.UTF_8), spooled.getBytes());
+    }
+
+    @Test
+    public void largeBodyIsSpooledToAFileInOnePass() throws Exception {
+        StringWriter writer = new StringWriter();
+        ClientRequest bodyRequest = requestWithBody("0123456789A", writer);
+        SpooledBody spooled = bodyRequest.spoolRequestBody(bodyRequest.getHeadersAsObjects(), 10);
+        try {
+            assertFalse(spooled.isInMemory());
+            assertEquals(11, spooled.getLength());
+            assertArrayEquals("0123456789A".getBytes(StandardCharsets.UTF_8), Files.toByteArray(spooled.getFile()));
+            assertEquals(1, writer.writes);
+        } finally {
+            spooled.close();
+        }
+        assertFalse(spooled.getFile().exists());
+    }
+
+    @Test
+    public void missingBodyIsNotSpooled() throws Exception {
+        assertNull(this.request.spoolRequestBody(this.request.getHeadersAsObjects(), 1024));
+        assertFalse(this.request.isLargeRequestBody(1024));
+        assertTrue(this.request.isBodyRepeatable());
+    }
+
+    @Test
+    public void bodiesOfUnknownSizeAreOnlyLargeWithAZeroLimit() throws Exception {
+        ClientRequest bodyRequest = requestWithBody("0123456789A");
+        assertFalse(bodyRequest.isLargeRequestBody(10));
+        assertTrue(bodyRequest.isLargeRequestBody(0));
+        assertTrue(bodyRequest.isBodyRepeatable());
+    }
+
+    @Test
+    public void streamBodiesAreLargeAndNotRepeatable() throws Exception {
+        ClientRequest bodyRequest = requestWithBody(new ByteArrayInputStream(new byte[1]), new StringWriter());
+        assertTrue(bodyRequest.isLargeRequestBody(1024));
+        assertFalse(bodyRequest.isBodyRepeatable());
+    }
+
+    private static ClientRequest requestWithBody(String body) {
+        return requestWithBody(body, new StringWriter());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ClientRequest requestWithBody(Object body, MessageBodyWriter<?> writer) {
+        Providers providers = createMock(Providers.class);
+        expect(providers.getMessageBodyWriter(anyObject(Class.class), anyObject(Type.class),
+                                              anyObject(Annotation[].class), anyObject(MediaType.class)))
+                .andReturn((MessageBodyWriter) writer).anyTimes();
+        ProxyConfig proxyConfig = createMock(ProxyConfig.class);
+        expect(proxyConfig.getProviders()).andReturn(providers).anyTimes();
+        replay(providers, proxyConfig);
+
+        ClientRequest request = new ClientRequest("http://dummy", null, proxyConfig, null);
+        request.body(MediaType.TEXT_PLAIN_TYPE, body, body.getClass(), body.getClass(), new Annotation[0]);
+        return request;
+    }
+
+    /**
+     * Writes one byte at a time and reports an unknown size, like most streaming serializers.
+     */
+    private static class StringWriter implements MessageBodyWriter<Object> {
+        private int writes;
+
+        @Override
+        public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            return true;
+        }
+
+        @Override
+        public long getSize(Object s, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            return -1;
+        }
+
+        @Override
+        public void writeTo(Object s, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                            MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+            this.writes += 1;
+            for (byte b : s.toString().getBytes(StandardCharsets.UTF_8)) {
+                entityStream.write(b);
+            }
+        }
+    }
 }
@@ -0,0 +1,133 @@
+package com.opower.rest.client.generator.core;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Verifies that proxies of the {@link ProxyEngine#GENERATED} engine behave like those of the
+ * {@link ProxyEngine#JDK_PROXY} engine for the methods of Object.
+ */
+public class TestGeneratedClientProxy {
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.setProperty("javax.ws.rs.ext.RuntimeDelegate", "com.opower.rest.client.generator.core.BasicRuntimeDelegate");
+    }
+
+    @Test
+    public void generatedProxiesImplementTheInterface() {
+        assertThat(build(ProxyEngine.GENERATED), instanceOf(GeneratedClientProxy.class));
+    }
+
+    @Test
+    public void clientsOfAnInterfaceShareTheGeneratedClass() {
+        Frobs client = build(ProxyEngine.GENERATED);
+        assertThat(build(ProxyEngine.GENERATED).getClass(), sameInstance((Object) client.getClass()));
+    }
+
+    @Test
+    public void callsArePassedToTheInvokerOfTheMethod() throws Exception {
+        Map<Method, MethodInvoker> invokers = new HashMap<>();
+        for (Method method : Frobs.class.getMethods()) {
+            invokers.put(method, new EchoInvoker(method.getName()));
+        }
+        Frobs client = GeneratedClientProxy.create(Frobs.class, invokers, Frobs.class.getClassLoader());
+
+        assertThat(client.list(), is("list[]"));
+        assertThat(client.list(), is("list[]"));
+        assertThat(client.get(7), is("get[7]"));
+    }
+
+    @Test
+    public void equalsMatchesTheJdkProxyEngine() {
+        for (ProxyEngine engine : new ProxyEngine[] { ProxyEngine.JDK_PROXY, ProxyEngine.GENERATED }) {
+            Frobs client = build(engine);
+            Frobs other = build(engine);
+            assertThat(engine + " equals itself", client.equals(client), is(true));
+            assertThat(engine + " equals another client", client.equals(other), is(false));
+            assertThat(engine + " equals null", client.equals(null), is(false));
+            assertThat(engine + " equals an unrelated object", client.equals("client"), is(false));
+        }
+    }
+
+    @Test
+    public void hashCodeMatchesTheJdkProxyEngine() {
+        assertThat(build(ProxyEngine.GENERATED).hashCode(), is(build(ProxyEngine.JDK_PROXY).hashCode()));
+        assertThat(build(ProxyEngine.GENERATED).hashCode(), is(Frobs.class.hashCode()));
+    }
+
+    @Test
+    public void toStringMatchesTheJdkProxyEngine() {
+        assertThat(build(ProxyEngine.GENERATED).toString(), is(build(ProxyEngine.JDK_PROXY).toString()));
+        assertThat(build(ProxyEngine.GENERATED).toString(), is("Client Proxy for :" + Frobs.class.getName()));
+    }
+
+    private static Frobs build(ProxyEngine engine) {
+        return new Client.Builder<>(new ResourceInterface<>(Frobs.class), new SimpleUriProvider("http://localhost"))
+                .executor(new InertExecutor())
+                .proxyEngine(engine)
+                .build();
+    }
+
+    @Path("/frobs")
+    public interface Frobs {
+        @GET
+        String list();
+
+        @GET
+        @Path("{id}")
+        String get(@PathParam("id") int id);
+    }
+
+    /**
+     * Answers with the name of its method and the arguments it was called with.
+     */
+    private static class EchoInvoker implements MethodInvoker {
+        private final String name;
+        private Object[] lastArgs;
+
+        EchoInvoker(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Object invoke(Object[] args) {
+            if (args.length == 0 && this.lastArgs != null) {
+                assertThat("calls without arguments share one array", args, sameInstance(this.lastArgs));
+            }
+            this.lastArgs = args;
+            return this.name + Arrays.toString(args);
+        }
+    }
+
+    /**
+     * The calls of these tests never reach the executor.
+     */
+    private static class InertExecutor implements ClientExecutor {
+        @Override
+        public ClientResponse execute(ClientRequest request) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void processFilters(ClientRequest request) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package com.opower.rest.client.generator.core;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.opower.rest.client.generator.annotations.Hedged;
+import com.opower.rest.client.generator.annotations.RoutingKey;
+import com.opower.rest.client.generator.loadbalancing.LoadBalancingUriProvider;
+import com.opower.rest.client.generator.loadbalancing.RendezvousHashStrategy;
+import com.opower.rest.client.generator.util.HttpResponseCodes;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link HedgingInvoker}.
+ */
+public class TestHedgingInvoker {
+
+    private StubExecutor executor;
+    private HedgingInvoker invoker;
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.setProperty("javax.ws.rs.ext.RuntimeDelegate", "com.opower.rest.client.generator.core.BasicRuntimeDelegate");
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        this.executor = new StubExecutor();
+        this.invoker = (HedgingInvoker) new Client.Builder<>(new ResourceInterface<>(Widgets.class), new TwoHosts())
+                .executor(this.executor)
+                .buildInvokers()
+                .get(Widgets.class.getMethod("find", String.class));
+    }
+
+    @Test
+    public void slowAttemptsAreHedgedToAnotherHost() throws Exception {
+        fillBudget(this.invoker);
+        this.executor.holdNext();
+
+        Response response = (Response) this.invoker.invoke(new Object[] { "1" });
+
+        assertThat(response.getStatus(), is(HttpResponseCodes.SC_OK));
+        assertThat(this.invoker.getHedges(), is(1L));
+        List<String> uris = this.executor.getUris();
+        String primary = uris.get(uris.size() - 2);
+        String hedge = uris.get(uris.size() - 1);
+        assertThat(URI.create(hedge).getHost(), is(not(URI.create(primary).getHost())));
+
+        // the loser is cancelled and the win counted by the listeners of the result, right after the caller is released
+        long deadline = System.currentTimeMillis() + 1000;
+        while ((!this.executor.held(0).isCancelled() || this.invoker.getHedgeWins() == 0)
+               && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertTrue(this.executor.held(0).isCancelled());
+        assertThat(this.invoker.getHedgeWins(), is(1L));
+    }
+
+    @Test
+    public void hedgesOfRoutedCallsGoToAnotherHost() throws Exception {
+        LoadBalancingUriProvider hosts = new LoadBalancingUriProvider(
+                Arrays.asList(URI.create("http://first:7000"), URI.create("http://second:7000")),
+                new RendezvousHashStrategy());
+        HedgingInvoker routed = (HedgingInvoker) new Client.Builder<>(new ResourceInterface<>(Widgets.class), hosts)
+                .executor(this.executor)
+                .buildInvokers()
+                .get(Widgets.class.getMethod("get", String.class));
+        fillBudget(routed);
+        this.executor.holdNext();
+
+        routed.invoke(new Object[] { "1" });
+
+        assertThat(routed.getHedges(), is(1L));
+        List<String> uris = this.executor.getUris();
+        String primary = uris.get(uris.size() - 2);
+        String hedge = uris.get(uris.size() - 1);
+        assertThat(URI.create(hedge).getHost(), is(not(URI.create(primary).getHost())));
+    }
+
+    @Test
+    public void serverErrorsDontWinTheRace() throws Exception {
+        fillBudget(this.invoker);
+        this.executor.holdNext();
+        this.executor.answerAll(HttpResponseCodes.SC_SERVICE_UNAVAILABLE, null);
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try {
+            Future<Object> result = caller.submit(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return TestHedgingInvoker.this.invoker.invoke(new Object[] { "1" });
+                }
+            });
+            while (this.invoker.getHedges() == 0) {
+                Thread.sleep(1);
+            }
+            Thread.sleep(20);
+            assertThat(result.isDone(), is(false));
+
+            this.executor.held(0).answer(HttpResponseCodes.SC_OK);
+            assertThat(((Response) result.get(1, TimeUnit.SECONDS)).getStatus(), is(HttpResponseCodes.SC_OK));
+        } finally {
+            caller.shutdownNow();
+        }
+    }
+
+    @Test
+    public void lateResponsesOfBlockingSendsAreReleased() throws Exception {
+        BlockingExecutor blocking = new BlockingExecutor();
+        HedgingInvoker hedging = (HedgingInvoker) new Client.Builder<>(new ResourceInterface<>(Widgets.class), new TwoHosts())
+                .executor(blocking)
+                .buildInvokers()
+                .get(Widgets.class.getMethod("find", String.class));
+        fillBudget(hedging);
+        blocking.blockNext = true;
+
+        Response response = (Response) hedging.invoke(new Object[] { "1" });
+
+        assertThat(response.getStatus(), is(HttpResponseCodes.SC_OK));
+        assertThat(hedging.getHedges(), is(1L));
+        assertThat(blocking.released.get(), is(false));
+
+        // cancelling the loser can't interrupt the send, its response has to be released once it arrives
+        blocking.latch.countDown();
+        long deadline = System.currentTimeMillis() + 1000;
+        while (!blocking.released.get() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertTrue(blocking.released.get());
+    }
+
+    @Test
+    public void hedgesAreLimitedByTheBudget() throws Exception {
+        this.executor.holdNext();
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try {
+            Future<Object> result = caller.submit(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return TestHedgingInvoker.this.invoker.invoke(new Object[] { "1" });
+                }
+            });
+            Thread.sleep(50);
+            assertThat(this.executor.getUris().size(), is(1));
+
+            this.executor.held(0).answer(HttpResponseCodes.SC_OK);
+            assertThat(((Response) result.get(1, TimeUnit.SECONDS)).getStatus(), is(HttpResponseCodes.SC_OK));
+        } finally {
+            caller.shutdownNow();
+        }
+        assertThat(this.invoker.getHedges(), is(0L));
+    }
+
+    @Test
+    public void callsFailOnceEveryAttemptFailed() throws Exception {
+        fillBudget(this.invoker);
+        this.executor.holdNext();
+        this.executor.failAll(new IOException("connection refused"));
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try {
+            Future<Object> result = caller.submit(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return TestHedgingInvoker.this.invoker.invoke(new Object[] { "1" });
+                }
+            });
+            while (this.invoker.getHedges() == 0) {
+                Thread.sleep(1);
+            }
+            this.executor.held(0).setException(new IOException("connection reset"));
+            try {
+                result.get(1, TimeUnit.SECONDS);
+                fail("the call should have failed");
+            } catch (ExecutionException e) {
+                assertThat(e.getCause().getCause(), instanceOf(IOException.class));
+            }
+        } finally {
+            caller.shutdownNow();
+        }
+    }
+
+    @Test
+    public void callsWithABodyThatCanOnlyBeSentOnceAreNotHedged() throws Exception {
+        final HedgingInvoker replacing = (HedgingInvoker) new Client.Builder<>(new ResourceInterface<>(Widgets.class),
+                                                                               new TwoHosts())
+                .executor(this.executor)
+                .buildInvokers()
+                .get(Widgets.class.getMethod("replace", String.class, InputStream.class));
+        for (int i = 0; i < 10; i++) {
+            replacing.invoke(new Object[] { "warm up", new ByteArrayInputStream(new byte[0]) });
+        }
+        int sent = this.executor.getUris().size();
+        this.executor.holdNext();
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try {
+            Future<Object> result = caller.submit(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return replacing.invoke(new Object[] { "1", new ByteArrayInputStream(new byte[0]) });
+                }
+            });
+            Thread.sleep(50);
+            assertThat(this.executor.getUris().size(), is(sent + 1));
+
+            this.executor.held(0).answer(HttpResponseCodes.SC_OK);
+            assertThat(((Response) result.get(1, TimeUnit.SECONDS)).getStatus(), is(HttpResponseCodes.SC_OK));
+        } finally {
+            caller.shutdownNow();
+        }
+        assertThat(replacing.getHedges(), is(0L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void onlyIdempotentMethodsCanBeHedged() {
+        new Client.Builder<>(new ResourceInterface<>(Unsafe.class), new TwoHosts()).executor(this.executor).buildInvokers();
+    }
+
+    private static void fillBudget(HedgingInvoker hedging) {
+        for (int i = 0; i < 10; i++) {
+            hedging.invoke(new Object[] { "warm up" });
+        }
+    }
+
+    @Path("/widgets")
+    public interface Widgets {
+        @GET
+        @Path("{id}")
+        @Hedged(minDelayMillis = 5)
+        Response find(@PathParam("id") String id);
+
+        @GET
+        @Path("{id}")
+        @RoutingKey("id")
+        @Hedged(minDelayMillis = 5)
+        Response get(@PathParam("id") String id);
+
+        @PUT
+        @Path("{id}")
+        @Hedged(minDelayMillis = 5)
+        Response replace(@PathParam("id") String id, InputStream widget);
+    }
+
+    @Path("/widgets")
+    public interface Unsafe {
+        @POST
+        @Hedged
+        Response create(String widget);
+    }
+
+    /**
+     * Alternates between two hosts.
+     */
+    private static class TwoHosts implements UriProvider {
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public URI getUri() {
+            return URI.create(this.calls.getAndIncrement() % 2 == 0 ? "http://first:7000" : "http://second:7000");
+        }
+    }
+
+    /**
+     * Answers requests on the calling thread. The next request can be held back until the latch is opened, ignoring
+     * interrupts like a blocking HTTP client does, and its response records whether its connection was released.
+     */
+    private static class BlockingExecutor implements ClientExecutor {
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile boolean blockNext;
+
+        @Override
+        public ClientResponse execute(ClientRequest request) throws Exception {
+            if (!this.blockNext) {
+                return StubExecutor.response(HttpResponseCodes.SC_OK);
+            }
+            this.blockNext = false;
+            Uninterruptibles.awaitUninterruptibly(this.latch);
+            BaseClientResponse response = StubExecutor.response(HttpResponseCodes.SC_OK);
+            response.addReleaseListener(new Runnable() {
+                @Override
+                public void run() {
+                    BlockingExecutor.this.released.set(true);
+                }
+            });
+            return response;
+        }
+
+        @Override
+        public void processFilters(ClientRequest request) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.opower.rest.client.generator.core;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableMap;
+import com.opower.rest.client.generator.annotations.Batched;
+import com.opower.rest.client.generator.annotations.Hedged;
+import com.opower.rest.client.generator.annotations.Timeout;
+import com.opower.rest.client.generator.extractors.DefaultClientErrorHandler;
+import com.opower.rest.client.generator.extractors.DefaultEntityExtractorFactory;
+import org.junit.Test;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.easymock.EasyMock.createMock;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for the sub-resource proxies created by the {@link SubResourceInvoker}.
+ */
+public class TestSubResourceInvoker {
+
+    @Test
+    public void eachProxyIsBoundToItsOwnPath() {
+        Accounts accounts = client(0);
+        assertThat(uriOf(accounts.account("a").bills()), is(URI.create("http://localhost/api/accounts/a/bills")));
+        assertThat(uriOf(accounts.account("b").bills()), is(URI.create("http://localhost/api/accounts/b/bills")));
+        assertThat(uriOf(accounts.account("a").account("c").bills()),
+                   is(URI.create("http://localhost/api/accounts/a/accounts/c/bills")));
+    }
+
+    @Test
+    public void proxiesAreNotCachedByDefault() {
+        Accounts accounts = client(0);
+        assertThat(accounts.account("a"), not(sameInstance(accounts.account("a"))));
+    }
+
+    @Test
+    public void cachedProxiesAreReusedForTheSamePath() {
+        Accounts accounts = client(10);
+        assertThat(accounts.account("a"), sameInstance(accounts.account("a")));
+        assertThat(accounts.account("a").bills(), sameInstance(accounts.account("a").bills()));
+        assertThat(accounts.account("a"), not(sameInstance(accounts.account("b"))));
+    }
+
+    @Test
+    public void subResourceProxiesBehaveLikeClientProxies() {
+        Bills bills = client(0).account("a").bills();
+        assertThat(bills.toString(), is("Client Proxy for :" + Bills.class.getName()));
+        assertThat(bills.hashCode(), is(Bills.class.hashCode()));
+        assertThat(bills.equals(bills), is(true));
+    }
+
+    @Test
+    public void proxiesForDifferentPathsAreNotEqual() {
+        Accounts accounts = client(0);
+        assertThat(accounts.account("a").equals(accounts.account("b")), is(false));
+        assertThat(accounts.account("a").bills().equals(accounts.account("b").bills()), is(false));
+        assertThat(accounts.account("a").equals(null), is(false));
+    }
+
+    @Test
+    public void hedgedAndBatchedMethodsOfSubResourcesAreWired() throws Exception {
+        Bills bills = client(0).account("a").bills();
+        assertThat(invokerOf(bills, Bills.class.getMethod("find", String.class)), instanceOf(HedgingInvoker.class));
+        assertThat(invokerOf(bills, Bills.class.getMethod("get", String.class)), instanceOf(BatchingInvoker.class));
+    }
+
+    @Test
+    public void subResourceMethodsUseTheTimeoutsOfTheClient() throws Exception {
+        Timeouts clientTimeouts = Timeouts.NONE.withTotalMillis(500);
+        Timeouts getTimeouts = Timeouts.NONE.withReadMillis(50);
+        Method list = Bills.class.getMethod("list");
+        Method get = Bills.class.getMethod("get", String.class);
+        ProxyConfig config = config(0, clientTimeouts, ImmutableMap.of(get, getTimeouts));
+        Bills bills = Client.createProxy(Accounts.class, new SimpleUriProvider("http://localhost/api"), config)
+                .account("a").bills();
+
+        assertThat(((ClientInvoker) invokerOf(bills, list)).timeouts, is(clientTimeouts));
+        assertThat(config.getTimeouts(get), is(getTimeouts));
+        assertThat(config.getTimeouts(Bills.class.getMethod("find", String.class)), is(Timeouts.NONE.withTotalMillis(100)));
+    }
+
+    private static URI uriOf(Object subResource) {
+        return ((SubResourceInvoker.BoundClientProxy) Proxy.getInvocationHandler(subResource)).getUriProvider().getUri();
+    }
+
+    private static MethodInvoker invokerOf(Object subResource, Method method) {
+        return ((SubResourceInvoker.BoundClientProxy) Proxy.getInvocationHandler(subResource)).getInvoker(method);
+    }
+
+    private static Accounts client(int cacheSize) {
+        return Client.createProxy(Accounts.class, new SimpleUriProvider("http://localhost/api"),
+                                  config(cacheSize, null, ImmutableMap.<Method, Timeouts>of()));
+    }
+
+    private static ProxyConfig config(int cacheSize, Timeouts timeouts, Map<Method, Timeouts> methodTimeouts) {
+        return new ProxyConfig(Accounts.class.getClassLoader(), createMock(ClientExecutor.class),
+                               new ClientProviders(), new DefaultEntityExtractorFactory(),
+                               new ConcurrentHashMap<Method, Predicate<Integer>>(),
+                               new DefaultClientErrorHandler(null), ProxyEngine.JDK_PROXY, cacheSize,
+                               timeouts, methodTimeouts);
+    }
+
+    public interface Accounts {
+        @Path("accounts/{id}")
+        Account account(@PathParam("id") String id);
+    }
+
+    public interface Account {
+        @Path("bills")
+        Bills bills();
+
+        @Path("accounts/{id}")
+        Account account(@PathParam("id") String id);
+    }
+
+    public interface Bills {
+        @GET
+        String list();
+
+        @GET
+        @Path("{id}")
+        @Hedged
+        @Timeout(totalMillis = 100)
+        String find(@PathParam("id") String id);
+
+        @GET
+        @Path("batched/{id}")
+        @Batched("findAll")
+        String get(@PathParam("id") String id);
+
+        @POST
+        @Path("_batch")
+        List<String> findAll(List<String> ids);
+    }
+}
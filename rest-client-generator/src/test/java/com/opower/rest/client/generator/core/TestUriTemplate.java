@@ -0,0 +1,129 @@
+package com.opower.rest.client.generator.core;
+
+import com.opower.rest.client.generator.specimpl.UriBuilderImpl;
+import org.junit.Test;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import java.lang.reflect.Method;
+import java.net.URI;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Verifies that URIs rendered by {@link UriTemplate} match the ones built by the UriBuilderImpl code path.
+ */
+public class TestUriTemplate {
+
+    private static final String[] BASE_URIS = {
+            "http://localhost:7000", "http://localhost:7000/", "http://localhost/api", "http://localhost/api/",
+            "https://user@example.com:8443/api/v1?key=abc", "http://localhost/api#top"
+    };
+
+    @Test
+    public void pathParamsMatchUriBuilder() throws Exception {
+        for (String base : BASE_URIS) {
+            assertMatches(base, "find", "frobId", "abc");
+            assertMatches(base, "find", "frobId", "needs encoding/ ok%");
+            assertMatches(base, "twoParams", "a", "one", "b", "2");
+        }
+    }
+
+    @Test
+    public void noMethodPathMatchesUriBuilder() throws Exception {
+        for (String base : BASE_URIS) {
+            assertMatches(base, "list");
+        }
+    }
+
+    @Test
+    public void queryAndMatrixParamsMatchUriBuilder() throws Exception {
+        for (String base : BASE_URIS) {
+            ClientRequest legacy = legacyRequest(base, method("find"));
+            ClientRequest compiled = compiledRequest(base, method("find"));
+            for (ClientRequest request : new ClientRequest[] { legacy, compiled }) {
+                request.pathParameter("frobId", "x");
+                request.queryParameter("q", "a b&c");
+                request.queryParameter("q", "second");
+                request.matrixParameter("m", "1;2");
+            }
+            assertThat(compiled.getUri(), is(legacy.getUri()));
+        }
+    }
+
+    @Test
+    public void templateWithoutAnyPath() throws Exception {
+        for (String base : BASE_URIS) {
+            assertThat(compiledRequest(base, Unrooted.class.getMethod("get")).getUri(),
+                       is(legacyRequest(base, Unrooted.class.getMethod("get")).getUri()));
+        }
+    }
+
+    @Test
+    public void rotatingBaseUrisRenderAgainstTheirOwnBase() throws Exception {
+        UriTemplate template = UriTemplate.compile(Frobs.class, method("list"));
+        for (int round = 0; round < 3; round++) {
+            for (String base : BASE_URIS) {
+                // a new but equal URI instance on every call, like a load balancer handing out its hosts
+                String rendered = template.render(URI.create(base), null, null, null);
+                assertThat(rendered, is(legacyRequest(base, method("list")).getUri()));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingPathParamFails() throws Exception {
+        compiledRequest(BASE_URIS[0], method("find")).getUri();
+    }
+
+    private void assertMatches(String base, String methodName, String... params) throws Exception {
+        ClientRequest legacy = legacyRequest(base, method(methodName));
+        ClientRequest compiled = compiledRequest(base, method(methodName));
+        for (int i = 0; i < params.length; i += 2) {
+            legacy.pathParameter(params[i], params[i + 1]);
+            compiled.pathParameter(params[i], params[i + 1]);
+        }
+        assertThat(compiled.getUri(), is(legacy.getUri()));
+    }
+
+    private static Method method(String name) {
+        for (Method method : Frobs.class.getMethods()) {
+            if (method.getName().equals(name)) {
+                return method;
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    private static ClientRequest legacyRequest(String base, Method method) {
+        UriBuilderImpl uri = new UriBuilderImpl();
+        uri.uri(URI.create(base));
+        if (method.getDeclaringClass().isAnnotationPresent(Path.class)) uri.path(method.getDeclaringClass());
+        if (method.isAnnotationPresent(Path.class)) uri.path(method);
+        return new ClientRequest(uri, null, null, method);
+    }
+
+    private static ClientRequest compiledRequest(String base, Method method) {
+        return new ClientRequest(UriTemplate.compile(method.getDeclaringClass(), method), URI.create(base), null, null, method);
+    }
+
+    @Path("/frob")
+    private interface Frobs {
+        @GET
+        @Path("{frobId}")
+        String find(String frobId);
+
+        @GET
+        String list();
+
+        @GET
+        @Path("/{a}/x/{ b : [0-9]+ }")
+        String twoParams(String a, String b);
+    }
+
+    private interface Unrooted {
+        @GET
+        String get();
+    }
+}
@@ -0,0 +1,80 @@
+package com.opower.rest.client.generator.executors;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A request read straight off a socket by the fake servers of the executor tests.
+ */
+final class RawHttpRequest {
+
+    final String requestLine;
+    final Map<String, String> headers;
+    final byte[] body;
+
+    private RawHttpRequest(String requestLine, Map<String, String> headers, byte[] body) {
+        this.requestLine = requestLine;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    /**
+     * Reads the next request, decoding a chunked or Content-Length delimited body.
+     * @param in the stream of the connection
+     * @return the request or null if the connection was closed before a request line arrived
+     * @throws IOException if the connection fails
+     */
+    static RawHttpRequest read(InputStream in) throws IOException {
+        String requestLine = readLine(in);
+        if (requestLine == null) {
+            return null;
+        }
+        Map<String, String> headers = new HashMap<>();
+        for (String line = readLine(in); line != null && !line.isEmpty(); line = readLine(in)) {
+            int colon = line.indexOf(':');
+            headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if ("chunked".equalsIgnoreCase(headers.get("transfer-encoding"))) {
+            for (int size = Integer.parseInt(readLine(in).trim(), 16); size > 0;
+                 size = Integer.parseInt(readLine(in).trim(), 16)) {
+                copy(in, body, size);
+                readLine(in);
+            }
+            readLine(in);
+        } else if (headers.containsKey("content-length")) {
+            copy(in, body, Integer.parseInt(headers.get("content-length")));
+        }
+        return new RawHttpRequest(requestLine, headers, body.toByteArray());
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        for (int b = in.read(); b != '\n'; b = in.read()) {
+            if (b == -1) {
+                return null;
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return new String(line.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    private static void copy(InputStream in, ByteArrayOutputStream out, int length) throws IOException {
+        byte[] buffer = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int count = in.read(buffer, read, length - read);
+            if (count == -1) {
+                throw new IOException("the connection was closed in the middle of the body");
+            }
+            read += count;
+        }
+        out.write(buffer, 0, length);
+    }
+}
@@ -0,0 +1,239 @@
+package com.opower.rest.client.generator.executors;
+
+import com.opower.rest.client.generator.annotations.Timeout;
+import com.opower.rest.client.generator.core.Client;
+import com.opower.rest.client.generator.core.ClientRequest;
+import com.opower.rest.client.generator.core.ClientRequestFilter;
+import com.opower.rest.client.generator.core.Deadline;
+import com.opower.rest.client.generator.core.ResourceInterface;
+import com.opower.rest.client.generator.core.SimpleUriProvider;
+import com.opower.rest.client.generator.core.Timeouts;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the request bodies, timeouts and deadlines applied by {@link ApacheHttpClient4Executor} against a server that
+ * answers only the requests for /widgets and leaves every other request hanging.
+ */
+public class TestApacheHttpClient4Executor {
+
+    private final List<Socket> connections = new CopyOnWriteArrayList<>();
+    private final Map<String, String> lastHeaders = new ConcurrentHashMap<>();
+    private volatile byte[] lastBody;
+    private ServerSocket server;
+    private ApacheHttpClient4Executor executor;
+    private Client.Builder<Widgets> builder;
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.setProperty("javax.ws.rs.ext.RuntimeDelegate", "com.opower.rest.client.generator.core.BasicRuntimeDelegate");
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        this.server = new ServerSocket(0);
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                serve();
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+        this.executor = new ApacheHttpClient4Executor();
+        this.builder = new Client.Builder<>(new ResourceInterface<>(Widgets.class),
+                                            new SimpleUriProvider("http://localhost:" + this.server.getLocalPort()))
+                .executor(this.executor);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.server.close();
+        for (Socket connection : this.connections) {
+            connection.close();
+        }
+        this.executor.httpClient.getConnectionManager().shutdown();
+    }
+
+    @Test
+    public void theTotalTimeoutAbortsTheConnection() throws Exception {
+        long start = System.nanoTime();
+        Throwable failure = call(this.builder.build(), "slow");
+
+        assertThat(failure, instanceOf(SocketTimeoutException.class));
+        assertThat(failure.getMessage(), is("The request was aborted after 200 ms"));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+    }
+
+    @Test
+    public void theReadTimeoutOfTheMethodIsApplied() throws Exception {
+        Throwable failure = call(this.builder.build(), "idle");
+
+        assertThat(failure, instanceOf(SocketTimeoutException.class));
+        assertThat(failure.getMessage(), is("Read timed out"));
+    }
+
+    @Test
+    public void builderTimeoutsTakePrecedenceOverAnnotations() throws Exception {
+        Widgets client = this.builder.timeoutsForMethod(Widgets.class.getMethod("slow"), Timeouts.NONE.withReadMillis(100))
+                                     .build();
+
+        assertThat(call(client, "slow").getMessage(), is("Read timed out"));
+    }
+
+    @Test
+    public void clientTimeoutsApplyToMethodsWithoutAnnotations() throws Exception {
+        Widgets client = this.builder.timeouts(Timeouts.NONE.withTotalMillis(100)).build();
+
+        assertThat(call(client, "hanging").getMessage(), is("The request was aborted after 100 ms"));
+        assertThat(call(client, "slow").getMessage(), is("The request was aborted after 200 ms"));
+    }
+
+    @Test
+    public void theRemainingTimeIsSentAlong() throws Exception {
+        try (Deadline.Scope scope = Deadline.after(5, TimeUnit.SECONDS).attach()) {
+            assertThat(this.builder.build().list().getStatus(), is(200));
+        }
+        long remaining = Long.parseLong(this.lastHeaders.get(Deadline.HEADER.toLowerCase()));
+        assertTrue(remaining > 0 && remaining <= 5000);
+    }
+
+    @Test
+    public void theRemainingTimeIsNotAddedToTheClientRequest() throws Exception {
+        final List<ClientRequest> sent = new CopyOnWriteArrayList<>();
+        this.executor.httpClient.getConnectionManager().shutdown();
+        this.executor = new ApacheHttpClient4Executor(Arrays.<ClientRequestFilter>asList(new ClientRequestFilter() {
+            @Override
+            public void filter(ClientRequest request) {
+                sent.add(request);
+            }
+        }));
+        try (Deadline.Scope scope = Deadline.after(5, TimeUnit.SECONDS).attach()) {
+            assertThat(this.builder.executor(this.executor).build().list().getStatus(), is(200));
+        }
+        assertTrue(this.lastHeaders.containsKey(Deadline.HEADER.toLowerCase()));
+        assertThat(sent.size(), is(1));
+        assertFalse(sent.get(0).getHeaders().containsKey(Deadline.HEADER));
+    }
+
+    @Test
+    public void theDeadlineShortensTheTotalTimeout() throws Exception {
+        Throwable failure;
+        try (Deadline.Scope scope = Deadline.after(100, TimeUnit.MILLISECONDS).attach()) {
+            failure = call(this.builder.build(), "slow");
+        }
+        assertThat(failure, instanceOf(SocketTimeoutException.class));
+        assertThat(failure.getMessage(), startsWith("The request was aborted after "));
+    }
+
+    @Test
+    public void callsFailWithoutBeingSentOnceTheDeadlineHasPassed() throws Exception {
+        Throwable failure;
+        try (Deadline.Scope scope = Deadline.after(0, TimeUnit.MILLISECONDS).attach()) {
+            failure = call(this.builder.build(), "list");
+        }
+        assertThat(failure, instanceOf(TimeoutException.class));
+        assertThat(this.connections.size(), is(0));
+    }
+
+    @Test
+    public void largeOneShotBodiesArriveWhole() throws Exception {
+        byte[] body = new byte[3 * AbstractClientExecutor.DEFAULT_BUFFERED_BODY_LIMIT + 1];
+        new Random(0).nextBytes(body);
+
+        assertThat(this.builder.build().upload(new ByteArrayInputStream(body)).getStatus(), is(200));
+        assertThat(this.lastHeaders.get("transfer-encoding"), is("chunked"));
+        assertTrue(Arrays.equals(body, this.lastBody));
+    }
+
+    private static Throwable call(Widgets client, String method) throws Exception {
+        try {
+            Widgets.class.getMethod(method).invoke(client);
+            fail("the call should have failed");
+            return null;
+        } catch (InvocationTargetException e) {
+            // the client proxy wraps the failure in a RuntimeException
+            return e.getCause().getCause();
+        }
+    }
+
+    private void serve() {
+        try {
+            while (true) {
+                Socket connection = this.server.accept();
+                this.connections.add(connection);
+                RawHttpRequest request = RawHttpRequest.read(connection.getInputStream());
+                if (request == null) {
+                    continue;
+                }
+                this.lastHeaders.putAll(request.headers);
+                if (request.requestLine.startsWith("GET /widgets ") || request.requestLine.startsWith("POST /widgets ")) {
+                    this.lastBody = request.body;
+                    OutputStream out = connection.getOutputStream();
+                    out.write("HTTP/1.1 200 OK\r\nContent-Length: 0\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                }
+            }
+        } catch (IOException closed) {
+            // the test is over
+        }
+    }
+
+    @Path("/widgets")
+    public interface Widgets {
+        @GET
+        Response list();
+
+        @GET
+        @Path("slow")
+        @Timeout(totalMillis = 200)
+        Response slow();
+
+        @GET
+        @Path("idle")
+        @Timeout(readMillis = 200)
+        Response idle();
+
+        @GET
+        @Path("hanging")
+        Response hanging();
+
+        @POST
+        @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+        Response upload(InputStream body);
+    }
+}
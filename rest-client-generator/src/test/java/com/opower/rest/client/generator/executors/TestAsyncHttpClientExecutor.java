@@ -0,0 +1,227 @@
+package com.opower.rest.client.generator.executors;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.opower.rest.client.generator.core.Client;
+import com.opower.rest.client.generator.core.ResourceInterface;
+import com.opower.rest.client.generator.core.SimpleUriProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests future-returning resource methods sent through {@link AsyncHttpClientExecutor#executeAsync} against a server
+ * that answers /widgets, returns 404 for /widgets/missing and leaves every other request hanging.
+ */
+public class TestAsyncHttpClientExecutor {
+
+    private final BlockingQueue<Socket> hanging = new LinkedBlockingQueue<>();
+    private volatile byte[] lastBody;
+    private ServerSocket server;
+    private AsyncHttpClientExecutor executor;
+    private Widgets client;
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.setProperty("javax.ws.rs.ext.RuntimeDelegate", "com.opower.rest.client.generator.core.BasicRuntimeDelegate");
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        this.server = new ServerSocket(0);
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                serve();
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+        this.executor = new AsyncHttpClientExecutor();
+        this.client = new Client.Builder<>(new ResourceInterface<>(Widgets.class),
+                                           new SimpleUriProvider("http://localhost:" + this.server.getLocalPort()))
+                .executor(this.executor)
+                .registerProviderInstance(new WidgetReader())
+                .build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.server.close();
+        for (Socket connection : this.hanging) {
+            connection.close();
+        }
+        this.executor.close();
+    }
+
+    @Test
+    public void theEntityIsReadOffTheIoThread() throws Exception {
+        Widget widget = this.client.find().get(5, TimeUnit.SECONDS);
+
+        assertThat(widget.name, is("frob"));
+        assertThat(widget.readOn, startsWith("rest-client-entity-reader-"));
+    }
+
+    @Test
+    public void theEntityIsReadOnTheConfiguredExecutor() throws Exception {
+        ExecutorService readers = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat("configured-reader-%d").build());
+        try {
+            Widgets configured = new Client.Builder<>(new ResourceInterface<>(Widgets.class),
+                                                      new SimpleUriProvider("http://localhost:" + this.server.getLocalPort()))
+                    .executor(this.executor)
+                    .registerProviderInstance(new WidgetReader())
+                    .entityReaders(readers)
+                    .build();
+
+            assertThat(configured.find().get(5, TimeUnit.SECONDS).readOn, is("configured-reader-0"));
+        } finally {
+            readers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void errorStatusesFailTheFuture() throws Exception {
+        try {
+            this.client.missing().get(5, TimeUnit.SECONDS);
+            fail("the call should have failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RuntimeException);
+        }
+    }
+
+    @Test
+    public void cancellingTheFutureClosesTheConnection() throws Exception {
+        ListenableFuture<Widget> result = this.client.hanging();
+        Socket connection = this.hanging.poll(5, TimeUnit.SECONDS);
+
+        assertTrue(result.cancel(true));
+        assertTrue(result.isCancelled());
+        connection.setSoTimeout(5000);
+        assertThat(connection.getInputStream().read(), is(-1));
+    }
+
+    @Test
+    public void largeOneShotBodiesArriveWhole() throws Exception {
+        byte[] body = new byte[3 * AbstractClientExecutor.DEFAULT_BUFFERED_BODY_LIMIT + 1];
+        new Random(0).nextBytes(body);
+
+        assertThat(this.client.upload(new ByteArrayInputStream(body)).get(5, TimeUnit.SECONDS).name, is("frob"));
+        assertTrue(Arrays.equals(body, this.lastBody));
+    }
+
+    private void serve() {
+        try {
+            while (true) {
+                Socket connection = this.server.accept();
+                RawHttpRequest request = RawHttpRequest.read(connection.getInputStream());
+                if (request == null) {
+                    connection.close();
+                } else if (request.requestLine.startsWith("GET /widgets ")) {
+                    respond(connection, "200 OK", "frob");
+                } else if (request.requestLine.startsWith("POST /widgets ")) {
+                    this.lastBody = request.body;
+                    respond(connection, "200 OK", "frob");
+                } else if (request.requestLine.startsWith("GET /widgets/missing ")) {
+                    respond(connection, "404 Not Found", "");
+                } else {
+                    this.hanging.add(connection);
+                }
+            }
+        } catch (IOException closed) {
+            // the test is over
+        }
+    }
+
+    private static void respond(Socket connection, String status, String body) throws IOException {
+        OutputStream out = connection.getOutputStream();
+        out.write(("HTTP/1.1 " + status + "\r\nContent-Type: text/plain\r\nContent-Length: " + body.length()
+                   + "\r\nConnection: close\r\n\r\n" + body).getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        connection.close();
+    }
+
+    @Path("/widgets")
+    @Produces(MediaType.TEXT_PLAIN)
+    public interface Widgets {
+        @GET
+        ListenableFuture<Widget> find();
+
+        @GET
+        @Path("missing")
+        ListenableFuture<Widget> missing();
+
+        @GET
+        @Path("hanging")
+        ListenableFuture<Widget> hanging();
+
+        @POST
+        @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+        ListenableFuture<Widget> upload(InputStream body);
+    }
+
+    /**
+     * An entity that remembers the thread it was read on.
+     */
+    public static class Widget {
+        private final String name;
+        private final String readOn = Thread.currentThread().getName();
+
+        Widget(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Reads a Widget from a plain text body.
+     */
+    public static class WidgetReader implements MessageBodyReader<Widget> {
+        @Override
+        public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            return Widget.class.equals(type);
+        }
+
+        @Override
+        public Widget readFrom(Class<Widget> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                               MultivaluedMap<String, String> httpHeaders, InputStream entityStream)
+                throws IOException, WebApplicationException {
+            return new Widget(new BufferedReader(new InputStreamReader(entityStream, StandardCharsets.UTF_8)).readLine());
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package com.opower.rest.client.generator.executors;
+
+import com.google.common.base.Predicate;
+import com.google.common.io.ByteStreams;
+import com.opower.rest.client.generator.annotations.Cacheable;
+import com.opower.rest.client.generator.core.BaseClientResponse;
+import com.opower.rest.client.generator.core.ClientExecutor;
+import com.opower.rest.client.generator.core.ClientRequest;
+import com.opower.rest.client.generator.core.ClientResponse;
+import com.opower.rest.client.generator.core.ProxyConfig;
+import com.opower.rest.client.generator.core.StubExecutor;
+import com.opower.rest.client.generator.util.HttpHeaderNames;
+import com.opower.rest.client.generator.util.HttpResponseCodes;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.ext.Providers;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests for {@link CachingClientExecutor}.
+ */
+public class TestCachingClientExecutor {
+
+    private static final String URI = "http://localhost/widgets/1";
+    private static final String BODY = "widget";
+    private static final String ETAG = "\"v1\"";
+    private static final String LAST_MODIFIED = "Mon, 01 Jun 2015 10:00:00 GMT";
+
+    private StubExecutor delegate;
+    private ClockedExecutor executor;
+
+    @Before
+    public void setUp() {
+        this.delegate = new StubExecutor();
+        this.executor = new ClockedExecutor(this.delegate, CachingClientExecutor.DEFAULT_MAX_BYTES);
+    }
+
+    @Test
+    public void freshResponsesAreServedFromTheCache() throws Exception {
+        this.delegate.respond(HttpResponseCodes.SC_OK, BODY, HttpHeaderNames.CACHE_CONTROL, "max-age=60");
+
+        assertResponse(get("find"), HttpResponseCodes.SC_OK, BODY);
+        assertResponse(get("find"), HttpResponseCodes.SC_OK, BODY);
+        assertThat(this.delegate.getRequests().size(), is(1));
+    }
+
+    @Test
+    public void staleResponsesAreRevalidatedWithTheirETag() throws Exception {
+        this.delegate.respond(HttpResponseCodes.SC_OK, BODY, HttpHeaderNames.CACHE_CONTROL, "max-age=10",
+                              HttpHeaderNames.ETAG, ETAG);
+        this.delegate.respond(HttpResponseCodes.SC_NOT_MODIFIED, null, HttpHeaderNames.CACHE_CONTROL, "max-age=10");
+
+        assertResponse(get("find"), HttpResponseCodes.SC_OK, BODY);
+        this.executor.now += 11000;
+        assertResponse(get("find"), HttpResponseCodes.SC_OK, BODY);
+        assertResponse(get("find"), HttpResponseCodes.SC_OK, BODY);
+
+        assertThat(this.delegate.getRequests().size(), is(2));
+        assertNull(this.delegate.getRequests().get(0).getHeaders().getFirst(HttpHeaderNames.IF_NONE_MATCH));
+        assertThat(this.delegate.getRequests().get(1).getHeaders().getFirst(HttpHeaderNames.IF_NONE_MATCH), is(ETAG));
+    }
+
+    @Test
+    public void noCacheResponsesAreRevalidatedWithLastModified() throws Exception {
+        this.delegate.respond(HttpResponseCodes.SC_OK, BODY, HttpHeaderNames.CACHE_CONTROL, "no-cache",
+                              HttpHeaderNames.LAST_MODIFIED, LAST_MODIFIED);
+        this.delegate.respond(HttpResponseCodes.SC_NOT_MODIFIED, null);
+
+        assertResponse(get("find"), HttpResponseCodes.SC_OK, BODY);
+        assertResponse(get("find"), HttpResponseCodes.SC_OK, BODY);
+
+        assertThat(this.delegate.getRequests().get(1).getHeaders().getFirst(HttpHeaderNames.IF_MODIFIED_SINCE),
+                   is(LAST_MODIFIED));
+    }
+
+    @Test
+    public void changedResponsesReplaceTheCachedOne() throws Exception {
+        this.delegate.respond(HttpResponseCodes.SC_OK, BODY, HttpHeaderNames.ETAG, ETAG);
+        this.delegate.respond(HttpResponseCodes.SC_OK, "new widget", HttpHeaderNames.CACHE_CONTROL, "max-age=60");
+
+        assertResponse(get("find"), HttpResponseCodes.SC_OK, BODY);
+        assertResponse(get("find"), HttpResponseCodes.SC_OK, "new widget");
+        assertResponse(get("find"), HttpResponseCodes.SC_OK, "new widget");
+        assertThat(this.delegate.getRequests().size(), is(2));
+    }
+
+    @Test
+    public void expiresIsUsedWithoutMaxAge() throws Exception {
+        this.delegate.respond(HttpResponseCodes.SC_OK, BODY, HttpHeaderNames.DATE, "Mon, 01 Jun 2015 10:00:00 GMT",
+                              HttpHeaderNames.EXPIRES, "Mon, 01 Jun 2015 10:01:00 GMT");
+        this.delegate.respond(HttpResponseCodes.SC_OK, BODY);
+
+        get("find");
+        this.executor.now += 30000;
+        get("find");
+        assertThat(this.delegate.getRequests().size(), is(1));
+        this.executor.now += 31000;
+        get("find");
+        assertThat(this.delegate.getRequests().size(), is(2));
+    }
+
+    @Test
+    public void noStoreResponsesAreNotCached() throws Exception {
+        this.delegate.respond(HttpResponseCodes.SC_OK, BODY, HttpHeaderNames.CACHE_CONTROL, "no-store, max-age=60");
+        this.delegate.respond(HttpResponseCodes.SC_OK, BODY);
+
+        get("find");
+        get("find");
+        assertThat(this.delegate.getRequests().size(), is(2));
+    }
+
+    @Test
+    public void methodsThatAreNotCacheableBypassTheCache() throws Exception {
+        this.delegate.respond(HttpResponseCodes.SC_OK, BODY, HttpHeaderNames.CACHE_CONTROL, "max-age=60");
+        this.delegate.respond(HttpResponseCodes.SC_OK, BODY, HttpHeaderNames.CACHE_CONTROL, "max-age=60");
+
+        get("list");
+        get("list");
+        assertThat(this.delegate.getRequests().size(), is(2));
+        assertThat(this.executor.size(), is(0L));
+    }
+
+    @Test
+    public void unsafeRequestsInvalidateTheCachedResponse() throws Exception {
+        this.delegate.respond(HttpResponseCodes.SC_OK, BODY, HttpHeaderNames.CACHE_CONTROL, "max-age=60");
+        this.delegate.respond(HttpResponseCodes.SC_NO_CONTENT, null);
+        this.delegate.respond(HttpResponseCodes.SC_OK, BODY);
+
+        get("find");
+        request("update").execute("POST");
+        get("find");
+        assertThat(this.delegate.getRequests().size(), is(3));
+    }
+
+    @Test
+    public void differentAcceptHeadersAreDifferentEntries() throws Exception {
+        this.delegate.respond(HttpResponseCodes.SC_OK, BODY, HttpHeaderNames.CACHE_CONTROL, "max-age=60");
+        this.delegate.respond(HttpResponseCodes.SC_OK, BODY, HttpHeaderNames.CACHE_CONTROL, "max-age=60");
+
+        get("find");
+        request("find").accept("application/xml").execute("GET");
+        assertThat(this.delegate.getRequests().size(), is(2));
+    }
+
+    @Test
+    public void cacheIsBoundedBySize() throws Exception {
+        char[] large = new char[1000];
+        Arrays.fill(large, 'x');
+        this.executor = new ClockedExecutor(this.delegate, 10000);
+        for (int i = 0; i < 20; i++) {
+            this.delegate.respond(HttpResponseCodes.SC_OK, new String(large), HttpHeaderNames.CACHE_CONTROL, "max-age=60");
+            ClientRequest request = new ClientRequest(URI + i, this.executor, proxyConfig(), method("find"));
+            request.execute("GET");
+        }
+        assertThat(this.executor.size(), greaterThan(0L));
+        assertThat(this.executor.size(), lessThan(10L));
+    }
+
+    @Test
+    public void headersNamedByVaryMustMatch() throws Exception {
+        this.delegate.respond(HttpResponseCodes.SC_OK, BODY, HttpHeaderNames.CACHE_CONTROL, "max-age=60",
+                              HttpHeaderNames.VARY, "Accept-Language");
+        this.delegate.respond(HttpResponseCodes.SC_OK, BODY, HttpHeaderNames.CACHE_CONTROL, "max-age=60",
+                              HttpHeaderNames.VARY, "Accept-Language");
+
+        request("find").header(HttpHeaderNames.ACCEPT_LANGUAGE, "en").execute("GET");
+        request("find").header(HttpHeaderNames.ACCEPT_LANGUAGE, "en").execute("GET");
+        assertThat(this.delegate.getRequests().size(), is(1));
+        request("find").header(HttpHeaderNames.ACCEPT_LANGUAGE, "fr").execute("GET");
+        assertThat(this.delegate.getRequests().size(), is(2));
+    }
+
+    @Test
+    public void authenticatedRequestsBypassASharedCache() throws Exception {
+        this.delegate.respond(HttpResponseCodes.SC_OK, BODY, HttpHeaderNames.CACHE_CONTROL, "max-age=60");
+        this.delegate.respond(HttpResponseCodes.SC_OK, BODY, HttpHeaderNames.CACHE_CONTROL, "max-age=60");
+
+        request("find").header(HttpHeaderNames.AUTHORIZATION, "Basic d2lkZ2V0").execute("GET");
+        request("find").header(HttpHeaderNames.AUTHORIZATION, "Basic d2lkZ2V0").execute("GET");
+        assertThat(this.delegate.getRequests().size(), is(2));
+        assertThat(this.executor.size(), is(0L));
+    }
+
+    @Test
+    public void privateResponsesAreOnlyKeptByAPrivateCache() throws Exception {
+        this.delegate.respond(HttpResponseCodes.SC_OK, BODY, HttpHeaderNames.CACHE_CONTROL, "private, max-age=60");
+        this.delegate.respond(HttpResponseCodes.SC_OK, BODY, HttpHeaderNames.CACHE_CONTROL, "private, max-age=60");
+
+        get("find");
+        get("find");
+        assertThat(this.delegate.getRequests().size(), is(2));
+
+        this.executor = new ClockedExecutor(this.delegate, CachingClientExecutor.DEFAULT_MAX_BYTES, true);
+        this.delegate.respond(HttpResponseCodes.SC_OK, BODY, HttpHeaderNames.CACHE_CONTROL, "private, max-age=60");
+        request("find").header(HttpHeaderNames.AUTHORIZATION, "Basic d2lkZ2V0").execute("GET");
+        request("find").header(HttpHeaderNames.AUTHORIZATION, "Basic d2lkZ2V0").execute("GET");
+        assertThat(this.delegate.getRequests().size(), is(3));
+    }
+
+    @Test
+    public void bodiesLargerThanTheCacheArriveWholeButAreNotKept() throws Exception {
+        char[] large = new char[1000];
+        Arrays.fill(large, 'x');
+        this.executor = new ClockedExecutor(this.delegate, 100);
+        this.delegate.respond(HttpResponseCodes.SC_OK, new String(large), HttpHeaderNames.CACHE_CONTROL, "max-age=60");
+
+        assertResponse(get("find"), HttpResponseCodes.SC_OK, new String(large));
+        assertThat(this.executor.size(), is(0L));
+    }
+
+    @Test
+    public void allHttpDateFormatsAreUnderstood() throws Exception {
+        this.delegate.respond(HttpResponseCodes.SC_OK, BODY, HttpHeaderNames.DATE, "Monday, 01-Jun-15 10:00:00 GMT",
+                              HttpHeaderNames.EXPIRES, "Mon Jun  1 10:01:00 2015");
+
+        get("find");
+        get("find");
+        assertThat(this.delegate.getRequests().size(), is(1));
+    }
+
+    @Test
+    public void validatorsAreNotAddedToTheRequestOfTheCaller() throws Exception {
+        this.delegate.respond(HttpResponseCodes.SC_OK, BODY, HttpHeaderNames.ETAG, ETAG);
+        this.delegate.respond(HttpResponseCodes.SC_NOT_MODIFIED, null);
+
+        get("find");
+        ClientRequest request = request("find");
+        assertResponse(request.execute("GET"), HttpResponseCodes.SC_OK, BODY);
+
+        assertThat(this.delegate.getRequests().get(1).getHeaders().getFirst(HttpHeaderNames.IF_NONE_MATCH), is(ETAG));
+        assertNull(request.getHeaders().getFirst(HttpHeaderNames.IF_NONE_MATCH));
+    }
+
+    @Test
+    public void headRequestsAreAnsweredFromACachedGet() throws Exception {
+        this.delegate.respond(HttpResponseCodes.SC_OK, BODY, HttpHeaderNames.CACHE_CONTROL, "max-age=60");
+
+        get("find");
+        ClientResponse response = request("find").execute("HEAD");
+
+        assertThat(response.getStatus(), is(HttpResponseCodes.SC_OK));
+        assertNull(((BaseClientResponse) response).getStreamFactory().getInputStream());
+        assertThat(this.delegate.getRequests().size(), is(1));
+    }
+
+    private ClientResponse get(String methodName) throws Exception {
+        return request(methodName).execute("GET");
+    }
+
+    private ClientRequest request(String methodName) {
+        return new ClientRequest(URI, this.executor, proxyConfig(), method(methodName));
+    }
+
+    private static void assertResponse(ClientResponse response, int status, String body) throws IOException {
+        assertThat(response.getStatus(), is(status));
+        InputStream in = ((BaseClientResponse) response).getStreamFactory().getInputStream();
+        assertThat(new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8), is(body));
+    }
+
+    private static ProxyConfig proxyConfig() {
+        ConcurrentMap<Method, Predicate<Integer>> criteria = new ConcurrentHashMap<>();
+        for (Method method : Widgets.class.getMethods()) {
+            criteria.put(method, new Predicate<Integer>() {
+                @Override
+                public boolean apply(Integer status) {
+                    return status >= HttpResponseCodes.SC_BAD_REQUEST;
+                }
+            });
+        }
+        ProxyConfig proxyConfig = createMock(ProxyConfig.class);
+        expect(proxyConfig.getProviders()).andReturn(createMock(Providers.class)).anyTimes();
+        expect(proxyConfig.getErrorStatusCriteria()).andReturn(criteria).anyTimes();
+        replay(proxyConfig);
+        return proxyConfig;
+    }
+
+    private static Method method(String name) {
+        for (Method method : Widgets.class.getMethods()) {
+            if (method.getName().equals(name)) {
+                return method;
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    @Path("/widgets")
+    public interface Widgets {
+        @GET
+        @Path("{id}")
+        @Cacheable
+        String find(@PathParam("id") String id);
+
+        @GET
+        String list();
+
+        @POST
+        @Path("{id}")
+        void update(@PathParam("id") String id, String widget);
+    }
+
+    private static class ClockedExecutor extends CachingClientExecutor {
+        private long now = 1433152800000L;
+
+        ClockedExecutor(ClientExecutor delegate, long maxBytes) {
+            super(delegate, maxBytes);
+        }
+
+        ClockedExecutor(ClientExecutor delegate, long maxBytes, boolean privateCache) {
+            super(delegate, maxBytes, privateCache);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return this.now;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.opower.rest.client.generator.executors;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.opower.rest.client.generator.core.BaseClientResponse;
+import com.opower.rest.client.generator.core.Client;
+import com.opower.rest.client.generator.core.ClientRequest;
+import com.opower.rest.client.generator.core.ClientResponse;
+import com.opower.rest.client.generator.core.Deadline;
+import com.opower.rest.client.generator.core.ProxyConfig;
+import com.opower.rest.client.generator.core.StubExecutor;
+import com.opower.rest.client.generator.core.UriTemplate;
+import com.opower.rest.client.generator.util.HttpResponseCodes;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.ext.Providers;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link CoalescingClientExecutor}.
+ */
+public class TestCoalescingClientExecutor {
+
+    private static final String URI = "http://localhost/widgets/";
+    private static final String BODY = "widget";
+    private static final String AUTHORIZATION = "Authorization";
+
+    private StubExecutor delegate;
+    private CoalescingClientExecutor executor;
+
+    @Before
+    public void setUp() throws Exception {
+        this.delegate = new StubExecutor().holdAll(true);
+        this.executor = new CoalescingClientExecutor(this.delegate, ImmutableMap.of(
+                Widgets.class.getMethod("find", String.class), ImmutableList.of(AUTHORIZATION)));
+    }
+
+    @Test
+    public void concurrentIdenticalRequestsShareOneExecution() throws Exception {
+        ListenableFuture<ClientResponse> first = this.executor.executeAsync(request("find", "1"));
+        ListenableFuture<ClientResponse> second = this.executor.executeAsync(request("find", "1"));
+        assertThat(this.delegate.getRequests().size(), is(1));
+        assertThat(this.executor.getInFlightCount(), is(1));
+
+        this.delegate.held(0).answer(HttpResponseCodes.SC_OK, BODY);
+
+        assertThat(first.get(), not(sameInstance(second.get())));
+        assertBody(first.get(), BODY);
+        assertBody(second.get(), BODY);
+        assertThat(this.executor.getInFlightCount(), is(0));
+    }
+
+    @Test
+    public void differentUrisAndHeadersAreNotShared() throws Exception {
+        this.executor.executeAsync(request("find", "1"));
+        this.executor.executeAsync(request("find", "2"));
+        this.executor.executeAsync(request("find", "1").header(AUTHORIZATION, "someone else"));
+        assertThat(this.delegate.getRequests().size(), is(3));
+    }
+
+    @Test
+    public void methodsThatAreNotConfiguredAreNeverShared() throws Exception {
+        this.executor.executeAsync(request("list", null));
+        this.executor.executeAsync(request("list", null));
+        assertThat(this.delegate.getRequests().size(), is(2));
+    }
+
+    @Test
+    public void failuresAreShared() throws Exception {
+        ListenableFuture<ClientResponse> first = this.executor.executeAsync(request("find", "1"));
+        ListenableFuture<ClientResponse> second = this.executor.executeAsync(request("find", "1"));
+        this.delegate.held(0).setException(new IOException("connection reset"));
+
+        for (ListenableFuture<ClientResponse> future : ImmutableList.of(first, second)) {
+            try {
+                future.get();
+                fail("the failure should have been shared");
+            } catch (ExecutionException e) {
+                assertThat(e.getCause(), instanceOf(IOException.class));
+            }
+        }
+    }
+
+    @Test
+    public void cancellingOneCallerLeavesTheOthersWaiting() throws Exception {
+        ListenableFuture<ClientResponse> first = this.executor.executeAsync(request("find", "1"));
+        ListenableFuture<ClientResponse> second = this.executor.executeAsync(request("find", "1"));
+
+        assertThat(first.cancel(true), is(true));
+        assertThat(this.delegate.held(0).isCancelled(), is(false));
+
+        this.delegate.held(0).answer(HttpResponseCodes.SC_OK, BODY);
+        assertBody(second.get(), BODY);
+    }
+
+    @Test
+    public void theRequestIsCancelledWhenEveryCallerCancels() throws Exception {
+        ListenableFuture<ClientResponse> first = this.executor.executeAsync(request("find", "1"));
+        ListenableFuture<ClientResponse> second = this.executor.executeAsync(request("find", "1"));
+
+        first.cancel(true);
+        second.cancel(true);
+        assertThat(this.delegate.held(0).isCancelled(), is(true));
+        assertThat(this.executor.getInFlightCount(), is(0));
+
+        ListenableFuture<ClientResponse> third = this.executor.executeAsync(request("find", "1"));
+        assertThat(this.delegate.getRequests().size(), is(2));
+        this.delegate.held(1).answer(HttpResponseCodes.SC_OK, BODY);
+        assertBody(third.get(), BODY);
+    }
+
+    @Test
+    public void completedRequestsAreNotReused() throws Exception {
+        this.delegate.holdAll(false).answerAll(HttpResponseCodes.SC_OK, BODY);
+        assertBody(request("find", "1").execute("GET"), BODY);
+        assertBody(request("find", "1").execute("GET"), BODY);
+        assertThat(this.delegate.getRequests().size(), is(2));
+        assertThat(this.executor.getInFlightCount(), is(0));
+    }
+
+    @Test
+    public void requestsSentToDifferentHostsAreShared() throws Exception {
+        this.executor.executeAsync(request(java.net.URI.create("http://first:7000"), "1"));
+        this.executor.executeAsync(request(java.net.URI.create("http://second:7000"), "1"));
+        assertThat(this.delegate.getRequests().size(), is(1));
+    }
+
+    @Test
+    public void blockingCallersGiveUpAtTheirDeadline() throws Exception {
+        final ClientRequest first = request("find", "1");
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    first.execute("GET");
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        thread.start();
+        while (this.delegate.getHeldCount() == 0) {
+            Thread.sleep(1);
+        }
+
+        try {
+            request("find", "1").deadline(Deadline.after(10, TimeUnit.MILLISECONDS)).execute("GET");
+            fail("the second caller should have given up");
+        } catch (TimeoutException expected) {
+            assertThat(this.delegate.getRequests().size(), is(1));
+        }
+
+        this.delegate.held(0).answer(HttpResponseCodes.SC_OK, BODY);
+        thread.join();
+        assertThat(this.executor.getInFlightCount(), is(0));
+    }
+
+    private ClientRequest request(java.net.URI host, String id) throws Exception {
+        Method method = Widgets.class.getMethod("find", String.class);
+        ClientRequest request = new ClientRequest(UriTemplate.compile(Widgets.class, method), host, this.executor,
+                                                  proxyConfig(method), method) {
+            {
+                this.httpMethod = "GET";
+            }
+        };
+        return request.pathParameter("id", id).header(AUTHORIZATION, "token");
+    }
+
+    private ClientRequest request(String methodName, String id) throws Exception {
+        Method method = id == null ? Widgets.class.getMethod(methodName) : Widgets.class.getMethod(methodName, String.class);
+        ClientRequest request = new ClientRequest(URI + (id == null ? "" : id), this.executor, proxyConfig(method), method) {
+            {
+                this.httpMethod = "GET";
+            }
+        };
+        return request.header(AUTHORIZATION, "token");
+    }
+
+    private static void assertBody(ClientResponse response, String body) throws IOException {
+        InputStream in = ((BaseClientResponse) response).getStreamFactory().getInputStream();
+        assertThat(new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8), is(body));
+    }
+
+    private static ProxyConfig proxyConfig(Method method) {
+        ConcurrentMap<Method, Predicate<Integer>> criteria = new ConcurrentHashMap<>();
+        criteria.put(method, Client.DEFAULT_ERROR_STATUS_CRITERIA);
+        ProxyConfig proxyConfig = createMock(ProxyConfig.class);
+        expect(proxyConfig.getProviders()).andReturn(createMock(Providers.class)).anyTimes();
+        expect(proxyConfig.getErrorStatusCriteria()).andReturn(criteria).anyTimes();
+        replay(proxyConfig);
+        return proxyConfig;
+    }
+
+    @Path("/widgets")
+    public interface Widgets {
+        @GET
+        @Path("{id}")
+        String find(@PathParam("id") String id);
+
+        @GET
+        String list();
+    }
+}
@@ -0,0 +1,332 @@
+package com.opower.rest.client.generator.executors;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.opower.rest.client.generator.core.ClientExecutor;
+import com.opower.rest.client.generator.core.ClientRequest;
+import com.opower.rest.client.generator.core.ClientResponse;
+import com.opower.rest.client.generator.core.Deadline;
+import com.opower.rest.client.generator.core.StubExecutor;
+import com.opower.rest.client.generator.util.HttpResponseCodes;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link ConcurrencyLimitingClientExecutor}.
+ */
+public class TestConcurrencyLimitingClientExecutor {
+
+    private static final String URI = "http://localhost:7000/widgets";
+    private static final String PARTITION = Widgets.class.getName() + ".list";
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private LatencyExecutor delegate;
+
+    @Before
+    public void setUp() {
+        this.delegate = new LatencyExecutor();
+    }
+
+    @Test
+    public void fastResponsesRaiseTheLimitWhileItIsUsed() throws Exception {
+        StubExecutor async = new StubExecutor().holdAll(true);
+        ClockedExecutor executor = new ClockedExecutor(async, new ConcurrencyLimitingClientExecutor.Settings()
+                .withInitialLimit(2));
+        for (int round = 0; round < 5; round++) {
+            while (executor.getInFlight(PARTITION) < executor.getLimit(PARTITION)) {
+                request(executor).executeAsync("GET");
+            }
+            for (StubExecutor.Held held = async.pollHeld(); held != null; held = async.pollHeld()) {
+                held.answer(HttpResponseCodes.SC_OK);
+            }
+        }
+        assertThat(executor.getLimit(PARTITION), is(greaterThan(2)));
+        assertThat(executor.getRejected(PARTITION), is(0L));
+    }
+
+    @Test
+    public void idleCapacityDoesNotRaiseTheLimit() throws Exception {
+        ClockedExecutor executor = new ClockedExecutor(this.delegate, new ConcurrencyLimitingClientExecutor.Settings()
+                .withInitialLimit(4));
+        for (int i = 0; i < 50; i++) {
+            this.delegate.latency = FAST;
+            request(executor).execute("GET").releaseConnection();
+        }
+        assertThat(executor.getLimit(PARTITION), is(4));
+    }
+
+    @Test
+    public void slowResponsesLowerTheLimit() throws Exception {
+        ClockedExecutor executor = new ClockedExecutor(this.delegate, new ConcurrencyLimitingClientExecutor.Settings());
+        this.delegate.latency = FAST;
+        request(executor).execute("GET").releaseConnection();
+        this.delegate.latency = SLOW;
+        for (int i = 0; i < 10; i++) {
+            request(executor).execute("GET").releaseConnection();
+        }
+        assertThat(executor.getLimit(PARTITION), is(lessThan(10)));
+    }
+
+    @Test
+    public void concurrentFailuresLowerTheLimitOnce() throws Exception {
+        StubExecutor async = new StubExecutor().holdAll(true);
+        ClockedExecutor executor = new ClockedExecutor(async, new ConcurrencyLimitingClientExecutor.Settings()
+                .withInitialLimit(10));
+        for (int i = 0; i < 10; i++) {
+            request(executor).executeAsync("GET");
+        }
+        executor.now += SLOW;
+        for (StubExecutor.Held held = async.pollHeld(); held != null; held = async.pollHeld()) {
+            held.answer(HttpResponseCodes.SC_SERVICE_UNAVAILABLE);
+        }
+        assertThat(executor.getLimit(PARTITION), is(9));
+
+        request(executor).executeAsync("GET");
+        async.nextHeld().answer(HttpResponseCodes.SC_SERVICE_UNAVAILABLE);
+        assertThat("a request sent after the limit was lowered lowers it again", executor.getLimit(PARTITION), is(8));
+    }
+
+    @Test
+    public void overloadStatusesLowerTheLimitToTheMinimum() throws Exception {
+        ClockedExecutor executor = new ClockedExecutor(this.delegate, new ConcurrencyLimitingClientExecutor.Settings()
+                .withMinLimit(3));
+        this.delegate.answerAll(HttpResponseCodes.SC_SERVICE_UNAVAILABLE, null);
+        for (int i = 0; i < 50; i++) {
+            request(executor).execute("GET").releaseConnection();
+        }
+        assertThat(executor.getLimit(PARTITION), is(3));
+        assertThat(executor.getInFlight(PARTITION), is(0));
+    }
+
+    @Test
+    public void excessRequestsAreRejected() throws Exception {
+        final ConcurrencyLimitingClientExecutor executor = new ConcurrencyLimitingClientExecutor(
+                this.delegate, fixedLimit(1));
+        this.delegate.holdNext();
+        Thread first = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    request(executor).execute("GET").releaseConnection();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        first.start();
+        StubExecutor.Held held = this.delegate.nextHeld();
+        try {
+            request(executor).execute("GET").releaseConnection();
+            fail("the second request should have been rejected");
+        } catch (RejectedExecutionException expected) {
+            assertThat(executor.getInFlight(PARTITION), is(1));
+            assertThat(executor.getRejected(PARTITION), is(1L));
+        } finally {
+            held.answer();
+            first.join();
+        }
+        assertThat(executor.getInFlight(PARTITION), is(0));
+    }
+
+    @Test
+    public void asyncRequestsAreQueuedUntilCapacityFreesUp() throws Exception {
+        StubExecutor async = new StubExecutor().holdAll(true);
+        ConcurrencyLimitingClientExecutor executor = new ConcurrencyLimitingClientExecutor(
+                async, fixedLimit(1).withMaxQueueDepth(1));
+
+        ListenableFuture<ClientResponse> first = request(executor).executeAsync("GET");
+        ListenableFuture<ClientResponse> second = request(executor).executeAsync("GET");
+        ListenableFuture<ClientResponse> third = request(executor).executeAsync("GET");
+
+        assertThat(async.getHeldCount(), is(1));
+        assertThat(executor.getQueueDepth(PARTITION), is(1));
+        try {
+            third.get();
+            fail("the third request should have been rejected");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), is(instanceOf(RejectedExecutionException.class)));
+        }
+
+        async.nextHeld().answer(HttpResponseCodes.SC_OK);
+        assertThat(first.get().getStatus(), is(HttpResponseCodes.SC_OK));
+        assertThat(executor.getQueueDepth(PARTITION), is(0));
+
+        StubExecutor.Held sent = async.nextHeld();
+        assertThat(sent.getThreadName(), startsWith("rest-client-concurrency-limit-"));
+        sent.answer(HttpResponseCodes.SC_OK);
+        assertThat(second.get().getStatus(), is(HttpResponseCodes.SC_OK));
+        assertThat(executor.getInFlight(PARTITION), is(0));
+    }
+
+    @Test
+    public void cancellingAStartedQueuedRequestCancelsTheCall() throws Exception {
+        StubExecutor async = new StubExecutor().holdAll(true);
+        ConcurrencyLimitingClientExecutor executor = new ConcurrencyLimitingClientExecutor(
+                async, fixedLimit(1).withMaxQueueDepth(1));
+
+        request(executor).executeAsync("GET");
+        ListenableFuture<ClientResponse> queued = request(executor).executeAsync("GET");
+        async.nextHeld().answer(HttpResponseCodes.SC_OK);
+        StubExecutor.Held sent = async.nextHeld();
+
+        queued.cancel(true);
+        long giveUp = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (!sent.isCancelled() && System.nanoTime() < giveUp) {
+            Thread.sleep(1);
+        }
+        assertTrue(sent.isCancelled());
+        assertThat(executor.getInFlight(PARTITION), is(0));
+        assertThat(executor.getLimit(PARTITION), is(1));
+    }
+
+    @Test
+    public void cancelledQueuedRequestsLeaveTheQueue() throws Exception {
+        StubExecutor async = new StubExecutor().holdAll(true);
+        ConcurrencyLimitingClientExecutor executor = new ConcurrencyLimitingClientExecutor(
+                async, fixedLimit(1).withMaxQueueDepth(1));
+
+        request(executor).executeAsync("GET");
+        request(executor).executeAsync("GET").cancel(true);
+        assertThat(executor.getQueueDepth(PARTITION), is(0));
+
+        ListenableFuture<ClientResponse> queued = request(executor).executeAsync("GET");
+        assertThat(executor.getRejected(PARTITION), is(0L));
+        async.nextHeld().answer(HttpResponseCodes.SC_OK);
+        async.nextHeld().answer(HttpResponseCodes.SC_OK);
+        assertThat(queued.get().getStatus(), is(HttpResponseCodes.SC_OK));
+    }
+
+    @Test
+    public void queuedRequestsFailWhenTheirDeadlinePasses() throws Exception {
+        StubExecutor async = new StubExecutor().holdAll(true);
+        ConcurrencyLimitingClientExecutor executor = new ConcurrencyLimitingClientExecutor(
+                async, fixedLimit(1).withMaxQueueDepth(1));
+
+        request(executor).executeAsync("GET");
+        ListenableFuture<ClientResponse> queued = request(executor).deadline(Deadline.after(10, TimeUnit.MILLISECONDS))
+                                                                   .executeAsync("GET");
+        try {
+            queued.get(1, TimeUnit.SECONDS);
+            fail("the queued request should have timed out");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), is(instanceOf(TimeoutException.class)));
+        }
+        assertThat(executor.getQueueDepth(PARTITION), is(0));
+        assertThat(async.getHeldCount(), is(1));
+    }
+
+    @Test
+    public void blockingRequestsStopWaitingAtTheirDeadline() throws Exception {
+        ConcurrencyLimitingClientExecutor executor = new ConcurrencyLimitingClientExecutor(
+                this.delegate, fixedLimit(1).withMaxQueueDepth(1).withMaxQueueWaitMillis(TimeUnit.MINUTES.toMillis(1)));
+
+        ClientResponse first = request(executor).execute("GET");
+        try {
+            request(executor).deadline(Deadline.after(10, TimeUnit.MILLISECONDS)).execute("GET");
+            fail("the second request should have timed out");
+        } catch (TimeoutException expected) {
+            assertThat(executor.getQueueDepth(PARTITION), is(0));
+        } finally {
+            first.releaseConnection();
+        }
+    }
+
+    @Test
+    public void blockingRequestsKeepTheirPlaceUntilTheResponseIsReleased() throws Exception {
+        ConcurrencyLimitingClientExecutor executor = new ConcurrencyLimitingClientExecutor(this.delegate, fixedLimit(1));
+
+        ClientResponse response = request(executor).execute("GET");
+        assertThat(executor.getInFlight(PARTITION), is(1));
+
+        response.releaseConnection();
+        assertThat(executor.getInFlight(PARTITION), is(0));
+    }
+
+    @Test
+    public void methodPartitionsUseTheFullInterfaceName() throws Exception {
+        ConcurrencyLimitingClientExecutor executor = new ConcurrencyLimitingClientExecutor(this.delegate);
+        assertThat(executor.partitionOf(request(executor)),
+                   is("com.opower.rest.client.generator.executors.TestConcurrencyLimitingClientExecutor$Widgets.list"));
+    }
+
+    @Test
+    public void hostsHaveTheirOwnLimits() throws Exception {
+        ClockedExecutor executor = new ClockedExecutor(this.delegate, new ConcurrencyLimitingClientExecutor.Settings()
+                .withPartitioning(ConcurrencyLimitingClientExecutor.Partitioning.HOST));
+        this.delegate.answerAll(HttpResponseCodes.SC_GATEWAY_TIMEOUT, null);
+        for (int i = 0; i < 10; i++) {
+            request(executor).execute("GET").releaseConnection();
+        }
+        this.delegate.answerAll(HttpResponseCodes.SC_OK, null);
+        new ClientRequest("http://otherhost/widgets", executor, null, Widgets.class.getMethod("list")).execute("GET")
+                .releaseConnection();
+
+        assertThat(executor.getLimit("localhost:7000"), is(lessThan(20)));
+        assertThat(executor.getLimit("otherhost"), is(20));
+    }
+
+    private static ConcurrencyLimitingClientExecutor.Settings fixedLimit(int limit) {
+        return new ConcurrencyLimitingClientExecutor.Settings().withMinLimit(limit)
+                                                               .withInitialLimit(limit)
+                                                               .withMaxLimit(limit);
+    }
+
+    private static ClientRequest request(ClientExecutor executor) throws NoSuchMethodException {
+        return new ClientRequest(URI, executor, null, Widgets.class.getMethod("list"));
+    }
+
+    @Path("/widgets")
+    public interface Widgets {
+        @GET
+        String list();
+    }
+
+    private static class ClockedExecutor extends ConcurrencyLimitingClientExecutor {
+        private long now;
+
+        ClockedExecutor(ClientExecutor delegate, Settings settings) {
+            super(delegate, settings);
+            if (delegate instanceof LatencyExecutor) {
+                ((LatencyExecutor) delegate).clock = this;
+            }
+        }
+
+        @Override
+        protected long nanoTime() {
+            return this.now;
+        }
+    }
+
+    /**
+     * Advances the clock of the executor under test by the latency of every blocking request.
+     */
+    private static class LatencyExecutor extends StubExecutor {
+        private volatile long latency;
+        private ClockedExecutor clock;
+
+        @Override
+        public ClientResponse execute(ClientRequest request) throws Exception {
+            ClientResponse response = super.execute(request);
+            if (this.clock != null) {
+                this.clock.now += this.latency;
+            }
+            return response;
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package com.opower.rest.client.generator.executors;
+
+import com.google.common.base.Predicate;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.opower.rest.client.generator.core.BasicRuntimeDelegate;
+import com.opower.rest.client.generator.core.ClientRequest;
+import com.opower.rest.client.generator.core.ClientResponse;
+import com.opower.rest.client.generator.core.ProxyConfig;
+import com.opower.rest.client.generator.specimpl.MultivaluedMapImpl;
+import com.opower.rest.client.generator.util.HttpResponseCodes;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Providers;
+import javax.ws.rs.ext.RuntimeDelegate;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Unit tests for {@link InProcessClientExecutor}.
+ */
+public class TestInProcessClientExecutor {
+
+    private static final String WIDGET = "widget";
+
+    private final WidgetResource resource = new WidgetResource();
+
+    @BeforeClass
+    public static void installRuntimeDelegate() {
+        RuntimeDelegate.setInstance(new BasicRuntimeDelegate());
+    }
+
+    @AfterClass
+    public static void resetRuntimeDelegate() {
+        RuntimeDelegate.setInstance(null);
+    }
+
+    @Test
+    public void entityIsHandedOverAsIs() throws Exception {
+        InProcessClientExecutor executor = new InProcessClientExecutor(this.resource);
+        ClientResponse response = executor.execute(request(executor, "echo", WIDGET));
+
+        assertEquals(HttpResponseCodes.SC_OK, response.getStatus());
+        assertSame(WIDGET, response.getEntity(String.class));
+    }
+
+    @Test
+    public void entitiesAreCopiedAcrossTheBoundary() throws Exception {
+        InProcessClientExecutor executor = new InProcessClientExecutor(this.resource, true);
+        ClientRequest request = request(executor, "echo", WIDGET);
+        request.body(MediaType.TEXT_PLAIN_TYPE, WIDGET, String.class, String.class, new Annotation[0]);
+        ClientResponse response = executor.execute(request);
+
+        assertEquals(HttpResponseCodes.SC_OK, response.getStatus());
+        String entity = (String) response.getEntity(String.class);
+        assertEquals(WIDGET, entity);
+        assertNotSame(WIDGET, entity);
+    }
+
+    @Test
+    public void nullResultIsNoContent() throws Exception {
+        InProcessClientExecutor executor = new InProcessClientExecutor(this.resource);
+        ClientResponse response = executor.execute(request(executor, "find", "missing"));
+
+        assertEquals(HttpResponseCodes.SC_NO_CONTENT, response.getStatus());
+        assertNull(response.getEntity(String.class));
+    }
+
+    @Test
+    public void webApplicationExceptionKeepsItsStatus() throws Exception {
+        InProcessClientExecutor executor = new InProcessClientExecutor(this.resource);
+        ClientResponse response = executor.execute(request(executor, "find", "forbidden"));
+
+        assertEquals(HttpResponseCodes.SC_FORBIDDEN, response.getStatus());
+    }
+
+    @Test
+    public void otherExceptionsAreServerErrors() throws Exception {
+        InProcessClientExecutor executor = new InProcessClientExecutor(this.resource);
+        ClientResponse response = executor.execute(request(executor, "find", "broken"));
+
+        assertEquals(HttpResponseCodes.SC_INTERNAL_SERVER_ERROR, response.getStatus());
+    }
+
+    @Test
+    public void listenableFutureResultsCompleteTheResponse() throws Exception {
+        InProcessClientExecutor executor = new InProcessClientExecutor(this.resource);
+        ListenableFuture<ClientResponse> response = executor.executeAsync(request(executor, "findLater", WIDGET));
+        assertFalse(response.isDone());
+
+        this.resource.later.set(WIDGET);
+
+        assertEquals(HttpResponseCodes.SC_OK, response.get().getStatus());
+        assertSame(WIDGET, response.get().getEntity(String.class));
+    }
+
+    @Test
+    public void failedFutureResultsKeepTheirStatus() throws Exception {
+        InProcessClientExecutor executor = new InProcessClientExecutor(this.resource);
+        ListenableFuture<ClientResponse> response = executor.executeAsync(request(executor, "findLater", "forbidden"));
+
+        assertEquals(HttpResponseCodes.SC_FORBIDDEN, response.get().getStatus());
+    }
+
+    @Test
+    public void futureResultsAreWaitedFor() throws Exception {
+        InProcessClientExecutor executor = new InProcessClientExecutor(this.resource);
+        ClientResponse response = executor.execute(request(executor, "findEventually", WIDGET));
+
+        assertEquals(HttpResponseCodes.SC_OK, response.getStatus());
+        assertSame(WIDGET, response.getEntity(String.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void requestsWithoutArgumentsAreRejected() throws Exception {
+        InProcessClientExecutor executor = new InProcessClientExecutor(this.resource);
+        executor.execute(new ClientRequest("http://dummy", executor, proxyConfig(), method("echo")));
+    }
+
+    private static ClientRequest request(InProcessClientExecutor executor, String methodName, Object... args) {
+        ClientRequest request = new ClientRequest("http://dummy", executor, proxyConfig(), method(methodName));
+        request.accept(MediaType.TEXT_PLAIN);
+        request.arguments(args);
+        return request;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ProxyConfig proxyConfig() {
+        StringProvider provider = new StringProvider();
+        Providers providers = createMock(Providers.class);
+        expect(providers.getMessageBodyWriter(anyObject(Class.class), anyObject(Type.class),
+                                              anyObject(Annotation[].class), anyObject(MediaType.class)))
+                .andReturn(provider).anyTimes();
+        expect(providers.getMessageBodyReader(anyObject(Class.class), anyObject(Type.class),
+                                              anyObject(Annotation[].class), anyObject(MediaType.class)))
+                .andReturn(provider).anyTimes();
+        ConcurrentMap<Method, Predicate<Integer>> criteria = new ConcurrentHashMap<>();
+        for (Method method : Widgets.class.getMethods()) {
+            criteria.put(method, new Predicate<Integer>() {
+                @Override
+                public boolean apply(Integer status) {
+                    return status >= HttpResponseCodes.SC_BAD_REQUEST;
+                }
+            });
+        }
+        ProxyConfig proxyConfig = createMock(ProxyConfig.class);
+        expect(proxyConfig.getProviders()).andReturn(providers).anyTimes();
+        expect(proxyConfig.getErrorStatusCriteria()).andReturn(criteria).anyTimes();
+        replay(providers, proxyConfig);
+        return proxyConfig;
+    }
+
+    private static Method method(String name) {
+        for (Method method : Widgets.class.getMethods()) {
+            if (method.getName().equals(name)) {
+                return method;
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    @Path("/widgets")
+    public interface Widgets {
+        @GET
+        @Path("{id}")
+        String find(@PathParam("id") String id);
+
+        @POST
+        String echo(String widget);
+
+        @GET
+        @Path("later/{id}")
+        ListenableFuture<String> findLater(@PathParam("id") String id);
+
+        @GET
+        @Path("eventually/{id}")
+        Future<String> findEventually(@PathParam("id") String id);
+    }
+
+    private static class WidgetResource implements Widgets {
+        private final SettableFuture<String> later = SettableFuture.create();
+
+        @Override
+        public String find(String id) {
+            switch (id) {
+                case "forbidden":
+                    throw new WebApplicationException(new StatusResponse(HttpResponseCodes.SC_FORBIDDEN));
+                case "broken":
+                    throw new IllegalStateException("broken");
+                default:
+                    return null;
+            }
+        }
+
+        @Override
+        public String echo(String widget) {
+            return widget;
+        }
+
+        @Override
+        public ListenableFuture<String> findLater(String id) {
+            if ("forbidden".equals(id)) {
+                return Futures.immediateFailedFuture(
+                        new WebApplicationException(new StatusResponse(HttpResponseCodes.SC_FORBIDDEN)));
+            }
+            return this.later;
+        }
+
+        @Override
+        public Future<String> findEventually(final String id) {
+            FutureTask<String> task = new FutureTask<>(new Callable<String>() {
+                @Override
+                public String call() {
+                    return id;
+                }
+            });
+            task.run();
+            return task;
+        }
+    }
+
+    /**
+     * A bare Response, since BasicRuntimeDelegate can't build one.
+     */
+    private static class StatusResponse extends Response {
+        private final int status;
+
+        private StatusResponse(int status) {
+            this.status = status;
+        }
+
+        @Override
+        public Object getEntity() {
+            return null;
+        }
+
+        @Override
+        public int getStatus() {
+            return this.status;
+        }
+
+        @Override
+        public MultivaluedMap<String, Object> getMetadata() {
+            return new MultivaluedMapImpl<>();
+        }
+    }
+
+    private static class StringProvider implements MessageBodyReader<String>, MessageBodyWriter<String> {
+        @Override
+        public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            return type == String.class;
+        }
+
+        @Override
+        public String readFrom(Class<String> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                               MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[64];
+            for (int read = entityStream.read(buffer); read != -1; read = entityStream.read(buffer)) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            return type == String.class;
+        }
+
+        @Override
+        public long getSize(String s, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            return -1;
+        }
+
+        @Override
+        public void writeTo(String s, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                            MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+            entityStream.write(s.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
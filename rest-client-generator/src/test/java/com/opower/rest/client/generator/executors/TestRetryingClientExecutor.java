@@ -0,0 +1,246 @@
+package com.opower.rest.client.generator.executors;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.opower.rest.client.generator.annotations.Idempotent;
+import com.opower.rest.client.generator.annotations.RoutingKey;
+import com.opower.rest.client.generator.core.BasicRuntimeDelegate;
+import com.opower.rest.client.generator.core.Client;
+import com.opower.rest.client.generator.core.ClientExecutor;
+import com.opower.rest.client.generator.core.ClientRequest;
+import com.opower.rest.client.generator.core.ClientResponse;
+import com.opower.rest.client.generator.core.Deadline;
+import com.opower.rest.client.generator.core.ResourceInterface;
+import com.opower.rest.client.generator.core.RetryPolicy;
+import com.opower.rest.client.generator.core.SimpleUriProvider;
+import com.opower.rest.client.generator.core.StubExecutor;
+import com.opower.rest.client.generator.loadbalancing.LoadBalancingUriProvider;
+import com.opower.rest.client.generator.loadbalancing.RendezvousHashStrategy;
+import com.opower.rest.client.generator.util.HttpResponseCodes;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link RetryingClientExecutor} and the retry configuration of {@link Client}.
+ */
+public class TestRetryingClientExecutor {
+
+    private static final String URI = "http://localhost/widgets";
+
+    private final StubExecutor delegate = new StubExecutor();
+    private final RetryPolicy policy = new RetryPolicy().withBackoff(0, 0);
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.setProperty("javax.ws.rs.ext.RuntimeDelegate", "com.opower.rest.client.generator.core.BasicRuntimeDelegate");
+    }
+
+    @Test
+    public void ioExceptionsAreRetried() throws Exception {
+        RetryingClientExecutor executor = executor(10);
+        this.delegate.fail(2).respond(HttpResponseCodes.SC_OK);
+
+        assertThat(executor.execute(request(executor)).getStatus(), is(HttpResponseCodes.SC_OK));
+        assertThat(this.delegate.getRequests().size(), is(3));
+        assertThat(executor.getRetries(), is(2L));
+    }
+
+    @Test
+    public void theLastFailureIsThrownAfterMaxAttempts() throws Exception {
+        RetryingClientExecutor executor = executor(10);
+        this.delegate.fail(3);
+        try {
+            executor.execute(request(executor));
+            fail("the request should have failed");
+        } catch (IOException expected) {
+            assertThat(this.delegate.getRequests().size(), is(3));
+        }
+    }
+
+    @Test
+    public void retryableStatusesAreRetriedAndReleased() throws Exception {
+        RetryingClientExecutor executor = executor(10);
+        this.delegate.respond(HttpResponseCodes.SC_SERVICE_UNAVAILABLE).respond(HttpResponseCodes.SC_OK);
+
+        assertThat(executor.execute(request(executor)).getStatus(), is(HttpResponseCodes.SC_OK));
+        assertThat(this.delegate.getReleased(), is(1));
+    }
+
+    @Test
+    public void otherStatusesAreReturnedAsTheyAre() throws Exception {
+        RetryingClientExecutor executor = executor(10);
+        this.delegate.respond(HttpResponseCodes.SC_INTERNAL_SERVER_ERROR);
+
+        assertThat(executor.execute(request(executor)).getStatus(), is(HttpResponseCodes.SC_INTERNAL_SERVER_ERROR));
+        assertThat(this.delegate.getRequests().size(), is(1));
+    }
+
+    @Test
+    public void retriesAreLimitedByTheBudget() throws Exception {
+        RetryingClientExecutor executor = executor(0);
+        for (int i = 0; i < 50; i++) {
+            this.delegate.fail(3);
+            try {
+                executor.execute(request(executor));
+            } catch (IOException expected) {
+                this.delegate.clearAnswers();
+            }
+        }
+        // without a budget only the saved retries are available
+        assertThat(executor.getRetries(), is((long) RetryingClientExecutor.MAX_SAVED_RETRIES));
+        assertThat(this.delegate.getRequests().size(), is(50 + RetryingClientExecutor.MAX_SAVED_RETRIES));
+        assertThat(executor.getBudgetExhausted(), is(45L));
+    }
+
+    @Test
+    public void asyncRequestsAreRetried() throws Exception {
+        RetryingClientExecutor executor = executor(10);
+        this.delegate.fail(1).respond(HttpResponseCodes.SC_BAD_GATEWAY).respond(HttpResponseCodes.SC_OK);
+
+        assertThat(executor.executeAsync(request(executor)).get().getStatus(), is(HttpResponseCodes.SC_OK));
+        assertThat(this.delegate.getRequests().size(), is(3));
+
+        this.delegate.fail(3);
+        try {
+            executor.executeAsync(request(executor)).get();
+            fail("the request should have failed");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(IOException.class));
+        }
+    }
+
+    @Test
+    public void cancellingAnAsyncRequestCancelsTheAttempt() throws Exception {
+        RetryingClientExecutor executor = executor(10);
+        this.delegate.holdNext();
+
+        ListenableFuture<ClientResponse> result = executor.executeAsync(request(executor));
+        result.cancel(true);
+
+        assertTrue(this.delegate.held(0).isCancelled());
+    }
+
+    @Test
+    public void responsesThatArriveAfterTheCallerCancelledAreReleased() throws Exception {
+        RetryingClientExecutor executor = executor(10);
+        this.delegate.holdNext().ignoreCancel().respond(HttpResponseCodes.SC_SERVICE_UNAVAILABLE);
+
+        ListenableFuture<ClientResponse> result = executor.executeAsync(request(executor));
+        result.cancel(true);
+        assertTrue(this.delegate.held(0).wasCancelled());
+        this.delegate.held(0).answer();
+
+        assertThat(this.delegate.getReleased(), is(1));
+        assertThat(this.delegate.getRequests().size(), is(1));
+        assertThat(executor.getRetries(), is(0L));
+    }
+
+    @Test
+    public void requestsWithABodyThatCanOnlyBeSentOnceAreNotRetried() throws Exception {
+        RetryingClientExecutor executor = executor(10);
+        this.delegate.fail(1).respond(HttpResponseCodes.SC_OK);
+        ClientRequest request = request(executor).body(MediaType.APPLICATION_OCTET_STREAM_TYPE,
+                                                       new ByteArrayInputStream(new byte[0]), InputStream.class,
+                                                       InputStream.class, new Annotation[0]);
+        try {
+            executor.execute(request);
+            fail("the request should have failed");
+        } catch (IOException expected) {
+            assertThat(this.delegate.getRequests().size(), is(1));
+            assertThat(executor.getRetries(), is(0L));
+        }
+    }
+
+    @Test
+    public void retriesGoToAnotherHost() throws Exception {
+        LoadBalancingUriProvider hosts = new LoadBalancingUriProvider(
+                Arrays.asList(java.net.URI.create("http://first:7000"), java.net.URI.create("http://second:7000")),
+                new RendezvousHashStrategy());
+        Method find = Widgets.class.getMethod("find", String.class);
+        Widgets client = new Client.Builder<>(new ResourceInterface<>(Widgets.class), hosts)
+                .executor(this.delegate)
+                .retryPolicyForMethod(find, this.policy)
+                .build();
+        this.delegate.fail(1).respond(HttpResponseCodes.SC_OK);
+
+        assertThat(client.find("1").getStatus(), is(HttpResponseCodes.SC_OK));
+        assertThat(this.delegate.getUris().size(), is(2));
+        assertThat(java.net.URI.create(this.delegate.getUris().get(1)).getHost(),
+                   is(not(java.net.URI.create(this.delegate.getUris().get(0)).getHost())));
+    }
+
+    @Test
+    public void requestsAreNotRetriedPastTheirDeadline() throws Exception {
+        RetryingClientExecutor executor = executor(10);
+        this.delegate.fail(1).respond(HttpResponseCodes.SC_OK);
+        try {
+            executor.execute(request(executor).deadline(Deadline.after(0, TimeUnit.MILLISECONDS)));
+            fail("the request should have failed");
+        } catch (IOException expected) {
+            assertThat(this.delegate.getRequests().size(), is(1));
+            assertThat(executor.getRetries(), is(0L));
+        }
+    }
+
+    @Test
+    public void onlyIdempotentMethodsAreRetried() throws Exception {
+        Client.Builder<Widgets> builder = new Client.Builder<>(new ResourceInterface<>(Widgets.class),
+                                                               new SimpleUriProvider(URI)).retryPolicy(this.policy);
+        try {
+            builder.retryPolicyForMethod(Widgets.class.getMethod("create", String.class), this.policy);
+            fail("POST methods should only be retried when they are @Idempotent");
+        } catch (IllegalArgumentException expected) {
+            builder.retryPolicyForMethod(Widgets.class.getMethod("update", String.class), this.policy);
+        }
+    }
+
+    private RetryingClientExecutor executor(double budgetPercent) throws Exception {
+        return new RetryingClientExecutor(this.delegate, ImmutableMap.of(Widgets.class.getMethod("list"), this.policy),
+                                          budgetPercent);
+    }
+
+    private static ClientRequest request(ClientExecutor executor) throws Exception {
+        return new ClientRequest(URI, executor, null, Widgets.class.getMethod("list"));
+    }
+
+    @Path("/widgets")
+    public interface Widgets {
+        @GET
+        Response list();
+
+        @GET
+        @Path("{id}")
+        @RoutingKey("id")
+        Response find(@PathParam("id") String id);
+
+        @POST
+        Response create(String widget);
+
+        @POST
+        @Idempotent
+        Response update(String widget);
+    }
+}
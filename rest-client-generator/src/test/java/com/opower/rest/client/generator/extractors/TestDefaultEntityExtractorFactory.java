@@ -0,0 +1,61 @@
+package com.opower.rest.client.generator.extractors;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.Test;
+
+import javax.ws.rs.core.Response;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests how the DefaultEntityExtractorFactory handles resource methods returning futures.
+ */
+public class TestDefaultEntityExtractorFactory {
+
+    private final DefaultEntityExtractorFactory factory = new DefaultEntityExtractorFactory();
+
+    @Test
+    public void futureReturnTypes() throws Exception {
+        assertThat(DefaultEntityExtractorFactory.isFutureReturnType(Future.class), is(true));
+        assertThat(DefaultEntityExtractorFactory.isFutureReturnType(ListenableFuture.class), is(true));
+        assertThat(DefaultEntityExtractorFactory.isFutureReturnType(String.class), is(false));
+    }
+
+    @Test
+    public void futureEntityTypeIsTheTypeArgument() throws Exception {
+        assertThat(DefaultEntityExtractorFactory.getFutureEntityType(
+                Futures.class.getMethod("list").getGenericReturnType()).toString(),
+                   is("java.util.List<java.lang.String>"));
+        assertThat(DefaultEntityExtractorFactory.getFutureEntityType(
+                Futures.class.getMethod("wildcard").getGenericReturnType()), is((Object) Object.class));
+        assertThat(DefaultEntityExtractorFactory.getFutureEntityType(
+                Futures.class.getMethod("raw").getGenericReturnType()), is((Object) Object.class));
+    }
+
+    @Test
+    public void extractorsAreChosenByTheEntityType() throws Exception {
+        assertThat(this.factory.createExtractor(Futures.class.getMethod("list")), instanceOf(BodyEntityExtractor.class));
+        assertThat(this.factory.createExtractor(Futures.class.getMethod("response")),
+                   is((EntityExtractor) DefaultEntityExtractorFactory.clientResponseExtractor));
+        assertThat(this.factory.createExtractor(Futures.class.getMethod("nothing")),
+                   not(instanceOf(BodyEntityExtractor.class)));
+    }
+
+    private interface Futures {
+        ListenableFuture<List<String>> list();
+
+        Future<?> wildcard();
+
+        @SuppressWarnings("rawtypes")
+        Future raw();
+
+        ListenableFuture<Response> response();
+
+        Future<Void> nothing();
+    }
+}
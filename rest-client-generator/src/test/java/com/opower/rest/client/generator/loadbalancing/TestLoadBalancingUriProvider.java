@@ -0,0 +1,180 @@
+package com.opower.rest.client.generator.loadbalancing;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.opower.rest.client.generator.core.ClientRequest;
+import com.opower.rest.client.generator.core.ClientResponse;
+import com.opower.rest.client.generator.core.StubExecutor;
+import com.opower.rest.client.generator.core.UriTemplate;
+import com.opower.rest.client.generator.util.HttpResponseCodes;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link LoadBalancingUriProvider}, its strategies and {@link HostTrackingClientExecutor}.
+ */
+public class TestLoadBalancingUriProvider {
+
+    private static final URI FIRST = URI.create("http://first:7000/api");
+    private static final URI SECOND = URI.create("http://second:7000/api");
+    private static final URI THIRD = URI.create("http://third:7000/api");
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void roundRobinCyclesThroughTheHosts() {
+        LoadBalancingUriProvider provider = provider(new RoundRobinStrategy());
+        assertThat(provider.getUri(), is(FIRST));
+        assertThat(provider.getUri(), is(SECOND));
+        assertThat(provider.getUri(), is(THIRD));
+        assertThat(provider.getUri(), is(FIRST));
+    }
+
+    @Test
+    public void powerOfTwoChoicesAvoidsTheBusiestHost() {
+        LoadBalancingUriProvider provider = provider(new PowerOfTwoChoicesStrategy());
+        Host busy = provider.getHosts().get(0);
+        busy.onStart();
+        busy.onStart();
+        for (int i = 0; i < 100; i++) {
+            assertThat(provider.getUri(), is(not(FIRST)));
+        }
+    }
+
+    @Test
+    public void ewmaLatencyAvoidsTheSlowestHost() {
+        LoadBalancingUriProvider provider = new LoadBalancingUriProvider(ImmutableList.of(FIRST, SECOND),
+                                                                         new EwmaLatencyStrategy());
+        complete(provider.getHosts().get(0), TimeUnit.MILLISECONDS.toNanos(100));
+        complete(provider.getHosts().get(1), TimeUnit.MILLISECONDS.toNanos(1));
+        for (int i = 0; i < 100; i++) {
+            assertThat(provider.getUri(), is(SECOND));
+        }
+    }
+
+    @Test
+    public void latencyRisesQuicklyAndFallsGradually() {
+        FakeTicker ticker = new FakeTicker();
+        Host host = new Host(FIRST, ticker);
+        complete(host, 100);
+        assertThat(host.getLatencyNanos(), is(100.0));
+        ticker.nanos += Host.DECAY_NANOS;
+        assertThat(host.getLatencyNanos(), is(closeTo(100.0 / Math.E, DELTA)));
+        complete(host, 10);
+        assertThat(host.getLatencyNanos(), is(closeTo(100.0 / Math.E + 10 * (1 - 1 / Math.E), DELTA)));
+        complete(host, 1000);
+        assertThat(host.getLatencyNanos(), is(1000.0));
+    }
+
+    @Test
+    public void slowHostsAreTriedAgainOnceTheirLatencyHasDecayed() {
+        FakeTicker ticker = new FakeTicker();
+        Host slow = new Host(FIRST, ticker);
+        Host fast = new Host(SECOND, ticker);
+        List<Host> hosts = ImmutableList.of(slow, fast);
+        EwmaLatencyStrategy strategy = new EwmaLatencyStrategy();
+        complete(slow, TimeUnit.SECONDS.toNanos(1));
+        complete(fast, TimeUnit.MILLISECONDS.toNanos(1));
+
+        int calls = 0;
+        Host chosen;
+        do {
+            ticker.nanos += TimeUnit.SECONDS.toNanos(1);
+            chosen = strategy.choose(hosts);
+            complete(chosen, TimeUnit.MILLISECONDS.toNanos(1));
+            calls++;
+        } while (chosen != slow && calls < 100);
+
+        assertThat(chosen, is(slow));
+        assertThat(slow.getLatencyNanos(), is(lessThan((double) TimeUnit.MILLISECONDS.toNanos(2))));
+    }
+
+    @Test
+    public void trackingExecutorReportsToTheHost() throws Exception {
+        LoadBalancingUriProvider provider = provider(new RoundRobinStrategy());
+        StubExecutor stub = new StubExecutor();
+        HostTrackingClientExecutor executor = new HostTrackingClientExecutor(stub, provider);
+        Host second = provider.getHosts().get(1);
+
+        stub.answerAll(HttpResponseCodes.SC_OK, null);
+        executor.execute(request(SECOND, executor));
+        stub.answerAll(HttpResponseCodes.SC_SERVICE_UNAVAILABLE, null);
+        executor.executeAsync(request(SECOND, executor)).get();
+        stub.failAll(new IOException("connection refused"));
+        try {
+            executor.executeAsync(request(SECOND, executor)).get();
+            fail("the request should have failed");
+        } catch (ExecutionException expected) {
+            // reported below
+        }
+
+        assertThat(second.getRequests(), is(3L));
+        assertThat(second.getFailures(), is(2L));
+        assertThat(second.getInFlight(), is(0));
+        assertThat(second.getLatencyNanos(), is(greaterThan(0.0)));
+        assertThat(provider.getHosts().get(0).getRequests(), is(0L));
+    }
+
+    @Test
+    public void cancelledRequestsAreNotCountedAgainstTheHost() throws Exception {
+        LoadBalancingUriProvider provider = provider(new RoundRobinStrategy());
+        StubExecutor stub = new StubExecutor();
+        HostTrackingClientExecutor executor = new HostTrackingClientExecutor(stub, provider);
+        Host second = provider.getHosts().get(1);
+
+        stub.holdNext();
+        ListenableFuture<ClientResponse> response = executor.executeAsync(request(SECOND, executor));
+        assertThat(second.getInFlight(), is(1));
+        response.cancel(true);
+
+        assertThat(second.getInFlight(), is(0));
+        assertThat(second.getRequests(), is(0L));
+        assertThat(second.getFailures(), is(0L));
+        assertThat(second.getLatencyNanos(), is(0.0));
+    }
+
+    @Test
+    public void hostsAreFoundByAuthorityWithoutABaseUri() throws Exception {
+        LoadBalancingUriProvider provider = provider(new RoundRobinStrategy());
+        assertThat(provider.findHost(null, "http://third:7000/api/widgets/1"), is(provider.getHosts().get(2)));
+        assertThat(provider.findHost(null, "http://elsewhere/api"), is((Host) null));
+    }
+
+    private static LoadBalancingUriProvider provider(LoadBalancingStrategy strategy) {
+        return new LoadBalancingUriProvider(ImmutableList.of(FIRST, SECOND, THIRD), strategy);
+    }
+
+    private static void complete(Host host, long latencyNanos) {
+        host.onStart();
+        host.onComplete(latencyNanos, false);
+    }
+
+    private static ClientRequest request(URI baseUri, HostTrackingClientExecutor executor) {
+        return new ClientRequest(UriTemplate.compile("/widgets", null), baseUri, executor, null, null);
+    }
+
+    /**
+     * A clock that only moves when the test says so.
+     */
+    private static class FakeTicker extends Ticker {
+        private long nanos;
+
+        @Override
+        public long read() {
+            return this.nanos;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.opower.rest.client.generator.loadbalancing;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit tests for {@link OutlierDetector} together with the {@link LoadBalancingUriProvider}.
+ */
+public class TestOutlierDetector {
+
+    private static final URI FIRST = URI.create("http://first:7000");
+    private static final URI SECOND = URI.create("http://second:7000");
+    private static final URI THIRD = URI.create("http://third:7000");
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final ClockedDetector detector = new ClockedDetector();
+
+    @Test
+    public void consecutiveFailuresEjectAHostForAWhile() {
+        this.detector.withConsecutiveFailures(3).withBaseEjectionMillis(1000).withRecoveryMillis(0);
+        LoadBalancingUriProvider provider = provider(FIRST, SECOND, THIRD);
+        Host first = provider.getHosts().get(0);
+
+        fail(provider, first, 3);
+        assertThat(this.detector.isEjected(first), is(true));
+        assertThat(first.getEjections(), is(1L));
+        for (int i = 0; i < 10; i++) {
+            assertThat(provider.getUri(), is(not(FIRST)));
+        }
+
+        this.detector.advance(1000);
+        assertThat(this.detector.isEjected(first), is(false));
+        assertThat(share(provider, FIRST), is(closeTo(1 / 3.0, 0.01)));
+    }
+
+    @Test
+    public void repeatedEjectionsLastLonger() {
+        this.detector.withConsecutiveFailures(1).withBaseEjectionMillis(1000).withRecoveryMillis(0);
+        LoadBalancingUriProvider provider = provider(FIRST, SECOND, THIRD);
+        Host first = provider.getHosts().get(0);
+
+        fail(provider, first, 1);
+        this.detector.advance(1000);
+        fail(provider, first, 1);
+        this.detector.advance(1999);
+        assertThat(this.detector.isEjected(first), is(true));
+        this.detector.advance(1);
+        assertThat(this.detector.isEjected(first), is(false));
+        assertThat(this.detector.getEjections(), is(2L));
+    }
+
+    @Test
+    public void onlyHalfOfTheHostsAreEjectedByDefault() {
+        this.detector.withConsecutiveFailures(1);
+        LoadBalancingUriProvider provider = provider(FIRST, SECOND);
+
+        fail(provider, provider.getHosts().get(0), 1);
+        fail(provider, provider.getHosts().get(1), 1);
+
+        assertThat(this.detector.isEjected(provider.getHosts().get(0)), is(true));
+        assertThat(this.detector.isEjected(provider.getHosts().get(1)), is(false));
+        assertThat(this.detector.getSkippedEjections(), is(1L));
+    }
+
+    @Test
+    public void highFailureRatesEjectAHost() {
+        this.detector.withWindowSize(10).withFailureRatePercent(30);
+        LoadBalancingUriProvider provider = provider(FIRST, SECOND, THIRD);
+        Host first = provider.getHosts().get(0);
+        for (int i = 0; i < 10; i++) {
+            provider.onComplete(first, FAST, i % 3 == 0);
+        }
+        assertThat(this.detector.isEjected(first), is(true));
+    }
+
+    @Test
+    public void slowHostsAreEjected() {
+        this.detector.withWindowSize(10);
+        LoadBalancingUriProvider provider = provider(FIRST, SECOND, THIRD);
+        for (int i = 0; i < 10; i++) {
+            provider.onComplete(provider.getHosts().get(1), FAST, false);
+            provider.onComplete(provider.getHosts().get(2), FAST, false);
+            provider.onComplete(provider.getHosts().get(0), SLOW, false);
+        }
+        assertThat(this.detector.isEjected(provider.getHosts().get(0)), is(true));
+        assertThat(this.detector.isEjected(provider.getHosts().get(1)), is(false));
+    }
+
+    @Test
+    public void readmittedHostsAreJudgedByTheirNewResponseTimes() {
+        this.detector.withWindowSize(10).withBaseEjectionMillis(1000).withRecoveryMillis(0);
+        LoadBalancingUriProvider provider = provider(FIRST, SECOND, THIRD);
+        Host first = provider.getHosts().get(0);
+        for (int i = 0; i < 10; i++) {
+            provider.onComplete(provider.getHosts().get(1), FAST, false);
+            provider.onComplete(provider.getHosts().get(2), FAST, false);
+            provider.onComplete(first, SLOW, false);
+        }
+        assertThat(this.detector.isEjected(first), is(true));
+
+        this.detector.advance(1000);
+        for (int i = 0; i < 10; i++) {
+            provider.onComplete(provider.getHosts().get(1), FAST, false);
+            provider.onComplete(provider.getHosts().get(2), FAST, false);
+            provider.onComplete(first, FAST, false);
+        }
+        assertThat(this.detector.isEjected(first), is(false));
+        assertThat(first.getEjections(), is(1L));
+        assertThat(first.getLatencyNanos(), is((double) FAST));
+    }
+
+    @Test
+    public void hostsComeBackGradually() {
+        this.detector.withConsecutiveFailures(1).withBaseEjectionMillis(1000).withRecoveryMillis(1000);
+        LoadBalancingUriProvider provider = provider(FIRST, SECOND);
+        Host first = provider.getHosts().get(0);
+
+        fail(provider, first, 1);
+        this.detector.advance(1000);
+        assertThat(this.detector.getAdmissionWeight(first), is(0.1));
+        assertThat(share(provider, FIRST), is(lessThan(0.2)));
+
+        this.detector.advance(500);
+        assertThat(this.detector.getAdmissionWeight(first), is(0.5));
+
+        this.detector.advance(500);
+        assertThat(this.detector.getAdmissionWeight(first), is(1.0));
+        assertThat(share(provider, FIRST), is(0.5));
+    }
+
+    private LoadBalancingUriProvider provider(URI... uris) {
+        return new LoadBalancingUriProvider(ImmutableList.copyOf(uris), new RoundRobinStrategy(), this.detector);
+    }
+
+    private static void fail(LoadBalancingUriProvider provider, Host host, int times) {
+        for (int i = 0; i < times; i++) {
+            host.onStart();
+            provider.onComplete(host, FAST, true);
+        }
+    }
+
+    private static double share(LoadBalancingUriProvider provider, URI uri) {
+        int hits = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (provider.getUri().equals(uri)) {
+                hits++;
+            }
+        }
+        return hits / 1000.0;
+    }
+
+    /**
+     * A detector whose clock only moves when the test says so.
+     */
+    private static class ClockedDetector extends OutlierDetector {
+        private long now = -TimeUnit.DAYS.toNanos(1);
+
+        void advance(long millis) {
+            this.now += TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+
+        @Override
+        protected long nanoTime() {
+            return this.now;
+        }
+    }
+}
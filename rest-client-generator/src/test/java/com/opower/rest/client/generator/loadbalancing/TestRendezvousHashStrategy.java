@@ -0,0 +1,186 @@
+package com.opower.rest.client.generator.loadbalancing;
+
+import com.google.common.collect.ImmutableList;
+import com.opower.rest.client.generator.annotations.RoutingKey;
+import com.opower.rest.client.generator.core.BaseClientResponse;
+import com.opower.rest.client.generator.core.Client;
+import com.opower.rest.client.generator.core.ClientExecutor;
+import com.opower.rest.client.generator.core.ClientRequest;
+import com.opower.rest.client.generator.core.ClientResponse;
+import com.opower.rest.client.generator.core.ResourceInterface;
+import com.opower.rest.client.generator.util.CaseInsensitiveMap;
+import com.opower.rest.client.generator.util.HttpResponseCodes;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Response;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.both;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit tests for {@link RendezvousHashStrategy} and routing by {@link RoutingKey}.
+ */
+public class TestRendezvousHashStrategy {
+
+    private static final int KEYS = 2000;
+
+    private final RendezvousHashStrategy strategy = new RendezvousHashStrategy();
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.setProperty("javax.ws.rs.ext.RuntimeDelegate", "com.opower.rest.client.generator.core.BasicRuntimeDelegate");
+    }
+
+    @Test
+    public void keysAreSpreadOverAllHosts() {
+        Map<String, URI> routes = route(hosts(4));
+        Map<URI, Integer> counts = new HashMap<>();
+        for (URI uri : routes.values()) {
+            counts.put(uri, counts.containsKey(uri) ? counts.get(uri) + 1 : 1);
+        }
+        assertThat(counts.size(), is(4));
+        for (int count : counts.values()) {
+            assertThat(count, is(both(greaterThan(KEYS / 4 * 3 / 4)).and(lessThan(KEYS / 4 * 5 / 4))));
+        }
+    }
+
+    @Test
+    public void addingAHostOnlyMovesKeysToIt() {
+        List<Host> four = hosts(4);
+        List<Host> five = ImmutableList.<Host>builder().addAll(four).add(new Host(URI.create("http://host4:7000"))).build();
+        Map<String, URI> before = route(four);
+        Map<String, URI> after = route(five);
+
+        int moved = 0;
+        for (String key : before.keySet()) {
+            if (!before.get(key).equals(after.get(key))) {
+                assertThat(after.get(key), is(URI.create("http://host4:7000")));
+                moved++;
+            }
+        }
+        assertThat(moved, is(both(greaterThan(KEYS / 5 * 3 / 4)).and(lessThan(KEYS / 5 * 5 / 4))));
+    }
+
+    @Test
+    public void removingAHostOnlyMovesItsKeys() {
+        List<Host> four = hosts(4);
+        Map<String, URI> before = route(four);
+        Map<String, URI> after = route(four.subList(1, 4));
+        for (String key : before.keySet()) {
+            if (!before.get(key).equals(four.get(0).getUri())) {
+                assertThat(after.get(key), is(before.get(key)));
+            }
+        }
+    }
+
+    @Test
+    public void callsAreRoutedByTheirRoutingKey() throws Exception {
+        LoadBalancingUriProvider provider = new LoadBalancingUriProvider(uris(4), this.strategy);
+        RecordingExecutor executor = new RecordingExecutor();
+        Frobs frobs = new Client.Builder<>(new ResourceInterface<>(Frobs.class), provider).executor(executor).build();
+
+        for (int i = 0; i < 10; i++) {
+            frobs.find("frob-1", "full");
+            frobs.find("frob-2", "full");
+        }
+        frobs.list("frob-1");
+
+        List<String> hosts = new ArrayList<>();
+        for (String uri : executor.uris) {
+            hosts.add(URI.create(uri).getAuthority());
+        }
+        for (int i = 2; i < 20; i++) {
+            assertThat(hosts.get(i), is(hosts.get(i % 2)));
+        }
+        assertThat(executor.uris.size(), is(21));
+        assertThat(provider.getUri("frob-1").getAuthority(), is(hosts.get(0)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void routingKeysMustNameAParameter() {
+        new Client.Builder<>(new ResourceInterface<>(Broken.class), new LoadBalancingUriProvider(uris(2), this.strategy))
+                .executor(new RecordingExecutor())
+                .build();
+    }
+
+    private Map<String, URI> route(List<Host> hosts) {
+        Map<String, URI> routes = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            String key = "key-" + i;
+            routes.put(key, this.strategy.choose(hosts, key).getUri());
+        }
+        return routes;
+    }
+
+    private static List<Host> hosts(int count) {
+        ImmutableList.Builder<Host> hosts = ImmutableList.builder();
+        for (URI uri : uris(count)) {
+            hosts.add(new Host(uri));
+        }
+        return hosts.build();
+    }
+
+    private static List<URI> uris(int count) {
+        ImmutableList.Builder<URI> uris = ImmutableList.builder();
+        for (int i = 0; i < count; i++) {
+            uris.add(URI.create("http://host" + i + ":7000"));
+        }
+        return uris.build();
+    }
+
+    @Path("/frobs")
+    public interface Frobs {
+        @GET
+        @Path("{frobId}")
+        @RoutingKey("frobId")
+        Response find(@PathParam("frobId") String frobId, @QueryParam("view") String view);
+
+        @GET
+        Response list(@QueryParam("after") String after);
+    }
+
+    @Path("/frobs")
+    public interface Broken {
+        @GET
+        @Path("{frobId}")
+        @RoutingKey("id")
+        Response find(@PathParam("frobId") String frobId);
+    }
+
+    /**
+     * Records the URIs of the requests and answers them with an empty 200 response.
+     */
+    private static class RecordingExecutor implements ClientExecutor {
+        private final List<String> uris = new ArrayList<>();
+
+        @Override
+        public ClientResponse execute(ClientRequest request) throws Exception {
+            this.uris.add(request.getUri());
+            BaseClientResponse response = new BaseClientResponse(null, this, Client.DEFAULT_ERROR_STATUS_CRITERIA);
+            response.setStatus(HttpResponseCodes.SC_OK);
+            response.setHeaders(new CaseInsensitiveMap<String>());
+            return response;
+        }
+
+        @Override
+        public void processFilters(ClientRequest request) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
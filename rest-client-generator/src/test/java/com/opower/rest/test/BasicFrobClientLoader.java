@@ -23,6 +23,7 @@ import com.fasterxml.jackson.jaxrs.json.JacksonJsonProvider;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
 import com.opower.rest.client.generator.core.Client;
+import com.opower.rest.client.generator.core.ProxyEngine;
 import com.opower.rest.client.generator.core.ResourceInterface;
 import com.opower.rest.client.generator.core.SimpleUriProvider;
 import com.opower.rest.client.generator.executors.ApacheHttpClient4Executor;
@@ -46,7 +47,9 @@ public class BasicFrobClientLoader implements FrobClientLoader {
             Client.Builder<FrobResource> clientBuilder = new Client.Builder<>(new ResourceInterface<>(FrobResource.class),
                     new SimpleUriProvider(String.format("http://localhost:%s/", port)))
                     .executor(new ApacheHttpClient4Executor()).registerProviderInstance(JACKSON_JSON_PROVIDER);
-            return ImmutableMap.of("default", clientBuilder.build());
+            FrobResource defaultClient = clientBuilder.build();
+            FrobResource generatedClient = clientBuilder.proxyEngine(ProxyEngine.GENERATED).build();
+            return ImmutableMap.of("default", defaultClient, "generated", generatedClient);
         } catch (Exception ex) {
             throw Throwables.propagate(ex);
         }
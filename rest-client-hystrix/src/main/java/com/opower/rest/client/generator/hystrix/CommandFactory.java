@@ -0,0 +1,232 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.hystrix;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.netflix.hystrix.HystrixCollapser;
+import com.netflix.hystrix.HystrixCommand;
+import com.netflix.hystrix.HystrixCommandKey;
+import com.netflix.hystrix.HystrixCommandProperties;
+import com.netflix.hystrix.HystrixCommandProperties.ExecutionIsolationStrategy;
+import com.netflix.hystrix.strategy.properties.HystrixPropertiesFactory;
+import com.opower.rest.client.generator.core.BulkMethod;
+import com.opower.rest.client.generator.core.Deadline;
+import com.opower.rest.client.generator.core.MethodInvoker;
+import com.opower.rest.client.generator.extractors.DefaultEntityExtractorFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Creates and runs the HystrixCommands for one method on the ResourceInterface. Everything that only depends on the
+ * method is resolved and validated once when the client is built, so that a call only has to create the command and
+ * hand it the MethodInvoker of the underlying client.
+ * Not for use outside this package.
+ */
+final class CommandFactory {
+
+    private final HystrixCommand.Setter setter;
+    private final MethodInvoker invoker;
+    private final Optional<Callable<Object>> fallback;
+    private final RequestCache requestCache;
+    private final boolean async;
+    private final Collapsing collapsing;
+
+    private CommandFactory(HystrixCommand.Setter setter, MethodInvoker invoker, Optional<Callable<Object>> fallback,
+                           RequestCache requestCache, boolean async, Collapsing collapsing) {
+        this.setter = setter;
+        this.invoker = invoker;
+        this.fallback = fallback;
+        this.requestCache = requestCache;
+        this.async = async;
+        this.collapsing = collapsing;
+    }
+
+    /**
+     * Starts building the CommandFactory for a method.
+     * @param method the method on the ResourceInterface
+     * @param invoker the MethodInvoker of the underlying client
+     * @return the Builder
+     */
+    static Builder builder(Method method, MethodInvoker invoker) {
+        return new Builder(method, invoker);
+    }
+
+    /**
+     * Creates a CommandFactory that collapses calls into calls of the provided bulk method factory.
+     * @param collapser the HystrixCollapser.Setter to use
+     * @param batchMethod the bulk method, checked against the method of this factory
+     * @param bulk the CommandFactory of the bulk method
+     * @return the collapsing CommandFactory
+     */
+    CommandFactory collapsingInto(HystrixCollapser.Setter collapser, BulkMethod batchMethod, CommandFactory bulk) {
+        checkArgument(!this.async && !bulk.async, "Methods returning a Future cannot be collapsed");
+        return new CommandFactory(this.setter, this.invoker, this.fallback, this.requestCache, false,
+                                  new Collapsing(checkNotNull(collapser), checkNotNull(batchMethod), checkNotNull(bulk)));
+    }
+
+    /**
+     * Creates a new command for a call. The command keeps the {@link Deadline} of the calling thread, the requests it
+     * sends from a Hystrix thread are bound by it.
+     * @param args the arguments of the call
+     * @param cacheKey the request cache key or null to disable request caching
+     * @return the command
+     */
+    ProxyCommand newCommand(Object[] args, String cacheKey) {
+        return new ProxyCommand(this.setter, this.invoker, args, this.fallback, cacheKey, this.async);
+    }
+
+    /**
+     * Runs a call through Hystrix.
+     * @param method the method being invoked, used to derive request cache keys
+     * @param args the arguments of the call
+     * @return the result of the call
+     * @throws Throwable the exception the call failed with
+     */
+    Object invoke(Method method, Object[] args) throws Throwable {
+        if (this.collapsing != null) {
+            return HystrixCommandInvocationHandler.execute(new ProxyCollapser(this.collapsing.setter, args[0],
+                                                                              this.collapsing.bulkMethod,
+                                                                              this.collapsing.batch));
+        }
+        String cacheKey = this.requestCache == null ? null : this.requestCache.cacheKey(method, args);
+        ProxyCommand command = newCommand(args, cacheKey);
+        if (this.async) {
+            ListenableFuture<Object> future = HystrixCommandInvocationHandler.observe(command);
+            if (cacheKey != null) {
+                this.requestCache.record(command.isResponseFromCache());
+            }
+            return future;
+        }
+        try {
+            return HystrixCommandInvocationHandler.execute(command);
+        } finally {
+            if (cacheKey != null) {
+                this.requestCache.record(command.isResponseFromCache());
+            }
+        }
+    }
+
+    /**
+     * Collects what a CommandFactory is created from.
+     */
+    static final class Builder {
+        private final Method method;
+        private final MethodInvoker invoker;
+        private HystrixCommandKey commandKey;
+        private HystrixCommand.Setter setter;
+        private HystrixCommandProperties.Setter properties;
+        private Callable<Object> fallback;
+        private RequestCache requestCache;
+
+        private Builder(Method method, MethodInvoker invoker) {
+            this.method = checkNotNull(method);
+            this.invoker = checkNotNull(invoker);
+        }
+
+        /**
+         * Sets the HystrixCommandKey the command properties are resolved for.
+         * @param commandKey the HystrixCommandKey of the method
+         * @return this Builder
+         */
+        Builder commandKey(HystrixCommandKey commandKey) {
+            this.commandKey = commandKey;
+            return this;
+        }
+
+        /**
+         * Sets the HystrixCommand.Setter every command is created with.
+         * @param setter the HystrixCommand.Setter of the method
+         * @return this Builder
+         */
+        Builder setter(HystrixCommand.Setter setter) {
+            this.setter = setter;
+            return this;
+        }
+
+        /**
+         * Sets the HystrixCommandProperties defaults the setter was built from.
+         * @param properties the HystrixCommandProperties defaults used in the setter
+         * @return this Builder
+         */
+        Builder properties(HystrixCommandProperties.Setter properties) {
+            this.properties = properties;
+            return this;
+        }
+
+        /**
+         * Sets the fallback of the method.
+         * @param fallback the fallback or null if there is none
+         * @return this Builder
+         */
+        Builder fallback(Callable<Object> fallback) {
+            this.fallback = fallback;
+            return this;
+        }
+
+        /**
+         * Sets the request caching settings of the method.
+         * @param requestCache the RequestCache or null if request caching is not enabled
+         * @return this Builder
+         */
+        Builder requestCache(RequestCache requestCache) {
+            this.requestCache = requestCache;
+            return this;
+        }
+
+        /**
+         * Validates the settings of the method and creates its CommandFactory.
+         * @return the CommandFactory
+         */
+        CommandFactory build() {
+            // resolved the same way the commands resolve them, so dynamic properties are taken into account
+            HystrixCommandProperties resolved = HystrixPropertiesFactory.getCommandProperties(this.commandKey,
+                                                                                              this.properties);
+            boolean async = DefaultEntityExtractorFactory.isFutureReturnType(this.method.getReturnType());
+            // a semaphore isolated command runs on the calling thread, which would then wait for the response
+            checkArgument(!async || resolved.executionIsolationStrategy().get() != ExecutionIsolationStrategy.SEMAPHORE,
+                          "%s.%s returns a Future and can't use SEMAPHORE isolation, which would block the calling thread",
+                          this.method.getDeclaringClass().getCanonicalName(), this.method.getName());
+            if (resolved.fallbackEnabled().get() && this.fallback == null) {
+                throw new IllegalArgumentException(String.format("You didn't provide a fallback for %s.%s. You must either "
+                                                                 + "provide a fallback or disable fallbacks "
+                                                                 + "in the HystrixCommandProperties for this method.",
+                                                                 this.method.getDeclaringClass().getCanonicalName(),
+                                                                 this.method.getName()));
+            }
+            return new CommandFactory(checkNotNull(this.setter), this.invoker, Optional.fromNullable(this.fallback),
+                                      this.requestCache, async, null);
+        }
+    }
+
+    /**
+     * The bulk method a collapsing CommandFactory folds its calls into.
+     */
+    private static final class Collapsing {
+        private final HystrixCollapser.Setter setter;
+        private final BulkMethod bulkMethod;
+        private final CommandFactory batch;
+
+        private Collapsing(HystrixCollapser.Setter setter, BulkMethod bulkMethod, CommandFactory batch) {
+            this.setter = setter;
+            this.bulkMethod = bulkMethod;
+            this.batch = batch;
+        }
+    }
+}
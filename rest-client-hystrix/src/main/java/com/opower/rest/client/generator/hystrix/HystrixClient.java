@@ -16,6 +16,9 @@ package com.opower.rest.client.generator.hystrix;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import com.netflix.hystrix.HystrixCollapser;
+import com.netflix.hystrix.HystrixCollapserKey;
+import com.netflix.hystrix.HystrixCollapserProperties;
 import com.netflix.hystrix.HystrixCommand;
 import com.netflix.hystrix.HystrixCommandGroupKey;
 import com.netflix.hystrix.HystrixCommandKey;
@@ -23,7 +26,9 @@ import com.netflix.hystrix.HystrixCommandProperties;
 import com.netflix.hystrix.HystrixThreadPoolKey;
 import com.netflix.hystrix.HystrixThreadPoolProperties;
 import com.opower.rest.client.ConfigurationCallback;
+import com.opower.rest.client.generator.core.BulkMethod;
 import com.opower.rest.client.generator.core.Client;
+import com.opower.rest.client.generator.core.MethodInvoker;
 import com.opower.rest.client.generator.core.ResourceInterface;
 import com.opower.rest.client.generator.core.UriProvider;
 import com.opower.rest.client.generator.extractors.ClientErrorHandler;
@@ -54,6 +59,12 @@ public abstract class HystrixClient<T, B extends HystrixClient<T, B>> extends Cl
     protected final Map<Method, HystrixCommandProperties.Setter> commandPropertiesMap;
     protected Map<Method, HystrixCommandKey> commandKeyMap;
 
+    // calls are only collapsed for methods that have been paired with a bulk method
+    protected Map<Method, BulkMethod> batchMethodMap = ImmutableMap.of();
+    protected Map<Method, HystrixCollapserProperties.Setter> collapserPropertiesMap = ImmutableMap.of();
+    // request caching is opt-in per method since only idempotent methods can safely share results
+    protected Map<Method, RequestCache> requestCacheMap = ImmutableMap.of();
+
     Map<Method, BadRequestCriteria> badRequestCriteriaMap = ImmutableMap.of();
     /**
      * Creates a HystrixClientBuilder with the default HystrixCommand.Setter based on the ResourceClass name.
@@ -111,7 +122,8 @@ public abstract class HystrixClient<T, B extends HystrixClient<T, B>> extends Cl
     }
 
     /**
-     * Specify custom HystrixCommandProperties for a specific method on the ResourceInterface.
+     * Specify custom HystrixCommandProperties for a specific method on the ResourceInterface. Methods returning a Future
+     * must keep THREAD isolation, since a SEMAPHORE isolated command would wait for the response on the calling thread.
      *
      * @param method   the method to apply the HystrixCommandProperties to
      * @param callback the ConfigurationCallback that applies your custom settings
@@ -188,6 +200,93 @@ public abstract class HystrixClient<T, B extends HystrixClient<T, B>> extends Cl
         return (B) this;
     }
 
+    /**
+     * Collapse calls to a single item method on the ResourceInterface into calls to a bulk method using a
+     * HystrixCollapser with the default HystrixCollapserProperties.
+     *
+     * @param single the method taking a single argument whose calls should be collapsed
+     * @param batch  the method taking a List or Set of those arguments and returning either a List of results in the same
+     *               order or a Map of results keyed by argument
+     * @return the HystrixClientBuilder
+     */
+    public B methodCollapser(Method single, Method batch) {
+        return methodCollapser(single, batch, new ConfigurationCallback<HystrixCollapserProperties.Setter>() {
+            @Override
+            public void configure(HystrixCollapserProperties.Setter setter) {
+                // the defaults are fine
+            }
+        });
+    }
+
+    /**
+     * Collapse calls to a single item method on the ResourceInterface into calls to a bulk method using a
+     * HystrixCollapser. Collapsing is done in the GLOBAL scope so no HystrixRequestContext is needed. The bulk call
+     * runs as the HystrixCommand of the bulk method, using its command key, properties and fallback.
+     * <p/>
+     * The HystrixCollapserKey is the HystrixCommandKey of the single item method. Hystrix shares one collapser per key
+     * across the JVM, so clients of the same ResourceInterface that talk to different services need distinct command keys
+     * for the collapsed method.
+     *
+     * @param single   the method taking a single argument whose calls should be collapsed
+     * @param batch    the method taking a List or Set of those arguments and returning either a List of results in the
+     *                 same order or a Map of results keyed by argument
+     * @param callback the ConfigurationCallback that applies your custom HystrixCollapserProperties
+     * @return the HystrixClientBuilder
+     */
+    @SuppressWarnings("unchecked")
+    public B methodCollapser(Method single, Method batch, ConfigurationCallback<HystrixCollapserProperties.Setter> callback) {
+        BulkMethod bulkMethod = new BulkMethod(checkMethod(single), checkMethod(batch));
+        HystrixCollapserProperties.Setter setter = HystrixCollapserProperties.Setter();
+        checkNotNull(callback).configure(setter);
+        this.batchMethodMap = updateWith(single, bulkMethod, this.batchMethodMap);
+        this.collapserPropertiesMap = updateWith(single, setter, this.collapserPropertiesMap);
+        return (B) this;
+    }
+
+    /**
+     * Serve repeated calls to a method with equal arguments from the Hystrix request cache. The cache key is derived
+     * from the toString of the method arguments, so the method may only take primitives, their wrappers and Strings.
+     * Use {@link #methodRequestCache(Method, RequestCache.KeyFunction)} for any other method. Only use this for
+     * idempotent methods.
+     *
+     * @param method the method whose results can be cached for the duration of a HystrixRequestContext
+     * @return the HystrixClientBuilder
+     */
+    public B methodRequestCache(Method method) {
+        return methodRequestCache(method, RequestCache.defaultKeyFunction(checkMethod(method)));
+    }
+
+    /**
+     * Serve repeated calls to a method from the Hystrix request cache. Calls are cached only while a
+     * HystrixRequestContext is initialized on the calling thread and only for calls whose key is not null.
+     *
+     * @param method      the method whose results can be cached for the duration of a HystrixRequestContext
+     * @param keyFunction derives the cache key from the method arguments
+     * @return the HystrixClientBuilder
+     */
+    @SuppressWarnings("unchecked")
+    public B methodRequestCache(Method method, RequestCache.KeyFunction keyFunction) {
+        RequestCache requestCache = new RequestCache(keyFunction);
+        applyCallback(this.commandPropertiesMap, method, new ConfigurationCallback<HystrixCommandProperties.Setter>() {
+            @Override
+            public void configure(HystrixCommandProperties.Setter setter) {
+                setter.withRequestCacheEnabled(true);
+            }
+        });
+        this.requestCacheMap = updateWith(method, requestCache, this.requestCacheMap);
+        return (B) this;
+    }
+
+    /**
+     * The RequestCache configured for a method, which exposes its hit and miss counts.
+     *
+     * @param method the method in question
+     * @return the RequestCache or null if request caching is not enabled for the method
+     */
+    public RequestCache getRequestCache(Method method) {
+        return this.requestCacheMap.get(checkMethod(method));
+    }
+
     /**
      * Specify specific criteria for bad requests for a particular method on the ResourceClass.
      *
@@ -231,13 +330,63 @@ public abstract class HystrixClient<T, B extends HystrixClient<T, B>> extends Cl
 
     @Override
     public T build() {
-        return HystrixCommandInvocationHandler.proxy(this.resourceInterface.getInterface(),
-                                                     super.build(),
-                                                     ImmutableMap.copyOf(assembleHystrixCommandSetters()),
-                                                     ImmutableMap.copyOf(this.fallbackMap));
+        return HystrixCommandInvocationHandler.proxy(this.resourceInterface.getInterface(), this.loader,
+                                                     assembleCommandFactories(buildInvokers()));
+    }
+
+    /**
+     * Builds the CommandFactory for each method on top of the MethodInvokers of the underlying client. All per method
+     * configuration is resolved and validated here, once. Visible for testing.
+     * @param invokers the MethodInvokers of the underlying client
+     * @return the CommandFactory per method
+     */
+    @SuppressWarnings("unchecked")
+    Map<Method, CommandFactory> assembleCommandFactories(Map<Method, ? extends MethodInvoker> invokers) {
+        Map<Method, HystrixCollapser.Setter> collapserSetters = ImmutableMap.copyOf(assembleHystrixCollapserSetters());
+        Map<Method, CommandFactory> factories = new HashMap<>();
+        for (Map.Entry<Method, HystrixCommand.Setter> entry : assembleHystrixCommandSetters().entrySet()) {
+            Method method = entry.getKey();
+            MethodInvoker invoker = checkNotNull(invokers.get(method), "No MethodInvoker for %s", method);
+            factories.put(method, CommandFactory.builder(method, invoker)
+                                                .commandKey(this.commandKeyMap.get(method))
+                                                .setter(entry.getValue())
+                                                .properties(this.commandPropertiesMap.get(method))
+                                                .fallback((Callable<Object>) this.fallbackMap.get(method))
+                                                .requestCache(this.requestCacheMap.get(method))
+                                                .build());
+        }
+        for (Map.Entry<Method, BulkMethod> entry : this.batchMethodMap.entrySet()) {
+            Method single = entry.getKey();
+            BulkMethod bulkMethod = entry.getValue();
+            factories.put(single, factories.get(single).collapsingInto(collapserSetters.get(single), bulkMethod,
+                                                                       factories.get(bulkMethod.getMethod())));
+        }
+        return ImmutableMap.copyOf(factories);
     }
 
-    private Map<Method, HystrixCommand.Setter> assembleHystrixCommandSetters() {
+    /**
+     * Builds the HystrixCollapser.Setter for each collapsed method. Visible for testing.
+     * @return the HystrixCollapser.Setter per collapsed method
+     */
+    Map<Method, HystrixCollapser.Setter> assembleHystrixCollapserSetters() {
+        return Maps.transformEntries(this.collapserPropertiesMap,
+                 new Maps.EntryTransformer<Method, HystrixCollapserProperties.Setter, HystrixCollapser.Setter>() {
+                    @Override
+                    public HystrixCollapser.Setter transformEntry(Method method, HystrixCollapserProperties.Setter value) {
+                        HystrixCommandKey commandKey = HystrixClient.this.commandKeyMap.get(method);
+                        return HystrixCollapser.Setter
+                                 .withCollapserKey(HystrixCollapserKey.Factory.asKey(commandKey.name()))
+                                 .andScope(HystrixCollapser.Scope.GLOBAL)
+                                 .andCollapserPropertiesDefaults(value);
+                    }
+                });
+    }
+
+    /**
+     * Builds the HystrixCommand.Setter for each method. Visible for testing.
+     * @return the HystrixCommand.Setter per method
+     */
+    Map<Method, HystrixCommand.Setter> assembleHystrixCommandSetters() {
         return Maps.transformEntries(this.commandKeyMap,
                  new Maps.EntryTransformer<Method, HystrixCommandKey, HystrixCommand.Setter>() {
                     @Override
@@ -14,7 +14,10 @@
  **/
 package com.opower.rest.client.generator.hystrix;
 
-import com.netflix.hystrix.HystrixCommand;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.netflix.hystrix.HystrixExecutable;
 import com.netflix.hystrix.exception.HystrixBadRequestException;
 import com.netflix.hystrix.exception.HystrixRuntimeException;
 import java.lang.reflect.InvocationHandler;
@@ -22,93 +25,134 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.Map;
-import java.util.concurrent.Callable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import rx.Observer;
+import rx.Subscription;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
- * InvocationHandler that proxies method calls in a HystrixCommand execution.
+ * InvocationHandler that proxies method calls in a HystrixCommand execution. Each method is dispatched straight to the
+ * CommandFactory built for it, which runs the MethodInvoker of the underlying client inside the command.
  *
  * @param <T> The type of the Resource
  */
 final class HystrixCommandInvocationHandler<T> implements InvocationHandler {
 
     private static final Logger LOG = LoggerFactory.getLogger(HystrixCommandInvocationHandler.class);
-    private final T target;
-    private final Map<Method, HystrixCommand.Setter> commandSetters;
-    private final Map<Method, Callable<?>> fallbacks;
+    private final Class<T> resourceInterface;
+    private final Map<Method, CommandFactory> commandFactories;
 
-    private HystrixCommandInvocationHandler(T target,
-                                            final Map<Method, HystrixCommand.Setter> commandSetters,
-                                            final Map<Method, Callable<?>> fallbacks) {
-        this.target = checkNotNull(target);
-        this.commandSetters = checkNotNull(commandSetters);
-        this.fallbacks = checkNotNull(fallbacks);
+    private HystrixCommandInvocationHandler(Class<T> resourceInterface, Map<Method, CommandFactory> commandFactories) {
+        this.resourceInterface = checkNotNull(resourceInterface);
+        this.commandFactories = checkNotNull(commandFactories);
     }
 
     /**
-     * All methods will be wrapped in a HystrixCommand set up according to the provided Map of HystrixCommand.Setter.
+     * All methods will be wrapped in a HystrixCommand created by the CommandFactory for the method.
      *
      * @param resourceInterface the interface that has methods annotated for JAX-RS resource purposes
-     * @param toProxy           the actual resource instance to proxy
-     * @param commandSetters    should you desire to have different configuration for the HystrixCommands per method,
-     *                          you can pass that mapping here directly.
-     * @param fallbacks         The fallbacks to use
+     * @param loader            the ClassLoader to define the proxy in
+     * @param commandFactories  the CommandFactory for every method of the resource interface
      * @param <T>               the type of the resource interface
-     * @return a archmage that wraps calls to the underlying resource instance with metrics tracking logic
+     * @return a proxy that wraps calls to the underlying client in HystrixCommands
      */
     @SuppressWarnings("unchecked")
-    static <T> T proxy(Class<T> resourceInterface,
-                       T toProxy,
-                       Map<Method, HystrixCommand.Setter> commandSetters,
-                       Map<Method, Callable<?>> fallbacks) {
+    static <T> T proxy(Class<T> resourceInterface, ClassLoader loader, Map<Method, CommandFactory> commandFactories) {
         LOG.info("Creating Hystrix based client");
         return (T) Proxy.newProxyInstance(
-                toProxy.getClass().getClassLoader(),
+                loader,
                 new Class<?>[]{resourceInterface},
-                new HystrixCommandInvocationHandler<>(toProxy, commandSetters, fallbacks));
+                new HystrixCommandInvocationHandler<>(resourceInterface, commandFactories));
     }
 
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        if (this.commandSetters.containsKey(method)) {
-            @SuppressWarnings("unchecked")
-            ProxyCommand command = new ProxyCommand(this.commandSetters.get(method), method, args,
-                                                    (Callable<Object>) this.fallbacks.get(method), this.target);
-            return execute(command);
-        } else {
-            return method.invoke(this.target, args);
+        CommandFactory factory = this.commandFactories.get(method);
+        if (factory != null) {
+            return factory.invoke(method, args);
         }
-
+        // only the methods inherited from Object are not on the resource interface
+        if ("equals".equals(method.getName())) {
+            return proxy == args[0];
+        } else if ("hashCode".equals(method.getName())) {
+            return System.identityHashCode(proxy);
+        } else if ("toString".equals(method.getName())) {
+            return "Hystrix Client Proxy for :" + this.resourceInterface.getName();
+        }
+        throw new UnsupportedOperationException("Could not find a method for: " + method);
     }
 
     /**
      * Executes the command synchronously and throws HystrixRuntimeExceptions for all but cases where there is no fallback
      * configured and a non-hystrix related exception is thrown by the underlying work. Visible for testing
      *
-     * @param command the HystrixCommand to execute
+     * @param command the HystrixCommand or HystrixCollapser to execute
      * @return the result of the HystrixCommand
      * @throws Throwable for convenience
      */
-    static Object execute(HystrixCommand command) throws Throwable {
+    static Object execute(HystrixExecutable<?> command) throws Throwable {
         try {
             return command.execute();
-        } catch (HystrixBadRequestException ex) {
-            throw ex.getCause();
-        } catch (HystrixRuntimeException ex) {
+        } catch (HystrixBadRequestException | HystrixRuntimeException ex) {
+            throw translate(ex);
+        }
+    }
+
+    /**
+     * Executes the command without blocking the calling thread. The returned future fails with the same exceptions
+     * {@link #execute(HystrixExecutable)} would throw. Cancelling it unsubscribes from the command. Visible for testing
+     *
+     * @param command the HystrixCommand to execute
+     * @return a future holding the result of the HystrixCommand
+     */
+    static ListenableFuture<Object> observe(HystrixExecutable<Object> command) {
+        final SettableFuture<Object> future = SettableFuture.create();
+        final Subscription subscription = command.observe().subscribe(new Observer<Object>() {
+            @Override
+            public void onCompleted() {
+                future.set(null);
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                future.setException(translate(e));
+            }
+
+            @Override
+            public void onNext(Object value) {
+                future.set(value);
+            }
+        });
+        future.addListener(new Runnable() {
+            @Override
+            public void run() {
+                if (future.isCancelled()) {
+                    subscription.unsubscribe();
+                }
+            }
+        }, MoreExecutors.sameThreadExecutor());
+        return future;
+    }
+
+    private static Throwable translate(Throwable throwable) {
+        if (throwable instanceof HystrixBadRequestException) {
+            return throwable.getCause();
+        } else if (throwable instanceof HystrixRuntimeException) {
+            HystrixRuntimeException ex = (HystrixRuntimeException) throwable;
             // fallback failures should always just throw the HystrixRuntimeException
             if (ex.getFallbackException() != null) {
-                throw ex;
+                return ex;
             }
             switch (ex.getFailureType()) {
                 case COMMAND_EXCEPTION:
-                    throw throwCause(ex);
+                    return throwCause(ex);
                 default:
-                    throw ex;
+                    return ex;
             }
         }
+        return throwable;
     }
 
     private static Throwable throwCause(HystrixRuntimeException ex) {
@@ -0,0 +1,90 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.hystrix;
+
+import com.netflix.hystrix.HystrixCollapser;
+import com.netflix.hystrix.HystrixCommand;
+import com.opower.rest.client.generator.core.BulkMethod;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generic HystrixCollapser used by the HystrixClientBuilder to fold calls to a single item method into calls to the
+ * matching bulk method on the ResourceInterface, as described by {@link BulkMethod}. The bulk call runs as a regular
+ * {@link ProxyCommand} configured for the bulk method, so its command key, thread pool and fallback apply to the batch
+ * as a whole.
+ * Not for use outside this package.
+ *
+ */
+final class ProxyCollapser extends HystrixCollapser<Object, Object, Object> {
+
+    private final Object argument;
+    private final BulkMethod bulkMethod;
+    private final CommandFactory batch;
+
+    /**
+     * Creates a ProxyCollapser for a single invocation of a collapsed method.
+     * @param setter the HystrixCollapser.Setter to use
+     * @param argument the argument the single item method was invoked with
+     * @param bulkMethod the bulk method the collapsed calls are folded into
+     * @param batch the CommandFactory of the bulk method
+     */
+    ProxyCollapser(Setter setter, Object argument, BulkMethod bulkMethod, CommandFactory batch) {
+        super(setter);
+        this.argument = argument;
+        this.bulkMethod = bulkMethod;
+        this.batch = batch;
+    }
+
+    @Override
+    public Object getRequestArgument() {
+        return this.argument;
+    }
+
+    @Override
+    protected HystrixCommand<Object> createCommand(Collection<CollapsedRequest<Object, Object>> requests) {
+        return this.batch.newCommand(new Object[] {arguments(requests)}, null);
+    }
+
+    @Override
+    protected void mapResponseToRequests(Object batchResponse, Collection<CollapsedRequest<Object, Object>> requests) {
+        Map<?, ?> results;
+        try {
+            results = this.bulkMethod.resultsByKey(arguments(requests), batchResponse);
+        } catch (IllegalStateException ex) {
+            for (CollapsedRequest<Object, Object> request : requests) {
+                request.setException(ex);
+            }
+            return;
+        }
+        for (CollapsedRequest<Object, Object> request : requests) {
+            request.setResponse(results.get(request.getArgument()));
+        }
+    }
+
+    /**
+     * Collects the arguments of the collapsed requests into the collection type the bulk method expects.
+     */
+    private Collection<Object> arguments(Collection<CollapsedRequest<Object, Object>> requests) {
+        List<Object> keys = new ArrayList<>(requests.size());
+        for (CollapsedRequest<Object, Object> request : requests) {
+            keys.add(request.getArgument());
+        }
+        return this.bulkMethod.argument(keys);
+    }
+}
@@ -17,61 +17,84 @@ package com.opower.rest.client.generator.hystrix;
 import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
 import com.netflix.hystrix.HystrixCommand;
+import com.opower.rest.client.generator.core.Deadline;
+import com.opower.rest.client.generator.core.MethodInvoker;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.concurrent.Callable;
-
-import static com.google.common.base.Preconditions.checkArgument;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * 
  * Generic HystrixCommand used by the HystrixClientBuilder to wrap ResourceInterface method invocations.
- * Not for use outside this package.
+ * Not for use outside this package. Instances are created by a {@link CommandFactory}, which validates the
+ * configuration once per method. The command runs with the {@link Deadline} of the thread that created it attached.
  *
  */
 final class ProxyCommand extends HystrixCommand {
 
-    private final Method toinvoke;
+    private final MethodInvoker invoker;
     private final Object[] args;
     private final Optional<Callable<Object>> fallback;
-    private final Object target;
+    private final String cacheKey;
+    private final boolean async;
+    private final Deadline deadline;
 
     /**
-     * Creates a Proxy command with the specified settings.
+     * Creates a Proxy command with the specified settings. It takes on the {@link Deadline} of the calling thread.
      * @param setter the HystrixCommand.Setter to use
-     * @param toinvoke the Method to be invoked
+     * @param invoker the MethodInvoker of the ResourceInterface method
      * @param args the arguments for the method to be invoked
      * @param fallback the fallback Hystrix will use
-     * @param target this ProxyCommand will invoke the provided method on this target object
+     * @param cacheKey the request cache key or null to disable request caching
+     * @param async whether the invoker returns a Future whose result is the result of this command
      */
-    ProxyCommand(Setter setter, Method toinvoke, Object[] args, Callable<Object> fallback, Object target) {
+    ProxyCommand(Setter setter, MethodInvoker invoker, Object[] args, Optional<Callable<Object>> fallback,
+                 String cacheKey, boolean async) {
         super(setter);
-        this.toinvoke = toinvoke;
+        this.invoker = invoker;
         this.args = args;
-        this.target = target;
-        this.fallback = Optional.fromNullable(fallback);
-        checkArgument(toinvoke.getDeclaringClass().isInstance(target), "The method to invoke must be present on the target object");
-        checkArgument(!getProperties().fallbackEnabled().get() || this.fallback.isPresent(),
-                      String.format("You didn't provide a fallback for %s.%s. You must either provide a "
-                                    + "fallback or disable fallbacks "
-                                    + "in the HystrixCommandProperties for this method.",
-                                    toinvoke.getDeclaringClass().getCanonicalName(), toinvoke.getName()));
+        this.fallback = fallback;
+        this.cacheKey = cacheKey;
+        this.async = async;
+        this.deadline = Deadline.current();
     }
 
     @Override
     protected Object run() throws Exception {
+        try (Deadline.Scope scope = Deadline.attach(this.deadline)) {
+            Object result = this.invoker.invoke(this.args);
+            if (this.async) {
+                return await((Future<?>) result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Future returning methods dispatch their request without blocking. The command waits here for the response so that
+     * its outcome counts towards the circuit breaker, timeouts apply and failures trigger the fallback.
+     */
+    private static Object await(Future<?> future) throws Exception {
         try {
-            return this.toinvoke.invoke(this.target, this.args);
-        } catch (InvocationTargetException ex) {
-            throw Throwables.propagate(ex.getTargetException());
+            return future.get();
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            throw ex;
+        } catch (ExecutionException ex) {
+            throw Throwables.propagate(ex.getCause());
         }
     }
 
+    @Override
+    protected String getCacheKey() {
+        return this.cacheKey;
+    }
+
     @Override
     protected Object getFallback() {
         if (this.fallback.isPresent()) {
-            try {
+            try (Deadline.Scope scope = Deadline.attach(this.deadline)) {
                 return this.fallback.get().call();
             } catch (Exception e) {
                 throw Throwables.propagate(e);
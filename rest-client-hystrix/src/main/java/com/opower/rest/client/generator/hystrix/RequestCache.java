@@ -0,0 +1,145 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.hystrix;
+
+import com.google.common.collect.ImmutableSet;
+import com.netflix.hystrix.strategy.concurrency.HystrixRequestContext;
+
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Request caching settings and statistics for a single method on the ResourceInterface. Calls are only served from the
+ * Hystrix request cache while a HystrixRequestContext is initialized on the calling thread. Outside of one, calls go
+ * through uncached and are counted as neither hits nor misses.
+ */
+public final class RequestCache {
+
+    static final KeyFunction DEFAULT_KEY_FUNCTION = new ToStringKeyFunction();
+
+    private static final Set<Class<?>> DEFAULT_KEY_TYPES = ImmutableSet.<Class<?>>of(
+            String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class,
+            Float.class, Double.class);
+
+    private final KeyFunction keyFunction;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a RequestCache that derives cache keys with the provided KeyFunction.
+     * @param keyFunction the KeyFunction to use
+     */
+    RequestCache(KeyFunction keyFunction) {
+        this.keyFunction = checkNotNull(keyFunction);
+    }
+
+    /**
+     * The KeyFunction used when none is provided. Only arguments whose toString tells every value apart can be keyed
+     * this way, which holds for primitives, their wrappers and Strings. Methods taking anything else need a KeyFunction
+     * of their own.
+     * @param method the method whose calls are cached
+     * @return the default KeyFunction
+     */
+    static KeyFunction defaultKeyFunction(Method method) {
+        for (Class<?> type : method.getParameterTypes()) {
+            checkArgument(type.isPrimitive() || DEFAULT_KEY_TYPES.contains(type),
+                          "%s takes a %s, provide a KeyFunction to cache its calls", method, type.getName());
+        }
+        return DEFAULT_KEY_FUNCTION;
+    }
+
+    /**
+     * The number of calls that were served from the request cache.
+     * @return the number of hits
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * The number of cacheable calls that had to be executed.
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * Derives the cache key for a call. The Hystrix request cache is already partitioned by HystrixCommandKey so the key
+     * only has to tell calls to the same method apart.
+     * @param method the method being invoked
+     * @param args the arguments of the call
+     * @return the cache key or null if the call should not be cached
+     */
+    String cacheKey(Method method, Object[] args) {
+        if (!HystrixRequestContext.isCurrentThreadInitialized()) {
+            return null;
+        }
+        return this.keyFunction.apply(method, args);
+    }
+
+    /**
+     * Records the outcome of a cacheable call.
+     * @param fromCache whether the response was served from the request cache
+     */
+    void record(boolean fromCache) {
+        if (fromCache) {
+            this.hits.incrementAndGet();
+        } else {
+            this.misses.incrementAndGet();
+        }
+    }
+
+    /**
+     * Derives the request cache key from a method invocation. Calls with equal keys within the same HystrixRequestContext
+     * share a single execution.
+     */
+    public interface KeyFunction {
+        /**
+         * Derive the cache key.
+         * @param method the method being invoked
+         * @param args the arguments of the call
+         * @return the cache key or null if this call should not be cached
+         */
+        String apply(Method method, Object[] args);
+    }
+
+    /**
+     * Derives keys from the toString of each argument, prefixed with its length so that arguments can't run into
+     * each other.
+     */
+    private static final class ToStringKeyFunction implements KeyFunction {
+        @Override
+        public String apply(Method method, Object[] args) {
+            if (args == null) {
+                return "";
+            }
+            StringBuilder key = new StringBuilder();
+            for (Object arg : args) {
+                if (arg == null) {
+                    key.append("-;");
+                } else {
+                    String value = arg.toString();
+                    key.append(value.length()).append(':').append(value);
+                }
+            }
+            return key.toString();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.opower.rest.client.generator.hystrix;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+import com.netflix.hystrix.HystrixCommandGroupKey;
+import com.netflix.hystrix.HystrixCommandKey;
+import com.opower.rest.client.generator.core.BaseClientResponse;
+import com.opower.rest.client.generator.core.Client;
+import com.opower.rest.client.generator.core.ClientExecutor;
+import com.opower.rest.client.generator.core.ClientRequest;
+import com.opower.rest.client.generator.core.ClientResponse;
+import com.opower.rest.client.generator.core.Deadline;
+import com.opower.rest.client.generator.core.MethodInvoker;
+import com.opower.rest.client.generator.core.ResourceInterface;
+import com.opower.rest.client.generator.core.SimpleUriProvider;
+import com.opower.rest.client.generator.util.CaseInsensitiveMap;
+import com.opower.rest.client.generator.util.HttpResponseCodes;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Helpers for testing Hystrix clients without an http server: plain implementations of a resource interface adapted
+ * to MethodInvokers, builders whose commands don't share state with other tests, and an executor that records what
+ * it was asked to send.
+ */
+final class Fixtures {
+
+    private static final AtomicInteger COMMAND_KEYS = new AtomicInteger();
+
+    private Fixtures() {
+    }
+
+    /**
+     * Adapt a plain implementation of a resource interface to MethodInvokers.
+     */
+    static <T> Map<Method, MethodInvoker> invokers(Class<T> resourceInterface, final T target) {
+        ImmutableMap.Builder<Method, MethodInvoker> invokers = ImmutableMap.builder();
+        for (final Method method : resourceInterface.getMethods()) {
+            invokers.put(method, new MethodInvoker() {
+                @Override
+                public Object invoke(Object[] args) {
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException ex) {
+                        throw Throwables.propagate(ex.getTargetException());
+                    } catch (IllegalAccessException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                }
+            });
+        }
+        return invokers.build();
+    }
+
+    /**
+     * A Hystrix client built by the given builder that calls the given implementation instead of sending requests.
+     */
+    static <T> T proxy(HystrixClient.Builder<T> builder, Class<T> resourceInterface, T target) {
+        return HystrixCommandInvocationHandler.proxy(resourceInterface, resourceInterface.getClassLoader(),
+                                                     builder.assembleCommandFactories(invokers(resourceInterface, target)));
+    }
+
+    /**
+     * A builder for a client of the given resource interface on localhost.
+     */
+    static <T> HystrixClient.Builder<T> builder(Class<T> resourceInterface, HystrixCommandGroupKey groupKey) {
+        return new HystrixClient.Builder<>(new ResourceInterface<>(resourceInterface),
+                                           new SimpleUriProvider("http://localhost"), groupKey);
+    }
+
+    /**
+     * A command key no other client uses. Hystrix shares command properties, collapsers and request caches by key, so
+     * every client under test gets its own.
+     */
+    static HystrixCommandKey commandKey(String prefix) {
+        return HystrixCommandKey.Factory.asKey(prefix + "-" + COMMAND_KEYS.incrementAndGet());
+    }
+
+    /**
+     * The method of the given resource interface with the given name, which must not be overloaded.
+     */
+    static Method method(Class<?> resourceInterface, String name) {
+        for (Method method : resourceInterface.getMethods()) {
+            if (method.getName().equals(name)) {
+                return method;
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    /**
+     * Answers every request with an empty 200 response and records the thread and deadline it was sent with.
+     */
+    static final class RecordingExecutor implements ClientExecutor {
+        volatile Thread thread;
+        volatile Deadline requestDeadline;
+        volatile Deadline threadDeadline;
+
+        @Override
+        public ClientResponse execute(ClientRequest request) {
+            this.thread = Thread.currentThread();
+            this.requestDeadline = request.getDeadline();
+            this.threadDeadline = Deadline.current();
+            BaseClientResponse response = new BaseClientResponse(null, this, Client.DEFAULT_ERROR_STATUS_CRITERIA);
+            response.setStatus(HttpResponseCodes.SC_OK);
+            response.setHeaders(new CaseInsensitiveMap<String>());
+            return response;
+        }
+
+        @Override
+        public void processFilters(ClientRequest request) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.opower.rest.client.generator.hystrix;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.netflix.hystrix.HystrixCommandGroupKey;
+import com.netflix.hystrix.HystrixCommandProperties;
+import com.netflix.hystrix.exception.HystrixBadRequestException;
+import com.opower.rest.client.ConfigurationCallback;
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for resource methods returning futures, which must not block the calling thread.
+ */
+public class TestAsyncHystrixCommands {
+
+    private static final HystrixCommandGroupKey GROUP_KEY = HystrixCommandGroupKey.Factory.asKey("async");
+    private static final Method FIND = Fixtures.method(Frobs.class, "find");
+    private static final long TIMEOUT_SECONDS = 5;
+
+    /**
+     * Initializes the system property to ensure the RuntimeDelegate gets properly loaded.
+     */
+    @BeforeClass
+    public static void init() {
+        System.setProperty("javax.ws.rs.ext.RuntimeDelegate", "com.opower.rest.client.generator.core.BasicRuntimeDelegate");
+    }
+
+    @Test
+    public void callerIsNotBlocked() throws Exception {
+        PendingFrobs frobs = new PendingFrobs();
+        ListenableFuture<String> result = client(builder(), frobs).find("x");
+
+        assertFalse(result.isDone());
+        frobs.response.set("frob-x");
+        assertThat(result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS), is("frob-x"));
+    }
+
+    @Test
+    public void failuresAreUnwrapped() throws Exception {
+        PendingFrobs frobs = new PendingFrobs();
+        ListenableFuture<String> result = client(builder(), frobs).find("x");
+        frobs.response.setException(new UnsupportedOperationException());
+
+        assertFailsWith(result, UnsupportedOperationException.class);
+    }
+
+    @Test
+    public void badRequestsAreUnwrapped() throws Exception {
+        PendingFrobs frobs = new PendingFrobs();
+        ListenableFuture<String> result = client(builder(), frobs).find("x");
+        frobs.response.setException(new HystrixBadRequestException("Bad Request", new IllegalArgumentException()));
+
+        assertFailsWith(result, IllegalArgumentException.class);
+    }
+
+    @Test
+    public void fallbackIsUsedOnFailure() throws Exception {
+        PendingFrobs frobs = new PendingFrobs();
+        HystrixClient.Builder<Frobs> builder = builder().methodFallback(FIND, new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                return "fallback";
+            }
+        });
+        ListenableFuture<String> result = client(builder, frobs).find("x");
+        frobs.response.setException(new IllegalStateException());
+
+        assertThat(result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS), is("fallback"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void semaphoreIsolationIsRejected() throws Exception {
+        client(builder().methodProperties(FIND, new ConfigurationCallback<HystrixCommandProperties.Setter>() {
+            @Override
+            public void configure(HystrixCommandProperties.Setter setter) {
+                setter.withExecutionIsolationStrategy(HystrixCommandProperties.ExecutionIsolationStrategy.SEMAPHORE);
+            }
+        }), new PendingFrobs());
+    }
+
+    private static void assertFailsWith(ListenableFuture<?> result, Class<? extends Throwable> type) throws Exception {
+        try {
+            result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            fail("expected " + type.getSimpleName());
+        } catch (ExecutionException ex) {
+            assertThat(ex.getCause(), instanceOf(type));
+        }
+    }
+
+    private static Frobs client(HystrixClient.Builder<Frobs> builder, Frobs frobs) {
+        return Fixtures.proxy(builder, Frobs.class, frobs);
+    }
+
+    private static HystrixClient.Builder<Frobs> builder() {
+        return Fixtures.builder(Frobs.class, GROUP_KEY).methodCommandKey(FIND, Fixtures.commandKey("async"));
+    }
+
+    /**
+     * A resource with a non-blocking lookup.
+     */
+    @Path("/frobs")
+    public interface Frobs {
+        @GET
+        @Path("/{id}")
+        ListenableFuture<String> find(@PathParam("id") String id);
+    }
+
+    private static class PendingFrobs implements Frobs {
+        private final SettableFuture<String> response = SettableFuture.create();
+
+        @Override
+        public ListenableFuture<String> find(String id) {
+            return this.response;
+        }
+    }
+}
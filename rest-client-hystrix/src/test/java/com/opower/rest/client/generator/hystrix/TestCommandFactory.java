@@ -0,0 +1,118 @@
+package com.opower.rest.client.generator.hystrix;
+
+import com.netflix.hystrix.HystrixCommandGroupKey;
+import com.netflix.hystrix.HystrixCommandProperties;
+import com.opower.rest.client.ConfigurationCallback;
+import com.opower.rest.client.generator.core.Client;
+import com.opower.rest.client.generator.core.Deadline;
+import com.opower.rest.client.generator.util.HttpResponseCodes;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.core.Response;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the per method CommandFactories the HystrixClient dispatches to.
+ */
+public class TestCommandFactory {
+
+    private static final HystrixCommandGroupKey GROUP_KEY = HystrixCommandGroupKey.Factory.asKey("factory");
+    private static final Method PING = Fixtures.method(Ping.class, "ping");
+
+    /**
+     * Initializes the system property to ensure the RuntimeDelegate gets properly loaded.
+     */
+    @BeforeClass
+    public static void init() {
+        System.setProperty("javax.ws.rs.ext.RuntimeDelegate", "com.opower.rest.client.generator.core.BasicRuntimeDelegate");
+    }
+
+    @Test
+    public void callsGoStraightToTheMethodInvoker() throws Exception {
+        Ping client = client(builder());
+
+        assertThat(client.ping(), is("pong"));
+    }
+
+    /**
+     * Enabling fallbacks without providing one used to fail on every call. It is now caught once when building.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void missingFallbackFailsWhenBuilding() throws Exception {
+        client(builder().methodProperties(PING, new ConfigurationCallback<HystrixCommandProperties.Setter>() {
+            @Override
+            public void configure(HystrixCommandProperties.Setter setter) {
+                setter.withFallbackEnabled(true);
+            }
+        }));
+    }
+
+    @Test
+    public void objectMethodsAreHandledByTheProxy() throws Exception {
+        Ping client = client(builder());
+        Ping other = client(builder());
+
+        assertTrue(client.equals(client));
+        assertFalse(client.equals(other));
+        assertThat(client.hashCode(), is(client.hashCode()));
+        assertThat(client.toString(), is("Hystrix Client Proxy for :" + Ping.class.getName()));
+    }
+
+    @Test
+    public void requestsKeepTheDeadlineOfTheCallingThread() throws Exception {
+        Fixtures.RecordingExecutor executor = new Fixtures.RecordingExecutor();
+        Health client = Fixtures.builder(Health.class, GROUP_KEY)
+                .methodCommandKey(Fixtures.method(Health.class, "check"), Fixtures.commandKey("factory"))
+                .executor(executor)
+                .build();
+        Deadline deadline = Deadline.after(1, TimeUnit.MINUTES);
+
+        try (Deadline.Scope scope = deadline.attach()) {
+            assertThat(client.check().getStatus(), is(HttpResponseCodes.SC_OK));
+        }
+
+        assertThat(executor.thread, is(not(Thread.currentThread())));
+        assertThat(executor.requestDeadline, is(deadline));
+        assertThat(executor.threadDeadline, is(deadline));
+    }
+
+    private static Ping client(HystrixClient.Builder<Ping> builder) {
+        return Fixtures.proxy(builder, Ping.class, new Ping() {
+            @Override
+            public String ping() {
+                return "pong";
+            }
+        });
+    }
+
+    private static HystrixClient.Builder<Ping> builder() {
+        return Fixtures.builder(Ping.class, GROUP_KEY).methodCommandKey(PING, Fixtures.commandKey("factory"));
+    }
+
+    /**
+     * The simplest possible resource.
+     */
+    @Path("/ping")
+    public interface Ping {
+        @GET
+        String ping();
+    }
+
+    /**
+     * A resource that is called through a real client.
+     */
+    @Path("/health")
+    public interface Health {
+        @GET
+        Response check();
+    }
+}
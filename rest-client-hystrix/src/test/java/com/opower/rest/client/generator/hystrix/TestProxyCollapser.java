@@ -0,0 +1,222 @@
+package com.opower.rest.client.generator.hystrix;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.netflix.hystrix.HystrixCollapserProperties;
+import com.netflix.hystrix.HystrixCommandGroupKey;
+import com.opower.rest.client.ConfigurationCallback;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for collapsing calls to a single item method into calls to a bulk method.
+ */
+public class TestProxyCollapser {
+
+    private static final int CALLERS = 10;
+    private static final int WINDOW_MILLIS = 100;
+    private static final HystrixCommandGroupKey GROUP_KEY = HystrixCommandGroupKey.Factory.asKey("collapser");
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+
+    /**
+     * Initializes the system property to ensure the RuntimeDelegate gets properly loaded.
+     */
+    @BeforeClass
+    public static void init() {
+        System.setProperty("javax.ws.rs.ext.RuntimeDelegate", "com.opower.rest.client.generator.core.BasicRuntimeDelegate");
+    }
+
+    @After
+    public void shutdown() {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void listResultsAreMappedByPosition() throws Exception {
+        CountingAccounts accounts = new CountingAccounts();
+        final Accounts client = client(accounts, method("find"), method("findAll"));
+
+        List<Future<String>> results = callConcurrently(client, false);
+
+        for (int i = 0; i < CALLERS; i++) {
+            assertThat(results.get(i).get(), is("account-" + i));
+        }
+        assertTrue(accounts.bulkCalls.get() < CALLERS);
+        assertThat(accounts.singleCalls.get(), is(0));
+    }
+
+    @Test
+    public void mapResultsAreMappedByArgument() throws Exception {
+        CountingAccounts accounts = new CountingAccounts();
+        final Accounts client = client(accounts, method("get"), method("getAll"));
+
+        List<Future<String>> results = callConcurrently(client, true);
+
+        for (int i = 0; i < CALLERS; i++) {
+            assertThat(results.get(i).get(), is("account-" + i));
+        }
+        assertTrue(accounts.bulkCalls.get() < CALLERS);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void bulkFailuresReachTheCaller() {
+        Accounts client = client(new CountingAccounts() {
+            @Override
+            public List<String> findAll(List<String> ids) {
+                throw new UnsupportedOperationException();
+            }
+        }, method("find"), method("findAll"));
+        client.find("1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void singleMethodNeedsOneArgument() {
+        builder().methodCollapser(method("list"), method("findAll"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bulkMethodNeedsCollectionArgument() {
+        builder().methodCollapser(method("find"), method("get"));
+    }
+
+    @Test
+    public void collapserPropertiesAreConfigurable() {
+        HystrixClient.Builder<Accounts> builder = builder();
+        builder.methodCollapser(method("find"), method("findAll"),
+                                new ConfigurationCallback<HystrixCollapserProperties.Setter>() {
+            @Override
+            public void configure(HystrixCollapserProperties.Setter setter) {
+                setter.withMaxRequestsInBatch(CALLERS);
+            }
+        });
+        assertThat(builder.batchMethodMap.get(method("find")).getMethod(), is(method("findAll")));
+        assertThat(builder.collapserPropertiesMap.get(method("find")).getMaxRequestsInBatch(), is(CALLERS));
+    }
+
+    private List<Future<String>> callConcurrently(final Accounts client, final boolean useMap) {
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            final String id = String.valueOf(i);
+            results.add(this.executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    start.await();
+                    return useMap ? client.get(id) : client.find(id);
+                }
+            }));
+        }
+        start.countDown();
+        return results;
+    }
+
+    private static Accounts client(Accounts accounts, Method single, Method batch) {
+        HystrixClient.Builder<Accounts> builder = builder();
+        // collapsers are shared by key, so every client under test gets its own
+        builder.methodCommandKey(single, Fixtures.commandKey("collapsed"));
+        builder.methodCollapser(single, batch, new ConfigurationCallback<HystrixCollapserProperties.Setter>() {
+            @Override
+            public void configure(HystrixCollapserProperties.Setter setter) {
+                setter.withTimerDelayInMilliseconds(WINDOW_MILLIS);
+            }
+        });
+        return Fixtures.proxy(builder, Accounts.class, accounts);
+    }
+
+    private static HystrixClient.Builder<Accounts> builder() {
+        return Fixtures.builder(Accounts.class, GROUP_KEY);
+    }
+
+    private static Method method(String name) {
+        return Fixtures.method(Accounts.class, name);
+    }
+
+    /**
+     * A resource with single item and bulk lookups.
+     */
+    @Path("/accounts")
+    public interface Accounts {
+        @GET
+        @Path("/{id}")
+        String find(@PathParam("id") String id);
+
+        @GET
+        List<String> findAll(@QueryParam("id") List<String> ids);
+
+        @GET
+        @Path("/by-id/{id}")
+        String get(@PathParam("id") String id);
+
+        @GET
+        @Path("/by-id")
+        Map<String, String> getAll(@QueryParam("id") Set<String> ids);
+
+        @GET
+        @Path("/list")
+        List<String> list();
+    }
+
+    private static class CountingAccounts implements Accounts {
+        private final AtomicInteger singleCalls = new AtomicInteger();
+        private final AtomicInteger bulkCalls = new AtomicInteger();
+
+        @Override
+        public String find(String id) {
+            this.singleCalls.incrementAndGet();
+            return "account-" + id;
+        }
+
+        @Override
+        public List<String> findAll(List<String> ids) {
+            this.bulkCalls.incrementAndGet();
+            ImmutableList.Builder<String> builder = ImmutableList.builder();
+            for (String id : ids) {
+                builder.add("account-" + id);
+            }
+            return builder.build();
+        }
+
+        @Override
+        public String get(String id) {
+            this.singleCalls.incrementAndGet();
+            return "account-" + id;
+        }
+
+        @Override
+        public Map<String, String> getAll(Set<String> ids) {
+            this.bulkCalls.incrementAndGet();
+            ImmutableMap.Builder<String, String> builder = ImmutableMap.builder();
+            for (String id : ids) {
+                builder.put(id, "account-" + id);
+            }
+            return builder.build();
+        }
+
+        @Override
+        public List<String> list() {
+            return Collections.emptyList();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.opower.rest.client.generator.hystrix;
+
+import com.netflix.hystrix.HystrixCommandGroupKey;
+import com.netflix.hystrix.strategy.concurrency.HystrixRequestContext;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for serving repeated calls from the Hystrix request cache.
+ */
+public class TestRequestCache {
+
+    private static final HystrixCommandGroupKey GROUP_KEY = HystrixCommandGroupKey.Factory.asKey("request-cache");
+    private static final Method FIND = Fixtures.method(Frobs.class, "find");
+    private static final int CALLS = 5;
+
+    /**
+     * Initializes the system property to ensure the RuntimeDelegate gets properly loaded.
+     */
+    @BeforeClass
+    public static void init() {
+        System.setProperty("javax.ws.rs.ext.RuntimeDelegate", "com.opower.rest.client.generator.core.BasicRuntimeDelegate");
+    }
+
+    @Test
+    public void repeatedCallsAreServedFromTheCache() throws Exception {
+        CountingFrobs frobs = new CountingFrobs();
+        HystrixClient.Builder<Frobs> builder = builder().methodRequestCache(FIND);
+        Frobs client = client(builder, frobs);
+
+        HystrixRequestContext context = HystrixRequestContext.initializeContext();
+        try {
+            for (int i = 0; i < CALLS; i++) {
+                assertThat(client.find("x"), is("frob-x"));
+            }
+            assertThat(client.find("y"), is("frob-y"));
+        } finally {
+            context.shutdown();
+        }
+
+        assertThat(frobs.calls.get(), is(2));
+        assertThat(builder.getRequestCache(FIND).getHits(), is((long) CALLS - 1));
+        assertThat(builder.getRequestCache(FIND).getMisses(), is(2L));
+    }
+
+    @Test
+    public void cacheDoesNotOutliveTheRequestContext() throws Exception {
+        CountingFrobs frobs = new CountingFrobs();
+        Frobs client = client(builder().methodRequestCache(FIND), frobs);
+
+        for (int i = 0; i < 2; i++) {
+            HystrixRequestContext context = HystrixRequestContext.initializeContext();
+            try {
+                client.find("x");
+                client.find("x");
+            } finally {
+                context.shutdown();
+            }
+        }
+
+        assertThat(frobs.calls.get(), is(2));
+    }
+
+    @Test
+    public void callsWithoutRequestContextAreNotCached() throws Exception {
+        CountingFrobs frobs = new CountingFrobs();
+        HystrixClient.Builder<Frobs> builder = builder().methodRequestCache(FIND);
+        Frobs client = client(builder, frobs);
+
+        client.find("x");
+        client.find("x");
+
+        assertThat(frobs.calls.get(), is(2));
+        assertThat(builder.getRequestCache(FIND).getMisses(), is(0L));
+    }
+
+    @Test
+    public void nullKeysAreNotCached() throws Exception {
+        CountingFrobs frobs = new CountingFrobs();
+        Frobs client = client(builder().methodRequestCache(FIND, new RequestCache.KeyFunction() {
+            @Override
+            public String apply(Method method, Object[] args) {
+                return null;
+            }
+        }), frobs);
+
+        HystrixRequestContext context = HystrixRequestContext.initializeContext();
+        try {
+            client.find("x");
+            client.find("x");
+        } finally {
+            context.shutdown();
+        }
+
+        assertThat(frobs.calls.get(), is(2));
+    }
+
+    @Test
+    public void argumentsDontRunIntoEachOther() throws Exception {
+        CountingFrobs frobs = new CountingFrobs();
+        Frobs client = client(builder().methodRequestCache(Fixtures.method(Frobs.class, "between")), frobs);
+
+        HystrixRequestContext context = HystrixRequestContext.initializeContext();
+        try {
+            assertThat(client.between("a, b", "c"), is("frobs-a, b-c"));
+            assertThat(client.between("a", "b, c"), is("frobs-a-b, c"));
+        } finally {
+            context.shutdown();
+        }
+
+        assertThat(frobs.calls.get(), is(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void argumentsWithoutAReliableToStringNeedAKeyFunction() throws Exception {
+        builder().methodRequestCache(Frobs.class.getMethod("tagged", List.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void methodsOutsideTheResourceInterfaceAreRejected() throws Exception {
+        builder().methodRequestCache(Object.class.getMethod("hashCode"), RequestCache.DEFAULT_KEY_FUNCTION);
+    }
+
+    @Test
+    public void cachingIsOptIn() throws Exception {
+        assertThat(builder().getRequestCache(FIND), is(nullValue()));
+    }
+
+    private static Frobs client(HystrixClient.Builder<Frobs> builder, Frobs frobs) {
+        return Fixtures.proxy(builder, Frobs.class, frobs);
+    }
+
+    private static HystrixClient.Builder<Frobs> builder() {
+        return Fixtures.builder(Frobs.class, GROUP_KEY).methodCommandKey(FIND, Fixtures.commandKey("cached"));
+    }
+
+    /**
+     * A resource with an idempotent lookup.
+     */
+    @Path("/frobs")
+    public interface Frobs {
+        @GET
+        @Path("/{id}")
+        String find(@PathParam("id") String id);
+
+        @GET
+        String between(@QueryParam("from") String from, @QueryParam("to") String to);
+
+        @GET
+        String tagged(@QueryParam("tag") List<String> tags);
+    }
+
+    private static class CountingFrobs implements Frobs {
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public String find(String id) {
+            this.calls.incrementAndGet();
+            return "frob-" + id;
+        }
+
+        @Override
+        public String between(String from, String to) {
+            this.calls.incrementAndGet();
+            return "frobs-" + from + "-" + to;
+        }
+
+        @Override
+        public String tagged(List<String> tags) {
+            this.calls.incrementAndGet();
+            return "frobs-" + tags;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.processor;
+
+import com.opower.rest.client.generator.annotations.GenerateClient;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Annotation processor that writes a client class for every resource interface annotated with {@link GenerateClient}.
+ * The generated classes are picked up by clients built with
+ * {@link com.opower.rest.client.generator.core.ProxyEngine#PRECOMPILED}.
+ */
+public class ClientProcessor extends AbstractProcessor {
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(GenerateClient.class.getCanonicalName());
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(GenerateClient.class)) {
+            if (element.getKind() != ElementKind.INTERFACE) {
+                error(element, "@GenerateClient can only be used on interfaces");
+                continue;
+            }
+            TypeElement resource = (TypeElement) element;
+            try {
+                ClientWriter clientWriter = new ClientWriter(this.processingEnv, resource);
+                String source = clientWriter.write();
+                JavaFileObject file = this.processingEnv.getFiler().createSourceFile(clientWriter.getQualifiedName(), resource);
+                try (Writer writer = file.openWriter()) {
+                    writer.write(source);
+                }
+            } catch (InvalidResourceException e) {
+                error(e.getElement(), e.getMessage());
+            } catch (IOException e) {
+                error(resource, "Unable to write the generated client: " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    private void error(Element element, String message) {
+        this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,360 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.processor;
+
+import com.opower.rest.client.generator.core.PrecompiledClient;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * Writes the source of the generated client for one resource interface. Everything Client.createProxy works out by
+ * reflection when a client is built is worked out here instead: the http method, the path template, the Accept header
+ * and one Marshaller per parameter, chosen with the same precedence as ClientMarshallerFactory.
+ */
+final class ClientWriter {
+
+    private static final String DEFAULT_MEDIA_TYPE = "application/json";
+    private static final String PATH = "javax.ws.rs.Path";
+    private static final String HTTP_METHOD = "javax.ws.rs.HttpMethod";
+    private static final String PRODUCES = "javax.ws.rs.Produces";
+    private static final String CONSUMES = "javax.ws.rs.Consumes";
+    private static final String CONTEXT = "javax.ws.rs.core.Context";
+    private static final String COOKIE = "javax.ws.rs.core.Cookie";
+    private static final String[][] PARAM_MARSHALLERS = {
+        {"javax.ws.rs.QueryParam", "QueryParamMarshaller"},
+        {"javax.ws.rs.HeaderParam", "HeaderParamMarshaller"},
+        {"javax.ws.rs.CookieParam", "CookieParamMarshaller"},
+        {"javax.ws.rs.PathParam", "PathParamMarshaller"},
+        {"javax.ws.rs.MatrixParam", "MatrixParamMarshaller"},
+        {"javax.ws.rs.FormParam", "FormParamMarshaller"},
+    };
+    private static final String[] IMPORTS = {
+        "com.opower.rest.client.generator.core.MethodInvoker",
+        "com.opower.rest.client.generator.core.PrecompiledClient",
+        "com.opower.rest.client.generator.core.ProxyConfig",
+        "com.opower.rest.client.generator.core.UriProvider",
+        "com.opower.rest.client.generator.core.UriTemplate",
+        "com.opower.rest.client.generator.marshallers.CookieParamMarshaller",
+        "com.opower.rest.client.generator.marshallers.FormParamMarshaller",
+        "com.opower.rest.client.generator.marshallers.HeaderParamMarshaller",
+        "com.opower.rest.client.generator.marshallers.MatrixParamMarshaller",
+        "com.opower.rest.client.generator.marshallers.MessageBodyParameterMarshaller",
+        "com.opower.rest.client.generator.marshallers.NOOPMarshaller",
+        "com.opower.rest.client.generator.marshallers.PathParamMarshaller",
+        "com.opower.rest.client.generator.marshallers.QueryParamMarshaller",
+        "java.lang.annotation.Annotation",
+        "java.lang.reflect.Method",
+        "javax.ws.rs.core.MediaType",
+    };
+    private static final String VALUE = "value";
+    private static final String INVOKER = "invoker";
+    private static final String CLASS_LITERAL = ".class";
+    private static final String SEPARATOR = ", ";
+    private static final String NULL = "(String) null";
+    private static final String INDENT = "        ";
+    private static final String END_STATEMENT = ");\n";
+    private static final String END_CALL = ")";
+    private static final String END_LINE = ";\n";
+    private static final String NEXT_ARGUMENT = ",\n";
+    private static final String THIS = "this.";
+    private static final char FIRST_PRINTABLE = ' ';
+    private static final char LAST_PRINTABLE = '~';
+
+    private final Elements elements;
+    private final Types types;
+    private final TypeElement resource;
+    private final String packageName;
+    private final String simpleName;
+
+    /**
+     * Create a writer for the given resource interface.
+     * @param env the ProcessingEnvironment of the current round
+     * @param resource the resource interface
+     */
+    ClientWriter(ProcessingEnvironment env, TypeElement resource) {
+        this.elements = env.getElementUtils();
+        this.types = env.getTypeUtils();
+        this.resource = resource;
+        this.packageName = this.elements.getPackageOf(resource).getQualifiedName().toString();
+        StringBuilder name = new StringBuilder(resource.getSimpleName());
+        for (Element e = resource.getEnclosingElement(); e.getKind() != ElementKind.PACKAGE; e = e.getEnclosingElement()) {
+            name.insert(0, '_').insert(0, e.getSimpleName());
+        }
+        this.simpleName = PrecompiledClient.CLASS_NAME_PREFIX + name;
+    }
+
+    /**
+     * The fully qualified name of the generated class. This matches PrecompiledClient.className().
+     * @return the name of the generated class
+     */
+    String getQualifiedName() {
+        return this.packageName.isEmpty() ? this.simpleName : this.packageName + '.' + this.simpleName;
+    }
+
+    /**
+     * Write the source of the generated client.
+     * @return the java source
+     * @throws InvalidResourceException if the interface can't be implemented by a generated client
+     */
+    String write() throws InvalidResourceException {
+        if (!this.resource.getTypeParameters().isEmpty()) {
+            throw new InvalidResourceException(this.resource, "@GenerateClient does not support generic interfaces");
+        }
+        if (this.resource.getModifiers().contains(Modifier.PRIVATE)) {
+            throw new InvalidResourceException(this.resource, "@GenerateClient can't be used on private interfaces");
+        }
+        String iface = this.resource.getQualifiedName().toString();
+        StringBuilder fields = new StringBuilder();
+        StringBuilder constructor = new StringBuilder();
+        StringBuilder methods = new StringBuilder();
+        int index = 0;
+        for (ExecutableElement method : resourceMethods()) {
+            String invoker = INVOKER + index;
+            fields.append("    private final MethodInvoker ").append(invoker).append(END_LINE);
+            writeInvoker(constructor, method, index);
+            writeMethod(methods, method, invoker);
+            index += 1;
+        }
+
+        StringBuilder source = new StringBuilder();
+        if (!this.packageName.isEmpty()) {
+            source.append("package ").append(this.packageName).append(END_LINE).append('\n');
+        }
+        for (String type : IMPORTS) {
+            source.append("import ").append(type).append(END_LINE);
+        }
+        source.append("\n/**\n * Generated by ").append(ClientProcessor.class.getName()).append(" from ").append(iface)
+              .append(". Do not edit.\n */\n")
+              .append("@SuppressWarnings(\"unchecked\")\n")
+              .append("public final class ").append(this.simpleName)
+              .append(" extends PrecompiledClient implements ").append(iface).append(" {\n\n")
+              .append(fields).append('\n')
+              .append("    public ").append(this.simpleName).append("(UriProvider uriProvider, ProxyConfig config) {\n")
+              .append(INDENT).append("super(").append(iface).append(CLASS_LITERAL).append(", uriProvider, config);\n")
+              .append(constructor)
+              .append("    }\n")
+              .append(methods)
+              .append("}\n");
+        return source.toString();
+    }
+
+    private List<ExecutableElement> resourceMethods() {
+        List<ExecutableElement> methods = new ArrayList<>();
+        Set<String> signatures = new HashSet<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(this.elements.getAllMembers(this.resource))) {
+            TypeElement owner = (TypeElement) method.getEnclosingElement();
+            if (owner.getQualifiedName().contentEquals(Object.class.getName())
+                    || !method.getModifiers().contains(Modifier.ABSTRACT)) {
+                continue;
+            }
+            if (signatures.add(method.getSimpleName() + parameterClasses(method))) {
+                methods.add(method);
+            }
+        }
+        return methods;
+    }
+
+    private void writeInvoker(StringBuilder out, ExecutableElement method, int index) throws InvalidResourceException {
+        if (!method.getTypeParameters().isEmpty()) {
+            throw new InvalidResourceException(method, "@GenerateClient does not support generic methods");
+        }
+        String methodVar = "method" + index;
+        out.append(INDENT).append("Method ").append(methodVar).append(" = method(")
+           .append(this.resource.getQualifiedName()).append(CLASS_LITERAL).append(SEPARATOR)
+           .append(literal(method.getSimpleName().toString())).append(parameterClasses(method)).append(END_STATEMENT);
+        out.append(INDENT).append(THIS).append(INVOKER).append(index).append(" = ");
+
+        List<String> httpMethods = httpMethods(method);
+        AnnotationMirror methodPath = annotation(method, PATH);
+        if (httpMethods.isEmpty() && methodPath != null && isInterface(method.getReturnType())) {
+            out.append("subResource(").append(methodVar).append(END_STATEMENT);
+            return;
+        }
+        if (httpMethods.size() != 1) {
+            throw new InvalidResourceException(method,
+                    "You must use at least one, but no more than one http method annotation on: " + method);
+        }
+        String produces = firstValue(method, PRODUCES);
+        out.append("invoker(").append(methodVar).append(SEPARATOR).append(literal(httpMethods.get(0))).append(NEXT_ARGUMENT)
+           .append(INDENT).append(INDENT).append("UriTemplate.compile(")
+           .append(literal(stringValue(annotation(this.resource, PATH)))).append(SEPARATOR)
+           .append(literal(stringValue(methodPath))).append("),\n")
+           .append(INDENT).append(INDENT).append(mediaType(produces == null ? DEFAULT_MEDIA_TYPE : produces));
+        List<? extends VariableElement> parameters = method.getParameters();
+        for (int i = 0; i < parameters.size(); i += 1) {
+            out.append(NEXT_ARGUMENT).append(INDENT).append(INDENT).append(marshaller(method, parameters.get(i), methodVar, i));
+        }
+        out.append(END_STATEMENT);
+    }
+
+    private String marshaller(ExecutableElement method, VariableElement parameter, String methodVar, int index) {
+        for (String[] candidate : PARAM_MARSHALLERS) {
+            AnnotationMirror param = annotation(parameter, candidate[0]);
+            if (param != null) {
+                return "new " + candidate[1] + "(" + literal(stringValue(param)) + END_CALL;
+            }
+        }
+        if (annotation(parameter, CONTEXT) != null) {
+            return "new NOOPMarshaller()";
+        }
+        TypeMirror erasure = this.types.erasure(parameter.asType());
+        if (erasure.toString().equals(COOKIE)) {
+            return "new CookieParamMarshaller(null)";
+        }
+        String consumes = firstValue(method, CONSUMES);
+        String genericType = this.types.isSameType(erasure, parameter.asType())
+                ? erasure + CLASS_LITERAL
+                : "genericParameterType(" + methodVar + SEPARATOR + index + END_CALL;
+        String annotations = parameter.getAnnotationMirrors().isEmpty()
+                ? "new Annotation[0]"
+                : "parameterAnnotations(" + methodVar + SEPARATOR + index + END_CALL;
+        return "new MessageBodyParameterMarshaller(" + mediaType(consumes == null ? DEFAULT_MEDIA_TYPE : consumes)
+                + SEPARATOR + erasure + CLASS_LITERAL + SEPARATOR + genericType + SEPARATOR + annotations + END_CALL;
+    }
+
+    private void writeMethod(StringBuilder out, ExecutableElement method, String invoker) {
+        List<? extends VariableElement> parameters = method.getParameters();
+        StringBuilder declaration = new StringBuilder();
+        StringBuilder args = new StringBuilder();
+        for (int i = 0; i < parameters.size(); i += 1) {
+            VariableElement parameter = parameters.get(i);
+            String type = parameter.asType().toString();
+            if (method.isVarArgs() && i == parameters.size() - 1) {
+                type = type.substring(0, type.length() - "[]".length()) + "...";
+            }
+            String separator = i == 0 ? "" : SEPARATOR;
+            declaration.append(separator).append(type).append(' ').append(parameter.getSimpleName());
+            args.append(separator).append(parameter.getSimpleName());
+        }
+        out.append("\n    @Override\n    public ").append(method.getReturnType()).append(' ').append(method.getSimpleName())
+           .append('(').append(declaration).append(')');
+        List<? extends TypeMirror> thrown = method.getThrownTypes();
+        for (int i = 0; i < thrown.size(); i += 1) {
+            out.append(i == 0 ? " throws " : SEPARATOR).append(thrown.get(i));
+        }
+        out.append(" {\n").append(INDENT);
+
+        TypeMirror returnType = method.getReturnType();
+        if (returnType.getKind() != TypeKind.VOID) {
+            String cast = returnType.getKind().isPrimitive()
+                    ? this.types.boxedClass((PrimitiveType) returnType).getQualifiedName().toString()
+                    : returnType.toString();
+            out.append("return (").append(cast).append(") ");
+        }
+        out.append(THIS).append(invoker).append(".invoke(new Object[] {").append(args).append("});\n    }\n");
+    }
+
+    private String parameterClasses(ExecutableElement method) {
+        StringBuilder classes = new StringBuilder();
+        for (VariableElement parameter : method.getParameters()) {
+            classes.append(SEPARATOR).append(this.types.erasure(parameter.asType())).append(CLASS_LITERAL);
+        }
+        return classes.toString();
+    }
+
+    private List<String> httpMethods(ExecutableElement method) {
+        List<String> httpMethods = new ArrayList<>();
+        for (AnnotationMirror mirror : method.getAnnotationMirrors()) {
+            AnnotationMirror httpMethod = annotation(mirror.getAnnotationType().asElement(), HTTP_METHOD);
+            if (httpMethod != null && !httpMethods.contains(stringValue(httpMethod))) {
+                httpMethods.add(stringValue(httpMethod));
+            }
+        }
+        return httpMethods;
+    }
+
+    private boolean isInterface(TypeMirror type) {
+        return type.getKind() == TypeKind.DECLARED && ((DeclaredType) type).asElement().getKind() == ElementKind.INTERFACE;
+    }
+
+    /**
+     * The first value of a @Produces or @Consumes annotation on the method, or on the resource interface if the method
+     * has none. This is what MediaTypeHelper looks up at runtime.
+     */
+    private String firstValue(ExecutableElement method, String annotationName) {
+        AnnotationMirror mirror = annotation(method, annotationName);
+        if (mirror == null) {
+            mirror = annotation(this.resource, annotationName);
+        }
+        return stringValue(mirror);
+    }
+
+    private AnnotationMirror annotation(Element element, String annotationName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationName)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private String stringValue(AnnotationMirror mirror) {
+        if (mirror == null) {
+            return null;
+        }
+        Object value = null;
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                : this.elements.getElementValuesWithDefaults(mirror).entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(VALUE)) {
+                value = entry.getValue().getValue();
+            }
+        }
+        if (value instanceof List) {
+            List<?> values = (List<?>) value;
+            value = values.isEmpty() ? null : ((AnnotationValue) values.get(0)).getValue();
+        }
+        return value == null ? null : value.toString();
+    }
+
+    private static String mediaType(String value) {
+        return "MediaType.valueOf(" + literal(value) + END_CALL;
+    }
+
+    private static String literal(String value) {
+        if (value == null) {
+            return NULL;
+        }
+        StringBuilder literal = new StringBuilder().append('"');
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                literal.append('\\').append(c);
+            } else if (c < FIRST_PRINTABLE || c > LAST_PRINTABLE) {
+                literal.append(String.format("\\u%04x", (int) c));
+            } else {
+                literal.append(c);
+            }
+        }
+        return literal.append('"').toString();
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.processor;
+
+import javax.lang.model.element.Element;
+
+/**
+ * Thrown when a resource interface can't be turned into a generated client.
+ */
+final class InvalidResourceException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient Element element;
+
+    /**
+     * Create a new exception.
+     * @param element the element the problem should be reported on
+     * @param message the message for the compiler error
+     */
+    InvalidResourceException(Element element, String message) {
+        super(message);
+        this.element = element;
+    }
+
+    Element getElement() {
+        return this.element;
+    }
+}
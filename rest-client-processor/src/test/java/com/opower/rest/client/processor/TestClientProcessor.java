@@ -0,0 +1,174 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.processor;
+
+import com.opower.rest.client.generator.core.Client;
+import com.opower.rest.client.generator.core.ClientExecutor;
+import com.opower.rest.client.generator.core.ClientRequest;
+import com.opower.rest.client.generator.core.ClientResponse;
+import com.opower.rest.client.generator.core.PrecompiledClient;
+import com.opower.rest.client.generator.core.ProxyEngine;
+import com.opower.rest.client.generator.core.ResourceInterface;
+import com.opower.rest.client.generator.core.SimpleUriProvider;
+import com.opower.rest.client.generator.executors.ApacheHttpClient4Executor;
+import com.opower.rest.test.PrecompiledFrobResource;
+import com.opower.rest.test.resource.Frob;
+import com.opower.rest.test.resource.FrobResource;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that the client generated for PrecompiledFrobResource is found and used by the Client.Builder, and that it
+ * builds the same requests as the reflective client.
+ */
+public class TestClientProcessor {
+
+    private static final String BASE_URI = "http://localhost:7000/";
+
+    @Test
+    public void generatedClientIsUsed() throws Exception {
+        FrobResource client = builder(PrecompiledFrobResource.class).proxyEngine(ProxyEngine.PRECOMPILED).build();
+        assertThat(client, instanceOf(PrecompiledClient.class));
+        assertThat(client.getClass().getName(), is(PrecompiledClient.className(PrecompiledFrobResource.class)));
+        assertThat(client.getClass(), is((Object) Class.forName("com.opower.rest.test.RestClient_PrecompiledFrobResource")));
+    }
+
+    @Test
+    public void interfacesWithoutGeneratedClientUseJdkProxy() {
+        FrobResource client = builder(FrobResource.class).proxyEngine(ProxyEngine.PRECOMPILED).build();
+        assertThat(Proxy.isProxyClass(client.getClass()), is(true));
+    }
+
+    @Test
+    public void generatedClientIsOnlyUsedWhenRequested() {
+        FrobResource client = builder(PrecompiledFrobResource.class).build();
+        assertThat(Proxy.isProxyClass(client.getClass()), is(true));
+    }
+
+    @Test
+    public void generatedClientSendsTheSameRequestsAsTheReflectiveClient() throws Exception {
+        final Frob frob = new Frob("frob 1");
+        Call[] calls = {
+            new Call() {
+                @Override
+                void on(FrobResource client) {
+                    client.updateFrob("a b/c", "new name");
+                }
+            },
+            new Call() {
+                @Override
+                void on(FrobResource client) {
+                    client.findFrob("42");
+                }
+            },
+            new Call() {
+                @Override
+                void on(FrobResource client) {
+                    client.createFrob(frob);
+                }
+            },
+            new Call() {
+                @Override
+                void on(FrobResource client) {
+                    client.frobString("hello & goodbye");
+                }
+            },
+            new Call() {
+                @Override
+                void on(FrobResource client) {
+                    client.frobJsonError();
+                }
+            },
+            new Call() {
+                @Override
+                void on(FrobResource client) {
+                    client.frobErrorResponse(503);
+                }
+            }
+        };
+        RecordingExecutor precompiled = new RecordingExecutor();
+        RecordingExecutor reflective = new RecordingExecutor();
+        FrobResource precompiledClient = builder(PrecompiledFrobResource.class, precompiled)
+                .proxyEngine(ProxyEngine.PRECOMPILED).build();
+        FrobResource reflectiveClient = builder(PrecompiledFrobResource.class, reflective).build();
+        assertThat(precompiledClient, instanceOf(PrecompiledClient.class));
+
+        for (Call call : calls) {
+            ClientRequest expected = reflective.record(call, reflectiveClient);
+            ClientRequest actual = precompiled.record(call, precompiledClient);
+            assertThat(actual.getHttpMethod(), is(expected.getHttpMethod()));
+            assertThat(actual.getUri(), is(expected.getUri()));
+            assertThat(actual.getHeaders(), is(expected.getHeaders()));
+            assertThat(actual.getFormParameters(), is(expected.getFormParameters()));
+            assertThat(actual.getBody(), is(expected.getBody()));
+            assertThat(actual.getBodyContentType(), is(expected.getBodyContentType()));
+        }
+    }
+
+    private static <T extends FrobResource> Client.Builder<T> builder(Class<T> iface) {
+        return builder(iface, new ApacheHttpClient4Executor());
+    }
+
+    private static <T extends FrobResource> Client.Builder<T> builder(Class<T> iface, ClientExecutor executor) {
+        return new Client.Builder<>(new ResourceInterface<>(iface), new SimpleUriProvider(BASE_URI))
+                .executor(executor);
+    }
+
+    /**
+     * A call on a FrobResource client.
+     */
+    private abstract static class Call {
+        abstract void on(FrobResource client);
+    }
+
+    /**
+     * Keeps the last request it was asked to send and fails it, so nothing goes over the wire.
+     */
+    private static class RecordingExecutor implements ClientExecutor {
+        private ClientRequest last;
+
+        ClientRequest record(Call call, FrobResource client) {
+            this.last = null;
+            try {
+                call.on(client);
+                fail("the recording executor fails every request");
+            } catch (RuntimeException expected) {
+                assertThat(this.last, is(notNullValue()));
+            }
+            return this.last;
+        }
+
+        @Override
+        public ClientResponse execute(ClientRequest request) {
+            this.last = request;
+            throw new IllegalStateException("recorded");
+        }
+
+        @Override
+        public void processFilters(ClientRequest request) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.test;
+
+import com.opower.rest.client.generator.annotations.GenerateClient;
+import com.opower.rest.test.resource.FrobResource;
+
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * FrobResource with a client generated by the annotation processor. The class level annotations are repeated since
+ * they are not inherited from FrobResource.
+ */
+@GenerateClient
+@Path("/frob")
+@Produces(MediaType.APPLICATION_JSON)
+public interface PrecompiledFrobResource extends FrobResource {
+}
@@ -0,0 +1,51 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.resilience;
+
+import java.lang.reflect.Method;
+
+/**
+ * Thrown when a call is rejected without being attempted and there is no fallback.
+ */
+public class CallRejectedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Why a call was rejected.
+     */
+    public enum Reason {
+        /** The circuit breaker of the method is open. */
+        CIRCUIT_OPEN,
+        /** The method already has the maximum number of calls in flight. */
+        BULKHEAD_FULL
+    }
+
+    private final Reason reason;
+
+    /**
+     * Creates the exception for a rejected call.
+     * @param method the method that was called
+     * @param reason why the call was rejected
+     */
+    public CallRejectedException(Method method, Reason reason) {
+        super(String.format("%s.%s rejected: %s", method.getDeclaringClass().getCanonicalName(), method.getName(), reason));
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return this.reason;
+    }
+}
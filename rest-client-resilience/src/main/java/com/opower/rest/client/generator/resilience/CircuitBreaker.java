@@ -0,0 +1,152 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.resilience;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Circuit breaker for a single method on the ResourceInterface. The failure rate is computed over a ring of the most
+ * recent calls. Once at least the minimum number of calls is recorded and the rate reaches the threshold, the breaker
+ * opens and rejects calls. After the wait time a single trial call is let through: the breaker closes again if it
+ * succeeds and stays open for another wait time if it fails. All state changes are compare-and-set operations, no
+ * locks are taken on the call path.
+ * <p/>
+ * Every state change starts a new {@link Phase}. The outcome of a call is reported to the phase that admitted it and
+ * only counts while that phase lasts, so a slow call admitted while the breaker was closed can't close or reopen it
+ * during a later trial.
+ */
+public final class CircuitBreaker {
+
+    private static final int PERCENT = 100;
+
+    /**
+     * The states of a CircuitBreaker.
+     */
+    public enum State {
+        /** Calls are permitted and their outcomes recorded. */
+        CLOSED,
+        /** Calls are rejected. */
+        OPEN,
+        /** A single trial call is in flight. */
+        HALF_OPEN
+    }
+
+    private final int ringBufferSize;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long waitInOpenNanos;
+    private final AtomicReference<Phase> phase = new AtomicReference<>();
+
+    /**
+     * Creates a closed CircuitBreaker.
+     * @param properties the settings to use
+     */
+    public CircuitBreaker(ResilienceProperties properties) {
+        this.ringBufferSize = properties.getRingBufferSize();
+        this.minimumCalls = Math.min(properties.getMinimumCalls(), this.ringBufferSize);
+        this.failureRateThreshold = properties.getFailureRateThreshold();
+        this.waitInOpenNanos = TimeUnit.MILLISECONDS.toNanos(properties.getWaitInOpenMillis());
+        this.phase.set(new Phase(State.CLOSED, new OutcomeRing(this.ringBufferSize)));
+    }
+
+    /**
+     * Asks for permission to make a call. Every permitted call must report its outcome to the returned phase with
+     * {@link Phase#onSuccess()} or {@link Phase#onFailure()}, whatever way it ends.
+     * @return the phase that admitted the call or null if the call may not proceed
+     */
+    public Phase tryAcquirePermission() {
+        Phase current = this.phase.get();
+        switch (current.state) {
+            case CLOSED:
+                return current;
+            case OPEN:
+                if (nanoTime() - current.since < this.waitInOpenNanos) {
+                    return null;
+                }
+                Phase trial = new Phase(State.HALF_OPEN, current.ring);
+                return this.phase.compareAndSet(current, trial) ? trial : null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * The current state.
+     * @return the state
+     */
+    public State getState() {
+        return this.phase.get().state;
+    }
+
+    /**
+     * The failure rate over the recorded calls.
+     * @return the failure rate in percent or -1 if fewer than the minimum number of calls have been recorded
+     */
+    public int getFailureRate() {
+        OutcomeRing outcomes = this.phase.get().ring;
+        int calls = outcomes.calls();
+        return calls < this.minimumCalls ? -1 : outcomes.failures() * PERCENT / calls;
+    }
+
+    private static long nanoTime() {
+        return System.nanoTime();
+    }
+
+    /**
+     * The time between two state changes of the breaker. Calls are admitted by a phase and report their outcome to it.
+     * The outcomes recorded while closed are kept until the breaker closes again, for {@link #getFailureRate()}.
+     */
+    public final class Phase {
+        private final State state;
+        private final long since;
+        private final OutcomeRing ring;
+
+        private Phase(State state, OutcomeRing ring) {
+            this.state = state;
+            this.since = nanoTime();
+            this.ring = ring;
+        }
+
+        /**
+         * Records a successful call. A successful trial call closes the breaker.
+         */
+        public void onSuccess() {
+            if (this.state == State.HALF_OPEN) {
+                CircuitBreaker.this.phase.compareAndSet(this, new Phase(State.CLOSED,
+                                                                        new OutcomeRing(CircuitBreaker.this.ringBufferSize)));
+            } else if (this.state == State.CLOSED) {
+                this.ring.record(false);
+            }
+        }
+
+        /**
+         * Records a failed call, opening the breaker if the failure rate reaches the threshold or if it was the trial
+         * call.
+         */
+        public void onFailure() {
+            if (this.state == State.HALF_OPEN) {
+                CircuitBreaker.this.phase.compareAndSet(this, new Phase(State.OPEN, this.ring));
+            } else if (this.state == State.CLOSED) {
+                int failures = this.ring.record(true);
+                int calls = this.ring.calls();
+                if (calls >= CircuitBreaker.this.minimumCalls
+                    && failures * PERCENT >= CircuitBreaker.this.failureRateThreshold * calls) {
+                    CircuitBreaker.this.phase.compareAndSet(this, new Phase(State.OPEN, this.ring));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.resilience;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free record of the outcomes of the most recent calls, one bit per call. Recording a call claims the next slot
+ * with a single increment, flips its bit with a compare-and-set and keeps a running failure count, so the failure rate
+ * can be read without scanning the ring.
+ */
+final class OutcomeRing {
+
+    private static final int BITS_PER_WORD = 64;
+
+    private final int size;
+    private final AtomicLongArray words;
+    private final AtomicLong next = new AtomicLong();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    /**
+     * Creates an empty ring.
+     * @param size the number of calls to keep
+     */
+    OutcomeRing(int size) {
+        this.size = size;
+        this.words = new AtomicLongArray((size + BITS_PER_WORD - 1) / BITS_PER_WORD);
+    }
+
+    /**
+     * Records the outcome of a call, replacing the oldest outcome once the ring is full.
+     * @param failure whether the call failed
+     * @return the number of failures in the ring after recording
+     */
+    int record(boolean failure) {
+        int slot = (int) (this.next.getAndIncrement() % this.size);
+        int word = slot / BITS_PER_WORD;
+        long mask = 1L << (slot % BITS_PER_WORD);
+        long current;
+        long updated;
+        do {
+            current = this.words.get(word);
+            updated = failure ? current | mask : current & ~mask;
+        } while (current != updated && !this.words.compareAndSet(word, current, updated));
+
+        boolean previous = (current & mask) != 0;
+        if (previous == failure) {
+            return this.failures.get();
+        }
+        return this.failures.addAndGet(failure ? 1 : -1);
+    }
+
+    /**
+     * The number of calls currently in the ring.
+     * @return the number of calls
+     */
+    int calls() {
+        return (int) Math.min(this.next.get(), this.size);
+    }
+
+    /**
+     * The number of failed calls currently in the ring.
+     * @return the number of failures
+     */
+    int failures() {
+        return this.failures.get();
+    }
+}
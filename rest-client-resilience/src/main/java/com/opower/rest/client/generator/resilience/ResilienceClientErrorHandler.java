@@ -0,0 +1,59 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.resilience;
+
+import com.opower.rest.client.generator.extractors.BadRequestErrorHandler;
+import com.opower.rest.client.generator.extractors.ClientErrorHandler;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+
+/**
+ * Certain responses should not count as failures towards the circuit breaker or trigger fallbacks. By default only
+ * requests with a response code of 400 will be handled this way. To change that behavior, just specify new criteria
+ * for any method in your resource interface.
+ */
+public class ResilienceClientErrorHandler extends BadRequestErrorHandler<BadRequestErrorHandler.BadRequestCriteria> {
+
+    /**
+     * Creates an instance based on the provided ClientErrorHandler and bad request criteria.
+     * @param badRequestCriteriaMap the bad request criteria to apply for each method
+     * @param clientErrorHandler the ClientErrorHandler to wrap
+     */
+    public ResilienceClientErrorHandler(Map<Method, ? extends BadRequestCriteria> badRequestCriteriaMap,
+                                        ClientErrorHandler clientErrorHandler) {
+        super(badRequestCriteriaMap, clientErrorHandler);
+    }
+
+    @Override
+    protected RuntimeException badRequest(Exception cause) {
+        return new BadRequestException(cause);
+    }
+
+    /**
+     * Carries a bad request failure past the circuit breaker. The ResilientClient unwraps it before the caller sees it.
+     */
+    static final class BadRequestException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Wraps the exception of a bad request.
+         * @param cause the exception
+         */
+        BadRequestException(Exception cause) {
+            super("Bad Request", cause);
+        }
+    }
+}
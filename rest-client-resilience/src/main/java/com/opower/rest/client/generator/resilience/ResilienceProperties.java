@@ -0,0 +1,176 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.resilience;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * The circuit breaker, bulkhead, timeout and fallback settings of a single method on the ResourceInterface. The
+ * defaults match the Hystrix defaults where Hystrix has an equivalent setting.
+ */
+public final class ResilienceProperties {
+
+    static final int DEFAULT_RING_BUFFER_SIZE = 100;
+    static final int DEFAULT_MINIMUM_CALLS = 20;
+    static final int DEFAULT_FAILURE_RATE_THRESHOLD = 50;
+    static final long DEFAULT_WAIT_IN_OPEN_MILLIS = 5000;
+    static final int DEFAULT_MAX_CONCURRENT_CALLS = 10;
+    static final long DEFAULT_TIMEOUT_MILLIS = 1000;
+    private static final int MAX_PERCENT = 100;
+
+    private boolean circuitBreakerEnabled = true;
+    private int ringBufferSize = DEFAULT_RING_BUFFER_SIZE;
+    private int minimumCalls = DEFAULT_MINIMUM_CALLS;
+    private int failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+    private long waitInOpenMillis = DEFAULT_WAIT_IN_OPEN_MILLIS;
+    private boolean bulkheadEnabled = true;
+    private int maxConcurrentCalls = DEFAULT_MAX_CONCURRENT_CALLS;
+    private long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+    private boolean fallbackEnabled;
+
+    /**
+     * Whether the circuit breaker rejects calls while the failure rate is too high.
+     * @param enabled false to never reject calls
+     * @return this
+     */
+    public ResilienceProperties withCircuitBreakerEnabled(boolean enabled) {
+        this.circuitBreakerEnabled = enabled;
+        return this;
+    }
+
+    /**
+     * The number of most recent calls the failure rate is computed over.
+     * @param size the number of calls
+     * @return this
+     */
+    public ResilienceProperties withRingBufferSize(int size) {
+        checkArgument(size > 0, "the ring buffer needs at least one slot");
+        this.ringBufferSize = size;
+        return this;
+    }
+
+    /**
+     * The number of calls that have to be recorded before the circuit breaker can open.
+     * @param calls the number of calls
+     * @return this
+     */
+    public ResilienceProperties withMinimumCalls(int calls) {
+        checkArgument(calls > 0, "at least one call is needed to compute a failure rate");
+        this.minimumCalls = calls;
+        return this;
+    }
+
+    /**
+     * The failure rate in percent at which the circuit breaker opens.
+     * @param percent the threshold
+     * @return this
+     */
+    public ResilienceProperties withFailureRateThreshold(int percent) {
+        checkArgument(percent > 0 && percent <= MAX_PERCENT, "the threshold is a percentage");
+        this.failureRateThreshold = percent;
+        return this;
+    }
+
+    /**
+     * How long an open circuit breaker rejects calls before it lets a single trial call through.
+     * @param millis the time in milliseconds
+     * @return this
+     */
+    public ResilienceProperties withWaitInOpenMillis(long millis) {
+        checkArgument(millis >= 0, "the wait time cannot be negative");
+        this.waitInOpenMillis = millis;
+        return this;
+    }
+
+    /**
+     * Whether the number of concurrent calls is limited.
+     * @param enabled false to allow any number of concurrent calls
+     * @return this
+     */
+    public ResilienceProperties withBulkheadEnabled(boolean enabled) {
+        this.bulkheadEnabled = enabled;
+        return this;
+    }
+
+    /**
+     * The number of calls that may be in flight at once. Further calls are rejected right away.
+     * @param calls the number of calls
+     * @return this
+     */
+    public ResilienceProperties withMaxConcurrentCalls(int calls) {
+        checkArgument(calls > 0, "at least one call has to be allowed");
+        this.maxConcurrentCalls = calls;
+        return this;
+    }
+
+    /**
+     * The time after which a call counts as failed. Future returning methods fail with a TimeoutException once it
+     * expires. Blocking calls run on the caller thread and cannot be abandoned, so they complete normally but count
+     * as failures towards the circuit breaker. Use the socket timeouts of the ClientExecutor to bound them.
+     * @param millis the timeout in milliseconds
+     * @return this
+     */
+    public ResilienceProperties withTimeoutMillis(long millis) {
+        checkArgument(millis > 0, "the timeout must be positive");
+        this.timeoutMillis = millis;
+        return this;
+    }
+
+    /**
+     * Whether failed and rejected calls return the result of the fallback. This is enabled when you provide a fallback.
+     * @param enabled true to use the fallback
+     * @return this
+     */
+    public ResilienceProperties withFallbackEnabled(boolean enabled) {
+        this.fallbackEnabled = enabled;
+        return this;
+    }
+
+    public boolean isCircuitBreakerEnabled() {
+        return this.circuitBreakerEnabled;
+    }
+
+    public int getRingBufferSize() {
+        return this.ringBufferSize;
+    }
+
+    public int getMinimumCalls() {
+        return this.minimumCalls;
+    }
+
+    public int getFailureRateThreshold() {
+        return this.failureRateThreshold;
+    }
+
+    public long getWaitInOpenMillis() {
+        return this.waitInOpenMillis;
+    }
+
+    public boolean isBulkheadEnabled() {
+        return this.bulkheadEnabled;
+    }
+
+    public int getMaxConcurrentCalls() {
+        return this.maxConcurrentCalls;
+    }
+
+    public long getTimeoutMillis() {
+        return this.timeoutMillis;
+    }
+
+    public boolean isFallbackEnabled() {
+        return this.fallbackEnabled;
+    }
+}
@@ -0,0 +1,219 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.resilience;
+
+import com.google.common.collect.ImmutableMap;
+import com.opower.rest.client.ConfigurationCallback;
+import com.opower.rest.client.generator.core.Client;
+import com.opower.rest.client.generator.core.MethodInvoker;
+import com.opower.rest.client.generator.core.ResourceInterface;
+import com.opower.rest.client.generator.core.UriProvider;
+import com.opower.rest.client.generator.extractors.BadRequestErrorHandler.BadRequestCriteria;
+import com.opower.rest.client.generator.extractors.ClientErrorHandler;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Base class to make the return types of the inherited builders work correctly. Clients built this way protect every
+ * method with a circuit breaker, a semaphore bulkhead, a timeout and an optional fallback. Unlike the HystrixClient
+ * there are no thread pools: calls run on the calling thread and the statistics are kept in lock-free ring buffers.
+ *
+ * @param <T> the type of the client to be created
+ * @param <B> the type of the concrete builder
+ */
+public abstract class ResilientClient<T, B extends ResilientClient<T, B>> extends Client<T, B> {
+
+    // You don't get a fallback by default. You have to provide one
+    protected Map<Method, Callable<?>> fallbackMap = ImmutableMap.of();
+
+    // we will make default versions of these and allow people to tweak them with callbacks
+    protected final Map<Method, ResilienceProperties> propertiesMap;
+
+    Map<Method, BadRequestCriteria> badRequestCriteriaMap = ImmutableMap.of();
+
+    private volatile Map<Method, CircuitBreaker> circuitBreakers = ImmutableMap.of();
+
+    /**
+     * Creates a ResilientClient builder with the default ResilienceProperties for every method.
+     *
+     * @param resourceInterface The ResourceClass to create a client for
+     * @param uriProvider       The uriProvider to use.
+     */
+    protected ResilientClient(ResourceInterface<T> resourceInterface, UriProvider uriProvider) {
+        super(resourceInterface, uriProvider);
+        ImmutableMap.Builder<Method, ResilienceProperties> properties = ImmutableMap.builder();
+        for (Method method : resourceInterface.getInterface().getMethods()) {
+            properties.put(method, new ResilienceProperties());
+        }
+        this.propertiesMap = properties.build();
+    }
+
+    /**
+     * Specify custom ResilienceProperties for a specific method on the ResourceInterface.
+     *
+     * @param method   the method to apply the ResilienceProperties to
+     * @param callback the ConfigurationCallback that applies your custom settings
+     * @return the builder
+     */
+    @SuppressWarnings("unchecked")
+    public B methodProperties(Method method, ConfigurationCallback<ResilienceProperties> callback) {
+        checkNotNull(callback).configure(this.propertiesMap.get(checkMethod(method)));
+        return (B) this;
+    }
+
+    /**
+     * Apply custom ResilienceProperties for all methods on the ResourceInterface.
+     *
+     * @param callback the ConfigurationCallback that applies your custom settings to all methods
+     * @return the builder
+     */
+    @SuppressWarnings("unchecked")
+    public B properties(ConfigurationCallback<ResilienceProperties> callback) {
+        for (ResilienceProperties properties : this.propertiesMap.values()) {
+            checkNotNull(callback).configure(properties);
+        }
+        return (B) this;
+    }
+
+    /**
+     * Specify a specific fallback for a particular method on the ResourceClass. It is used when a call fails or is
+     * rejected by the circuit breaker or the bulkhead.
+     *
+     * @param method   the method that this fallback is to be used for
+     * @param fallback the fallback to use
+     * @return the builder
+     */
+    @SuppressWarnings("unchecked")
+    public B methodFallback(Method method, Callable<?> fallback) {
+        this.fallbackMap = updateWith(method, fallback, this.fallbackMap);
+        this.propertiesMap.get(method).withFallbackEnabled(true);
+        return (B) this;
+    }
+
+    /**
+     * Specify specific criteria for bad requests for a particular method on the ResourceClass.
+     *
+     * @param method             the method that the criteria are to be used for
+     * @param badRequestCriteria the criteria to use
+     * @return the builder
+     */
+    @SuppressWarnings("unchecked")
+    public B methodBadRequestCriteria(Method method, BadRequestCriteria badRequestCriteria) {
+        this.badRequestCriteriaMap = updateWith(method, badRequestCriteria, this.badRequestCriteriaMap);
+        return (B) this;
+    }
+
+    /**
+     * Specify default criteria for bad requests on the ResourceClass.
+     *
+     * @param badRequestCriteria the criteria to use
+     * @return the builder
+     */
+    @SuppressWarnings("unchecked")
+    public B badRequestCriteria(BadRequestCriteria badRequestCriteria) {
+        checkNotNull(badRequestCriteria);
+        ImmutableMap.Builder<Method, BadRequestCriteria> builder = ImmutableMap.builder();
+        for (Method method : this.resourceInterface.getInterface().getMethods()) {
+            builder.put(method, badRequestCriteria);
+        }
+        this.badRequestCriteriaMap = builder.build();
+        return (B) this;
+    }
+
+    /**
+     * The CircuitBreaker of a method on the client that was built last, to expose its state and failure rate.
+     *
+     * @param method the method in question
+     * @return the CircuitBreaker or null if no client was built yet
+     */
+    public CircuitBreaker getCircuitBreaker(Method method) {
+        return this.circuitBreakers.get(checkMethod(method));
+    }
+
+    private <V> Map<Method, V> updateWith(Method key, V value, Map<Method, V> existing) {
+        Map<Method, V> updated = new HashMap<>(existing);
+        updated.put(checkMethod(key), checkNotNull(value));
+        return ImmutableMap.copyOf(updated);
+    }
+
+    @Override
+    protected ClientErrorHandler getClientErrorHandler() {
+        return new ResilienceClientErrorHandler(this.badRequestCriteriaMap, super.getClientErrorHandler());
+    }
+
+    @Override
+    public T build() {
+        return ResilientInvocationHandler.proxy(this.resourceInterface.getInterface(), this.loader,
+                                                assembleInvokers(buildInvokers()));
+    }
+
+    /**
+     * Wraps the MethodInvokers of the underlying client. Visible for testing.
+     * @param invokers the MethodInvokers of the underlying client
+     * @return the ResilientInvoker per method
+     */
+    @SuppressWarnings("unchecked")
+    Map<Method, MethodInvoker> assembleInvokers(Map<Method, ? extends MethodInvoker> invokers) {
+        ImmutableMap.Builder<Method, CircuitBreaker> breakers = ImmutableMap.builder();
+        ImmutableMap.Builder<Method, MethodInvoker> resilient = ImmutableMap.builder();
+        for (Map.Entry<Method, ResilienceProperties> entry : this.propertiesMap.entrySet()) {
+            Method method = entry.getKey();
+            CircuitBreaker breaker = new CircuitBreaker(entry.getValue());
+            breakers.put(method, breaker);
+            resilient.put(method, new ResilientInvoker(method,
+                                                       checkNotNull(invokers.get(method), "No MethodInvoker for %s", method),
+                                                       entry.getValue(),
+                                                       breaker,
+                                                       (Callable<Object>) this.fallbackMap.get(method)));
+        }
+        this.circuitBreakers = breakers.build();
+        return resilient.build();
+    }
+
+    /**
+     * Ensures that the provided method is from the resource interface.
+     * @param method the method in question
+     * @return the method for convenience
+     */
+    protected Method checkMethod(Method method) {
+        checkArgument(method != null && method.getDeclaringClass().isAssignableFrom(this.resourceInterface.getInterface()),
+                      "Only methods from the resource interface %s are valid",
+                      this.resourceInterface.getInterface().getCanonicalName());
+        return method;
+    }
+
+    /**
+     * ClientBuilder that adds circuit breakers, bulkheads, timeouts and fallbacks to each client instance without
+     * running calls on separate threads.
+     *
+     * @param <T> The type of the Client we are building
+     */
+    public static final class Builder<T> extends ResilientClient<T, Builder<T>> {
+        /**
+         * Creates a ResilientClient builder with the default ResilienceProperties.
+         *
+         * @param resourceInterface The ResourceClass to create a client for
+         * @param uriProvider       The uriProvider to use.
+         */
+        public Builder(ResourceInterface<T> resourceInterface, UriProvider uriProvider) {
+            super(resourceInterface, uriProvider);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.resilience;
+
+import com.opower.rest.client.generator.core.MethodInvoker;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * InvocationHandler that dispatches each method straight to its {@link ResilientInvoker}.
+ *
+ * @param <T> The type of the Resource
+ */
+final class ResilientInvocationHandler<T> implements InvocationHandler {
+
+    private final Class<T> resourceInterface;
+    private final Map<Method, ? extends MethodInvoker> invokers;
+
+    private ResilientInvocationHandler(Class<T> resourceInterface, Map<Method, ? extends MethodInvoker> invokers) {
+        this.resourceInterface = checkNotNull(resourceInterface);
+        this.invokers = checkNotNull(invokers);
+    }
+
+    /**
+     * Creates the client proxy.
+     *
+     * @param resourceInterface the interface that has methods annotated for JAX-RS resource purposes
+     * @param loader            the ClassLoader to define the proxy in
+     * @param invokers          the MethodInvoker for every method of the resource interface
+     * @param <T>               the type of the resource interface
+     * @return the proxy
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T proxy(Class<T> resourceInterface, ClassLoader loader, Map<Method, ? extends MethodInvoker> invokers) {
+        return (T) Proxy.newProxyInstance(loader, new Class<?>[]{resourceInterface},
+                                          new ResilientInvocationHandler<>(resourceInterface, invokers));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        MethodInvoker invoker = this.invokers.get(method);
+        if (invoker != null) {
+            return invoker.invoke(args);
+        }
+        // only the methods inherited from Object are not on the resource interface
+        if ("equals".equals(method.getName())) {
+            return proxy == args[0];
+        } else if ("hashCode".equals(method.getName())) {
+            return System.identityHashCode(proxy);
+        } else if ("toString".equals(method.getName())) {
+            return "Resilient Client Proxy for :" + this.resourceInterface.getName();
+        }
+        throw new UnsupportedOperationException("Could not find a method for: " + method);
+    }
+}
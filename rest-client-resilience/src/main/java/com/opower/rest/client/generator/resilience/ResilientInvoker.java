@@ -0,0 +1,273 @@
+/**
+ *    Copyright 2014 Opower, Inc.
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ **/
+package com.opower.rest.client.generator.resilience;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.opower.rest.client.generator.core.MethodInvoker;
+import com.opower.rest.client.generator.extractors.DefaultEntityExtractorFactory;
+import com.opower.rest.client.generator.resilience.ResilienceClientErrorHandler.BadRequestException;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Wraps the MethodInvoker of a single method with a circuit breaker, a semaphore bulkhead, a timeout and a fallback.
+ * Everything runs on the calling thread. Future returning methods are completed from the thread that completes the
+ * underlying future, only their timeouts are scheduled on a single shared timer thread.
+ */
+final class ResilientInvoker implements MethodInvoker {
+
+    private static final ScheduledThreadPoolExecutor TIMER = createTimer();
+
+    private final Method method;
+    private final MethodInvoker delegate;
+    private final CircuitBreaker circuitBreaker;
+    private final Semaphore bulkhead;
+    private final long timeoutNanos;
+    private final Optional<Callable<Object>> fallback;
+    private final boolean async;
+
+    /**
+     * Creates the invoker for a method.
+     * @param method the method on the ResourceInterface
+     * @param delegate the MethodInvoker of the underlying client
+     * @param properties the settings of the method
+     * @param circuitBreaker the CircuitBreaker of the method
+     * @param fallback the fallback or null if there is none
+     */
+    ResilientInvoker(Method method, MethodInvoker delegate, ResilienceProperties properties, CircuitBreaker circuitBreaker,
+                     Callable<Object> fallback) {
+        this.method = checkNotNull(method);
+        this.delegate = checkNotNull(delegate);
+        this.circuitBreaker = properties.isCircuitBreakerEnabled() ? checkNotNull(circuitBreaker) : null;
+        this.bulkhead = properties.isBulkheadEnabled() ? new Semaphore(properties.getMaxConcurrentCalls()) : null;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(properties.getTimeoutMillis());
+        this.fallback = properties.isFallbackEnabled() ? Optional.fromNullable(fallback) : Optional.<Callable<Object>>absent();
+        this.async = DefaultEntityExtractorFactory.isFutureReturnType(method.getReturnType());
+        checkArgument(!properties.isFallbackEnabled() || fallback != null,
+                      "You didn't provide a fallback for %s.%s. You must either provide a fallback or disable fallbacks "
+                      + "in the ResilienceProperties for this method.",
+                      method.getDeclaringClass().getCanonicalName(), method.getName());
+    }
+
+    @Override
+    public Object invoke(Object[] args) {
+        if (this.bulkhead != null && !this.bulkhead.tryAcquire()) {
+            return reject(CallRejectedException.Reason.BULKHEAD_FULL);
+        }
+        CircuitBreaker.Phase phase = null;
+        if (this.circuitBreaker != null) {
+            phase = this.circuitBreaker.tryAcquirePermission();
+            if (phase == null) {
+                release();
+                return reject(CallRejectedException.Reason.CIRCUIT_OPEN);
+            }
+        }
+        if (this.async) {
+            return invokeAsync(phase, args);
+        }
+
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            Object result = this.delegate.invoke(args);
+            succeeded = System.nanoTime() - start <= this.timeoutNanos;
+            return result;
+        } catch (BadRequestException ex) {
+            succeeded = true;
+            throw Throwables.propagate(ex.getCause());
+        } catch (RuntimeException ex) {
+            return fallbackOr(ex);
+        } finally {
+            // errors and failed fallbacks count as failures too, so a trial call always ends the trial
+            record(phase, succeeded);
+            release();
+        }
+    }
+
+    private Object invokeAsync(final CircuitBreaker.Phase phase, Object[] args) {
+        final SettableFuture<Object> result = SettableFuture.create();
+        final ListenableFuture<?> call;
+        try {
+            call = (ListenableFuture<?>) this.delegate.invoke(args);
+        } catch (RuntimeException ex) {
+            release();
+            record(phase, false);
+            return fallbackFuture(ex);
+        } catch (Error e) {
+            release();
+            record(phase, false);
+            throw e;
+        }
+
+        // whichever way the call ends first decides its outcome, a cancelled call counts as a failure
+        final AtomicBoolean finished = new AtomicBoolean();
+        final ScheduledFuture<?> timeout = TIMER.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (finish(finished, phase, false)) {
+                    complete(result, new TimeoutException(String.format("%s timed out", ResilientInvoker.this.method.getName())));
+                    call.cancel(true);
+                }
+            }
+        }, this.timeoutNanos, TimeUnit.NANOSECONDS);
+
+        Futures.addCallback(call, new CallCallback(this, finished, phase, result));
+
+        result.addListener(new Runnable() {
+            @Override
+            public void run() {
+                timeout.cancel(false);
+                release();
+                if (result.isCancelled()) {
+                    finish(finished, phase, false);
+                    call.cancel(true);
+                }
+            }
+        }, MoreExecutors.sameThreadExecutor());
+        return result;
+    }
+
+    /**
+     * Records the outcome of an asynchronous call unless another outcome was recorded first.
+     * @return false if the call had already finished
+     */
+    private boolean finish(AtomicBoolean finished, CircuitBreaker.Phase phase, boolean success) {
+        if (!finished.compareAndSet(false, true)) {
+            return false;
+        }
+        record(phase, success);
+        return true;
+    }
+
+    /**
+     * Completes a failed call with the result of the fallback or the failure.
+     * @return false if the call had already been completed
+     */
+    private boolean complete(SettableFuture<Object> result, Throwable failure) {
+        if (result.isDone()) {
+            return false;
+        }
+        if (this.fallback.isPresent()) {
+            try {
+                return result.set(this.fallback.get().call());
+            } catch (Exception e) {
+                return result.setException(e);
+            }
+        }
+        return result.setException(failure);
+    }
+
+    private Object reject(CallRejectedException.Reason reason) {
+        CallRejectedException ex = new CallRejectedException(this.method, reason);
+        return this.async ? fallbackFuture(ex) : fallbackOr(ex);
+    }
+
+    private Object fallbackOr(RuntimeException ex) {
+        if (!this.fallback.isPresent()) {
+            throw ex;
+        }
+        try {
+            return this.fallback.get().call();
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private ListenableFuture<Object> fallbackFuture(RuntimeException ex) {
+        SettableFuture<Object> result = SettableFuture.create();
+        complete(result, ex);
+        return result;
+    }
+
+    private static void record(CircuitBreaker.Phase phase, boolean success) {
+        if (phase == null) {
+            return;
+        }
+        if (success) {
+            phase.onSuccess();
+        } else {
+            phase.onFailure();
+        }
+    }
+
+    private void release() {
+        if (this.bulkhead != null) {
+            this.bulkhead.release();
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor createTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("rest-client-resilience-timer")
+                .build());
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    /**
+     * Completes the result of an asynchronous call with the outcome of the underlying call, unless the call already
+     * timed out or was cancelled.
+     */
+    private static final class CallCallback implements FutureCallback<Object> {
+        private final ResilientInvoker invoker;
+        private final AtomicBoolean finished;
+        private final CircuitBreaker.Phase phase;
+        private final SettableFuture<Object> result;
+
+        private CallCallback(ResilientInvoker invoker, AtomicBoolean finished, CircuitBreaker.Phase phase,
+                             SettableFuture<Object> result) {
+            this.invoker = invoker;
+            this.finished = finished;
+            this.phase = phase;
+            this.result = result;
+        }
+
+        @Override
+        public void onSuccess(Object value) {
+            if (this.invoker.finish(this.finished, this.phase, true)) {
+                this.result.set(value);
+            }
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+            if (t instanceof BadRequestException) {
+                if (this.invoker.finish(this.finished, this.phase, true)) {
+                    this.result.setException(t.getCause());
+                }
+            } else if (this.invoker.finish(this.finished, this.phase, false)) {
+                this.invoker.complete(this.result, t);
+            }
+        }
+    }
+}
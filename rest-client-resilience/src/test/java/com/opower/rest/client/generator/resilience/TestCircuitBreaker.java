@@ -0,0 +1,121 @@
+package com.opower.rest.client.generator.resilience;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for the CircuitBreaker state transitions and its ring buffer statistics.
+ */
+public class TestCircuitBreaker {
+
+    private static final int RING_SIZE = 10;
+    private static final int MINIMUM_CALLS = 4;
+    private static final int PERCENT = 100;
+
+    @Test
+    public void staysClosedBelowMinimumCalls() {
+        CircuitBreaker breaker = breaker(Long.MAX_VALUE);
+        for (int i = 0; i < MINIMUM_CALLS - 1; i++) {
+            breaker.tryAcquirePermission().onFailure();
+        }
+        assertThat(breaker.getState(), is(CircuitBreaker.State.CLOSED));
+        assertThat(breaker.getFailureRate(), is(-1));
+    }
+
+    @Test
+    public void opensAtThreshold() {
+        CircuitBreaker breaker = breaker(Long.MAX_VALUE);
+        breaker.tryAcquirePermission().onSuccess();
+        breaker.tryAcquirePermission().onSuccess();
+        breaker.tryAcquirePermission().onFailure();
+        assertThat(breaker.getState(), is(CircuitBreaker.State.CLOSED));
+        breaker.tryAcquirePermission().onFailure();
+
+        assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+        assertThat(breaker.tryAcquirePermission(), is(nullValue()));
+    }
+
+    @Test
+    public void oldOutcomesFallOutOfTheRing() {
+        // outcomes are only recorded while closed, so keep it closed
+        CircuitBreaker breaker = new CircuitBreaker(new ResilienceProperties()
+                                                            .withRingBufferSize(RING_SIZE)
+                                                            .withMinimumCalls(MINIMUM_CALLS)
+                                                            .withFailureRateThreshold(PERCENT));
+        for (int i = 0; i < RING_SIZE / 2 - 1; i++) {
+            breaker.tryAcquirePermission().onFailure();
+            breaker.tryAcquirePermission().onSuccess();
+        }
+        for (int i = 0; i < RING_SIZE; i++) {
+            breaker.tryAcquirePermission().onSuccess();
+        }
+        assertThat(breaker.getFailureRate(), is(0));
+    }
+
+    @Test
+    public void trialCallClosesTheBreaker() {
+        CircuitBreaker breaker = openBreaker(0);
+
+        CircuitBreaker.Phase trial = breaker.tryAcquirePermission();
+        assertThat(breaker.getState(), is(CircuitBreaker.State.HALF_OPEN));
+        assertThat("only a single trial call is allowed", breaker.tryAcquirePermission(), is(nullValue()));
+
+        trial.onSuccess();
+        assertThat(breaker.getState(), is(CircuitBreaker.State.CLOSED));
+        assertThat(breaker.getFailureRate(), is(-1));
+    }
+
+    @Test
+    public void failedTrialCallReopensTheBreaker() {
+        CircuitBreaker breaker = openBreaker(0);
+
+        breaker.tryAcquirePermission().onFailure();
+
+        assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+    }
+
+    @Test
+    public void callsAdmittedBeforeTheTrialDontDecideIt() {
+        CircuitBreaker breaker = breaker(0);
+        CircuitBreaker.Phase closed = breaker.tryAcquirePermission();
+        for (int i = 0; i < MINIMUM_CALLS; i++) {
+            breaker.tryAcquirePermission().onFailure();
+        }
+        CircuitBreaker.Phase trial = breaker.tryAcquirePermission();
+        assertThat(breaker.getState(), is(CircuitBreaker.State.HALF_OPEN));
+
+        closed.onSuccess();
+        assertThat(breaker.getState(), is(CircuitBreaker.State.HALF_OPEN));
+        closed.onFailure();
+        assertThat(breaker.getState(), is(CircuitBreaker.State.HALF_OPEN));
+
+        trial.onSuccess();
+        assertThat(breaker.getState(), is(CircuitBreaker.State.CLOSED));
+    }
+
+    @Test
+    public void openBreakerWaitsBeforeTrial() {
+        CircuitBreaker breaker = openBreaker(Long.MAX_VALUE / 2);
+        assertThat(breaker.tryAcquirePermission(), is(nullValue()));
+        assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+    }
+
+    private static CircuitBreaker openBreaker(long waitMillis) {
+        CircuitBreaker breaker = breaker(waitMillis);
+        for (int i = 0; i < MINIMUM_CALLS; i++) {
+            breaker.tryAcquirePermission().onFailure();
+        }
+        assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+        return breaker;
+    }
+
+    private static CircuitBreaker breaker(long waitMillis) {
+        return new CircuitBreaker(new ResilienceProperties()
+                                          .withRingBufferSize(RING_SIZE)
+                                          .withMinimumCalls(MINIMUM_CALLS)
+                                          .withWaitInOpenMillis(waitMillis));
+    }
+}
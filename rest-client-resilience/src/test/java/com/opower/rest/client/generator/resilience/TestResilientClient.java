@@ -0,0 +1,304 @@
+package com.opower.rest.client.generator.resilience;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.opower.rest.client.ConfigurationCallback;
+import com.opower.rest.client.generator.core.MethodInvoker;
+import com.opower.rest.client.generator.core.ResourceInterface;
+import com.opower.rest.client.generator.core.SimpleUriProvider;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the circuit breaker, bulkhead, timeout and fallback handling of the ResilientClient.
+ */
+public class TestResilientClient {
+
+    private static final int MINIMUM_CALLS = 5;
+    private static final long TIMEOUT_MILLIS = 50;
+    private static final long WAIT_SECONDS = 5;
+
+    /**
+     * Initializes the system property to ensure the RuntimeDelegate gets properly loaded.
+     */
+    @BeforeClass
+    public static void init() {
+        System.setProperty("javax.ws.rs.ext.RuntimeDelegate", "com.opower.rest.client.generator.core.BasicRuntimeDelegate");
+    }
+
+    @Test
+    public void failuresOpenTheCircuit() {
+        ResilientClient.Builder<Frobs> builder = builder();
+        Frobs client = client(builder, new MethodInvoker() {
+            @Override
+            public Object invoke(Object[] args) {
+                throw new IllegalStateException();
+            }
+        }, null);
+
+        for (int i = 0; i < MINIMUM_CALLS; i++) {
+            try {
+                client.find();
+                fail("the call should fail");
+            } catch (IllegalStateException expected) {
+                // the failure of the call itself
+            }
+        }
+        assertThat(builder.getCircuitBreaker(find()).getState(), is(CircuitBreaker.State.OPEN));
+        try {
+            client.find();
+            fail("the call should be rejected");
+        } catch (CallRejectedException ex) {
+            assertThat(ex.getReason(), is(CallRejectedException.Reason.CIRCUIT_OPEN));
+        }
+    }
+
+    @Test
+    public void fallbackIsUsedForFailuresAndRejections() {
+        ResilientClient.Builder<Frobs> builder = builder().methodFallback(find(), new Callable<Object>() {
+            @Override
+            public Object call() {
+                return "fallback";
+            }
+        });
+        Frobs client = client(builder, new MethodInvoker() {
+            @Override
+            public Object invoke(Object[] args) {
+                throw new IllegalStateException();
+            }
+        }, null);
+
+        for (int i = 0; i < MINIMUM_CALLS * 2; i++) {
+            assertThat(client.find(), is("fallback"));
+        }
+    }
+
+    @Test
+    public void badRequestsDoNotCountAsFailures() {
+        ResilientClient.Builder<Frobs> builder = builder();
+        Frobs client = client(builder, new MethodInvoker() {
+            @Override
+            public Object invoke(Object[] args) {
+                throw new ResilienceClientErrorHandler.BadRequestException(new IllegalArgumentException());
+            }
+        }, null);
+
+        for (int i = 0; i < MINIMUM_CALLS; i++) {
+            try {
+                client.find();
+                fail("the call should fail");
+            } catch (IllegalArgumentException expected) {
+                // the original exception reaches the caller
+            }
+        }
+        assertThat(builder.getCircuitBreaker(find()).getFailureRate(), is(0));
+    }
+
+    @Test
+    public void bulkheadRejectsExcessCalls() throws Exception {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Frobs client = client(builder().methodProperties(find(), new ConfigurationCallback<ResilienceProperties>() {
+            @Override
+            public void configure(ResilienceProperties properties) {
+                properties.withMaxConcurrentCalls(1);
+            }
+        }), new MethodInvoker() {
+            @Override
+            public Object invoke(Object[] args) {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "frob";
+            }
+        }, null);
+
+        Thread first = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                client.find();
+            }
+        });
+        first.start();
+        entered.await(WAIT_SECONDS, TimeUnit.SECONDS);
+        try {
+            client.find();
+            fail("the call should be rejected");
+        } catch (CallRejectedException ex) {
+            assertThat(ex.getReason(), is(CallRejectedException.Reason.BULKHEAD_FULL));
+        } finally {
+            release.countDown();
+            first.join();
+        }
+        assertThat(client.find(), is("frob"));
+    }
+
+    @Test
+    public void futuresTimeOut() throws Exception {
+        Frobs client = client(builder().methodProperties(findAsync(), new ConfigurationCallback<ResilienceProperties>() {
+            @Override
+            public void configure(ResilienceProperties properties) {
+                properties.withTimeoutMillis(TIMEOUT_MILLIS);
+            }
+        }), null, new MethodInvoker() {
+            @Override
+            public Object invoke(Object[] args) {
+                return SettableFuture.create();
+            }
+        });
+
+        try {
+            client.findAsync().get(WAIT_SECONDS, TimeUnit.SECONDS);
+            fail("the call should time out");
+        } catch (ExecutionException ex) {
+            assertThat(ex.getCause(), instanceOf(TimeoutException.class));
+        }
+    }
+
+    @Test
+    public void futuresComplete() throws Exception {
+        Frobs client = client(builder(), null, new MethodInvoker() {
+            @Override
+            public Object invoke(Object[] args) {
+                SettableFuture<String> result = SettableFuture.create();
+                result.set("frob");
+                return result;
+            }
+        });
+
+        assertThat(client.findAsync().get(WAIT_SECONDS, TimeUnit.SECONDS), is("frob"));
+    }
+
+    @Test
+    public void aTrialCallEndingInAnErrorReopensTheCircuit() {
+        CircuitBreaker breaker = readyForTrial();
+        final Error error = new Error("trial");
+        ResilientInvoker invoker = new ResilientInvoker(find(), new MethodInvoker() {
+            @Override
+            public Object invoke(Object[] args) {
+                throw error;
+            }
+        }, trialProperties(), breaker, null);
+
+        try {
+            invoker.invoke(new Object[0]);
+        } catch (Error ex) {
+            assertThat(ex, sameInstance(error));
+        }
+        assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+    }
+
+    @Test
+    public void aCancelledTrialCallReopensTheCircuit() {
+        CircuitBreaker breaker = readyForTrial();
+        final SettableFuture<String> call = SettableFuture.create();
+        ResilientInvoker invoker = new ResilientInvoker(findAsync(), new MethodInvoker() {
+            @Override
+            public Object invoke(Object[] args) {
+                return call;
+            }
+        }, trialProperties(), breaker, null);
+
+        ListenableFuture<?> result = (ListenableFuture<?>) invoker.invoke(new Object[0]);
+        assertThat(breaker.getState(), is(CircuitBreaker.State.HALF_OPEN));
+        result.cancel(true);
+
+        assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+        assertTrue(call.isCancelled());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void enabledFallbackMustBeProvided() {
+        client(builder().methodProperties(find(), new ConfigurationCallback<ResilienceProperties>() {
+            @Override
+            public void configure(ResilienceProperties properties) {
+                properties.withFallbackEnabled(true);
+            }
+        }), null, null);
+    }
+
+    private static Frobs client(ResilientClient.Builder<Frobs> builder, MethodInvoker find, MethodInvoker findAsync) {
+        MethodInvoker unused = new MethodInvoker() {
+            @Override
+            public Object invoke(Object[] args) {
+                throw new UnsupportedOperationException();
+            }
+        };
+        Map<Method, MethodInvoker> invokers = ImmutableMap.of(find(), find == null ? unused : find,
+                                                              findAsync(), findAsync == null ? unused : findAsync);
+        return ResilientInvocationHandler.proxy(Frobs.class, Frobs.class.getClassLoader(), builder.assembleInvokers(invokers));
+    }
+
+    private static ResilienceProperties trialProperties() {
+        return new ResilienceProperties().withMinimumCalls(1).withWaitInOpenMillis(0);
+    }
+
+    /**
+     * An open CircuitBreaker that lets the next call through as its trial.
+     */
+    private static CircuitBreaker readyForTrial() {
+        CircuitBreaker breaker = new CircuitBreaker(trialProperties());
+        breaker.tryAcquirePermission().onFailure();
+        assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+        return breaker;
+    }
+
+    private static ResilientClient.Builder<Frobs> builder() {
+        return new ResilientClient.Builder<>(new ResourceInterface<>(Frobs.class), new SimpleUriProvider("http://localhost"))
+                .properties(new ConfigurationCallback<ResilienceProperties>() {
+                    @Override
+                    public void configure(ResilienceProperties properties) {
+                        properties.withMinimumCalls(MINIMUM_CALLS).withWaitInOpenMillis(TimeUnit.MINUTES.toMillis(1));
+                    }
+                });
+    }
+
+    private static Method find() {
+        return method("find");
+    }
+
+    private static Method findAsync() {
+        return method("findAsync");
+    }
+
+    private static Method method(String name) {
+        try {
+            return Frobs.class.getMethod(name);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A resource with a blocking and a non-blocking lookup.
+     */
+    @Path("/frobs")
+    public interface Frobs {
+        @GET
+        String find();
+
+        @GET
+        @Path("/async")
+        ListenableFuture<String> findAsync();
+    }
+}